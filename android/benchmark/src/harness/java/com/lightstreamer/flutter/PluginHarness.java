@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import com.lightstreamer.client.StandInItemUpdate;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.plugin.common.EventChannel;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Sets up a plugin instance on the desktop JVM, for the benchmarks and the tests: the method handlers are registered without attaching
+ * to an engine and the events are sent to a fake EventSink, which encodes them with the {@link ListenerEventCodec} as the EventChannel does.
+ * <p>
+ * The main Looper is the one of the running thread, so the posted tasks run only when {@link #runPending()} is called.
+ */
+class PluginHarness {
+    final LightstreamerFlutterPlugin _plugin = new LightstreamerFlutterPlugin();
+    final ListenerEventCodec _codec = new ListenerEventCodec();
+    final Looper _looper = Looper.getMainLooper();
+    /**
+     * The number of events and of encoded bytes sent to the fake EventSink.
+     */
+    long _events;
+    long _bytes;
+    /**
+     * When not null, the events sent to the fake EventSink are collected (see {@link #collectEvents()}).
+     */
+    @Nullable
+    List<Object> _delivered;
+
+    PluginHarness() {
+        _plugin.registerMethodHandlers();
+        _plugin._listenerChannelSink = new EventChannel.EventSink() {
+            @Override
+            public void success(Object event) {
+                if (_delivered == null) {
+                    _events += event instanceof List ? ((List<?>) event).size() : 1;
+                    _bytes += _codec.encodeSuccessEnvelope(event).position();
+                    return;
+                }
+                // NB the events of a batch are encoded one at a time, since an ItemUpdateEvent is given back to its pool once encoded
+                for (Object e : event instanceof List ? (List<?>) event : Collections.singletonList(event)) {
+                    ByteBuffer envelope = _codec.encodeSuccessEnvelope(e);
+                    _events++;
+                    _bytes += envelope.position();
+                    _delivered.add(e instanceof ItemUpdateEvent ? decode(envelope) : e);
+                }
+            }
+
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {
+                throw new IllegalStateException(errorCode + ": " + errorMessage);
+            }
+
+            @Override
+            public void endOfStream() {}
+        };
+    }
+
+    /**
+     * Starts collecting the events sent to the fake EventSink, in the order they are delivered, and returns the collection.
+     * The events written straight from the updates (see {@link ItemUpdateEvent}) are collected as the equivalent event maps.
+     */
+    List<Object> collectEvents() {
+        _delivered = new ArrayList<>();
+        return _delivered;
+    }
+
+    static String[] fieldNames(int fieldCount) {
+        String[] fields = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            fields[i] = "field" + (i + 1);
+        }
+        return fields;
+    }
+
+    /**
+     * Subscribes (through the method channel) to a MERGE Subscription of two items with the given fields
+     * and makes it active.
+     */
+    MySubscription subscribe(String subId, String[] fields, Map<String, Object> options) {
+        Map<String, Object> subscription = subscription(subId, Arrays.asList("item1", "item2"), fields);
+        subscription.putAll(options);
+        subscribe("client1", subscription);
+        MySubscription mySub = _plugin._subMap.get(subId);
+        mySub._listener.onSubscription();
+        runPending();
+        return mySub;
+    }
+
+    /**
+     * Builds the options of a MERGE Subscription (see `LightstreamerClient.subscribe`).
+     */
+    static Map<String, Object> subscription(String subId, List<String> items, String[] fields) {
+        Map<String, Object> subscription = new HashMap<>();
+        subscription.put("id", subId);
+        subscription.put("mode", "MERGE");
+        subscription.put("items", items);
+        subscription.put("fields", Arrays.asList(fields));
+        return subscription;
+    }
+
+    void subscribe(String clientId, Map<String, Object> subscription) {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("id", clientId);
+        arguments.put("subscription", subscription);
+        call("LightstreamerClient.subscribe", arguments);
+    }
+
+    /**
+     * Builds the connection details of a client connecting to a local Server (see `LightstreamerClient.connect`).
+     */
+    static Map<String, Object> connectionDetails(String adapterSet) {
+        Map<String, Object> details = new HashMap<>();
+        details.put("serverAddress", "http://localhost:8080");
+        details.put("adapterSet", adapterSet);
+        return details;
+    }
+
+    /**
+     * Connects the client (through the method channel) with the given details and the default connection options.
+     */
+    void connect(String clientId, Map<String, Object> details, boolean sessionSharing) {
+        Map<String, Object> options = new HashMap<>();
+        for (String option : new String[] { "contentLength", "firstRetryMaxDelay", "idleTimeout", "keepaliveInterval", "pollingInterval",
+                "reconnectTimeout", "retryDelay", "reverseHeartbeatInterval", "sessionRecoveryTimeout", "stalledTimeout" }) {
+            options.put(option, 1000);
+        }
+        options.put("httpExtraHeaders", new HashMap<>());
+        options.put("requestedMaxBandwidth", "unlimited");
+        options.put("httpExtraHeadersOnSessionCreationOnly", false);
+        options.put("serverInstanceAddressIgnored", false);
+        options.put("slowingEnabled", false);
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("id", clientId);
+        arguments.put("connectionDetails", details);
+        arguments.put("connectionOptions", options);
+        arguments.put("sessionSharing", sessionSharing);
+        call("LightstreamerClient.connect", arguments);
+    }
+
+    void disconnect(String clientId) {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("id", clientId);
+        call("LightstreamerClient.disconnect", arguments);
+    }
+
+    /**
+     * Builds an update of the second item with all the fields set and `changedFields` of them changed.
+     */
+    static StandInItemUpdate newUpdate(String[] fields, int changedFields) {
+        StandInItemUpdate update = new StandInItemUpdate("item2", 2, fields);
+        for (int pos = 1; pos <= fields.length; pos++) {
+            update.set(pos, "value of " + fields[pos - 1]);
+        }
+        update.clearChanges();
+        for (int pos = 1; pos <= Math.min(changedFields, fields.length); pos++) {
+            update.set(pos, "new value of " + fields[pos - 1]);
+        }
+        return update;
+    }
+
+    /**
+     * Calls the method through the method channel and returns its result. The errors are thrown as {@link IllegalStateException}s.
+     */
+    Object call(String method, Map<String, Object> arguments) {
+        List<Object> res = new ArrayList<>(1);
+        _plugin.onMethodCall(new MethodCall(method, arguments), new MethodChannel.Result() {
+            @Override
+            public void success(Object result) {
+                res.add(result);
+            }
+
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {
+                throw new IllegalStateException(errorCode + ": " + errorMessage);
+            }
+
+            @Override
+            public void notImplemented() {
+                throw new IllegalStateException("Unknown method " + method);
+            }
+        });
+        return res.get(0);
+    }
+
+    void runPending() {
+        _looper.runPending();
+    }
+
+    /**
+     * Decodes an event encoded by {@link ListenerEventCodec} into the equivalent event map.
+     */
+    static Map<String, Object> decode(ByteBuffer envelope) {
+        ByteBuffer buffer = envelope.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        buffer.flip();
+        if (buffer.get() != 0 || buffer.get() != ListenerEventCodec.EVENT) {
+            throw new IllegalArgumentException("Not an event");
+        }
+        int length = buffer.getInt();
+        if (buffer.remaining() != length) {
+            throw new IllegalArgumentException("Wrong length " + length);
+        }
+        Map<String, Object> event = new HashMap<>();
+        event.put("targetMethod", ListenerEventCodec.METHODS[buffer.get() & 0xFF]);
+        int count = buffer.get() & 0xFF;
+        for (int i = 0; i < count; i++) {
+            event.put(ListenerEventCodec.ARGUMENTS[buffer.get() & 0xFF], readData(buffer));
+        }
+        return event;
+    }
+
+    static Object readData(ByteBuffer buffer) {
+        byte type = buffer.get();
+        switch (type) {
+            case ListenerEventCodec.NULL: return null;
+            case ListenerEventCodec.TRUE: return true;
+            case ListenerEventCodec.FALSE: return false;
+            case ListenerEventCodec.INT: return buffer.getInt();
+            case ListenerEventCodec.STRING: return readString(buffer);
+            case ListenerEventCodec.STRING_MAP:
+            case ListenerEventCodec.INT_MAP: {
+                int size = buffer.getInt();
+                Map<Object, Object> map = new HashMap<>();
+                for (int i = 0; i < size; i++) {
+                    Object key = type == ListenerEventCodec.INT_MAP ? (Object) buffer.getInt() : readString(buffer);
+                    map.put(key, readData(buffer));
+                }
+                return map;
+            }
+            default:
+                throw new IllegalArgumentException("Unexpected type " + type);
+        }
+    }
+
+    static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import com.lightstreamer.client.StandInItemUpdate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the generic path of the listener events, i.e. `LightstreamerFlutterPlugin.invokeMethod` with an event map,
+ * the task posted to the main Looper and the serialization of the map by the {@link ListenerEventCodec}.
+ * <p>
+ * The event is the `onItemUpdate` map of the FULL payload profile for an update where 2 fields have changed,
+ * which is the largest map the plugin sends. The map is built once, so only its delivery is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InvokeMethodBenchmark {
+    @Param({ "5", "20", "100" })
+    int fieldCount;
+
+    PluginHarness _harness;
+    Map<String, Object> _arguments;
+
+    @Setup
+    public void setUp() {
+        _harness = new PluginHarness();
+        String[] fields = PluginHarness.fieldNames(fieldCount);
+        MySubscriptionListener listener = _harness.subscribe("sub1", fields, new HashMap<>())._listener;
+        StandInItemUpdate update = PluginHarness.newUpdate(fields, 2);
+        _arguments = new HashMap<>();
+        _arguments.put("itemName", update.getItemName());
+        _arguments.put("itemPos", update.getItemPos());
+        _arguments.put("isSnapshot", update.isSnapshot());
+        listener.putAllFields(update, _arguments);
+        _arguments.put("subId", "sub1");
+    }
+
+    @Benchmark
+    public long invokeMethod() {
+        _harness._plugin.invokeMethod("SubscriptionListener.onItemUpdate", _arguments);
+        _harness.runPending();
+        return _harness._bytes;
+    }
+}
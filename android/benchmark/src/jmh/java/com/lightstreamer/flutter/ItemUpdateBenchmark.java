@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import com.lightstreamer.client.StandInItemUpdate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the delivery of a real-time update, from `MySubscriptionListener.onItemUpdate` (called by the SDK)
+ * to the bytes written by the {@link ListenerEventCodec} when the main Looper hands the event to the EventSink.
+ * <p>
+ * An operation is one update of a MERGE item where 2 fields have changed. The throughput mode gives the updates per microsecond,
+ * the sample mode the latency percentiles, and the gc profiler (enabled in build.gradle) the bytes allocated per update
+ * (gc.alloc.rate.norm).
+ * <p>
+ * The deliveries are:
+ * - direct: each event is posted to the main Looper (the default);
+ * - batched: the events are delivered in batches of 64 (see `LightstreamerClient.setEventBatching`);
+ * - queued: the events pass through a bounded event queue (see `Subscription.setEventQueueMaxSize`).
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ItemUpdateBenchmark {
+    @Param({ "5", "20", "100" })
+    int fieldCount;
+
+    @Param({ "FULL", "CHANGED_ONLY", "POSITIONAL_CHANGED_ONLY" })
+    String profile;
+
+    @Param({ "direct", "batched", "queued" })
+    String delivery;
+
+    PluginHarness _harness;
+    MySubscriptionListener _listener;
+    StandInItemUpdate _update;
+
+    @Setup
+    public void setUp() {
+        _harness = new PluginHarness();
+        String[] fields = PluginHarness.fieldNames(fieldCount);
+        Map<String, Object> options = new HashMap<>();
+        options.put("payloadProfile", profile);
+        if ("queued".equals(delivery)) {
+            options.put("eventQueueMaxSize", 1024);
+        } else if ("batched".equals(delivery)) {
+            Map<String, Object> arguments = new HashMap<>();
+            arguments.put("maxSize", 64);
+            arguments.put("maxDelay", 1000);
+            _harness.call("LightstreamerClient.setEventBatching", arguments);
+        }
+        _listener = _harness.subscribe("sub1", fields, options)._listener;
+        _update = PluginHarness.newUpdate(fields, 2);
+    }
+
+    @Benchmark
+    public long onItemUpdate() {
+        _listener.onItemUpdate(_update);
+        _harness.runPending();
+        return _harness._bytes;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import com.lightstreamer.client.Subscription;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Measures `LightstreamerFlutterPlugin.onMethodCall` for a mix of calls dominated by the `Subscription.getValueBy*` getters,
+ * as on getter-heavy screens (see also {@link com.lightstreamer.flutter.benchmark.MethodDispatchBenchmark}, which isolates the dispatching).
+ * An operation is a whole mix of calls, including the handlers and the reply to the Flutter component.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MethodCallBenchmark {
+    PluginHarness _harness;
+    MethodCall[] _calls;
+
+    @Setup
+    public void setUp() {
+        _harness = new PluginHarness();
+        String[] fields = PluginHarness.fieldNames(10);
+        Subscription sub = _harness.subscribe("sub1", fields, new HashMap<>())._sub;
+        for (int pos = 1; pos <= fields.length; pos++) {
+            sub.setValue(1, pos, "value" + pos);
+        }
+        _calls = new MethodCall[] {
+            getter("Subscription.getValueByItemPosAndFieldPos", 1, 3),
+            getter("Subscription.getValueByItemNameAndFieldName", "item1", "field4"),
+            getter("Subscription.getValueByItemPosAndFieldName", 1, "field5"),
+            getter("Subscription.getValueByItemNameAndFieldPos", "item1", 6),
+            getter("Subscription.getValueByItemPosAndFieldPos", 1, 7),
+            new MethodCall("Subscription.isSubscribed", arguments("subId", "sub1")),
+            new MethodCall("LightstreamerClient.getStatus", arguments("id", "client1")),
+        };
+    }
+
+    static MethodCall getter(String method, Object item, Object field) {
+        Map<String, Object> arguments = arguments("subId", "sub1");
+        arguments.put("item", item);
+        arguments.put("field", field);
+        return new MethodCall(method, arguments);
+    }
+
+    static Map<String, Object> arguments(String key, Object value) {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put(key, value);
+        return arguments;
+    }
+
+    @Benchmark
+    public void onMethodCall(Blackhole bh) {
+        MethodChannel.Result result = new MethodChannel.Result() {
+            @Override
+            public void success(Object res) {
+                bh.consume(res);
+            }
+
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {
+                throw new IllegalStateException(errorCode + ": " + errorMessage);
+            }
+
+            @Override
+            public void notImplemented() {
+                throw new IllegalStateException();
+            }
+        };
+        for (MethodCall call : _calls) {
+            _harness._plugin.onMethodCall(call, result);
+        }
+    }
+}
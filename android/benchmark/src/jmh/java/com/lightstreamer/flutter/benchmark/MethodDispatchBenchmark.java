@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of dispatching a method call received on the channel com.lightstreamer.flutter/methods
+ * to its handler.
+ * <p>
+ * {@link #nestedSwitch} replicates the former dispatching of `LightstreamerFlutterPlugin.onMethodCall`
+ * (a regex split of the method name followed by two levels of string switch), while {@link #handlerTable}
+ * replicates the current one (a single lookup in the table of the registered handlers).
+ * The mix of calls is dominated by the `Subscription.getValueBy*` getters, as on getter-heavy screens.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MethodDispatchBenchmark {
+
+    interface Handler {
+        void handle(Blackhole bh);
+    }
+
+    static final String[] CALLS = {
+        "Subscription.getValueByItemPosAndFieldPos",
+        "Subscription.getValueByItemNameAndFieldName",
+        "Subscription.getValueByItemPosAndFieldName",
+        "Subscription.getValueByItemNameAndFieldPos",
+        "Subscription.getCommandValueByItemPosAndFieldPos",
+        "Subscription.isSubscribed",
+        "Subscription.getValueByItemPosAndFieldPos",
+        "Subscription.getValueByItemNameAndFieldName",
+        "LightstreamerClient.getStatus",
+        "LightstreamerClient.sendMessage",
+        "LightstreamerClient.subscribe",
+        "ConnectionOptions.setRequestedMaxBandwidth",
+        "MpnSubscription.setTriggerExpression",
+    };
+
+    final Map<String, Handler> _handlers = new HashMap<>();
+    int _next;
+
+    @Setup
+    public void setup() {
+        // same number of entries as the table of the plugin
+        String[] methods = {
+            "LightstreamerClient.connect", "LightstreamerClient.disconnect", "LightstreamerClient.getStatus",
+            "LightstreamerClient.subscribe", "LightstreamerClient.unsubscribe", "LightstreamerClient.getSubscriptions",
+            "LightstreamerClient.sendMessage", "LightstreamerClient.registerForMpn", "LightstreamerClient.subscribeMpn",
+            "LightstreamerClient.unsubscribeMpn", "LightstreamerClient.unsubscribeMpnSubscriptions",
+            "LightstreamerClient.getMpnSubscriptions", "LightstreamerClient.findMpnSubscription",
+            "LightstreamerClient.setLoggerProvider", "LightstreamerClient.setEventBatching",
+            "LightstreamerClient.addCookies", "LightstreamerClient.getCookies", "LightstreamerClient.cleanResources",
+            "LightstreamerClient.reset", "ConnectionDetails.setServerAddress", "ConnectionOptions.setForcedTransport",
+            "ConnectionOptions.setRequestedMaxBandwidth", "ConnectionOptions.setReverseHeartbeatInterval",
+            "Subscription.getCommandPosition", "Subscription.getKeyPosition", "Subscription.setRequestedMaxFrequency",
+            "Subscription.isActive", "Subscription.isSubscribed", "Subscription.getValueByItemNameAndFieldName",
+            "Subscription.getValueByItemNameAndFieldPos", "Subscription.getValueByItemPosAndFieldName",
+            "Subscription.getValueByItemPosAndFieldPos", "Subscription.getCommandValueByItemNameAndFieldName",
+            "Subscription.getCommandValueByItemNameAndFieldPos", "Subscription.getCommandValueByItemPosAndFieldName",
+            "Subscription.getCommandValueByItemPosAndFieldPos", "MpnSubscription.setTriggerExpression",
+            "MpnSubscription.setNotificationFormat", "FirebaseMpnBuilder.build",
+        };
+        for (int i = 0; i < methods.length; i++) {
+            final int id = i;
+            _handlers.put(methods[i], bh -> bh.consume(id));
+        }
+    }
+
+    String nextCall() {
+        String call = CALLS[_next];
+        _next = (_next + 1) % CALLS.length;
+        // a fresh string, as the method names decoded from the channel are not interned
+        return new String(call);
+    }
+
+    @Benchmark
+    public void nestedSwitch(Blackhole bh) {
+        String method = nextCall();
+        String[] parts = method.split("\\.");
+        String className = parts[0];
+        String methodName = parts[1];
+        switch (className) {
+            case "LightstreamerClient":
+                Client_handle(methodName, bh);
+                break;
+            case "ConnectionOptions":
+                ConnectionOptions_handle(methodName, bh);
+                break;
+            case "Subscription":
+                Subscription_handle(methodName, bh);
+                break;
+            case "MpnSubscription":
+                MpnSubscription_handle(methodName, bh);
+                break;
+            default:
+                bh.consume(-1);
+        }
+    }
+
+    @Benchmark
+    public void handlerTable(Blackhole bh) {
+        Handler handler = _handlers.get(nextCall());
+        if (handler != null) {
+            handler.handle(bh);
+        } else {
+            bh.consume(-1);
+        }
+    }
+
+    void Client_handle(String method, Blackhole bh) {
+        switch (method) {
+            case "connect": bh.consume(0); break;
+            case "disconnect": bh.consume(1); break;
+            case "getStatus": bh.consume(2); break;
+            case "subscribe": bh.consume(3); break;
+            case "unsubscribe": bh.consume(4); break;
+            case "getSubscriptions": bh.consume(5); break;
+            case "sendMessage": bh.consume(6); break;
+            case "registerForMpn": bh.consume(7); break;
+            case "subscribeMpn": bh.consume(8); break;
+            case "unsubscribeMpn": bh.consume(9); break;
+            case "unsubscribeMpnSubscriptions": bh.consume(10); break;
+            case "getMpnSubscriptions": bh.consume(11); break;
+            case "findMpnSubscription": bh.consume(12); break;
+            case "setLoggerProvider": bh.consume(13); break;
+            case "setEventBatching": bh.consume(14); break;
+            case "addCookies": bh.consume(15); break;
+            case "getCookies": bh.consume(16); break;
+            case "cleanResources": bh.consume(17); break;
+            case "reset": bh.consume(18); break;
+            default: bh.consume(-1);
+        }
+    }
+
+    void ConnectionOptions_handle(String method, Blackhole bh) {
+        switch (method) {
+            case "setForcedTransport": bh.consume(20); break;
+            case "setRequestedMaxBandwidth": bh.consume(21); break;
+            case "setReverseHeartbeatInterval": bh.consume(22); break;
+            default: bh.consume(-1);
+        }
+    }
+
+    void Subscription_handle(String method, Blackhole bh) {
+        switch (method) {
+            case "getCommandPosition": bh.consume(23); break;
+            case "getKeyPosition": bh.consume(24); break;
+            case "setRequestedMaxFrequency": bh.consume(25); break;
+            case "isActive": bh.consume(26); break;
+            case "isSubscribed": bh.consume(27); break;
+            case "getValueByItemNameAndFieldName": bh.consume(28); break;
+            case "getValueByItemNameAndFieldPos": bh.consume(29); break;
+            case "getValueByItemPosAndFieldName": bh.consume(30); break;
+            case "getValueByItemPosAndFieldPos": bh.consume(31); break;
+            case "getCommandValueByItemNameAndFieldName": bh.consume(32); break;
+            case "getCommandValueByItemNameAndFieldPos": bh.consume(33); break;
+            case "getCommandValueByItemPosAndFieldName": bh.consume(34); break;
+            case "getCommandValueByItemPosAndFieldPos": bh.consume(35); break;
+            default: bh.consume(-1);
+        }
+    }
+
+    void MpnSubscription_handle(String method, Blackhole bh) {
+        switch (method) {
+            case "setTriggerExpression": bh.consume(36); break;
+            case "setNotificationFormat": bh.consume(37); break;
+            default: bh.consume(-1);
+        }
+    }
+}
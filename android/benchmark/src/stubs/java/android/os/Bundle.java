@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.os;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class Bundle {
+    final Map<String, Object> _map = new HashMap<>();
+
+    public void putBoolean(String key, boolean value) {
+        _map.put(key, value);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = _map.get(key);
+        return value instanceof Boolean ? (Boolean) value : defaultValue;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.os;
+
+public class Handler {
+    final Looper _looper;
+
+    public Handler(Looper looper) {
+        _looper = looper;
+    }
+
+    public final Looper getLooper() {
+        return _looper;
+    }
+
+    public final boolean post(Runnable task) {
+        _looper.post(task);
+        return true;
+    }
+
+    public final boolean postDelayed(Runnable task, long delayMillis) {
+        _looper.postDelayed(task, delayMillis);
+        return true;
+    }
+
+    public final void removeCallbacks(Runnable task) {
+        _looper.removeCallbacks(task);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.os;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Stand-in for the Android Looper: the main Looper belongs to the thread that first asks for it
+ * and runs the posted tasks only when the harness calls {@link #runPending()}.
+ */
+public final class Looper {
+    static Looper _main;
+
+    final Thread _thread;
+    final ArrayDeque<Runnable> _tasks = new ArrayDeque<>();
+    final List<Object[]> _delayedTasks = new ArrayList<>();
+
+    Looper(Thread thread) {
+        _thread = thread;
+    }
+
+    public static synchronized Looper getMainLooper() {
+        if (_main == null) {
+            _main = new Looper(Thread.currentThread());
+        }
+        return _main;
+    }
+
+    public static Looper myLooper() {
+        Looper main = getMainLooper();
+        return main._thread == Thread.currentThread() ? main : null;
+    }
+
+    synchronized void post(Runnable task) {
+        _tasks.add(task);
+    }
+
+    synchronized void postDelayed(Runnable task, long delayMillis) {
+        _delayedTasks.add(new Object[] { task, SystemClock.uptimeMillis() + delayMillis });
+    }
+
+    synchronized void removeCallbacks(Runnable task) {
+        _tasks.remove(task);
+        _delayedTasks.removeIf(t -> t[0] == task);
+    }
+
+    /**
+     * Runs the posted tasks and the delayed tasks that are due, including the ones posted meanwhile.
+     */
+    public void runPending() {
+        while (true) {
+            Runnable task;
+            synchronized (this) {
+                task = _tasks.poll();
+                if (task == null) {
+                    long now = SystemClock.uptimeMillis();
+                    for (Iterator<Object[]> it = _delayedTasks.iterator(); it.hasNext(); ) {
+                        Object[] t = it.next();
+                        if ((Long) t[1] <= now) {
+                            it.remove();
+                            task = (Runnable) t[0];
+                            break;
+                        }
+                    }
+                }
+            }
+            if (task == null) {
+                return;
+            }
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.client;
+
+public class ConnectionDetails {
+    String _adapterSet;
+    String _serverAddress;
+    String _user;
+    String _password;
+
+    public String getAdapterSet() { return _adapterSet; }
+    public void setAdapterSet(String adapterSet) { _adapterSet = adapterSet; }
+    public String getServerAddress() { return _serverAddress; }
+    public void setServerAddress(String serverAddress) { _serverAddress = serverAddress; }
+    public String getUser() { return _user; }
+    public void setUser(String user) { _user = user; }
+    public void setPassword(String password) { _password = password; }
+    /** Only in the stand-in: the password set so far. */
+    @StandInOnly
+    public String getPassword() { return _password; }
+    public String getServerInstanceAddress() { return null; }
+    public String getServerSocketName() { return null; }
+    public String getClientIp() { return null; }
+    public String getSessionId() { return null; }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.client;
+
+import java.util.Map;
+
+public class ConnectionOptions {
+    public void setContentLength(long value) {}
+    public void setFirstRetryMaxDelay(long value) {}
+    public void setForcedTransport(String value) {}
+    public void setHttpExtraHeaders(Map<String, String> value) {}
+    public void setIdleTimeout(long value) {}
+    public void setKeepaliveInterval(long value) {}
+    public void setPollingInterval(long value) {}
+    public void setReconnectTimeout(long value) {}
+    public void setRequestedMaxBandwidth(String value) {}
+    public void setRetryDelay(long value) {}
+    public void setReverseHeartbeatInterval(long value) {}
+    public void setSessionRecoveryTimeout(long value) {}
+    public void setStalledTimeout(long value) {}
+    public void setHttpExtraHeadersOnSessionCreationOnly(boolean value) {}
+    public void setServerInstanceAddressIgnored(boolean value) {}
+    public void setSlowingEnabled(boolean value) {}
+    public String getRealMaxBandwidth() { return null; }
+    public long getIdleTimeout() { return 0; }
+    public long getKeepaliveInterval() { return 0; }
+    public long getPollingInterval() { return 0; }
+    public String getForcedTransport() { return null; }
+    public String getRequestedMaxBandwidth() { return null; }
+}
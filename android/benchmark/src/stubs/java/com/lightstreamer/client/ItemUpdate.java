@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.client;
+
+import java.util.Map;
+
+public interface ItemUpdate {
+    String getItemName();
+    int getItemPos();
+    boolean isSnapshot();
+    String getValue(String fieldName);
+    String getValue(int fieldPos);
+    boolean isValueChanged(String fieldName);
+    boolean isValueChanged(int fieldPos);
+    String getValueAsJSONPatchIfAvailable(String fieldName);
+    String getValueAsJSONPatchIfAvailable(int fieldPos);
+    Map<String, String> getChangedFields();
+    Map<Integer, String> getChangedFieldsByPosition();
+    Map<String, String> getFields();
+    Map<Integer, String> getFieldsByPosition();
+}
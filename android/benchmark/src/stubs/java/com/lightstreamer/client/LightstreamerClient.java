@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.client;
+
+import com.lightstreamer.client.mpn.MpnDevice;
+import com.lightstreamer.client.mpn.MpnSubscription;
+import com.lightstreamer.log.LoggerProvider;
+
+import java.net.HttpCookie;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stand-in for the client of the SDK: it never connects.
+ */
+public class LightstreamerClient {
+    public final ConnectionDetails connectionDetails = new ConnectionDetails();
+    public final ConnectionOptions connectionOptions = new ConnectionOptions();
+    final List<ClientListener> _listeners = new ArrayList<>();
+    final List<Subscription> _subscriptions = new ArrayList<>();
+    final List<String> _sentMessages = new ArrayList<>();
+    final List<ClientMessageListener> _sentListeners = new ArrayList<>();
+    boolean _connectRequested;
+
+    public LightstreamerClient(String serverAddress, String adapterSet) {
+        connectionDetails.setServerAddress(serverAddress);
+        connectionDetails.setAdapterSet(adapterSet);
+    }
+
+    public static void setLoggerProvider(LoggerProvider provider) {}
+    public static void addCookies(URI uri, List<HttpCookie> cookies) {}
+    public static List<HttpCookie> getCookies(URI uri) { return new ArrayList<>(); }
+    public void addListener(ClientListener listener) { _listeners.add(listener); }
+    public void removeListener(ClientListener listener) { _listeners.remove(listener); }
+    public List<ClientListener> getListeners() { return new ArrayList<>(_listeners); }
+    public void connect() { _connectRequested = true; }
+    public void disconnect() { _connectRequested = false; }
+    /** Only in the stand-in: whether connect has been called after the last disconnect. */
+    @StandInOnly
+    public boolean isConnectRequested() { return _connectRequested; }
+    public String getStatus() { return "DISCONNECTED"; }
+    public void subscribe(Subscription subscription) { _subscriptions.add(subscription); }
+    public void unsubscribe(Subscription subscription) { _subscriptions.remove(subscription); }
+    public List<Subscription> getSubscriptions() { return new ArrayList<>(_subscriptions); }
+    public void sendMessage(String message) {}
+    public synchronized void sendMessage(String message, String sequence, int delayTimeout, ClientMessageListener listener, boolean enqueueWhileDisconnected) {
+        _sentMessages.add(message);
+        _sentListeners.add(listener);
+    }
+    /** Only in the stand-in: the messages sent so far. */
+    @StandInOnly
+    public synchronized List<String> getSentMessages() { return new ArrayList<>(_sentMessages); }
+    /** Only in the stand-in: the listeners of the messages sent so far. */
+    @StandInOnly
+    public synchronized List<ClientMessageListener> getSentListeners() { return new ArrayList<>(_sentListeners); }
+    public void registerForMpn(MpnDevice device) {}
+    public void subscribe(MpnSubscription subscription, boolean coalescing) {}
+    public void unsubscribe(MpnSubscription subscription) {}
+    public void unsubscribeMpnSubscriptions(String filter) {}
+    public List<MpnSubscription> getMpnSubscriptions(String filter) { return new ArrayList<>(); }
+    public MpnSubscription findMpnSubscription(String subscriptionId) { return null; }
+}
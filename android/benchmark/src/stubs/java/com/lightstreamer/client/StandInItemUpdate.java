@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.client;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A mutable ItemUpdate whose getters by position don't allocate, so that it can be reused across the iterations
+ * of the benchmarks and of the allocation tests.
+ */
+public class StandInItemUpdate implements ItemUpdate {
+    final String[] _fieldNames;
+    final String[] _values;
+    final boolean[] _changed;
+    final String[] _patches;
+    String _itemName;
+    int _itemPos;
+    boolean _isSnapshot;
+
+    public StandInItemUpdate(String itemName, int itemPos, String[] fieldNames) {
+        _itemName = itemName;
+        _itemPos = itemPos;
+        _fieldNames = fieldNames;
+        _values = new String[fieldNames.length + 1];
+        _changed = new boolean[fieldNames.length + 1];
+        _patches = new String[fieldNames.length + 1];
+    }
+
+    public StandInItemUpdate setSnapshot(boolean isSnapshot) {
+        _isSnapshot = isSnapshot;
+        return this;
+    }
+
+    /**
+     * Sets the value of a field and marks it as changed.
+     */
+    public StandInItemUpdate set(int fieldPos, String value) {
+        return set(fieldPos, value, null);
+    }
+
+    /**
+     * Sets the value of a field, together with the JSON Patch that produced it, and marks it as changed.
+     */
+    public StandInItemUpdate set(int fieldPos, String value, String patch) {
+        _values[fieldPos] = value;
+        _changed[fieldPos] = true;
+        _patches[fieldPos] = patch;
+        return this;
+    }
+
+    /**
+     * Marks all the fields as unchanged and forgets the JSON Patches.
+     */
+    public StandInItemUpdate clearChanges() {
+        Arrays.fill(_changed, false);
+        Arrays.fill(_patches, null);
+        return this;
+    }
+
+    @Override public String getItemName() { return _itemName; }
+    @Override public int getItemPos() { return _itemPos; }
+    @Override public boolean isSnapshot() { return _isSnapshot; }
+    @Override public String getValue(String fieldName) { return _values[toPos(fieldName)]; }
+    @Override public String getValue(int fieldPos) { return _values[check(fieldPos)]; }
+    @Override public boolean isValueChanged(String fieldName) { return _changed[toPos(fieldName)]; }
+    @Override public boolean isValueChanged(int fieldPos) { return _changed[check(fieldPos)]; }
+    @Override public String getValueAsJSONPatchIfAvailable(String fieldName) { return _patches[toPos(fieldName)]; }
+    @Override public String getValueAsJSONPatchIfAvailable(int fieldPos) { return _patches[check(fieldPos)]; }
+
+    @Override
+    public Map<String, String> getChangedFields() {
+        Map<String, String> map = new HashMap<>();
+        for (int pos = 1; pos < _values.length; pos++) {
+            if (_changed[pos]) {
+                map.put(_fieldNames[pos - 1], _values[pos]);
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public Map<Integer, String> getChangedFieldsByPosition() {
+        Map<Integer, String> map = new HashMap<>();
+        for (int pos = 1; pos < _values.length; pos++) {
+            if (_changed[pos]) {
+                map.put(pos, _values[pos]);
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public Map<String, String> getFields() {
+        Map<String, String> map = new HashMap<>();
+        for (int pos = 1; pos < _values.length; pos++) {
+            map.put(_fieldNames[pos - 1], _values[pos]);
+        }
+        return map;
+    }
+
+    @Override
+    public Map<Integer, String> getFieldsByPosition() {
+        Map<Integer, String> map = new HashMap<>();
+        for (int pos = 1; pos < _values.length; pos++) {
+            map.put(pos, _values[pos]);
+        }
+        return map;
+    }
+
+    int toPos(String fieldName) {
+        for (int i = 0; i < _fieldNames.length; i++) {
+            if (_fieldNames[i].equals(fieldName)) {
+                return i + 1;
+            }
+        }
+        throw new IllegalArgumentException("Unknown field " + fieldName);
+    }
+
+    int check(int fieldPos) {
+        if (fieldPos < 1 || fieldPos >= _values.length) {
+            throw new IllegalArgumentException("Invalid field position " + fieldPos);
+        }
+        return fieldPos;
+    }
+}
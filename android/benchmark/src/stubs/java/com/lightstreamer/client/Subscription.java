@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stand-in for the Subscription of the SDK: it keeps its configuration and the values set through {@link #setValue(int, int, String)},
+ * but it never gets subscribed.
+ */
+public class Subscription {
+    final String _mode;
+    final List<SubscriptionListener> _listeners = new ArrayList<>();
+    final Map<Long, String> _values = new HashMap<>();
+    String[] _items;
+    String[] _fields;
+    String _group;
+    String _schema;
+    String _dataAdapter;
+    String _bufferSize;
+    String _snapshot;
+    String _maxFrequency;
+    String _selector;
+    String _dataAdapter2;
+    String[] _fields2;
+    String _schema2;
+
+    public Subscription(String mode) {
+        _mode = mode;
+    }
+
+    public Subscription(String mode, String[] items, String[] fields) {
+        _mode = mode;
+        _items = items;
+        _fields = fields;
+    }
+
+    public Subscription(String mode, String item, String[] fields) {
+        this(mode, new String[] { item }, fields);
+    }
+
+    public void addListener(SubscriptionListener listener) { _listeners.add(listener); }
+    public void removeListener(SubscriptionListener listener) { _listeners.remove(listener); }
+    public List<SubscriptionListener> getListeners() { return new ArrayList<>(_listeners); }
+    public boolean isActive() { return false; }
+    public boolean isSubscribed() { return false; }
+    public String getMode() { return _mode; }
+    public String getDataAdapter() { return _dataAdapter; }
+    public void setDataAdapter(String dataAdapter) { _dataAdapter = dataAdapter; }
+    public String[] getItems() { return _items; }
+    public void setItems(String[] items) { _items = items; }
+    public String getItemGroup() { return _group; }
+    public void setItemGroup(String group) { _group = group; }
+    public String[] getFields() { return _fields; }
+    public void setFields(String[] fields) { _fields = fields; }
+    public String getFieldSchema() { return _schema; }
+    public void setFieldSchema(String schema) { _schema = schema; }
+    public String getRequestedBufferSize() { return _bufferSize; }
+    public void setRequestedBufferSize(String size) { _bufferSize = size; }
+    public String getRequestedSnapshot() { return _snapshot; }
+    public void setRequestedSnapshot(String snapshot) { _snapshot = snapshot; }
+    public String getRequestedMaxFrequency() { return _maxFrequency; }
+    public void setRequestedMaxFrequency(String frequency) { _maxFrequency = frequency; }
+    public String getSelector() { return _selector; }
+    public void setSelector(String selector) { _selector = selector; }
+    public int getCommandPosition() { return indexOf("command"); }
+    public int getKeyPosition() { return indexOf("key"); }
+    public String getCommandSecondLevelDataAdapter() { return _dataAdapter2; }
+    public void setCommandSecondLevelDataAdapter(String dataAdapter) { _dataAdapter2 = dataAdapter; }
+    public String[] getCommandSecondLevelFields() { return _fields2; }
+    public void setCommandSecondLevelFields(String[] fields) { _fields2 = fields; }
+    public String getCommandSecondLevelFieldSchema() { return _schema2; }
+    public void setCommandSecondLevelFieldSchema(String schema) { _schema2 = schema; }
+
+    @StandInOnly
+    public void setValue(int itemPos, int fieldPos, String value) { _values.put(((long) itemPos << 32) | fieldPos, value); }
+    public String getValue(int itemPos, int fieldPos) { return _values.get(((long) itemPos << 32) | fieldPos); }
+    public String getValue(String itemName, String fieldName) { return getValue(indexOf(_items, itemName), indexOf(_fields, fieldName)); }
+    public String getValue(String itemName, int fieldPos) { return getValue(indexOf(_items, itemName), fieldPos); }
+    public String getValue(int itemPos, String fieldName) { return getValue(itemPos, indexOf(_fields, fieldName)); }
+    public String getCommandValue(String itemName, String key, String fieldName) { return null; }
+    public String getCommandValue(int itemPos, String key, int fieldPos) { return null; }
+    public String getCommandValue(String itemName, String key, int fieldPos) { return null; }
+    public String getCommandValue(int itemPos, String key, String fieldName) { return null; }
+
+    int indexOf(String field) {
+        return indexOf(_fields, field);
+    }
+
+    static int indexOf(String[] names, String name) {
+        if (names != null) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i + 1;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unknown name " + name);
+    }
+}
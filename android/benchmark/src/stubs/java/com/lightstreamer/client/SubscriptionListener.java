@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.client;
+
+public interface SubscriptionListener {
+    void onClearSnapshot(String itemName, int itemPos);
+    void onCommandSecondLevelItemLostUpdates(int lostUpdates, String key);
+    void onCommandSecondLevelSubscriptionError(int code, String message, String key);
+    void onEndOfSnapshot(String itemName, int itemPos);
+    void onItemLostUpdates(String itemName, int itemPos, int lostUpdates);
+    void onItemUpdate(ItemUpdate itemUpdate);
+    void onListenEnd();
+    void onListenStart();
+    void onSubscription();
+    void onSubscriptionError(int code, String message);
+    void onUnsubscription();
+    void onRealMaxFrequency(String frequency);
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.client.mpn;
+
+import java.util.List;
+import java.util.Map;
+
+public class MpnBuilder {
+    public MpnBuilder() {}
+    public MpnBuilder(String format) {}
+    public MpnBuilder collapseKey(String value) { return this; }
+    public MpnBuilder priority(String value) { return this; }
+    public MpnBuilder timeToLive(String value) { return this; }
+    public MpnBuilder title(String value) { return this; }
+    public MpnBuilder titleLocKey(String value) { return this; }
+    public MpnBuilder titleLocArguments(List<String> value) { return this; }
+    public MpnBuilder body(String value) { return this; }
+    public MpnBuilder bodyLocKey(String value) { return this; }
+    public MpnBuilder bodyLocArguments(List<String> value) { return this; }
+    public MpnBuilder icon(String value) { return this; }
+    public MpnBuilder sound(String value) { return this; }
+    public MpnBuilder tag(String value) { return this; }
+    public MpnBuilder color(String value) { return this; }
+    public MpnBuilder clickAction(String value) { return this; }
+    public MpnBuilder data(Map<String, String> value) { return this; }
+    public String build() { return "{}"; }
+}
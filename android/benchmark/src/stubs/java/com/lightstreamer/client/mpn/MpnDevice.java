@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.client.mpn;
+
+import android.content.Context;
+
+public class MpnDevice {
+    public MpnDevice(Context context, String token) {}
+    public void addListener(MpnDeviceListener listener) {}
+    public String getApplicationId() { return null; }
+    public String getDeviceId() { return null; }
+    public String getDeviceToken() { return null; }
+    public String getPlatform() { return null; }
+    public String getPreviousDeviceToken() { return null; }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.client.mpn;
+
+public class MpnSubscription {
+    final String _mode;
+    String[] _items;
+    String[] _fields;
+    String _group;
+    String _schema;
+    String _dataAdapter;
+    String _bufferSize;
+    String _maxFrequency;
+    String _trigger;
+    String _format;
+
+    public MpnSubscription(String mode) { _mode = mode; }
+    public void addListener(MpnSubscriptionListener listener) {}
+    public boolean isActive() { return false; }
+    public String getSubscriptionId() { return null; }
+    public String getMode() { return _mode; }
+    public String[] getItems() { return _items; }
+    public void setItems(String[] items) { _items = items; }
+    public String[] getFields() { return _fields; }
+    public void setFields(String[] fields) { _fields = fields; }
+    public String getItemGroup() { return _group; }
+    public void setItemGroup(String group) { _group = group; }
+    public String getFieldSchema() { return _schema; }
+    public void setFieldSchema(String schema) { _schema = schema; }
+    public String getDataAdapter() { return _dataAdapter; }
+    public void setDataAdapter(String dataAdapter) { _dataAdapter = dataAdapter; }
+    public String getRequestedBufferSize() { return _bufferSize; }
+    public void setRequestedBufferSize(String size) { _bufferSize = size; }
+    public String getRequestedMaxFrequency() { return _maxFrequency; }
+    public void setRequestedMaxFrequency(String frequency) { _maxFrequency = frequency; }
+    public String getTriggerExpression() { return _trigger; }
+    public void setTriggerExpression(String trigger) { _trigger = trigger; }
+    public String getNotificationFormat() { return _format; }
+    public void setNotificationFormat(String format) { _format = format; }
+    public String getActualNotificationFormat() { return null; }
+    public String getActualTriggerExpression() { return null; }
+    public String getStatusTimestamp() { return null; }
+    public String getStatus() { return "UNKNOWN"; }
+}
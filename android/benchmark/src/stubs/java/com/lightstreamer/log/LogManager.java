@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.log;
+
+/**
+ * Stand-in for the log manager of the SDK: all the loggers are disabled.
+ */
+public class LogManager {
+    static final Logger NOP = new Logger() {
+        public void error(String line, Throwable exception) {}
+        public void warn(String line, Throwable exception) {}
+        public void info(String line, Throwable exception) {}
+        public void debug(String line, Throwable exception) {}
+        public void trace(String line, Throwable exception) {}
+        public void fatal(String line, Throwable exception) {}
+        public boolean isErrorEnabled() { return false; }
+        public boolean isWarnEnabled() { return false; }
+        public boolean isInfoEnabled() { return false; }
+        public boolean isDebugEnabled() { return false; }
+        public boolean isTraceEnabled() { return false; }
+        public boolean isFatalEnabled() { return false; }
+    };
+
+    public static Logger getLogger(String category) {
+        return NOP;
+    }
+
+    public static void setLoggerProvider(LoggerProvider provider) {
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.log;
+
+public interface Logger {
+    void error(String line, Throwable exception);
+    void warn(String line, Throwable exception);
+    void info(String line, Throwable exception);
+    void debug(String line, Throwable exception);
+    void trace(String line, Throwable exception);
+    void fatal(String line, Throwable exception);
+    boolean isErrorEnabled();
+    boolean isWarnEnabled();
+    boolean isInfoEnabled();
+    boolean isDebugEnabled();
+    boolean isTraceEnabled();
+    boolean isFatalEnabled();
+}
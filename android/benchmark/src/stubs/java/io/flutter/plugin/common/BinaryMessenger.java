@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.flutter.plugin.common;
+
+import java.nio.ByteBuffer;
+
+public interface BinaryMessenger {
+    interface TaskQueue {}
+
+    class TaskQueueOptions {
+        public TaskQueueOptions setIsSerial(boolean isSerial) { return this; }
+        public boolean getIsSerial() { return true; }
+    }
+
+    default TaskQueue makeBackgroundTaskQueue() { return null; }
+
+    default TaskQueue makeBackgroundTaskQueue(TaskQueueOptions options) { return null; }
+
+    void send(String channel, ByteBuffer message);
+
+    interface BinaryReply {
+        void reply(ByteBuffer reply);
+    }
+
+    interface BinaryMessageHandler {
+        void onMessage(ByteBuffer message, BinaryReply reply);
+    }
+}
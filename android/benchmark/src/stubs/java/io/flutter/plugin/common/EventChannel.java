@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.flutter.plugin.common;
+
+public final class EventChannel {
+    public EventChannel(BinaryMessenger messenger, String name) {}
+    public EventChannel(BinaryMessenger messenger, String name, MethodCodec codec) {}
+    public EventChannel(BinaryMessenger messenger, String name, MethodCodec codec, BinaryMessenger.TaskQueue taskQueue) {}
+    public void setStreamHandler(StreamHandler handler) {}
+
+    public interface StreamHandler {
+        void onListen(Object arguments, EventSink events);
+        void onCancel(Object arguments);
+    }
+
+    public interface EventSink {
+        void success(Object event);
+        void error(String errorCode, String errorMessage, Object errorDetails);
+        void endOfStream();
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.flutter.plugin.common;
+
+public class MethodChannel {
+    public MethodChannel(BinaryMessenger messenger, String name) {}
+    public MethodChannel(BinaryMessenger messenger, String name, MethodCodec codec) {}
+    public MethodChannel(BinaryMessenger messenger, String name, MethodCodec codec, BinaryMessenger.TaskQueue taskQueue) {}
+    public void setMethodCallHandler(MethodCallHandler handler) {}
+
+    public interface MethodCallHandler {
+        void onMethodCall(MethodCall call, Result result);
+    }
+
+    public interface Result {
+        void success(Object result);
+        void error(String errorCode, String errorMessage, Object errorDetails);
+        void notImplemented();
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.flutter.plugin.common;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stand-in for the standard codec: the values that are not listener events are not actually encoded.
+ */
+public final class StandardMethodCodec implements MethodCodec {
+    public static final StandardMethodCodec INSTANCE = new StandardMethodCodec(StandardMessageCodec.INSTANCE);
+
+    public StandardMethodCodec(StandardMessageCodec messageCodec) {}
+    public ByteBuffer encodeMethodCall(MethodCall methodCall) { return ByteBuffer.allocate(0); }
+    public MethodCall decodeMethodCall(ByteBuffer methodCall) { throw new UnsupportedOperationException(); }
+    public ByteBuffer encodeSuccessEnvelope(Object result) { return ByteBuffer.allocate(0); }
+    public ByteBuffer encodeErrorEnvelope(String errorCode, String errorMessage, Object errorDetails) { return ByteBuffer.allocate(0); }
+    public ByteBuffer encodeErrorEnvelopeWithStacktrace(String errorCode, String errorMessage, Object errorDetails, String errorStacktrace) { return ByteBuffer.allocate(0); }
+    public Object decodeEnvelope(ByteBuffer envelope) { throw new UnsupportedOperationException(); }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ClientMetricsTest {
+    static final String[] FIELDS = { "f1", "f2", "f3" };
+
+    PluginHarness _harness;
+    LightstreamerFlutterPlugin _plugin;
+    List<Object> _delivered;
+
+    @Before
+    public void setUp() {
+        _harness = new PluginHarness();
+        _plugin = _harness._plugin;
+        _delivered = _harness.collectEvents();
+    }
+
+    MySubscriptionListener subscribe(String subId, Map<String, Object> options) {
+        return _harness.subscribe(subId, FIELDS, options)._listener;
+    }
+
+    @SuppressWarnings("unchecked")
+    Map<String, Object> getMetrics() {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("id", "client1");
+        return (Map<String, Object>) _harness.call("LightstreamerClient.getMetrics", arguments);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> subscriptionMetrics(Map<String, Object> metrics, String subId) {
+        return (Map<String, Object>) ((Map<String, Object>) metrics.get("subscriptions")).get(subId);
+    }
+
+    @Test
+    public void testCounters() {
+        MySubscriptionListener direct = subscribe("sub1", new HashMap<>());
+        Map<String, Object> options = new HashMap<>();
+        options.put("eventQueueMaxSize", 10);
+        MySubscriptionListener queued = subscribe("sub2", options);
+        _harness.runPending();
+        _delivered.clear();
+
+        for (int i = 0; i < 3; i++) {
+            direct.onItemUpdate(PluginHarness.newUpdate(FIELDS, 1));
+            queued.onItemUpdate(PluginHarness.newUpdate(FIELDS, 1));
+        }
+        Map<String, Object> metrics = getMetrics();
+        Map<String, Object> sub1 = subscriptionMetrics(metrics, "sub1");
+        assertEquals(3L, sub1.get("updatesReceived"));
+        assertEquals(4L, sub1.get("eventsPosted"));
+        assertEquals(1L, sub1.get("eventsDelivered"));
+        assertEquals(3L, sub1.get("queueDepth"));
+        Map<String, Object> sub2 = subscriptionMetrics(metrics, "sub2");
+        assertEquals(3L, sub2.get("updatesReceived"));
+        assertEquals(3L, sub2.get("queueDepth"));
+
+        _harness.runPending();
+        assertEquals(6, _delivered.size());
+        _plugin._listenerChannelSink = null;
+        direct.onItemUpdate(PluginHarness.newUpdate(FIELDS, 1));
+        _harness.runPending();
+
+        metrics = getMetrics();
+        sub1 = subscriptionMetrics(metrics, "sub1");
+        assertEquals(4L, sub1.get("updatesReceived"));
+        assertEquals(4L, sub1.get("eventsDelivered"));
+        assertEquals(1L, sub1.get("eventsDropped"));
+        assertEquals(0L, sub1.get("queueDepth"));
+        sub2 = subscriptionMetrics(metrics, "sub2");
+        assertEquals(4L, sub2.get("eventsPosted"));
+        assertEquals(4L, sub2.get("eventsDelivered"));
+        assertEquals(0L, sub2.get("queueDepth"));
+        Map<String, Object> client = (Map<String, Object>) metrics.get("client");
+        assertEquals(7L, client.get("updatesReceived"));
+        assertEquals(8L, client.get("eventsDelivered"));
+        assertEquals(1L, client.get("eventsDropped"));
+        Map<String, Object> methodCalls = (Map<String, Object>) metrics.get("methodCalls");
+        assertEquals(2L, methodCalls.get("LightstreamerClient.subscribe"));
+        assertEquals(2L, methodCalls.get("LightstreamerClient.getMetrics"));
+    }
+
+    @Test
+    public void testUnknownClient() {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("id", "client2");
+        Map<?, ?> metrics = (Map<?, ?>) _harness.call("LightstreamerClient.getMetrics", arguments);
+        assertTrue(((Map<?, ?>) metrics.get("subscriptions")).isEmpty());
+        // asking for the metrics doesn't create the client
+        assertNull(_plugin._clientMap.get("client2"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPush() throws InterruptedException {
+        subscribe("sub1", new HashMap<>());
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("id", "client1");
+        arguments.put("interval", 10);
+        _harness.call("LightstreamerClient.setMetricsPushInterval", arguments);
+        _harness.runPending();
+        _delivered.clear();
+        Map<String, Object> before = (Map<String, Object>) getMetrics().get("client");
+        for (int i = 0; i < 2; i++) {
+            Thread.sleep(20);
+            _harness.runPending();
+            _harness.runPending();
+        }
+        assertEquals(2, _delivered.size());
+        for (Object event : _delivered) {
+            Map<?, ?> map = (Map<?, ?>) event;
+            assertEquals("ClientListener.onMetrics", map.get("targetMethod"));
+            assertEquals("client1", map.get("id"));
+            assertTrue(map.get("metrics") instanceof Map);
+        }
+        // the onMetrics events are not counted
+        Map<String, Object> after = (Map<String, Object>) getMetrics().get("client");
+        assertEquals(before.get("eventsPosted"), after.get("eventsPosted"));
+        assertEquals(before.get("eventsDelivered"), after.get("eventsDelivered"));
+
+        arguments.put("interval", 0);
+        _harness.call("LightstreamerClient.setMetricsPushInterval", arguments);
+        Thread.sleep(20);
+        _harness.runPending();
+        assertEquals(2, _delivered.size());
+    }
+}
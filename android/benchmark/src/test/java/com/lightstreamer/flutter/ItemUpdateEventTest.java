@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.lightstreamer.client.StandInItemUpdate;
+import com.lightstreamer.client.Subscription;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ItemUpdateEventTest {
+    static final String[] FIELDS = { "f1", "f2", "f3", "f4", "f5", "f6", "f7", "f8", "f9", "json" };
+
+    PluginHarness _harness;
+    LightstreamerFlutterPlugin _plugin;
+    ListenerEventCodec _codec;
+
+    @Before
+    public void setUp() {
+        _harness = new PluginHarness();
+        _plugin = _harness._plugin;
+        _codec = _harness._codec;
+    }
+
+    MySubscriptionListener newListener(String profile, String jsonPatchDelivery) {
+        Subscription sub = new Subscription("MERGE", new String[] { "item1", "item2" }, FIELDS);
+        MySubscriptionListener listener = new MySubscriptionListener("sub1", sub, _plugin);
+        listener.setPayloadProfile(profile);
+        listener.setJsonPatchDelivery(jsonPatchDelivery);
+        listener.onSubscription();
+        _harness.runPending();
+        return listener;
+    }
+
+    static StandInItemUpdate newUpdate() {
+        return PluginHarness.newUpdate(FIELDS, 0)
+                .set(3, "new3")
+                .set(7, null)
+                .set(FIELDS.length, "{\"a\":2}", "[{\"op\":\"replace\",\"path\":\"/a\",\"value\":2}]");
+    }
+
+    static final String[][] CONFIGURATIONS = {
+            { "FULL", null },
+            { "FULL", "DOCUMENTS" },
+            { "CHANGED_ONLY", null },
+            { "CHANGED_ONLY", "PATCHES" },
+            { "POSITIONAL_CHANGED_ONLY", null },
+            { "POSITIONAL_CHANGED_ONLY", "DOCUMENTS" },
+            { "POSITIONAL_CHANGED_ONLY", "PATCHES" },
+    };
+
+    @Test
+    public void testSameLayoutAsEventMaps() {
+        for (String[] conf : CONFIGURATIONS) {
+            MySubscriptionListener listener = newListener(conf[0], conf[1]);
+            assertSameLayout(conf[0] + "/" + conf[1], listener, newUpdate());
+        }
+    }
+
+    @Test
+    public void testFieldProjection() {
+        for (String[] conf : CONFIGURATIONS) {
+            MySubscriptionListener listener = newListener(conf[0], conf[1]);
+            // the positions beyond the field count are ignored
+            listener.setFieldProjection(Arrays.asList(10, 3, 5, 42));
+            Map<String, Object> event = assertSameLayout(conf[0] + "/" + conf[1], listener, newUpdate());
+
+            Map<?, ?> changed = (Map<?, ?>) event.get("changedFieldsByPosition");
+            Map<?, ?> patches = (Map<?, ?>) event.get("jsonFieldsByPosition");
+            assertEquals("new3", changed.get(3));
+            assertFalse(changed.containsKey(7));
+            assertEquals(conf[1] == null || conf[1].equals("PATCHES"), patches.containsKey(10));
+            if (conf[0].equals("FULL")) {
+                assertEquals(3, ((Map<?, ?>) event.get("fieldsByPosition")).size());
+                assertEquals(3, ((Map<?, ?>) event.get("fields")).size());
+            }
+        }
+    }
+
+    @Test
+    public void testCommandFieldProjection() {
+        Subscription sub = new Subscription("COMMAND", new String[] { "item1" }, new String[] { "key", "command", "f1", "f2" });
+        MySubscriptionListener listener = new MySubscriptionListener("sub1", sub, _plugin);
+        listener.setFieldProjection(Arrays.asList(4));
+        listener.onSubscription();
+        // the key and the command are always sent
+        assertArrayEquals(new int[] { 1, 2, 4 }, listener._projection);
+    }
+
+    @Test
+    public void testPatchWithoutDocument() {
+        MySubscriptionListener listener = newListener("CHANGED_ONLY", "PATCHES");
+        // the document is sent as long as the Flutter component doesn't hold the previous one
+        Map<String, Object> event = encode(listener, newUpdate(), false);
+        assertEquals("{\"a\":2}", ((Map<?, ?>) event.get("changedFieldsByPosition")).get(FIELDS.length));
+        assertTrue(((Map<?, ?>) event.get("jsonFieldsByPosition")).containsKey(FIELDS.length));
+        event = encode(listener, newUpdate(), false);
+        assertFalse(((Map<?, ?>) event.get("changedFieldsByPosition")).containsKey(FIELDS.length));
+        assertTrue(((Map<?, ?>) event.get("jsonFieldsByPosition")).containsKey(FIELDS.length));
+        // the previous documents are forgotten along with the snapshot
+        listener.onClearSnapshot("item2", 2);
+        event = encode(listener, newUpdate(), true);
+        assertEquals("{\"a\":2}", ((Map<?, ?>) event.get("changedFieldsByPosition")).get(FIELDS.length));
+    }
+
+    @Test
+    public void testClearSnapshotWhileQueued() {
+        MySubscriptionListener listener = newListener("CHANGED_ONLY", "PATCHES");
+        List<Object> delivered = _harness.collectEvents();
+        // the snapshot is cleared while the first update is waiting for the main thread
+        listener.onItemUpdate(newUpdate());
+        listener.onClearSnapshot("item2", 2);
+        listener.onItemUpdate(newUpdate());
+        _harness.runPending();
+        assertEquals(3, delivered.size());
+        assertEquals("SubscriptionListener.onClearSnapshot", ((Map<?, ?>) delivered.get(1)).get("targetMethod"));
+        // the document is sent again, since the Flutter component has discarded it
+        Map<?, ?> event = (Map<?, ?>) delivered.get(2);
+        assertEquals("{\"a\":2}", ((Map<?, ?>) event.get("changedFieldsByPosition")).get(FIELDS.length));
+    }
+
+    /**
+     * Checks that the event written by {@link ItemUpdateEvent} is the same as the event map built by the listener, and returns it.
+     * With the PATCHES JSON Patch delivery, the check is made both for a first update, carrying the documents,
+     * and for a later one, carrying only the patches.
+     */
+    Map<String, Object> assertSameLayout(String message, MySubscriptionListener listener, StandInItemUpdate update) {
+        listener._jsonDocuments.clear();
+        Map<String, Object> expected = encode(listener, update, false);
+        listener._jsonDocuments.clear();
+        Map<String, Object> actual = encode(listener, update, true);
+        assertEquals(message, expected, actual);
+        if (listener._jsonPatchDelivery != MySubscriptionListener.JsonPatchDelivery.PATCHES) {
+            return actual;
+        }
+        expected = encode(listener, update, false);
+        actual = encode(listener, update, true);
+        assertEquals(message, expected, actual);
+        return actual;
+    }
+
+    /**
+     * Encodes the update through the event map built by the listener or, if `fastPath`, through {@link ItemUpdateEvent}
+     * and returns the decoded event.
+     */
+    Map<String, Object> encode(MySubscriptionListener listener, StandInItemUpdate update, boolean fastPath) {
+        if (fastPath) {
+            ItemUpdateEvent event = listener._eventPool.acquire(update, listener._payloadProfile, listener._jsonPatchDelivery, FIELDS, FIELDS.length, listener._projection);
+            Map<String, Object> res = PluginHarness.decode(_codec.encodeSuccessEnvelope(event));
+            // the event has been given back to the pool
+            assertSame(event, listener._eventPool._free[listener._eventPool._size - 1]);
+            return res;
+        }
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("itemName", update.getItemName());
+        arguments.put("itemPos", update.getItemPos());
+        arguments.put("isSnapshot", update.isSnapshot());
+        if (listener._payloadProfile == MySubscriptionListener.PayloadProfile.FULL) {
+            listener.putAllFields(update, arguments);
+        } else {
+            listener.putChangedFields(update, arguments, listener._payloadProfile == MySubscriptionListener.PayloadProfile.CHANGED_ONLY);
+        }
+        arguments.put("subId", listener._subId);
+        arguments.put("targetMethod", "SubscriptionListener.onItemUpdate");
+        return PluginHarness.decode(_codec.encodeSuccessEnvelope(arguments));
+    }
+
+    @Test
+    public void testNoAllocationsInSteadyState() {
+        for (String profile : new String[] { "FULL", "CHANGED_ONLY", "POSITIONAL_CHANGED_ONLY" }) {
+            MySubscriptionListener listener = newListener(profile, null);
+            StandInItemUpdate update = newUpdate();
+            deliver(listener, update, 20_000); // warm-up
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long threadId = Thread.currentThread().getId();
+            int events = 100_000;
+            // NB the best of a few rounds is taken, since a round may include the allocations of a late JIT compilation
+            double perEvent = Double.MAX_VALUE;
+            for (int round = 0; round < 3; round++) {
+                long bytesBefore = _harness._bytes;
+                long allocatedBefore = bean.getThreadAllocatedBytes(threadId);
+                deliver(listener, update, events);
+                long allocated = bean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+                assertTrue(_harness._bytes > bytesBefore);
+                perEvent = Math.min(perEvent, (double) allocated / events);
+            }
+            assertTrue(profile + ": " + perEvent + " bytes allocated per event", perEvent < 1);
+        }
+    }
+
+    void deliver(MySubscriptionListener listener, StandInItemUpdate update, int count) {
+        for (int i = 0; i < count; i++) {
+            listener.onItemUpdate(update);
+            _harness.runPending();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.lightstreamer.client.StandInItemUpdate;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class LastValueCacheTest {
+    static final String[] FIELDS = { "bid", "ask" };
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    File _file;
+    PluginHarness _harness;
+    List<Object> _delivered;
+
+    @Before
+    public void setUp() {
+        _file = new File(_folder.getRoot(), LastValueCache.FILE_NAME);
+    }
+
+    static Map<String, String> values(String bid, String ask) {
+        Map<String, String> values = new HashMap<>();
+        values.put("bid", bid);
+        values.put("ask", ask);
+        return values;
+    }
+
+    /**
+     * Waits until the cache has been loaded and the tasks submitted so far have run.
+     */
+    static void awaitTasks(LastValueCache cache) throws Exception {
+        cache._executor.submit(() -> {}).get();
+    }
+
+    @Test
+    public void testPersistence() throws Exception {
+        LastValueCache cache = new LastValueCache(_file);
+        StandInItemUpdate update = new StandInItemUpdate("item1", 1, FIELDS);
+        cache.update("scope|item1", update.set(1, "10").set(2, "11"), FIELDS);
+        cache.update("scope|item1", update.clearChanges().set(2, "12"), FIELDS);
+        assertEquals(values("10", "12"), cache.get("scope|item1"));
+        assertNull(cache.get("other|item1"));
+        cache._executor.submit(cache::flush).get();
+
+        // the values survive a restart
+        LastValueCache restarted = new LastValueCache(_file);
+        awaitTasks(restarted);
+        assertEquals(values("10", "12"), restarted.get("scope|item1"));
+
+        // the least recently used items are evicted
+        for (int i = 0; i < LastValueCache.MAX_ITEMS; i++) {
+            restarted.update("scope|other" + i, new StandInItemUpdate("other" + i, 1, FIELDS).set(1, "0"), FIELDS);
+        }
+        assertNull(restarted.get("scope|item1"));
+        assertEquals(LastValueCache.MAX_ITEMS, restarted._items.size());
+    }
+
+    /**
+     * Simulates the attachment of the plugin to a new engine, which loads the cache from the file.
+     */
+    LightstreamerFlutterPlugin attach() {
+        _harness = new PluginHarness();
+        _harness._plugin._lastValueCache = new LastValueCache(_file);
+        _delivered = _harness.collectEvents();
+        return _harness._plugin;
+    }
+
+    Map<?, ?> delivered(int i) {
+        return (Map<?, ?>) _delivered.get(i);
+    }
+
+    void subscribe(String subId) {
+        subscribe(subId, new HashMap<>());
+    }
+
+    void subscribe(String subId, Map<String, Object> options) {
+        Map<String, Object> subscription = PluginHarness.subscription(subId, Arrays.asList("item1", "item2"), FIELDS);
+        subscription.putAll(options);
+        subscription.put("lastValueCache", "http://localhost:8080|DEMO|user");
+        _harness.subscribe("0", subscription);
+    }
+
+    @Test
+    public void testStaleReplay() throws Exception {
+        LightstreamerFlutterPlugin plugin = attach();
+        subscribe("sub0");
+        MySubscriptionListener listener = plugin._subMap.require("sub0")._listener;
+        listener.onSubscription();
+        listener.onItemUpdate(new StandInItemUpdate("item2", 2, FIELDS).setSnapshot(true).set(1, "10").set(2, "11"));
+        plugin._lastValueCache._executor.submit(plugin._lastValueCache::flush).get();
+
+        // nothing is cached at first
+        _harness.runPending();
+        for (Object event : _delivered) {
+            assertNull(((Map<?, ?>) event).get("isStale"));
+        }
+        _delivered.clear();
+
+        // after a restart, the cached item is sent as a stale snapshot, which the real snapshot cannot overtake
+        plugin = attach();
+        subscribe("sub0");
+        listener = plugin._subMap.require("sub0")._listener;
+        listener.onSubscription();
+        listener.onItemUpdate(new StandInItemUpdate("item1", 1, FIELDS).setSnapshot(true).set(1, "20").set(2, "21"));
+        awaitTasks(plugin._lastValueCache);
+        _harness.runPending();
+        assertEquals(3, _delivered.size());
+        assertEquals("SubscriptionListener.onSubscription", delivered(1).get("targetMethod"));
+        assertEquals("item1", delivered(2).get("itemName"));
+        assertNull(delivered(2).get("isStale"));
+        Map<?, ?> event = delivered(0);
+        assertEquals("SubscriptionListener.onItemUpdate", event.get("targetMethod"));
+        assertEquals("item2", event.get("itemName"));
+        assertEquals(2, event.get("itemPos"));
+        assertEquals(true, event.get("isSnapshot"));
+        assertEquals(true, event.get("isStale"));
+        assertEquals(values("10", "11"), event.get("fields"));
+        Map<Integer, String> fieldsByPosition = new HashMap<>();
+        fieldsByPosition.put(1, "10");
+        fieldsByPosition.put(2, "11");
+        assertEquals(fieldsByPosition, event.get("fieldsByPosition"));
+    }
+
+    @Test
+    public void testReplayWithFullQueue() throws Exception {
+        LightstreamerFlutterPlugin plugin = attach();
+        subscribe("sub0");
+        MySubscriptionListener listener = plugin._subMap.require("sub0")._listener;
+        listener.onSubscription();
+        listener.onItemUpdate(new StandInItemUpdate("item2", 2, FIELDS).setSnapshot(true).set(1, "10").set(2, "11"));
+        plugin._lastValueCache._executor.submit(plugin._lastValueCache::flush).get();
+        _harness.runPending();
+        _delivered.clear();
+
+        // the held events exceed the BLOCK queue, but the thread releasing them doesn't wait for the main thread
+        plugin = attach();
+        Map<String, Object> subscription = new HashMap<>();
+        subscription.put("eventQueueMaxSize", 1);
+        subscription.put("eventQueueOverflowPolicy", "BLOCK");
+        subscribe("sub0", subscription);
+        listener = plugin._subMap.require("sub0")._listener;
+        listener.onSubscription();
+        plugin._lastValueCache._executor.submit(() -> {}).get(5, TimeUnit.SECONDS);
+        _harness.runPending();
+        assertEquals(2, _delivered.size());
+        assertEquals(true, delivered(0).get("isStale"));
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        LastValueCache cache = new LastValueCache(_file);
+        cache.update("scope|item1", new StandInItemUpdate("item1", 1, FIELDS).set(1, "10"), FIELDS);
+        cache._executor.submit(cache::flush).get();
+        assertTrue(_file.exists());
+
+        LightstreamerFlutterPlugin plugin = attach();
+        _harness.call("LightstreamerClient.reset", new HashMap<>());
+        awaitTasks(plugin._lastValueCache);
+        assertFalse(_file.exists());
+        assertNull(plugin._lastValueCache.get("scope|item1"));
+    }
+}
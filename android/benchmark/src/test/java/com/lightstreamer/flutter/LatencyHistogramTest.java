@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Looper;
+
+import com.lightstreamer.client.StandInItemUpdate;
+import com.lightstreamer.client.Subscription;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.plugin.common.EventChannel;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        long previousUpperBound = -1;
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS; bucket++) {
+            long lowerBound = LatencyHistogram.lowerBoundOf(bucket);
+            long upperBound = LatencyHistogram.upperBoundOf(bucket);
+            assertEquals(previousUpperBound + 1, lowerBound);
+            assertEquals(bucket, LatencyHistogram.bucketOf(lowerBound));
+            if (bucket < LatencyHistogram.BUCKETS - 1) {
+                assertEquals(bucket, LatencyHistogram.bucketOf(upperBound));
+                // the width of a bucket is at most 1/8 of its lower bound
+                assertTrue(upperBound - lowerBound + 1 <= Math.max(1, lowerBound / 8));
+            }
+            previousUpperBound = upperBound;
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE / 1000));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L); // from 1 to 1000 microseconds
+        }
+        Map<String, Object> map = histogram.toMap(false);
+        assertEquals(1000L, map.get("count"));
+        assertWithin(500, (Long) map.get("p50"));
+        assertWithin(990, (Long) map.get("p99"));
+        assertWithin(999, (Long) map.get("p999"));
+        assertWithin(1000, (Long) map.get("max"));
+
+        assertEquals(1000L, histogram.toMap(true).get("count"));
+        map = histogram.toMap(false);
+        assertEquals(0L, map.get("count"));
+        assertEquals(0L, map.get("p99"));
+    }
+
+    static void assertWithin(long expected, long actual) {
+        assertTrue(actual + " is not close to " + expected, actual >= expected && actual <= expected + expected / 8);
+    }
+
+    @Test
+    public void testUpdateLatencies() throws InterruptedException {
+        LightstreamerFlutterPlugin plugin = new LightstreamerFlutterPlugin();
+        List<Object> delivered = new ArrayList<>();
+        plugin._listenerChannelSink = new EventChannel.EventSink() {
+            @Override
+            public void success(Object event) {
+                delivered.add(event);
+            }
+
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {}
+
+            @Override
+            public void endOfStream() {}
+        };
+        String[] fields = { "f1", "f2" };
+        Subscription sub = new Subscription("MERGE", new String[] { "item1" }, fields);
+        MySubscriptionListener listener = new MySubscriptionListener("sub1", sub, plugin);
+        plugin._subMap.put("sub1", new MySubscription("sub1", sub, listener));
+        listener.setLatencyTracking(true);
+        listener.onSubscription();
+        listener.setConflationMaxFrequency(0);
+        for (boolean fastPath : new boolean[] { true, false }) {
+            listener.setPayloadProfile(fastPath ? "FULL" : "CHANGED_ONLY");
+            listener.setEventQueue(fastPath ? 0 : 10, null);
+            Looper.getMainLooper().runPending();
+            StandInItemUpdate update = new StandInItemUpdate("item1", 1, fields);
+            update.set(1, "v1");
+            listener.onItemUpdate(update);
+            Thread.sleep(5);
+            Looper.getMainLooper().runPending();
+        }
+        for (Object event : delivered) {
+            for (Object e : event instanceof List ? (List<?>) event : Collections.singletonList(event)) {
+                if (e instanceof Map) {
+                    assertFalse(((Map<?, ?>) e).containsKey(UpdateLatencies.RECEIVED_NANOS));
+                }
+            }
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> map = (Map<String, Map<String, Object>>) (Map<?, ?>) listener._latencies.toMap(false);
+        assertEquals(2L, map.get("total").get("count"));
+        assertEquals(2L, map.get("dispatch").get("count"));
+        assertTrue((Long) map.get("dispatch").get("p50") >= 5000);
+        assertTrue((Long) map.get("total").get("max") >= (Long) map.get("dispatch").get("max"));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import static org.junit.Assert.assertEquals;
+
+import com.lightstreamer.client.ClientMessageListener;
+import com.lightstreamer.client.LightstreamerClient;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MessageBatchTest {
+
+    @Test
+    public void testAggregation() {
+        PluginHarness harness = new PluginHarness();
+        List<Object> delivered = harness.collectEvents();
+        LightstreamerFlutterPlugin plugin = harness._plugin;
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < 70; i++) {
+            messages.add("msg" + i);
+        }
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("id", "0");
+        arguments.put("batchId", "batch0");
+        arguments.put("messages", messages);
+        arguments.put("sequence", "seq");
+        harness.call("LightstreamerClient.sendMessages", arguments);
+        LightstreamerClient client = plugin._clientMap.require("0");
+        assertEquals(messages, client.getSentMessages());
+        List<ClientMessageListener> listeners = client.getSentListeners();
+
+        // the outcomes received before the main thread runs are sent together
+        listeners.get(0).onProcessed("msg0", "");
+        listeners.get(1).onDeny("msg1", -5, "denied");
+        listeners.get(65).onProcessed("msg65", "ok");
+        harness.runPending();
+        assertEquals(1, delivered.size());
+        Map<?, ?> event = (Map<?, ?>) delivered.get(0);
+        assertEquals("MessageBatchListener.onOutcomes", event.get("targetMethod"));
+        assertEquals("batch0", event.get("batchId"));
+        assertEquals(Arrays.asList(1L, 2L), event.get("processed"));
+        assertEquals(Collections.singletonMap(65, "ok"), event.get("responses"));
+        Map<String, Object> failure = new HashMap<>();
+        failure.put("index", 1);
+        failure.put("outcome", "onDeny");
+        failure.put("errorCode", -5);
+        failure.put("errorMessage", "denied");
+        assertEquals(Arrays.asList(failure), event.get("failures"));
+        assertEquals(67, event.get("pending"));
+
+        // each event only carries the new outcomes
+        delivered.clear();
+        listeners.get(2).onAbort("msg2", true);
+        harness.runPending();
+        assertEquals(1, delivered.size());
+        assertEquals(new ArrayList<>(), ((Map<?, ?>) delivered.get(0)).get("processed"));
+        assertEquals(1, ((List<?>) ((Map<?, ?>) delivered.get(0)).get("failures")).size());
+        assertEquals(66, ((Map<?, ?>) delivered.get(0)).get("pending"));
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import static org.junit.Assert.assertEquals;
+
+import com.lightstreamer.client.ClientMessageListener;
+import com.lightstreamer.client.LightstreamerClient;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MessageJournalTest {
+    static final String SCOPE = "http://localhost:8080|DEMO|";
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    File _file;
+
+    @Before
+    public void setUp() {
+        _file = new File(_folder.getRoot(), MessageJournal.FILE_NAME);
+    }
+
+    static void awaitIO(MessageJournal journal) throws Exception {
+        journal._executor.submit(() -> {}).get();
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        MessageJournal journal = new MessageJournal(_file);
+        LightstreamerClient client = new LightstreamerClient(null, null);
+        for (int i = 0; i < 3; i++) {
+            journal.send(client, SCOPE, "msg" + i, "seq", -1, null);
+        }
+        journal.send(client, "other", "other0", "seq", -1, null);
+        awaitIO(journal);
+        assertEquals(Arrays.asList("msg0", "msg1", "msg2", "other0"), client.getSentMessages());
+        // msg1 is processed, while the app is terminated before the outcomes of the others
+        client.getSentListeners().get(1).onProcessed("msg1", "");
+        awaitIO(journal);
+
+        // the messages without an outcome are sent again in order, and only once
+        MessageJournal restarted = new MessageJournal(_file);
+        LightstreamerClient client2 = new LightstreamerClient(null, null);
+        restarted.resend(client2, SCOPE);
+        restarted.send(client2, SCOPE, "msg3", "seq", -1, null);
+        restarted.resend(client2, SCOPE);
+        awaitIO(restarted);
+        assertEquals(Arrays.asList("msg0", "msg2", "msg3"), client2.getSentMessages());
+
+        // the file has been compacted
+        for (ClientMessageListener listener : client2.getSentListeners()) {
+            listener.onDeny("", -1, "");
+        }
+        awaitIO(restarted);
+        MessageJournal restarted2 = new MessageJournal(_file);
+        awaitIO(restarted2);
+        assertEquals(Arrays.asList("other"), new ArrayList<>(restarted2._unsent.keySet()));
+    }
+
+    @Test
+    public void testAbort() throws Exception {
+        MessageJournal journal = new MessageJournal(_file);
+        LightstreamerClient client = new LightstreamerClient(null, null);
+        List<String> outcomes = new ArrayList<>();
+        ClientMessageListener listener = new ClientMessageListener() {
+            @Override public void onAbort(String originalMessage, boolean sentOnNetwork) { outcomes.add("onAbort " + originalMessage); }
+            @Override public void onDeny(String originalMessage, int errorCode, String errorMessage) {}
+            @Override public void onDiscarded(String originalMessage) {}
+            @Override public void onError(String originalMessage) {}
+            @Override public void onProcessed(String originalMessage, String response) { outcomes.add("onProcessed " + originalMessage); }
+        };
+        journal.send(client, SCOPE, "msg0", "seq", -1, listener);
+        journal.send(client, SCOPE, "msg1", "seq", -1, listener);
+        awaitIO(journal);
+
+        // a message aborted before being sent is sent again on the next connection, and only the final outcome is notified
+        client.getSentListeners().get(1).onAbort("msg1", false);
+        client.getSentListeners().get(0).onAbort("msg0", false);
+        journal.resend(client, SCOPE);
+        awaitIO(journal);
+        assertEquals(Arrays.asList("msg0", "msg1", "msg0", "msg1"), client.getSentMessages());
+        client.getSentListeners().get(2).onProcessed("msg0", "");
+        client.getSentListeners().get(3).onAbort("msg1", true);
+        assertEquals(Arrays.asList("onProcessed msg0", "onAbort msg1"), outcomes);
+    }
+
+    @Test
+    public void testDisconnect() throws Exception {
+        MessageJournal journal = new MessageJournal(_file);
+        LightstreamerClient client = new LightstreamerClient(null, null);
+        List<String> outcomes = new ArrayList<>();
+        ClientMessageListener listener = new ClientMessageListener() {
+            @Override public void onAbort(String originalMessage, boolean sentOnNetwork) { outcomes.add("onAbort " + originalMessage); }
+            @Override public void onDeny(String originalMessage, int errorCode, String errorMessage) {}
+            @Override public void onDiscarded(String originalMessage) {}
+            @Override public void onError(String originalMessage) {}
+            @Override public void onProcessed(String originalMessage, String response) {}
+        };
+        journal.send(client, SCOPE, "msg0", "seq", -1, listener);
+        journal.send(client, SCOPE, "msg1", "seq", -1, null);
+        awaitIO(journal);
+
+        // the aborts caused by the app are reported, except for the messages of a previous run, which have no listener
+        journal.onDisconnect(client);
+        client.getSentListeners().get(0).onAbort("msg0", false);
+        client.getSentListeners().get(1).onAbort("msg1", false);
+        assertEquals(Arrays.asList("onAbort msg0"), outcomes);
+        journal.resend(client, SCOPE);
+        awaitIO(journal);
+        assertEquals(Arrays.asList("msg0", "msg1", "msg1"), client.getSentMessages());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        MessageJournal journal = new MessageJournal(_file);
+        LightstreamerClient client = new LightstreamerClient(null, null);
+        for (int i = 0; i <= MessageJournal.COMPACTION_THRESHOLD; i++) {
+            journal.send(client, SCOPE, "msg" + i, "seq", -1, null);
+        }
+        awaitIO(journal);
+        for (int i = 0; i < MessageJournal.COMPACTION_THRESHOLD; i++) {
+            client.getSentListeners().get(i).onProcessed("msg" + i, "");
+        }
+        awaitIO(journal);
+
+        // only the message without an outcome is left in the file
+        assertEquals(1, journal._inFlight.size());
+        assertEquals(MessageJournal.encodeMessage(journal._inFlight.iterator().next()).length, _file.length());
+        MessageJournal restarted = new MessageJournal(_file);
+        LightstreamerClient client2 = new LightstreamerClient(null, null);
+        restarted.resend(client2, SCOPE);
+        awaitIO(restarted);
+        assertEquals(Arrays.asList("msg" + MessageJournal.COMPACTION_THRESHOLD), client2.getSentMessages());
+    }
+
+    static Map<String, Object> details(String user) {
+        Map<String, Object> details = new HashMap<>();
+        details.put("serverAddress", "http://localhost:8080");
+        details.put("adapterSet", "DEMO");
+        details.put("user", user);
+        return details;
+    }
+
+    @Test
+    public void testUsers() throws Exception {
+        String scopeA = MessageJournal.scopeOf(details("userA"));
+        String scopeB = MessageJournal.scopeOf(details("userB"));
+        assertEquals(SCOPE, MessageJournal.scopeOf(details(null)));
+        MessageJournal journal = new MessageJournal(_file);
+        LightstreamerClient client = new LightstreamerClient(null, null);
+        journal.send(client, scopeA, "msgA", "seq", -1, null);
+        awaitIO(journal);
+
+        // the messages left by a user are not sent in the session of another user
+        MessageJournal restarted = new MessageJournal(_file);
+        LightstreamerClient clientB = new LightstreamerClient(null, null);
+        restarted.resend(clientB, scopeB);
+        restarted.send(clientB, scopeB, "msgB", "seq", -1, null);
+        awaitIO(restarted);
+        assertEquals(Arrays.asList("msgB"), clientB.getSentMessages());
+        LightstreamerClient clientA = new LightstreamerClient(null, null);
+        restarted.resend(clientA, scopeA);
+        awaitIO(restarted);
+        assertEquals(Arrays.asList("msgA"), clientA.getSentMessages());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.lightstreamer.client.ClientListener;
+import com.lightstreamer.client.LightstreamerClient;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SessionPoolTest {
+    PluginHarness _harness;
+    LightstreamerFlutterPlugin _plugin;
+
+    @Before
+    public void setUp() {
+        _harness = new PluginHarness();
+        _plugin = _harness._plugin;
+    }
+
+    void connect(String clientId, String adapterSet, boolean sessionSharing) {
+        _harness.connect(clientId, PluginHarness.connectionDetails(adapterSet), sessionSharing);
+    }
+
+    void subscribe(String clientId, String subId) {
+        _harness.subscribe(clientId, PluginHarness.subscription(subId, Arrays.asList("item1"), new String[] { "f1" }));
+    }
+
+    static List<String> listenerIds(LightstreamerClient client) {
+        List<String> ids = new ArrayList<>();
+        for (ClientListener listener : client.getListeners()) {
+            MyClientListener myListener = (MyClientListener) listener;
+            assertSame(client, myListener.client);
+            ids.add(myListener.clientId);
+        }
+        return ids;
+    }
+
+    @Test
+    public void testSharing() {
+        connect("client1", "DEMO", true);
+        subscribe("client2", "sub2");
+        connect("client2", "DEMO", true);
+        connect("client3", "OTHER", true);
+        connect("client4", "DEMO", false);
+
+        LightstreamerClient shared = _plugin._clientMap.require("client1");
+        assertSame(shared, _plugin._clientMap.require("client2"));
+        assertNotSame(shared, _plugin._clientMap.require("client3"));
+        assertNotSame(shared, _plugin._clientMap.require("client4"));
+        assertEquals(Arrays.asList("client1", "client2"), listenerIds(shared));
+        // the subscriptions follow their clientId
+        assertEquals(Arrays.asList(_plugin._subMap.require("sub2")._sub), shared.getSubscriptions());
+
+        // the session survives until its last clientId disconnects
+        _harness.disconnect("client1");
+        LightstreamerClient detached = _plugin._clientMap.require("client1");
+        assertNotSame(shared, detached);
+        assertEquals(Arrays.asList("client1"), listenerIds(detached));
+        assertEquals(Arrays.asList("client2"), listenerIds(shared));
+        assertEquals(2, _plugin._sessionPool._sessions.size());
+        _harness.disconnect("client2");
+        assertSame(shared, _plugin._clientMap.require("client2"));
+        assertEquals(Arrays.asList(_plugin._subMap.require("sub2")._sub), shared.getSubscriptions());
+        assertEquals(1, _plugin._sessionPool._sessions.size()); // the session of client3
+
+        // a clientId connecting with another configuration leaves its session
+        connect("client1", "DEMO", true);
+        connect("client1", "OTHER", true);
+        assertSame(_plugin._clientMap.require("client3"), _plugin._clientMap.require("client1"));
+        assertEquals(Arrays.asList("client3", "client1"), listenerIds(_plugin._clientMap.require("client3")));
+        assertTrue(_plugin._sessionPool._clientSessions.keySet().containsAll(Arrays.asList("client1", "client3")));
+        assertEquals(2, _plugin._sessionPool._clientSessions.size());
+    }
+
+    @Test
+    public void testPrivateThenShared() {
+        connect("client1", "DEMO", true);
+        connect("client2", "DEMO", false);
+        LightstreamerClient own = _plugin._clientMap.require("client2");
+        assertTrue(own.isConnectRequested());
+
+        // the private client is not left connected when the clientId joins the shared session
+        connect("client2", "DEMO", true);
+        LightstreamerClient shared = _plugin._clientMap.require("client1");
+        assertSame(shared, _plugin._clientMap.require("client2"));
+        assertFalse(own.isConnectRequested());
+        assertTrue(own.getListeners().isEmpty());
+        assertTrue(shared.isConnectRequested());
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import com.lightstreamer.client.LightstreamerClient;
+import com.lightstreamer.client.StandInOnly;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Checks that the stand-ins of the Lightstreamer SDK in src/stubs/java match the SDK the plugin is built against,
+ * so that the tests and the benchmarks don't exercise an API that has drifted from the real one:
+ * every public member of a stand-in (but the ones marked {@link StandInOnly}) must exist in the SDK with the same signature,
+ * and a stand-in of an SDK interface must declare all the methods of the interface.
+ * <p>
+ * The SDK is passed by the build through the `lightstreamer.sdk.classpath` property (see build.gradle);
+ * when it couldn't be resolved (e.g. offline), the test is skipped.
+ * NB only the signatures are compared: the behavior of the stand-ins is checked by the tests of the plugin on a device.
+ */
+public class StandInConformanceTest {
+
+    @Test
+    public void testSameSignaturesAsSdk() throws Exception {
+        String classpath = System.getProperty("lightstreamer.sdk.classpath", "");
+        assumeTrue("The Lightstreamer SDK is not available", !classpath.isEmpty());
+        List<URL> urls = new ArrayList<>();
+        for (String path : classpath.split(File.pathSeparator)) {
+            urls.add(toJar(new File(path)).toURI().toURL());
+        }
+        List<String> problems = new ArrayList<>();
+        try (URLClassLoader sdk = new SdkClassLoader(urls.toArray(new URL[0]), getClass().getClassLoader())) {
+            for (String name : standInClassNames()) {
+                Class<?> standIn = Class.forName(name);
+                Class<?> real;
+                try {
+                    real = sdk.loadClass(name);
+                } catch (ClassNotFoundException e) {
+                    problems.add(name + " is not in the SDK");
+                    continue;
+                }
+                compare(standIn, real, problems);
+            }
+        }
+        assertEquals("The stand-ins differ from the SDK", new ArrayList<String>(), problems);
+    }
+
+    static void compare(Class<?> standIn, Class<?> real, List<String> problems) {
+        String name = standIn.getName();
+        if (standIn.isInterface() != real.isInterface()) {
+            problems.add(name + (real.isInterface() ? " is an interface in the SDK" : " is a class in the SDK"));
+            return;
+        }
+        for (Method m : standIn.getDeclaredMethods()) {
+            if (!isPublicApi(m.getModifiers(), m.isSynthetic()) || m.isAnnotationPresent(StandInOnly.class)) {
+                continue;
+            }
+            Method realMethod = findMethod(real, m.getName(), typeNames(m.getParameterTypes()));
+            if (realMethod == null) {
+                problems.add(name + "." + m.getName() + Arrays.toString(typeNames(m.getParameterTypes())) + " is not in the SDK");
+            } else if (!realMethod.getReturnType().getName().equals(m.getReturnType().getName())
+                    || Modifier.isStatic(realMethod.getModifiers()) != Modifier.isStatic(m.getModifiers())) {
+                problems.add(name + "." + m.getName() + " differs from the SDK: " + realMethod);
+            }
+        }
+        for (Constructor<?> c : standIn.getDeclaredConstructors()) {
+            if (!isPublicApi(c.getModifiers(), c.isSynthetic()) || c.isAnnotationPresent(StandInOnly.class)) {
+                continue;
+            }
+            String[] params = typeNames(c.getParameterTypes());
+            boolean found = false;
+            for (Constructor<?> realConstructor : real.getConstructors()) {
+                found |= Arrays.equals(params, typeNames(realConstructor.getParameterTypes()));
+            }
+            if (!found) {
+                problems.add(name + Arrays.toString(params) + " is not a constructor of the SDK");
+            }
+        }
+        for (Field f : standIn.getDeclaredFields()) {
+            if (!isPublicApi(f.getModifiers(), f.isSynthetic()) || f.isAnnotationPresent(StandInOnly.class)) {
+                continue;
+            }
+            try {
+                if (!real.getField(f.getName()).getType().getName().equals(f.getType().getName())) {
+                    problems.add(name + "." + f.getName() + " has a different type in the SDK");
+                }
+            } catch (NoSuchFieldException e) {
+                problems.add(name + "." + f.getName() + " is not in the SDK");
+            }
+        }
+        if (standIn.isInterface()) {
+            // the listeners of the plugin implement the stand-ins, so they would miss the methods added by the SDK
+            for (Method m : real.getMethods()) {
+                if (!m.isDefault() && !Modifier.isStatic(m.getModifiers()) && findMethod(standIn, m.getName(), typeNames(m.getParameterTypes())) == null) {
+                    problems.add(name + "." + m.getName() + Arrays.toString(typeNames(m.getParameterTypes())) + " is missing in the stand-in");
+                }
+            }
+        }
+    }
+
+    static boolean isPublicApi(int modifiers, boolean synthetic) {
+        return Modifier.isPublic(modifiers) && !synthetic;
+    }
+
+    static Method findMethod(Class<?> cls, String name, String[] params) {
+        for (Method m : cls.getMethods()) {
+            if (m.getName().equals(name) && Arrays.equals(params, typeNames(m.getParameterTypes()))) {
+                return m;
+            }
+        }
+        return null;
+    }
+
+    static String[] typeNames(Class<?>[] types) {
+        String[] names = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            names[i] = types[i].getName();
+        }
+        return names;
+    }
+
+    /**
+     * Returns the names of the stand-ins of the SDK classes, i.e. of the top-level classes compiled from src/stubs/java
+     * in the packages of the SDK (and of its log API), except the helpers named StandIn*.
+     */
+    static List<String> standInClassNames() throws Exception {
+        Path root = Paths.get(LightstreamerClient.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        try (Stream<Path> files = Stream.concat(Files.walk(root.resolve("com/lightstreamer/client")), Files.walk(root.resolve("com/lightstreamer/log")))) {
+            return files
+                    .map(file -> root.relativize(file).toString().replace(File.separatorChar, '/'))
+                    .filter(file -> file.endsWith(".class") && !file.contains("$") && !file.substring(file.lastIndexOf('/') + 1).startsWith("StandIn"))
+                    .map(file -> file.substring(0, file.length() - ".class".length()).replace('/', '.'))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Returns the jar itself or, for an Android library, the jar of its classes extracted to a temporary file.
+     */
+    static File toJar(File file) throws IOException {
+        if (!file.getName().endsWith(".aar")) {
+            return file;
+        }
+        try (ZipFile aar = new ZipFile(file)) {
+            ZipEntry entry = aar.getEntry("classes.jar");
+            File jar = File.createTempFile(file.getName(), ".jar");
+            jar.deleteOnExit();
+            try (InputStream in = aar.getInputStream(entry)) {
+                Files.copy(in, jar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return jar;
+        }
+    }
+
+    /**
+     * Loads the Lightstreamer classes from the SDK rather than from the stand-ins, while the other classes
+     * referred to by the SDK (e.g. the Android ones) still come from the stand-ins.
+     */
+    static class SdkClassLoader extends URLClassLoader {
+        SdkClassLoader(URL[] urls, ClassLoader parent) {
+            super(urls, parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith("com.lightstreamer.")) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> cls = findLoadedClass(name);
+                if (cls == null) {
+                    cls = findClass(name);
+                }
+                if (resolve) {
+                    resolveClass(cls);
+                }
+                return cls;
+            }
+        }
+    }
+}
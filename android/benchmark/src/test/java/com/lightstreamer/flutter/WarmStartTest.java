@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.lightstreamer.client.ClientListener;
+import com.lightstreamer.client.LightstreamerClient;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class WarmStartTest {
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    File _file;
+    PluginHarness _harness;
+    List<Object> _delivered;
+
+    @Before
+    public void setUp() {
+        _file = new File(_folder.getRoot(), WarmStart.FILE_NAME);
+    }
+
+    /**
+     * Simulates the attachment of the plugin to a new engine.
+     */
+    LightstreamerFlutterPlugin attach() throws Exception {
+        _harness = new PluginHarness();
+        _delivered = _harness.collectEvents();
+        LightstreamerFlutterPlugin plugin = _harness._plugin;
+        WarmStart warmStart = new WarmStart(plugin, _file);
+        plugin._warmStart = warmStart;
+        warmStart.start();
+        awaitIO(plugin);
+        return plugin;
+    }
+
+    static void awaitIO(LightstreamerFlutterPlugin plugin) throws Exception {
+        plugin._warmStart._executor.submit(() -> {}).get();
+    }
+
+    void connect(String clientId, String adapterSet) {
+        connect(clientId, adapterSet, null);
+    }
+
+    void connect(String clientId, String adapterSet, String password) {
+        Map<String, Object> details = PluginHarness.connectionDetails(adapterSet);
+        details.put("user", "user1");
+        details.put("password", password);
+        _harness.connect(clientId, details, false);
+    }
+
+    void subscribe(String clientId, String subId, String item) {
+        _harness.subscribe(clientId, PluginHarness.subscription(subId, Arrays.asList(item), new String[] { "f1" }));
+    }
+
+    static MyClientListener listenerOf(LightstreamerFlutterPlugin plugin, String clientId) {
+        for (ClientListener listener : plugin._clientMap.require(clientId).getListeners()) {
+            return (MyClientListener) listener;
+        }
+        throw new AssertionError();
+    }
+
+    List<String> deliveredMethods() {
+        _harness.runPending();
+        List<String> methods = new ArrayList<>();
+        for (Object event : _delivered) {
+            methods.add((String) ((Map<?, ?>) event).get("targetMethod"));
+        }
+        _delivered.clear();
+        return methods;
+    }
+
+    /**
+     * Runs a former session, which persists client 0 with Subscriptions sub0 and sub1.
+     */
+    void persistSession() throws Exception {
+        persistSession(null);
+    }
+
+    LightstreamerFlutterPlugin persistSession(String password) throws Exception {
+        LightstreamerFlutterPlugin plugin = attach();
+        subscribe("0", "sub0", "item0");
+        connect("0", "DEMO", password);
+        listenerOf(plugin, "0").onStatusChange("CONNECTED:WS-STREAMING");
+        subscribe("0", "sub1", "item1");
+        awaitIO(plugin);
+        assertTrue(_file.exists());
+        deliveredMethods();
+        return plugin;
+    }
+
+    @Test
+    public void testAdoption() throws Exception {
+        persistSession();
+        LightstreamerFlutterPlugin plugin = attach();
+        LightstreamerClient client = plugin._clientMap.require("0");
+        assertEquals("DEMO", client.connectionDetails.getAdapterSet());
+        assertEquals(2, client.getSubscriptions().size());
+
+        // the events are held until the Flutter component subscribes
+        MySubscription sub0 = plugin._subMap.require("sub0");
+        sub0._listener.onSubscription();
+        assertEquals(new ArrayList<>(), deliveredMethods());
+        subscribe("0", "sub0", "item0");
+        assertSame(sub0, plugin._subMap.require("sub0"));
+        assertEquals(Arrays.asList("SubscriptionListener.onSubscription"), deliveredMethods());
+        sub0._listener.onSubscription();
+        assertEquals(Arrays.asList("SubscriptionListener.onSubscription"), deliveredMethods());
+
+        // a Subscription with other options replaces the one recreated from the file
+        MySubscription sub1 = plugin._subMap.require("sub1");
+        subscribe("0", "sub1", "other");
+        assertNotSame(sub1, plugin._subMap.require("sub1"));
+        assertNull(sub1._listener._heldEvents);
+        assertEquals(2, client.getSubscriptions().size());
+
+        // the client is adopted and the Flutter client is told its state
+        connect("0", "DEMO");
+        assertSame(client, plugin._clientMap.require("0"));
+        assertTrue(deliveredMethods().contains("ClientListener.onStatusChange"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPassword() throws Exception {
+        persistSession("secret");
+        Map<String, Object> config = (Map<String, Object>) MessageFiles.read(_file);
+        Map<String, Object> details = (Map<String, Object>) config.get("connectionDetails");
+        assertEquals("user1", details.get("user"));
+        assertFalse(details.containsKey("password"));
+
+        // the client waits for the password to connect
+        LightstreamerFlutterPlugin plugin = attach();
+        LightstreamerClient client = plugin._clientMap.require("0");
+        assertEquals(2, client.getSubscriptions().size());
+        assertFalse(client.isConnectRequested());
+        connect("0", "DEMO", "secret");
+        assertSame(client, plugin._clientMap.require("0"));
+        assertEquals("secret", client.connectionDetails.getPassword());
+        assertTrue(client.isConnectRequested());
+    }
+
+    @Test
+    public void testDeletion() throws Exception {
+        // an explicit disconnection is not undone at the next start
+        LightstreamerFlutterPlugin plugin = persistSession(null);
+        _harness.disconnect("0");
+        awaitIO(plugin);
+        assertFalse(_file.exists());
+        plugin = attach();
+        assertNull(plugin._clientMap.get("0"));
+
+        // nor is a reset
+        plugin = persistSession(null);
+        _harness.call("LightstreamerClient.reset", new HashMap<>());
+        awaitIO(plugin);
+        assertFalse(_file.exists());
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        persistSession();
+        LightstreamerFlutterPlugin plugin = attach();
+        MySubscription sub0 = plugin._subMap.require("sub0");
+        plugin._warmStart.expire();
+        assertNull(plugin._subMap.get("sub0"));
+        assertNull(sub0._listener._heldEvents);
+        assertEquals(0, plugin._clientMap.require("0").getSubscriptions().size());
+
+        // a client connected with another configuration is not adopted
+        connect("0", "OTHER");
+        assertEquals(new ArrayList<>(), deliveredMethods());
+    }
+}
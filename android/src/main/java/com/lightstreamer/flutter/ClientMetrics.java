@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the metrics of a client (see `LightstreamerClient.getMetrics`) and, when requested through
+ * `LightstreamerClient.setMetricsPushInterval`, sends them periodically to the Flutter component as `ClientListener.onMetrics` events.
+ * <p>
+ * The metrics of the client include the ones of the Subscriptions it is subscribed to, which are also reported one by one,
+ * and the method calls received by the plugin, which are not split by client since the method channel is shared.
+ * The `onMetrics` events themselves are left out of the counters.
+ */
+class ClientMetrics {
+    static final String METHOD = "ClientListener.onMetrics";
+
+    final String _clientId;
+    final LightstreamerFlutterPlugin _plugin;
+    /**
+     * The events of the ClientListener of the client.
+     */
+    final EventCounters _counters = new EventCounters();
+    final Runnable _pushTask = this::push;
+    /**
+     * The period of the `onMetrics` events (0 if disabled). It is only accessed by the main thread.
+     */
+    long _pushIntervalMillis;
+
+    ClientMetrics(String clientId, LightstreamerFlutterPlugin plugin) {
+        _clientId = clientId;
+        _plugin = plugin;
+    }
+
+    Map<String, Object> toMap() {
+        EventCounters.Snapshot total = new EventCounters.Snapshot();
+        total.add(_counters, 0);
+        Map<String, Object> subscriptions = new HashMap<>();
+        Set<String> subIds = _plugin._clientSubIds.get(_clientId);
+        if (subIds != null) {
+            for (String subId : subIds) {
+                MySubscription mySub = _plugin._subMap.get(subId);
+                if (mySub == null) {
+                    continue;
+                }
+                SubscriptionEventQueue queue = mySub._listener._eventQueue;
+                EventCounters.Snapshot snapshot = new EventCounters.Snapshot();
+                snapshot.add(mySub._listener._counters, queue == null ? 0 : queue.size());
+                total.add(snapshot);
+                subscriptions.put(subId, snapshot.toMap());
+            }
+        }
+        Map<String, Object> methodCalls = new HashMap<>();
+        for (Map.Entry<String, LongAdder> e : _plugin._methodCalls.entrySet()) {
+            long calls = e.getValue().sum();
+            if (calls > 0) {
+                methodCalls.put(e.getKey(), calls);
+            }
+        }
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("client", total.toMap());
+        metrics.put("subscriptions", subscriptions);
+        metrics.put("methodCalls", methodCalls);
+        return metrics;
+    }
+
+    /**
+     * Sends an `onMetrics` event every `intervalMillis` milliseconds if `intervalMillis` is a positive number,
+     * or stops sending them otherwise. It must be called by the main thread.
+     */
+    void setPushInterval(long intervalMillis) {
+        _pushIntervalMillis = Math.max(0, intervalMillis);
+        _plugin._loop.removeCallbacks(_pushTask);
+        if (_pushIntervalMillis > 0) {
+            _plugin._loop.postDelayed(_pushTask, _pushIntervalMillis);
+        }
+    }
+
+    void push() {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("metrics", toMap());
+        arguments.put("id", _clientId);
+        // NB the event is not counted, otherwise each push would change the metrics it reports
+        _plugin.invokeUncountedMethod(METHOD, arguments);
+        _plugin._loop.postDelayed(_pushTask, _pushIntervalMillis);
+    }
+
+    /**
+     * Stops the `onMetrics` events when the client is disposed of. It can be called by any thread.
+     */
+    void dispose() {
+        _plugin._loop.post(() -> setPushInterval(0));
+    }
+}
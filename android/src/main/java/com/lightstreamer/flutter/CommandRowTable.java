@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import com.lightstreamer.client.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The table of the rows of the items of a COMMAND Subscription (see the COMMAND_ROW_DIFFS payload profile).
+ * <p>
+ * Each key of an item is assigned a row index when it is added, and keeps it until it is deleted.
+ * The indices of the deleted keys are reused, so that the indices of an item stay below the peak number of keys the item
+ * has had at the same time (rather than the number of keys ever added); the keys are not moved, hence the current number
+ * of keys is not a bound.
+ * The values of the rows are not duplicated: they are read from the Subscription when the table is queried.
+ * <p>
+ * The table is updated by the SubscriptionListener and can be queried by any thread.
+ */
+class CommandRowTable {
+    static final String ADD = "ADD";
+    static final String UPDATE = "UPDATE";
+    static final String DELETE = "DELETE";
+
+    static class ItemRows {
+        final Map<String, Integer> _rowByKey = new HashMap<>();
+        final ArrayList<String> _keyByRow = new ArrayList<>();
+        final ArrayDeque<Integer> _freeRows = new ArrayDeque<>();
+    }
+
+    final Subscription _sub;
+    final Map<Integer, ItemRows> _items = new HashMap<>();
+
+    CommandRowTable(Subscription sub) {
+        _sub = sub;
+    }
+
+    /**
+     * Applies an update of the given key and returns the kind of change, i.e. ADD, UPDATE or DELETE
+     * (which is derived from the table rather than from the command field, so that the changes are always consistent with the table).
+     * The row of the key is stored in `rowOut[0]` (-1 if the key was not in the table and is being deleted).
+     */
+    synchronized String apply(int itemPos, String key, boolean isDelete, int[] rowOut) {
+        ItemRows rows = _items.get(itemPos);
+        Integer row = rows == null ? null : rows._rowByKey.get(key);
+        if (isDelete) {
+            if (row == null) {
+                rowOut[0] = -1;
+            } else {
+                rows._rowByKey.remove(key);
+                rows._keyByRow.set(row, null);
+                rows._freeRows.push(row);
+                rowOut[0] = row;
+            }
+            return DELETE;
+        }
+        if (row != null) {
+            rowOut[0] = row;
+            return UPDATE;
+        }
+        if (rows == null) {
+            rows = new ItemRows();
+            _items.put(itemPos, rows);
+        }
+        Integer free = rows._freeRows.poll();
+        if (free != null) {
+            row = free;
+            rows._keyByRow.set(row, key);
+        } else {
+            row = rows._keyByRow.size();
+            rows._keyByRow.add(key);
+        }
+        rows._rowByKey.put(key, row);
+        rowOut[0] = row;
+        return ADD;
+    }
+
+    synchronized void clear(int itemPos) {
+        _items.remove(itemPos);
+    }
+
+    synchronized void clear() {
+        _items.clear();
+    }
+
+    /**
+     * Returns the rows of the given item with the values of the fields in the range [1, fieldCount].
+     * The map reports the row indices in `rows`, the keys in `keys` and the values, row by row, in the flat list `values`.
+     */
+    Map<String, Object> getRows(int itemPos, int fieldCount) {
+        List<Integer> rowList = new ArrayList<>();
+        List<String> keyList = new ArrayList<>();
+        synchronized (this) {
+            ItemRows rows = _items.get(itemPos);
+            if (rows != null) {
+                for (int row = 0; row < rows._keyByRow.size(); row++) {
+                    String key = rows._keyByRow.get(row);
+                    if (key != null) {
+                        rowList.add(row);
+                        keyList.add(key);
+                    }
+                }
+            }
+        }
+        List<String> values = new ArrayList<>(keyList.size() * fieldCount);
+        for (String key : keyList) {
+            for (int field = 1; field <= fieldCount; field++) {
+                values.add(_sub.getCommandValue(itemPos, key, field));
+            }
+        }
+        Map<String, Object> res = new HashMap<>();
+        res.put("itemPos", itemPos);
+        res.put("fieldCount", fieldCount);
+        res.put("rows", rowList);
+        res.put("keys", keyList);
+        res.put("values", values);
+        return res;
+    }
+}
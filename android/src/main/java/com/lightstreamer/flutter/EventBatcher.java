@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the listener events directed to the Flutter component and delivers them in batches,
+ * so that a single message crosses the platform channel for many events.
+ * <p>
+ * A batch is delivered as soon as it contains `maxSize` events or `maxDelayMillis` milliseconds
+ * after its first event was added, whichever comes first.
+ * The events are delivered as a List, in the same order in which they have been added.
+ */
+class EventBatcher {
+    final LightstreamerFlutterPlugin _plugin;
+    final int _maxSize;
+    final long _maxDelayMillis;
+    final Runnable _flushTask = this::flush;
+    List<Object> _batch;
+    boolean _flushScheduled;
+
+    EventBatcher(LightstreamerFlutterPlugin plugin, int maxSize, long maxDelayMillis) {
+        _plugin = plugin;
+        _maxSize = maxSize;
+        _maxDelayMillis = maxDelayMillis;
+        _batch = new ArrayList<>(maxSize);
+    }
+
+    /**
+     * Adds an event to the current batch. It can be called by any thread.
+     */
+    synchronized void add(Object event) {
+        _batch.add(event);
+        if (_batch.size() >= _maxSize) {
+            List<Object> batch = takeBatch();
+            _plugin._loop.post(() -> _plugin.deliverEvent(batch));
+        } else if (!_flushScheduled) {
+            _flushScheduled = true;
+            _plugin._loop.postDelayed(_flushTask, _maxDelayMillis);
+        }
+    }
+
+    /**
+     * Adds a sequence of events to the current batch, as many calls to {@link #add(Object)} would do.
+     */
+    synchronized void addAll(List<?> events) {
+        for (Object event : events) {
+            add(event);
+        }
+    }
+
+    /**
+     * Delivers the current batch, if not empty. It must be called by the main thread.
+     */
+    void flush() {
+        List<Object> batch;
+        synchronized (this) {
+            if (_batch.isEmpty()) {
+                return;
+            }
+            batch = takeBatch();
+        }
+        _plugin.deliverEvent(batch);
+    }
+
+    List<Object> takeBatch() {
+        List<Object> batch = _batch;
+        _batch = new ArrayList<>(_maxSize);
+        if (_flushScheduled) {
+            _flushScheduled = false;
+            _plugin._loop.removeCallbacks(_flushTask);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the events of a source (a subscription or a client) on their way to the Flutter component
+ * (see `LightstreamerClient.getMetrics`).
+ * <p>
+ * The counters are incremented both by the threads of the SDK and by the main thread, hence they are {@link LongAdder}s,
+ * which don't contend on a single variable. Their sums are only computed when the metrics are requested.
+ */
+class EventCounters {
+    /**
+     * The real-time updates received from the SDK (only for subscriptions).
+     */
+    final LongAdder _updatesReceived = new LongAdder();
+    /**
+     * The events handed to the main thread to be delivered.
+     */
+    final LongAdder _eventsPosted = new LongAdder();
+    /**
+     * The events passed to the EventSink.
+     */
+    final LongAdder _eventsDelivered = new LongAdder();
+    /**
+     * The events discarded because the channel com.lightstreamer.flutter/listeners was not ready.
+     */
+    final LongAdder _eventsDropped = new LongAdder();
+
+    void onDelivery(boolean delivered) {
+        if (delivered) {
+            _eventsDelivered.increment();
+        } else {
+            _eventsDropped.increment();
+        }
+    }
+
+    /**
+     * The sums of one or more {@link EventCounters}, as they are reported to the Flutter component.
+     */
+    static class Snapshot {
+        long _updatesReceived;
+        long _eventsPosted;
+        long _eventsDelivered;
+        long _eventsDropped;
+        /**
+         * The events waiting to be delivered, i.e. the ones posted but not yet delivered (nor dropped)
+         * plus the ones held by the event queues (see {@link SubscriptionEventQueue}).
+         */
+        long _queueDepth;
+
+        /**
+         * Adds the counters to the snapshot, along with the number of events that are waiting in an event queue.
+         */
+        void add(EventCounters counters, long queuedEvents) {
+            // NB the counters of the delivery are read first, so that a concurrent delivery cannot make the depth negative
+            long delivered = counters._eventsDelivered.sum();
+            long dropped = counters._eventsDropped.sum();
+            long posted = counters._eventsPosted.sum();
+            _updatesReceived += counters._updatesReceived.sum();
+            _eventsPosted += posted;
+            _eventsDelivered += delivered;
+            _eventsDropped += dropped;
+            _queueDepth += Math.max(0, posted - delivered - dropped) + queuedEvents;
+        }
+
+        void add(Snapshot other) {
+            _updatesReceived += other._updatesReceived;
+            _eventsPosted += other._eventsPosted;
+            _eventsDelivered += other._eventsDelivered;
+            _eventsDropped += other._eventsDropped;
+            _queueDepth += other._queueDepth;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("updatesReceived", _updatesReceived);
+            map.put("eventsPosted", _eventsPosted);
+            map.put("eventsDelivered", _eventsDelivered);
+            map.put("eventsDropped", _eventsDropped);
+            map.put("queueDepth", _queueDepth);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Maps the ids assigned by the Flutter component (e.g. the `id` or the `subId` field of a MethodCall object)
+ * to the native objects they stand for.
+ * <p>
+ * The registry can be accessed by any thread: it is backed by a {@link ConcurrentHashMap}, whose lookups don't lock
+ * and whose updates only lock the affected bin, so that the method calls and the SDK callbacks (e.g. the completion
+ * of a Firebase task) don't contend on a single lock.
+ */
+class HandleRegistry<V> {
+    /**
+     * The kind of the objects in the registry (e.g. "Subscription"), used in the error messages.
+     */
+    final String _kind;
+    final ConcurrentHashMap<String, V> _map = new ConcurrentHashMap<>();
+
+    HandleRegistry(String kind) {
+        _kind = kind;
+    }
+
+    @Nullable
+    V get(String id) {
+        return _map.get(id);
+    }
+
+    /**
+     * Returns the object mapped to `id`.
+     * @throws IllegalStateException if there is no such object
+     */
+    @NonNull
+    V require(String id) {
+        V value = _map.get(id);
+        if (value == null) {
+            String errMsg = _kind + " " + id + " doesn't exist";
+            if (LightstreamerFlutterPlugin.channelLogger.isErrorEnabled()) {
+                LightstreamerFlutterPlugin.channelLogger.error(errMsg, null);
+            }
+            throw new IllegalStateException(errMsg);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the object mapped to `id`, creating it with `factory` if there is none.
+     * The check and the creation are atomic, so concurrent calls with the same id get the same object
+     * and `factory` is called at most once.
+     * NB `factory` must not access the registry.
+     */
+    @NonNull
+    V getOrCreate(String id, Function<String, V> factory) {
+        return _map.computeIfAbsent(id, factory);
+    }
+
+    void put(String id, V value) {
+        _map.put(id, value);
+    }
+
+    /**
+     * Maps `id` to `value` unless `id` is already mapped.
+     * Returns the object already mapped to `id`, or null if `value` has been added.
+     */
+    @Nullable
+    V putIfAbsent(String id, V value) {
+        return _map.putIfAbsent(id, value);
+    }
+
+    @Nullable
+    V remove(String id) {
+        return _map.remove(id);
+    }
+
+    /**
+     * A weakly consistent view of the objects in the registry.
+     */
+    Collection<V> values() {
+        return _map.values();
+    }
+
+    /**
+     * A weakly consistent view of the mappings in the registry.
+     */
+    Set<Map.Entry<String, V>> entries() {
+        return _map.entrySet();
+    }
+
+    void clear() {
+        _map.clear();
+    }
+}
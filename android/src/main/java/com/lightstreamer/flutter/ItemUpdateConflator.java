@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the real-time updates of a MERGE subscription by item, so that the Flutter component receives,
+ * for each item, at most one `onItemUpdate` event every `intervalMillis` milliseconds.
+ * <p>
+ * A merged update carries the newest values of all the fields and, as changed fields, the union of the fields
+ * changed by the updates it replaces. A JSON Patch is kept only if the field it refers to has been changed
+ * by exactly one of the merged updates, since consecutive patches cannot be delivered as a single difference.
+ * <p>
+ * Snapshot updates are never conflated.
+ */
+class ItemUpdateConflator {
+    final MySubscriptionListener _listener;
+    final long _intervalMillis;
+    /**
+     * Maps an itemPos to the arguments of the pending `onItemUpdate` event of the item.
+     * The iteration order is the order in which the items received their first pending update.
+     */
+    final Map<Integer, Map<String, Object>> _pending = new LinkedHashMap<>();
+    final Runnable _flushTask = this::flush;
+    long _lastFlushTime;
+    boolean _flushScheduled;
+
+    ItemUpdateConflator(MySubscriptionListener listener, long intervalMillis) {
+        _listener = listener;
+        _intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Accepts the arguments of an `onItemUpdate` event and either delivers them immediately or merges them with the pending update of the same item.
+     */
+    void offer(int itemPos, boolean isSnapshot, Map<String, Object> arguments) {
+        List<Map<String, Object>> ready = null;
+        synchronized (this) {
+            if (isSnapshot) {
+                // deliver the snapshot as it is, but not before the older updates
+                ready = takePending();
+                ready.add(arguments);
+            } else {
+                Map<String, Object> previous = _pending.get(itemPos);
+                _pending.put(itemPos, previous == null ? arguments : merge(previous, arguments));
+                long delay = _lastFlushTime + _intervalMillis - SystemClock.uptimeMillis();
+                if (delay <= 0) {
+                    ready = takePending();
+                } else if (!_flushScheduled) {
+                    _flushScheduled = true;
+                    _listener._plugin._loop.postDelayed(_flushTask, delay);
+                }
+            }
+            // NB the events are forwarded while holding the lock, otherwise a concurrent flush could reorder them
+            deliver(ready);
+        }
+    }
+
+    /**
+     * Delivers all the pending updates immediately.
+     */
+    synchronized void flush() {
+        deliver(takePending());
+    }
+
+    List<Map<String, Object>> takePending() {
+        List<Map<String, Object>> res = new ArrayList<>(_pending.values());
+        _pending.clear();
+        _lastFlushTime = SystemClock.uptimeMillis();
+        if (_flushScheduled) {
+            _flushScheduled = false;
+            _listener._plugin._loop.removeCallbacks(_flushTask);
+        }
+        return res;
+    }
+
+    void deliver(List<Map<String, Object>> events) {
+        if (events != null) {
+            for (Map<String, Object> arguments : events) {
+                _listener.invoke("onItemUpdate", arguments);
+            }
+        }
+    }
+
+    /**
+     * Merges the arguments of two consecutive `onItemUpdate` events of the same item.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> merge(Map<String, Object> older, Map<String, Object> newer) {
+        if (newer.containsKey("changedFields") && older.containsKey("changedFields")) {
+            mergeChanges(
+                    (Map<String, String>) older.get("changedFields"), (Map<String, String>) older.get("jsonFields"),
+                    (Map<String, String>) newer.get("changedFields"), (Map<String, String>) newer.get("jsonFields"),
+                    newer, "changedFields", "jsonFields");
+        }
+        mergeChanges(
+                (Map<Integer, String>) older.get("changedFieldsByPosition"), (Map<Integer, String>) older.get("jsonFieldsByPosition"),
+                (Map<Integer, String>) newer.get("changedFieldsByPosition"), (Map<Integer, String>) newer.get("jsonFieldsByPosition"),
+                newer, "changedFieldsByPosition", "jsonFieldsByPosition");
+        return newer;
+    }
+
+    static <K> void mergeChanges(
+            Map<K, String> olderChanged, Map<K, String> olderJson,
+            Map<K, String> newerChanged, Map<K, String> newerJson,
+            Map<String, Object> target, String changedKey, String jsonKey)
+    {
+        Map<K, String> json = new HashMap<>();
+        for (Map.Entry<K, String> e : olderJson.entrySet()) {
+            if (!newerChanged.containsKey(e.getKey())) {
+                json.put(e.getKey(), e.getValue());
+            }
+        }
+        for (Map.Entry<K, String> e : newerJson.entrySet()) {
+            if (!olderChanged.containsKey(e.getKey())) {
+                json.put(e.getKey(), e.getValue());
+            }
+        }
+        Map<K, String> changed = new HashMap<>(olderChanged);
+        changed.putAll(newerChanged);
+        target.put(changedKey, changed);
+        target.put(jsonKey, json);
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import com.lightstreamer.client.ItemUpdate;
+
+import java.util.Arrays;
+
+/**
+ * A reusable `onItemUpdate` event, which {@link ListenerEventCodec} writes directly from the {@link ItemUpdate},
+ * in the same layout as the equivalent event map built by {@link MySubscriptionListener#putAllFields(ItemUpdate, java.util.Map)}
+ * or {@link MySubscriptionListener#putChangedFields(ItemUpdate, java.util.Map, boolean)}.
+ * <p>
+ * The events are taken from the {@link Pool} of the listener by the thread of the SDK, posted to the main thread as they are
+ * and given back to the pool as soon as the codec has written them, so the steady-state delivery of the updates
+ * doesn't allocate maps, boxed positions or closures.
+ * <p>
+ * The event is only used when the updates are not manipulated before crossing the channel
+ * (i.e. without conflation, event queue and row diffs) and the field names are known.
+ */
+class ItemUpdateEvent implements Runnable {
+    static final int METHOD = ListenerEventCodec.METHOD_TAGS.get("SubscriptionListener.onItemUpdate");
+    static final int ITEM_NAME = ListenerEventCodec.ARGUMENT_TAGS.get("itemName");
+    static final int ITEM_POS = ListenerEventCodec.ARGUMENT_TAGS.get("itemPos");
+    static final int IS_SNAPSHOT = ListenerEventCodec.ARGUMENT_TAGS.get("isSnapshot");
+    static final int CHANGED_FIELDS = ListenerEventCodec.ARGUMENT_TAGS.get("changedFields");
+    static final int FIELDS = ListenerEventCodec.ARGUMENT_TAGS.get("fields");
+    static final int JSON_FIELDS = ListenerEventCodec.ARGUMENT_TAGS.get("jsonFields");
+    static final int CHANGED_FIELDS_BY_POSITION = ListenerEventCodec.ARGUMENT_TAGS.get("changedFieldsByPosition");
+    static final int FIELDS_BY_POSITION = ListenerEventCodec.ARGUMENT_TAGS.get("fieldsByPosition");
+    static final int JSON_FIELDS_BY_POSITION = ListenerEventCodec.ARGUMENT_TAGS.get("jsonFieldsByPosition");
+    static final int SUB_ID = ListenerEventCodec.ARGUMENT_TAGS.get("subId");
+
+    final MySubscriptionListener _listener;
+    ItemUpdate _update;
+    MySubscriptionListener.PayloadProfile _profile;
+    MySubscriptionListener.JsonPatchDelivery _jsonPatchDelivery;
+    String[] _fieldNames;
+    int _fieldCount;
+    /**
+     * The reception time of the update (see {@link UpdateLatencies}).
+     */
+    long _receivedNanos = UpdateLatencies.NOT_TIMED;
+    /**
+     * The sorted positions of the fields to be sent, or null if all the fields are sent (see {@link MySubscriptionListener#setFieldProjection}).
+     */
+    int[] _projection;
+    /**
+     * The JSON Patches of the update by position (index 0 is unused), computed when the event is acquired.
+     */
+    String[] _patches = new String[0];
+    /**
+     * Tells by position whether a changed field is sent only as a JSON Patch (see {@link JsonDocumentTracker}), computed when the event
+     * is acquired, i.e. by the thread of the SDK in the order of the other events (such as `onClearSnapshot`) that affect the tracker.
+     */
+    boolean[] _patchOnly = new boolean[0];
+
+    ItemUpdateEvent(MySubscriptionListener listener) {
+        _listener = listener;
+    }
+
+    /**
+     * Delivers the event. It is executed by the main thread.
+     */
+    @Override
+    public void run() {
+        _listener._plugin.deliverEvent(this);
+    }
+
+    /**
+     * Writes the event at the current position of the buffer of the codec and gives the event back to the pool.
+     */
+    void writeTo(ListenerEventCodec codec) {
+        ItemUpdate update = _update;
+        boolean allFields = _profile == MySubscriptionListener.PayloadProfile.FULL;
+        boolean byName = _profile != MySubscriptionListener.PayloadProfile.POSITIONAL_CHANGED_ONLY;
+        boolean patchesOnly = _jsonPatchDelivery == MySubscriptionListener.JsonPatchDelivery.PATCHES;
+
+        codec.ensureCapacity(4);
+        int lengthPos = codec._buffer.position();
+        codec._buffer.putInt(0); // placeholder for the length
+        codec.writeTag(METHOD, null);
+        codec.ensureCapacity(1);
+        codec._buffer.put((byte) (allFields ? (byName ? 10 : 7) : (byName ? 8 : 6)));
+        codec.writeTag(ITEM_NAME, null);
+        codec.writeData(update.getItemName());
+        codec.writeTag(ITEM_POS, null);
+        codec.ensureCapacity(5);
+        codec._buffer.put(ListenerEventCodec.INT);
+        codec._buffer.putInt(update.getItemPos());
+        codec.writeTag(IS_SNAPSHOT, null);
+        codec.ensureCapacity(1);
+        codec._buffer.put(update.isSnapshot() ? ListenerEventCodec.TRUE : ListenerEventCodec.FALSE);
+        if (byName) {
+            codec.writeTag(CHANGED_FIELDS, null);
+            writeFields(codec, update, true, true, patchesOnly);
+            if (allFields) {
+                codec.writeTag(FIELDS, null);
+                writeFields(codec, update, true, false, false);
+            }
+            codec.writeTag(JSON_FIELDS, null);
+            writePatches(codec, true);
+        }
+        codec.writeTag(CHANGED_FIELDS_BY_POSITION, null);
+        writeFields(codec, update, false, true, patchesOnly);
+        if (allFields) {
+            codec.writeTag(FIELDS_BY_POSITION, null);
+            writeFields(codec, update, false, false, false);
+        }
+        codec.writeTag(JSON_FIELDS_BY_POSITION, null);
+        writePatches(codec, false);
+        codec.writeTag(SUB_ID, null);
+        codec.writeData(_listener._subId);
+        codec._buffer.putInt(lengthPos, codec._buffer.position() - lengthPos - 4);
+
+        _update = null;
+        _listener._eventPool.release(this);
+    }
+
+    void lookUpPatches() {
+        ItemUpdate update = _update;
+        boolean allFields = _profile == MySubscriptionListener.PayloadProfile.FULL;
+        boolean patchesOnly = _jsonPatchDelivery == MySubscriptionListener.JsonPatchDelivery.PATCHES;
+        if (_patches.length <= _fieldCount) {
+            _patches = new String[_fieldCount + 1];
+            _patchOnly = new boolean[_fieldCount + 1];
+        }
+        if (_projection != null) {
+            Arrays.fill(_patches, null);
+        }
+        boolean lookUp = _jsonPatchDelivery != MySubscriptionListener.JsonPatchDelivery.DOCUMENTS;
+        for (int i = 0, n = positionCount(); i < n; i++) {
+            int pos = positionAt(i);
+            boolean changed = allFields || update.isValueChanged(pos);
+            _patches[pos] = lookUp && changed ? update.getValueAsJSONPatchIfAvailable(pos) : null;
+            // NB the decision is taken once, since the changed fields are written twice (by name and by position)
+            _patchOnly[pos] = patchesOnly && changed
+                    && _listener._jsonDocuments.patchOnly(update.getItemPos(), null, pos, _patches[pos] != null);
+        }
+    }
+
+    /**
+     * Returns the number of the fields to be sent; they are enumerated by {@link #positionAt(int)}.
+     */
+    int positionCount() {
+        int[] projection = _projection;
+        if (projection == null) {
+            return _fieldCount;
+        }
+        // the projection is sorted, and the positions beyond the field count are ignored
+        int n = projection.length;
+        while (n > 0 && projection[n - 1] > _fieldCount) {
+            n--;
+        }
+        return n;
+    }
+
+    int positionAt(int i) {
+        return _projection == null ? i + 1 : _projection[i];
+    }
+
+    /**
+     * Writes the values of all the fields or of the changed fields (leaving out the ones carried only as JSON Patches if `patchesOnly`),
+     * keyed by name or by position.
+     */
+    void writeFields(ListenerEventCodec codec, ItemUpdate update, boolean byName, boolean changedOnly, boolean patchesOnly) {
+        int sizePos = beginMap(codec, byName);
+        int size = 0;
+        for (int i = 0, n = positionCount(); i < n; i++) {
+            int pos = positionAt(i);
+            if (changedOnly && (!update.isValueChanged(pos) || (patchesOnly && _patchOnly[pos]))) {
+                continue;
+            }
+            if (writeKey(codec, pos, byName)) {
+                codec.writeData(update.getValue(pos));
+                size++;
+            }
+        }
+        codec._buffer.putInt(sizePos, size);
+    }
+
+    void writePatches(ListenerEventCodec codec, boolean byName) {
+        int sizePos = beginMap(codec, byName);
+        int size = 0;
+        for (int i = 0, n = positionCount(); i < n; i++) {
+            int pos = positionAt(i);
+            if (_patches[pos] != null && writeKey(codec, pos, byName)) {
+                codec.writeData(_patches[pos]);
+                size++;
+            }
+        }
+        codec._buffer.putInt(sizePos, size);
+    }
+
+    static int beginMap(ListenerEventCodec codec, boolean byName) {
+        codec.ensureCapacity(5);
+        codec._buffer.put(byName ? ListenerEventCodec.STRING_MAP : ListenerEventCodec.INT_MAP);
+        int sizePos = codec._buffer.position();
+        codec._buffer.putInt(0); // placeholder for the size
+        return sizePos;
+    }
+
+    /**
+     * Writes the key of the field at the given position; returns false if the field has no name (see {@link MySubscriptionListener#buildFieldNames}).
+     */
+    boolean writeKey(ListenerEventCodec codec, int pos, boolean byName) {
+        if (byName) {
+            String name = pos - 1 < _fieldNames.length ? _fieldNames[pos - 1] : null;
+            if (name == null) {
+                return false;
+            }
+            codec.writeString(name);
+        } else {
+            codec.ensureCapacity(4);
+            codec._buffer.putInt(pos);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        ItemUpdate update = _update;
+        return update == null ? "ItemUpdateEvent{released}"
+                : "ItemUpdateEvent{subId=" + _listener._subId + ", itemPos=" + update.getItemPos() + ", isSnapshot=" + update.isSnapshot()
+                + ", profile=" + _profile + ", changedFieldsByPosition=" + update.getChangedFieldsByPosition() + "}";
+    }
+
+    /**
+     * A bounded stack of free events. When it is empty a new event is allocated, and when it is full a released event is discarded,
+     * so the pool only bounds the number of events kept for reuse, not the number of events in flight.
+     */
+    static class Pool {
+        static final int CAPACITY = 64;
+
+        final MySubscriptionListener _listener;
+        final ItemUpdateEvent[] _free = new ItemUpdateEvent[CAPACITY];
+        int _size;
+
+        Pool(MySubscriptionListener listener) {
+            _listener = listener;
+        }
+
+        /**
+         * Returns an event for the update. It is called by the thread of the SDK, which also looks up the JSON Patches,
+         * so that the decisions of the {@link JsonDocumentTracker} follow the order of the events.
+         */
+        ItemUpdateEvent acquire(ItemUpdate update, MySubscriptionListener.PayloadProfile profile,
+                MySubscriptionListener.JsonPatchDelivery jsonPatchDelivery, String[] fieldNames, int fieldCount, int[] projection)
+        {
+            ItemUpdateEvent event = null;
+            synchronized (this) {
+                if (_size > 0) {
+                    event = _free[--_size];
+                    _free[_size] = null;
+                }
+            }
+            if (event == null) {
+                event = new ItemUpdateEvent(_listener);
+            }
+            event._update = update;
+            event._profile = profile;
+            event._jsonPatchDelivery = jsonPatchDelivery;
+            event._fieldNames = fieldNames;
+            event._fieldCount = fieldCount;
+            event._projection = projection;
+            event.lookUpPatches();
+            return event;
+        }
+
+        synchronized void release(ItemUpdateEvent event) {
+            if (_size < CAPACITY) {
+                _free[_size++] = event;
+            }
+        }
+    }
+}
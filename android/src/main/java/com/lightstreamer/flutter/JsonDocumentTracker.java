@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps track of the fields of which the Flutter component holds the current value, so that, with the PATCHES JSON Patch delivery
+ * (see {@link MySubscriptionListener.JsonPatchDelivery}), a JSON Patch is sent in place of a document only if the Flutter component
+ * has a document to apply it to. Otherwise (e.g. on the first update of an item when no snapshot is requested) the document is sent.
+ * <p>
+ * The values are tracked by item or, with the COMMAND_ROW_DIFFS payload profile, by row (i.e. by key of an item),
+ * mirroring how the Flutter component keeps them. The methods can be called by any thread, but they must be called
+ * in the same order in which the events are delivered.
+ */
+class JsonDocumentTracker {
+    /**
+     * Maps an item position to the positions of the fields held by the Flutter component.
+     */
+    BitSet[] _items = new BitSet[0];
+    /**
+     * Maps an item position and a key to the positions of the fields held by the Flutter component.
+     */
+    final Map<Integer, Map<String, BitSet>> _rows = new HashMap<>();
+
+    /**
+     * Tells whether a changed field can be sent only as a JSON Patch, i.e. whether it has a patch and the Flutter component holds the
+     * previous value of the field. If not, the value is going to be sent, hence the field is then considered as held.
+     * The key is null unless the field belongs to a row of the COMMAND_ROW_DIFFS payload profile.
+     */
+    synchronized boolean patchOnly(int itemPos, @Nullable String key, int fieldPos, boolean hasPatch) {
+        BitSet held = held(itemPos, key);
+        if (hasPatch && held.get(fieldPos)) {
+            return true;
+        }
+        held.set(fieldPos);
+        return false;
+    }
+
+    BitSet held(int itemPos, @Nullable String key) {
+        if (key != null) {
+            return _rows.computeIfAbsent(itemPos, pos -> new HashMap<>()).computeIfAbsent(key, k -> new BitSet());
+        }
+        if (itemPos >= _items.length) {
+            _items = Arrays.copyOf(_items, Math.max(itemPos + 1, _items.length * 2));
+        }
+        BitSet held = _items[itemPos];
+        if (held == null) {
+            held = _items[itemPos] = new BitSet();
+        }
+        return held;
+    }
+
+    /**
+     * Forgets the values of a row, since the Flutter component discards them when the row is added or deleted.
+     */
+    synchronized void removeRow(int itemPos, String key) {
+        Map<String, BitSet> rows = _rows.get(itemPos);
+        if (rows != null) {
+            rows.remove(key);
+        }
+    }
+
+    /**
+     * Forgets the values of an item (and of its rows), e.g. on `onClearSnapshot`.
+     */
+    synchronized void clear(int itemPos) {
+        if (itemPos < _items.length) {
+            _items[itemPos] = null;
+        }
+        _rows.remove(itemPos);
+    }
+
+    synchronized void clear() {
+        _items = new BitSet[0];
+        _rows.clear();
+    }
+}
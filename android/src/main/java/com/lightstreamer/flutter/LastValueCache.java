@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import androidx.annotation.Nullable;
+
+import com.lightstreamer.client.ItemUpdate;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the last values of the items of the Subscriptions that enable it (see `Subscription.setLastValueCaching`) across the restarts of the app,
+ * so that the values can be shown as soon as the Subscriptions are subscribed to, while waiting for the snapshots.
+ * <p>
+ * The values are kept in memory, keyed by item (see {@link MySubscriptionListener#setLastValueCaching}) and by field name,
+ * and the whole cache is written to a file at most every {@link #FLUSH_DELAY_MILLIS} milliseconds by a background thread,
+ * so the updates only pay for a few map insertions. The least recently used items are evicted beyond {@link #MAX_ITEMS}.
+ */
+class LastValueCache {
+    static final String FILE_NAME = "com.lightstreamer.flutter.last_values";
+    static final long FLUSH_DELAY_MILLIS = 1000;
+    static final int MAX_ITEMS = 1000;
+
+    final File _file;
+    final ScheduledExecutorService _executor = Executors.newSingleThreadScheduledExecutor();
+    /**
+     * Maps an item key to the values of the fields of the item by name.
+     * NB the map is ordered by access, so that the eldest entry is the least recently used one.
+     */
+    final LinkedHashMap<String, Map<String, String>> _items = new LinkedHashMap<String, Map<String, String>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, String>> eldest) {
+            return size() > MAX_ITEMS;
+        }
+    };
+    boolean _flushScheduled;
+
+    LastValueCache(File file) {
+        _file = file;
+        _executor.execute(this::load);
+    }
+
+    @SuppressWarnings("unchecked")
+    void load() {
+        Map<String, Map<String, String>> items = (Map<String, Map<String, String>>) MessageFiles.read(_file);
+        if (items != null) {
+            synchronized (this) {
+                for (Map.Entry<String, Map<String, String>> e : items.entrySet()) {
+                    // NB the values received in the meantime are newer
+                    _items.putIfAbsent(e.getKey(), new HashMap<>(e.getValue()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the task on the background thread once the content of the file has been loaded.
+     */
+    void whenLoaded(Runnable task) {
+        // NB the executor is single-threaded, so the task runs after the load
+        _executor.execute(task);
+    }
+
+    /**
+     * Returns a copy of the values of the item, or null if the item is not cached.
+     * NB the values loaded from the file are only visible after the load (see {@link #whenLoaded}).
+     */
+    @Nullable
+    Map<String, String> get(String itemKey) {
+        synchronized (this) {
+            Map<String, String> values = _items.get(itemKey);
+            return values == null ? null : new HashMap<>(values);
+        }
+    }
+
+    /**
+     * Stores the changed values of the update.
+     * - `fieldNames` the field names indexed by position (see {@link MySubscriptionListener#buildFieldNames})
+     */
+    void update(String itemKey, ItemUpdate update, String[] fieldNames) {
+        synchronized (this) {
+            Map<String, String> values = _items.get(itemKey);
+            if (values == null) {
+                values = new HashMap<>();
+                _items.put(itemKey, values);
+            }
+            for (int pos = 1; pos <= fieldNames.length; pos++) {
+                String name = fieldNames[pos - 1];
+                if (name != null && update.isValueChanged(pos)) {
+                    values.put(name, update.getValue(pos));
+                }
+            }
+            if (_flushScheduled) {
+                return;
+            }
+            _flushScheduled = true;
+        }
+        _executor.schedule(this::flush, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Discards the cached values and deletes the file (see `LightstreamerClient.reset`).
+     * NB the values are discarded on the background thread, so that the load cannot restore them.
+     */
+    void clear() {
+        _executor.execute(() -> {
+            synchronized (this) {
+                _items.clear();
+            }
+            _file.delete();
+        });
+    }
+
+    void flush() {
+        Map<String, Map<String, String>> items = new HashMap<>();
+        synchronized (this) {
+            _flushScheduled = false;
+            for (Map.Entry<String, Map<String, String>> e : _items.entrySet()) {
+                items.put(e.getKey(), new HashMap<>(e.getValue()));
+            }
+        }
+        if (items.isEmpty()) {
+            _file.delete();
+        } else {
+            MessageFiles.write(_file, items);
+        }
+    }
+}
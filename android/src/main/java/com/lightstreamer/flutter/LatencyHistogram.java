@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies with fixed buckets, into which any thread can record without locking.
+ * <p>
+ * The latencies are recorded in microseconds. The values below 16 have a bucket each, while every greater power of 2 is split
+ * into 8 buckets, so a value is known within 12.5%; the values above about 67 seconds share the last bucket.
+ * Recording a value costs a single atomic increment.
+ */
+class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int MAX_EXPONENT = 26;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+
+    void record(long nanos) {
+        _counts.incrementAndGet(bucketOf(Math.max(0, nanos) / 1000));
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < 2 * SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowerBoundOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * The greatest value of the bucket (or Long.MAX_VALUE for the last bucket).
+     */
+    static long upperBoundOf(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lowerBoundOf(bucket + 1) - 1;
+    }
+
+    /**
+     * Returns the number of the recorded values and their 50th, 99th and 99.9th percentiles and maximum (expressed in microseconds),
+     * each approximated by the greatest value of its bucket.
+     * When `reset` is true, the values are removed from the histogram.
+     * NB the values recorded concurrently may or may not be included, but are never lost.
+     */
+    Map<String, Object> toMap(boolean reset) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        int maxBucket = -1;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = reset ? _counts.getAndSet(i, 0) : _counts.get(i);
+            if (counts[i] > 0) {
+                total += counts[i];
+                maxBucket = i;
+            }
+        }
+        Map<String, Object> map = new HashMap<>();
+        map.put("count", total);
+        map.put("p50", percentile(counts, total, 0.5));
+        map.put("p99", percentile(counts, total, 0.99));
+        map.put("p999", percentile(counts, total, 0.999));
+        map.put("max", maxBucket < 0 ? 0L : upperBoundOf(maxBucket));
+        return map;
+    }
+
+    static long percentile(long[] counts, long total, double p) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(counts.length - 1);
+    }
+}
@@ -16,6 +16,8 @@
 package com.lightstreamer.flutter;
 
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
 import android.os.Handler;
 import android.os.Looper;
 
@@ -38,19 +40,27 @@ import com.lightstreamer.client.mpn.MpnSubscription;
 import com.lightstreamer.client.mpn.MpnSubscriptionListener;
 import com.lightstreamer.log.ConsoleLoggerProvider;
 
+import java.io.File;
 import java.net.HttpCookie;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
+import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
+import io.flutter.plugin.common.StandardMethodCodec;
 
 /**
  * A plugin manages the communication between the Flutter component (the Flutter app targeting Android using the Lightstreamer Flutter Client SDK)
@@ -62,25 +72,69 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
 
     static final com.lightstreamer.log.Logger channelLogger = com.lightstreamer.log.LogManager.getLogger("lightstreamer.flutter");
     static final AtomicInteger _mpnSubIdGenerator = new AtomicInteger();
+    /**
+     * The name of the application meta-data that, when true, makes the method calls of the Flutter component run
+     * on a background task queue instead of the main thread.
+     * NB the handlers don't depend on the thread they run on: the shared state is kept in concurrent registries
+     * and the listener events are always delivered on the main thread.
+     */
+    static final String METHOD_CHANNEL_IN_BACKGROUND = "com.lightstreamer.flutter.METHOD_CHANNEL_IN_BACKGROUND";
+    /**
+     * The name of the application meta-data that, when true, makes the plugin persist the configuration of the last client
+     * that connected and replay it as soon as the plugin is attached to the engine (see {@link WarmStart}).
+     */
+    static final String WARM_START = "com.lightstreamer.flutter.WARM_START";
 
     /**
      * Maps a clientId (i.e. the `id` field of a MethodCall object) to a LightstreamerClient.
      * The mapping is created when any LightstreamerClient method is called by the Flutter component.
      * It is removed when the map is cleaned.
      */
-    final Map<String, LightstreamerClient> _clientMap = new HashMap<>();
+    final HandleRegistry<LightstreamerClient> _clientMap = new HandleRegistry<>("LightstreamerClient");
     /**
      * Maps a subId (i.e. the `subId` field of a MethodCall object) to a Subscription.
      * The mapping is created when `LightstreamerClient.subscribe` is called.
      * It is removed when the map is cleaned.
      */
-    final Map<String, Subscription> _subMap = new HashMap<>();
+    final HandleRegistry<MySubscription> _subMap = new HandleRegistry<>("Subscription");
+    /**
+     * Maps a clientId to the subIds of the Subscriptions the client is subscribed to.
+     * A subId is added when `LightstreamerClient.subscribe` is called and removed when either `LightstreamerClient.unsubscribe`
+     * is called or the map is cleaned.
+     */
+    final Map<String, Set<String>> _clientSubIds = new ConcurrentHashMap<>();
+    /**
+     * Keeps track of the clients shared by several clientIds (see `LightstreamerClient.setSessionSharing`).
+     */
+    final SessionPool _sessionPool = new SessionPool(this);
+    /**
+     * Not null when the warm start is enabled through the {@link #WARM_START} meta-data.
+     */
+    @Nullable
+    volatile WarmStart _warmStart;
+    /**
+     * The last values of the items of the Subscriptions that cache them (see `Subscription.setLastValueCaching`).
+     * It is created on the first use (see {@link #lastValueCache()}), or when the app starts if a previous run has cached some values.
+     */
+    @Nullable
+    volatile LastValueCache _lastValueCache;
+    /**
+     * The journal of the messages of the clients that enable it (see `LightstreamerClient.setMessageJournaling`).
+     * It is created on the first use (see {@link #messageJournal()}).
+     */
+    @Nullable
+    MessageJournal _messageJournal;
+    /**
+     * Maps the clientId of a client that enables the message journal to the scope of its messages (i.e. the Server address
+     * and the Adapter Set of its last `LightstreamerClient.connect` call).
+     */
+    final Map<String, String> _journalScopes = new ConcurrentHashMap<>();
     /**
      * Maps an mpnDevId (i.e. the `mpnDevId` field of a MethodCall object) to an MpnDevice.
      * The mapping is created when `LightstreamerClient.registerForMpn` is called.
      * It is removed when the map is cleaned.
      */
-    final Map<String, MpnDevice> _mpnDeviceMap = new HashMap<>();
+    final HandleRegistry<MpnDevice> _mpnDeviceMap = new HandleRegistry<>("MpnDevice");
     /**
      * Maps an mpnSubId (i.e. the `mpnSubId` field of a MethodCall object) to an MpnSubscription.
      * The mapping is created either when
@@ -89,7 +143,37 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
      *    is returned by `LightstreamerClient.getMpnSubscriptions` or `LightstreamerClient.findMpnSubscription`.
      * The mapping is removed when the map is cleaned.
      */
-    final Map<String, MyMpnSubscription> _mpnSubMap = new HashMap<>();
+    final HandleRegistry<MyMpnSubscription> _mpnSubMap = new HandleRegistry<>("MpnSubscription");
+    /**
+     * Indexes the MpnSubscriptions of `_mpnSubMap` by client and server subscriptionId.
+     */
+    final MpnSubscriptionIndex _mpnSubIndex = new MpnSubscriptionIndex(this);
+    /**
+     * Maps the full name of a method called by the Flutter component (e.g. `LightstreamerClient.connect`) to its handler.
+     * The table is filled when the plugin is attached to the engine (see {@link #registerMethodHandlers()}),
+     * so a call is dispatched with a single lookup.
+     */
+    final Map<String, MethodHandler> _methodHandlers = new ConcurrentHashMap<>();
+    /**
+     * Maps the full name of a method called by the Flutter component to the number of its calls (see `LightstreamerClient.getMetrics`).
+     * The counters are created along with the handlers.
+     */
+    final Map<String, LongAdder> _methodCalls = new ConcurrentHashMap<>();
+    /**
+     * Maps a clientId to the metrics of the client (see `LightstreamerClient.getMetrics`).
+     * The mapping is created along with the client and removed when the client is cleaned.
+     */
+    final Map<String, ClientMetrics> _clientMetrics = new ConcurrentHashMap<>();
+    /**
+     * Counts all the events sent to the Flutter component, including the ones of the MPN devices and subscriptions
+     * and of the message listeners, which are not reported separately.
+     */
+    final EventCounters _eventCounters = new EventCounters();
+    /**
+     * Becomes true when the first subscription starts tracking the latencies of its updates (see {@link UpdateLatencies}),
+     * so that the events are only inspected for their timestamps from then on.
+     */
+    volatile boolean _latencyTracking;
     /**
      * The channel through which the procedure calls requested by the Flutter component are received.
      */
@@ -99,6 +183,11 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
      */
     EventChannel _listenerChannel;
     volatile EventChannel.EventSink _listenerChannelSink;
+    /**
+     * When not null, the listener events are delivered to the Flutter component in batches
+     * (see `LightstreamerClient.setEventBatching`).
+     */
+    volatile EventBatcher _eventBatcher;
 
     Context _appContext;
     final Handler _loop = new Handler(Looper.getMainLooper());
@@ -106,9 +195,33 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding binding) {
         _appContext = binding.getApplicationContext();
-        _methodChannel = new MethodChannel(binding.getBinaryMessenger(), "com.lightstreamer.flutter/methods");
+        registerMethodHandlers();
+        if (getMetaDataFlag(_appContext, WARM_START)) {
+            // NB the client is started before the channels are set up, so that the session is opened while the Flutter engine is booting
+            WarmStart warmStart = new WarmStart(this, new File(_appContext.getFilesDir(), WarmStart.FILE_NAME));
+            _warmStart = warmStart;
+            warmStart.start();
+        }
+        if (new File(_appContext.getFilesDir(), LastValueCache.FILE_NAME).exists()) {
+            // a previous run has cached some values: load them while the Flutter engine is booting
+            lastValueCache();
+        }
+        if (new File(_appContext.getFilesDir(), MessageJournal.FILE_NAME).exists()) {
+            messageJournal();
+        }
+        BinaryMessenger messenger = binding.getBinaryMessenger();
+        if (getMetaDataFlag(_appContext, METHOD_CHANNEL_IN_BACKGROUND)) {
+            if (channelLogger.isDebugEnabled()) {
+                channelLogger.debug("Setting up channel com.lightstreamer.flutter/methods on a background task queue", null);
+            }
+            // NB the task queue is serial, so the calls are still handled in the order they are issued
+            BinaryMessenger.TaskQueue taskQueue = messenger.makeBackgroundTaskQueue();
+            _methodChannel = new MethodChannel(messenger, "com.lightstreamer.flutter/methods", StandardMethodCodec.INSTANCE, taskQueue);
+        } else {
+            _methodChannel = new MethodChannel(messenger, "com.lightstreamer.flutter/methods");
+        }
         _methodChannel.setMethodCallHandler(this);
-        _listenerChannel = new EventChannel(binding.getBinaryMessenger(), "com.lightstreamer.flutter/listeners");
+        _listenerChannel = new EventChannel(binding.getBinaryMessenger(), "com.lightstreamer.flutter/listeners", new ListenerEventCodec());
         _listenerChannel.setStreamHandler(new EventChannel.StreamHandler() {
             @Override
             public void onListen(Object arguments, EventChannel.EventSink events) {
@@ -128,6 +241,18 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
         });
     }
 
+    static boolean getMetaDataFlag(Context context, String name) {
+        try {
+            ApplicationInfo info = context.getPackageManager().getApplicationInfo(context.getPackageName(), PackageManager.GET_META_DATA);
+            return info.metaData != null && info.metaData.getBoolean(name, false);
+        } catch (PackageManager.NameNotFoundException e) {
+            if (channelLogger.isWarnEnabled()) {
+                channelLogger.warn("Cannot read the application meta-data", e);
+            }
+            return false;
+        }
+    }
+
     @Override
     public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
         _methodChannel.setMethodCallHandler(null);
@@ -139,36 +264,14 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
             channelLogger.debug("Accepting " + call.method + " " + call.arguments(), null);
         }
         try {
-            String[] parts = call.method.split("\\.");
-            String className = parts[0];
-            String methodName = parts[1];
-            switch (className) {
-                case "LightstreamerClient":
-                    Client_handle(methodName, call, result);
-                    break;
-                case "ConnectionDetails":
-                    ConnectionDetails_handle(methodName, call, result);
-                    break;
-                case "ConnectionOptions":
-                    ConnectionOptions_handle(methodName, call, result);
-                    break;
-                case "Subscription":
-                    Subscription_handle(methodName, call, result);
-                    break;
-                case "MpnDevice":
-                    MpnDevice_handle(methodName, call, result);
-                    break;
-                case "MpnSubscription":
-                    MpnSubscription_handle(methodName, call, result);
-                    break;
-                case "FirebaseMpnBuilder":
-                    FirebaseMpnBuilder_handle(methodName, call, result);
-                    break;
-                default:
-                    if (channelLogger.isErrorEnabled()) {
-                        channelLogger.error("Unknown method " + call.method, null);
-                    }
-                    result.notImplemented();
+            MethodHandler handler = _methodHandlers.get(call.method);
+            if (handler != null) {
+                handler.handle(call, result);
+            } else {
+                if (channelLogger.isErrorEnabled()) {
+                    channelLogger.error("Unknown method " + call.method, null);
+                }
+                result.notImplemented();
             }
         } catch (Exception e) {
             if (channelLogger.isErrorEnabled()) {
@@ -178,188 +281,69 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
         }
     }
 
-    void Client_handle(String method, MethodCall call, MethodChannel.Result result) {
-        switch (method) {
-            case "connect":
-                Client_connect(call, result);
-                break;
-            case "disconnect":
-                Client_disconnect(call, result);
-                break;
-            case "getStatus":
-                Client_getStatus(call, result);
-                break;
-            case "subscribe":
-                Client_subscribe(call, result);
-                break;
-            case "unsubscribe":
-                Client_unsubscribe(call, result);
-                break;
-            case "getSubscriptions":
-                Client_getSubscriptions(call, result);
-                break;
-            case "sendMessage":
-                Client_sendMessage(call, result);
-                break;
-            case "registerForMpn":
-                Client_registerForMpn(call, result);
-                break;
-            case "subscribeMpn":
-                Client_subscribeMpn(call, result);
-                break;
-            case "unsubscribeMpn":
-                Client_unsubscribeMpn(call, result);
-                break;
-            case "unsubscribeMpnSubscriptions":
-                Client_unsubscribeMpnSubscriptions(call, result);
-                break;
-            case "getMpnSubscriptions":
-                Client_getMpnSubscriptions(call, result);
-                break;
-            case "findMpnSubscription":
-                Client_findMpnSubscription(call, result);
-                break;
-            case "setLoggerProvider":
-                Client_setLoggerProvider(call, result);
-                break;
-            case "addCookies":
-                Client_addCookies(call, result);
-                break;
-            case "getCookies":
-                Client_getCookies(call, result);
-                break;
-            case "cleanResources":
-                Client_cleanResources(call, result);
-                break;
-            case "reset":
-                Client_reset(call, result);
-                break;
-            default:
-                if (channelLogger.isErrorEnabled()) {
-                    channelLogger.error("Unknown method " + call.method, null);
-                }
-                result.notImplemented();
-        }
-    }
-
-    void ConnectionDetails_handle(String method, MethodCall call, MethodChannel.Result result) {
-        switch (method) {
-            case "setServerAddress":
-                Details_setServerAddress(call, result);
-                break;
-            default:
-                if (channelLogger.isErrorEnabled()) {
-                    channelLogger.error("Unknown method " + call.method, null);
-                }
-                result.notImplemented();
-        }
-    }
-
-    void ConnectionOptions_handle(String method, MethodCall call, MethodChannel.Result result) {
-        switch (method) {
-            case "setForcedTransport":
-                ConnectionOptions_setForcedTransport(call, result);
-                break;
-            case "setRequestedMaxBandwidth":
-                ConnectionOptions_setRequestedMaxBandwidth(call, result);
-                break;
-            case "setReverseHeartbeatInterval":
-                ConnectionOptions_setReverseHeartbeatInterval(call, result);
-                break;
-            default:
-                if (channelLogger.isErrorEnabled()) {
-                    channelLogger.error("Unknown method " + call.method, null);
-                }
-                result.notImplemented();
-        }
-    }
-
-    void Subscription_handle(String method, MethodCall call, MethodChannel.Result result) {
-        switch (method) {
-            case "getCommandPosition":
-                Subscription_getCommandPosition(call, result);
-                break;
-            case "getKeyPosition":
-                Subscription_getKeyPosition(call, result);
-                break;
-            case "setRequestedMaxFrequency":
-                Subscription_setRequestedMaxFrequency(call, result);
-                break;
-            case "isActive":
-                Subscription_isActive(call, result);
-                break;
-            case "isSubscribed":
-                Subscription_isSubscribed(call, result);
-                break;
-            case "getValueByItemNameAndFieldName":
-                Subscription_getValueByItemNameAndFieldName(call, result);
-                break;
-            case "getValueByItemNameAndFieldPos":
-                Subscription_getValueByItemNameAndFieldPos(call, result);
-                break;
-            case "getValueByItemPosAndFieldName":
-                Subscription_getValueByItemPosAndFieldName(call, result);
-                break;
-            case "getValueByItemPosAndFieldPos":
-                Subscription_getValueByItemPosAndFieldPos(call, result);
-                break;
-            case "getCommandValueByItemNameAndFieldName":
-                Subscription_getCommandValueByItemNameAndFieldName(call, result);
-                break;
-            case "getCommandValueByItemNameAndFieldPos":
-                Subscription_getCommandValueByItemNameAndFieldPos(call, result);
-                break;
-            case "getCommandValueByItemPosAndFieldName":
-                Subscription_getCommandValueByItemPosAndFieldName(call, result);
-                break;
-            case "getCommandValueByItemPosAndFieldPos":
-                Subscription_getCommandValueByItemPosAndFieldPos(call, result);
-                break;
-            default:
-                if (channelLogger.isErrorEnabled()) {
-                    channelLogger.error("Unknown method " + call.method, null);
-                }
-                result.notImplemented();
-        }
-    }
-
-    void MpnDevice_handle(String method, MethodCall call, MethodChannel.Result result) {
-        switch (method) {
-            default:
-                if (channelLogger.isErrorEnabled()) {
-                    channelLogger.error("Unknown method " + call.method, null);
-                }
-                result.notImplemented();
-        }
-    }
-
-    void MpnSubscription_handle(String method, MethodCall call, MethodChannel.Result result) {
-        switch (method) {
-            case "setTriggerExpression":
-                MpnSubscription_setTriggerExpression(call, result);
-                break;
-            case "setNotificationFormat":
-                MpnSubscription_setNotificationFormat(call, result);
-                break;
-            default:
-                if (channelLogger.isErrorEnabled()) {
-                    channelLogger.error("Unknown method " + call.method, null);
-                }
-                result.notImplemented();
-        }
+    /**
+     * Registers the handlers of the methods that can be called by the Flutter component.
+     */
+    void registerMethodHandlers() {
+        registerMethodHandler("LightstreamerClient.connect", this::Client_connect);
+        registerMethodHandler("LightstreamerClient.disconnect", this::Client_disconnect);
+        registerMethodHandler("LightstreamerClient.getStatus", this::Client_getStatus);
+        registerMethodHandler("LightstreamerClient.subscribe", this::Client_subscribe);
+        registerMethodHandler("LightstreamerClient.unsubscribe", this::Client_unsubscribe);
+        registerMethodHandler("LightstreamerClient.subscribeBatch", this::Client_subscribeBatch);
+        registerMethodHandler("LightstreamerClient.unsubscribeBatch", this::Client_unsubscribeBatch);
+        registerMethodHandler("LightstreamerClient.getSubscriptions", this::Client_getSubscriptions);
+        registerMethodHandler("LightstreamerClient.sendMessage", this::Client_sendMessage);
+        registerMethodHandler("LightstreamerClient.sendMessages", this::Client_sendMessages);
+        registerMethodHandler("LightstreamerClient.registerForMpn", this::Client_registerForMpn);
+        registerMethodHandler("LightstreamerClient.subscribeMpn", this::Client_subscribeMpn);
+        registerMethodHandler("LightstreamerClient.unsubscribeMpn", this::Client_unsubscribeMpn);
+        registerMethodHandler("LightstreamerClient.unsubscribeMpnSubscriptions", this::Client_unsubscribeMpnSubscriptions);
+        registerMethodHandler("LightstreamerClient.getMpnSubscriptions", this::Client_getMpnSubscriptions);
+        registerMethodHandler("LightstreamerClient.findMpnSubscription", this::Client_findMpnSubscription);
+        registerMethodHandler("LightstreamerClient.setLoggerProvider", this::Client_setLoggerProvider);
+        registerMethodHandler("LightstreamerClient.setEventBatching", this::Client_setEventBatching);
+        registerMethodHandler("LightstreamerClient.addCookies", this::Client_addCookies);
+        registerMethodHandler("LightstreamerClient.getCookies", this::Client_getCookies);
+        registerMethodHandler("LightstreamerClient.cleanResources", this::Client_cleanResources);
+        registerMethodHandler("LightstreamerClient.reset", this::Client_reset);
+        registerMethodHandler("LightstreamerClient.getMetrics", this::Client_getMetrics);
+        registerMethodHandler("LightstreamerClient.setMetricsPushInterval", this::Client_setMetricsPushInterval);
+        registerMethodHandler("ConnectionDetails.setServerAddress", this::Details_setServerAddress);
+        registerMethodHandler("ConnectionOptions.setForcedTransport", this::ConnectionOptions_setForcedTransport);
+        registerMethodHandler("ConnectionOptions.setRequestedMaxBandwidth", this::ConnectionOptions_setRequestedMaxBandwidth);
+        registerMethodHandler("ConnectionOptions.setReverseHeartbeatInterval", this::ConnectionOptions_setReverseHeartbeatInterval);
+        registerMethodHandler("Subscription.getCommandPosition", this::Subscription_getCommandPosition);
+        registerMethodHandler("Subscription.getKeyPosition", this::Subscription_getKeyPosition);
+        registerMethodHandler("Subscription.setRequestedMaxFrequency", this::Subscription_setRequestedMaxFrequency);
+        registerMethodHandler("Subscription.isActive", this::Subscription_isActive);
+        registerMethodHandler("Subscription.isSubscribed", this::Subscription_isSubscribed);
+        registerMethodHandler("Subscription.getValueByItemNameAndFieldName", this::Subscription_getValueByItemNameAndFieldName);
+        registerMethodHandler("Subscription.getValueByItemNameAndFieldPos", this::Subscription_getValueByItemNameAndFieldPos);
+        registerMethodHandler("Subscription.getValueByItemPosAndFieldName", this::Subscription_getValueByItemPosAndFieldName);
+        registerMethodHandler("Subscription.getValueByItemPosAndFieldPos", this::Subscription_getValueByItemPosAndFieldPos);
+        registerMethodHandler("Subscription.getCommandValueByItemNameAndFieldName", this::Subscription_getCommandValueByItemNameAndFieldName);
+        registerMethodHandler("Subscription.getCommandValueByItemNameAndFieldPos", this::Subscription_getCommandValueByItemNameAndFieldPos);
+        registerMethodHandler("Subscription.getCommandValueByItemPosAndFieldName", this::Subscription_getCommandValueByItemPosAndFieldName);
+        registerMethodHandler("Subscription.getCommandValueByItemPosAndFieldPos", this::Subscription_getCommandValueByItemPosAndFieldPos);
+        registerMethodHandler("Subscription.getValues", this::Subscription_getValues);
+        registerMethodHandler("Subscription.getCommandRows", this::Subscription_getCommandRows);
+        registerMethodHandler("Subscription.getUpdateLatencies", this::Subscription_getUpdateLatencies);
+        registerMethodHandler("MpnSubscription.setTriggerExpression", this::MpnSubscription_setTriggerExpression);
+        registerMethodHandler("MpnSubscription.setNotificationFormat", this::MpnSubscription_setNotificationFormat);
+        registerMethodHandler("FirebaseMpnBuilder.build", this::FirebaseMpnBuilder_build);
     }
 
-    void FirebaseMpnBuilder_handle(String method, MethodCall call, MethodChannel.Result result) {
-        switch (method) {
-            case "build":
-                FirebaseMpnBuilder_build(call, result);
-                break;
-            default:
-                if (channelLogger.isErrorEnabled()) {
-                    channelLogger.error("Unknown method " + call.method, null);
-                }
-                result.notImplemented();
-        }
+    /**
+     * Maps the full name of a method (e.g. `LightstreamerClient.connect`) to its handler.
+     * If the method already has a handler, it is replaced.
+     */
+    void registerMethodHandler(String method, MethodHandler handler) {
+        LongAdder calls = _methodCalls.computeIfAbsent(method, m -> new LongAdder());
+        _methodHandlers.put(method, (call, result) -> {
+            calls.increment();
+            handler.handle(call, result);
+        });
     }
 
     void Client_setLoggerProvider(MethodCall call, MethodChannel.Result result) {
@@ -368,6 +352,18 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
         result.success(null);
     }
 
+    void Client_setEventBatching(MethodCall call, MethodChannel.Result result) {
+        int maxSize = call.argument("maxSize");
+        int maxDelay = call.argument("maxDelay");
+        EventBatcher oldBatcher = _eventBatcher;
+        _eventBatcher = maxSize > 1 ? new EventBatcher(this, maxSize, Math.max(0, maxDelay)) : null;
+        if (oldBatcher != null) {
+            // NB the flush is posted (rather than executed) in order not to overtake the batches already posted
+            _loop.post(oldBatcher::flush);
+        }
+        result.success(null);
+    }
+
     void Client_addCookies(MethodCall call, MethodChannel.Result result) {
         String uri = call.argument("uri");
         List<String> cookies = call.argument("cookies");
@@ -391,13 +387,23 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
         List<String> mpnSubIds = call.argument("mpnSubIds");
         int removedClientIds = 0;
         for (String id : clientIds) {
+            _sessionPool.leave(id);
             Object res = _clientMap.remove(id);
+            _clientSubIds.remove(id);
+            _journalScopes.remove(id);
+            ClientMetrics metrics = _clientMetrics.remove(id);
+            if (metrics != null) {
+                metrics.dispose();
+            }
             removedClientIds += res == null ? 0 : 1;
         }
         int removedSubIds = 0;
         for (String id : subIds) {
-            Object res = _subMap.remove(id);
-            removedSubIds += res == null ? 0 : 1;
+            MySubscription res = _subMap.remove(id);
+            if (res != null) {
+                removeClientSubId(res._clientId, id);
+                removedSubIds++;
+            }
         }
         int removedDevIds = 0;
         for (String id : mpnDevIds) {
@@ -406,8 +412,11 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
         }
         int removedMpnSubIds = 0;
         for (String id : mpnSubIds) {
-            Object res = _mpnSubMap.remove(id);
-            removedMpnSubIds += res == null ? 0 : 1;
+            MyMpnSubscription res = _mpnSubMap.remove(id);
+            if (res != null) {
+                _mpnSubIndex.remove(res);
+                removedMpnSubIds++;
+            }
         }
         if (channelLogger.isDebugEnabled()) {
             channelLogger.debug("Cleaned clients: " + removedClientIds + " subscriptions: " + removedSubIds + " devices: " + removedDevIds + " mpn subscriptions: " + removedMpnSubIds, null);
@@ -415,14 +424,49 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
         result.success(null);
     }
 
+    void Client_getMetrics(MethodCall call, MethodChannel.Result result) {
+        String clientId = call.argument("id");
+        // NB asking for the metrics must not create the client
+        ClientMetrics metrics = _clientMetrics.get(clientId);
+        result.success(metrics == null ? new ClientMetrics(clientId, this).toMap() : metrics.toMap());
+    }
+
+    void Client_setMetricsPushInterval(MethodCall call, MethodChannel.Result result) {
+        getClient(call);
+        String clientId = call.argument("id");
+        int interval = call.argument("interval");
+        ClientMetrics metrics = getClientMetrics(clientId);
+        _loop.post(() -> metrics.setPushInterval(interval));
+        result.success(null);
+    }
+
+    ClientMetrics getClientMetrics(String clientId) {
+        return _clientMetrics.computeIfAbsent(clientId, id -> new ClientMetrics(id, this));
+    }
+
     void Client_reset(MethodCall call, MethodChannel.Result result) {
         for (LightstreamerClient client : _clientMap.values()) {
             client.disconnect();
         }
         _clientMap.clear();
+        _sessionPool.clear();
         _subMap.clear();
+        _clientSubIds.clear();
+        for (ClientMetrics metrics : _clientMetrics.values()) {
+            metrics.dispose();
+        }
+        _clientMetrics.clear();
         _mpnDeviceMap.clear();
         _mpnSubMap.clear();
+        _mpnSubIndex.clear();
+        WarmStart warmStart = _warmStart;
+        if (warmStart != null) {
+            warmStart.reset();
+        }
+        LastValueCache lastValueCache = _lastValueCache;
+        if (lastValueCache != null) {
+            lastValueCache.clear();
+        }
         if (channelLogger.isDebugEnabled()) {
             channelLogger.debug("Clients reset", null);
         }
@@ -431,12 +475,43 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
 
     void Client_connect(MethodCall call, MethodChannel.Result result) {
         LightstreamerClient client = getClient(call);
+        String clientId = call.argument("id");
         Map<String, Object> details = call.argument("connectionDetails");
+        Map<String, Object> options = call.argument("connectionOptions");
+        Boolean sessionSharing = call.argument("sessionSharing");
+        Boolean messageJournaling = call.argument("messageJournaling");
+        WarmStart warmStart = _warmStart;
+        boolean adopted = false;
+        if (warmStart != null) {
+            warmStart.onConnect(clientId, details, options);
+            adopted = warmStart.adoptClient(clientId, client, details, options);
+        }
+        if (sessionSharing != null && sessionSharing) {
+            client = _sessionPool.join(clientId, client, details, options);
+        } else if (_sessionPool.leave(clientId)) {
+            client = getClient(call);
+        }
+        if (!adopted) {
+            // NB a client started by the warm start is already configured
+            configure(client, details, options);
+        }
+        if (messageJournaling != null && messageJournaling) {
+            String scope = MessageJournal.scopeOf(details);
+            _journalScopes.put(clientId, scope);
+            // NB the messages left by a previous run precede the ones sent in the new session
+            messageJournal().resend(client, scope);
+        } else {
+            _journalScopes.remove(clientId);
+        }
+        client.connect();
+        result.success(null);
+    }
+
+    void configure(LightstreamerClient client, Map<String, Object> details, Map<String, Object> options) {
         client.connectionDetails.setAdapterSet((String) details.get("adapterSet"));
         client.connectionDetails.setServerAddress((String) details.get("serverAddress"));
         client.connectionDetails.setUser((String) details.get("user"));
         client.connectionDetails.setPassword((String) details.get("password"));
-        Map<String, Object> options = call.argument("connectionOptions");
         client.connectionOptions.setContentLength((int) options.get("contentLength"));
         client.connectionOptions.setFirstRetryMaxDelay((int) options.get("firstRetryMaxDelay"));
         client.connectionOptions.setForcedTransport((String) options.get("forcedTransport"));
@@ -453,13 +528,23 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
         client.connectionOptions.setHttpExtraHeadersOnSessionCreationOnly((boolean) options.get("httpExtraHeadersOnSessionCreationOnly"));
         client.connectionOptions.setServerInstanceAddressIgnored((boolean) options.get("serverInstanceAddressIgnored"));
         client.connectionOptions.setSlowingEnabled((boolean) options.get("slowingEnabled"));
-        client.connect();
-        result.success(null);
     }
 
     void Client_disconnect(MethodCall call, MethodChannel.Result result) {
         LightstreamerClient client = getClient(call);
-        client.disconnect();
+        String clientId = call.argument("id");
+        // a shared session is only closed when its last clientId disconnects
+        if (!_sessionPool.leave(clientId)) {
+            if (_journalScopes.containsKey(clientId)) {
+                // NB the aborts caused by an explicit disconnection are reported rather than retried
+                messageJournal().onDisconnect(client);
+            }
+            client.disconnect();
+        }
+        WarmStart warmStart = _warmStart;
+        if (warmStart != null) {
+            warmStart.onDisconnect(clientId);
+        }
         result.success(null);
     }
 
@@ -471,8 +556,41 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
 
     void Client_subscribe(MethodCall call, MethodChannel.Result result) {
         LightstreamerClient client = getClient(call);
+        String clientId = call.argument("id");
         Map<String, Object> options = call.argument("subscription");
+        subscribe(client, clientId, options);
+        result.success(null);
+    }
+
+    /**
+     * Subscribes to the Subscriptions described by the list `subscriptions` and returns a list with an entry for each Subscription:
+     * the entry is null if the subscription has been accepted and it is the error message otherwise.
+     */
+    void Client_subscribeBatch(MethodCall call, MethodChannel.Result result) {
+        LightstreamerClient client = getClient(call);
+        String clientId = call.argument("id");
+        List<Map<String, Object>> subscriptions = call.argument("subscriptions");
+        List<String> res = new ArrayList<>(subscriptions.size());
+        for (Map<String, Object> options : subscriptions) {
+            try {
+                subscribe(client, clientId, options);
+                res.add(null);
+            } catch (Exception e) {
+                if (channelLogger.isErrorEnabled()) {
+                    channelLogger.error(e.getMessage(), e);
+                }
+                res.add(String.valueOf(e.getMessage()));
+            }
+        }
+        result.success(res);
+    }
+
+    void subscribe(LightstreamerClient client, String clientId, Map<String, Object> options) {
         String subId = (String) options.get("id");
+        WarmStart warmStart = _warmStart;
+        if (warmStart != null && warmStart.adoptSubscription(subId, client, clientId, options)) {
+            return;
+        }
         List<String> items = (List<String>) options.get("items");
         List<String> fields = (List<String>) options.get("fields");
         String group = (String) options.get("group");
@@ -485,12 +603,16 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
         String dataAdapter2 = (String) options.get("dataAdapter2");
         List<String> fields2 = (List<String>) options.get("fields2");
         String schema2 = (String) options.get("schema2");
-        Subscription sub = _subMap.get(subId);
-        if (sub == null) {
-            sub = new Subscription((String) options.get("mode"));
-            sub.addListener(new MySubscriptionListener(subId, sub, this));
-            _subMap.put(subId, sub);
-        }
+        Number conflationMaxFrequency = (Number) options.get("conflationMaxFrequency");
+        String payloadProfile = (String) options.get("payloadProfile");
+        String jsonPatchDelivery = (String) options.get("jsonPatchDelivery");
+        Number eventQueueMaxSize = (Number) options.get("eventQueueMaxSize");
+        String eventQueueOverflowPolicy = (String) options.get("eventQueueOverflowPolicy");
+        Boolean latencyTracking = (Boolean) options.get("latencyTracking");
+        List<Integer> fieldProjection = (List<Integer>) options.get("fieldProjection");
+        String lastValueCache = (String) options.get("lastValueCache");
+        MySubscription mySub = _subMap.getOrCreate(subId, id -> newSubscription(id, (String) options.get("mode")));
+        Subscription sub = mySub._sub;
         if (sub.isActive()) {
             throw new IllegalStateException("Cannot subscribe to an active Subscription");
         }
@@ -530,25 +652,127 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
         if (schema2 != null) {
             sub.setCommandSecondLevelFieldSchema(schema2);
         }
+        mySub._listener.setConflationMaxFrequency(conflationMaxFrequency == null ? 0 : conflationMaxFrequency.doubleValue());
+        mySub._listener.setPayloadProfile(payloadProfile);
+        mySub._listener.setEventQueue(eventQueueMaxSize == null ? 0 : eventQueueMaxSize.intValue(), eventQueueOverflowPolicy);
+        mySub._listener.setJsonPatchDelivery(jsonPatchDelivery);
+        mySub._listener.setLatencyTracking(latencyTracking != null && latencyTracking);
+        mySub._listener.setFieldProjection(fieldProjection);
+        mySub._listener.setLastValueCaching(lastValueCache);
+        // NB the events are held before subscribing, so that the real snapshot cannot overtake the cached values
+        mySub._listener.replayLastValues();
         client.subscribe(sub);
-        result.success(null);
+        if (mySub._clientId != null && !mySub._clientId.equals(clientId)) {
+            removeClientSubId(mySub._clientId, subId);
+        }
+        mySub._clientId = clientId;
+        mySub._options = options;
+        _clientSubIds.computeIfAbsent(clientId, id -> ConcurrentHashMap.newKeySet()).add(subId);
+        if (warmStart != null) {
+            warmStart.onSubscriptionsChanged(clientId);
+        }
+    }
+
+    /**
+     * Returns the cache of the last values of the items, creating it on the first use.
+     * NB it is called by the thread of the SDK for each update of the Subscriptions caching their values,
+     * hence the lock is only taken to create the cache.
+     */
+    LastValueCache lastValueCache() {
+        LastValueCache cache = _lastValueCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = _lastValueCache;
+                if (cache == null) {
+                    cache = _lastValueCache = new LastValueCache(new File(_appContext.getFilesDir(), LastValueCache.FILE_NAME));
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the journal of the messages, creating it on the first use.
+     */
+    synchronized MessageJournal messageJournal() {
+        if (_messageJournal == null) {
+            _messageJournal = new MessageJournal(new File(_appContext.getFilesDir(), MessageJournal.FILE_NAME));
+        }
+        return _messageJournal;
+    }
+
+    MySubscription newSubscription(String subId, String mode) {
+        Subscription sub = new Subscription(mode);
+        MySubscriptionListener listener = new MySubscriptionListener(subId, sub, this);
+        sub.addListener(listener);
+        return new MySubscription(subId, sub, listener);
     }
 
     void Client_unsubscribe(MethodCall call, MethodChannel.Result result) {
         LightstreamerClient client = getClient(call);
+        String clientId = call.argument("id");
         String subId = call.argument("subId");
-        Subscription sub = getSubscription(subId);
-        client.unsubscribe(sub);
+        unsubscribe(client, clientId, subId);
         result.success(null);
     }
 
+    /**
+     * Unsubscribes from the Subscriptions in the list `subIds` and returns a list with an entry for each Subscription:
+     * the entry is null if the unsubscription has been accepted and it is the error message otherwise.
+     */
+    void Client_unsubscribeBatch(MethodCall call, MethodChannel.Result result) {
+        LightstreamerClient client = getClient(call);
+        String clientId = call.argument("id");
+        List<String> subIds = call.argument("subIds");
+        List<String> res = new ArrayList<>(subIds.size());
+        for (String subId : subIds) {
+            try {
+                unsubscribe(client, clientId, subId);
+                res.add(null);
+            } catch (Exception e) {
+                if (channelLogger.isErrorEnabled()) {
+                    channelLogger.error(e.getMessage(), e);
+                }
+                res.add(String.valueOf(e.getMessage()));
+            }
+        }
+        result.success(res);
+    }
+
+    void unsubscribe(LightstreamerClient client, String clientId, String subId) {
+        MySubscription mySub = _subMap.require(subId);
+        client.unsubscribe(mySub._sub);
+        if (clientId.equals(mySub._clientId)) {
+            removeClientSubId(clientId, subId);
+        }
+        WarmStart warmStart = _warmStart;
+        if (warmStart != null) {
+            warmStart.onSubscriptionsChanged(clientId);
+        }
+    }
+
+    void removeClientSubId(@Nullable String clientId, String subId) {
+        if (clientId != null) {
+            Set<String> subIds = _clientSubIds.get(clientId);
+            if (subIds != null) {
+                subIds.remove(subId);
+            }
+        }
+    }
+
     void Client_getSubscriptions(MethodCall call, MethodChannel.Result result) {
         LightstreamerClient client = getClient(call);
-        List<Subscription> subs = client.getSubscriptions();
+        String clientId = call.argument("id");
+        Set<String> subIds = _clientSubIds.get(clientId);
         List<String> res = new ArrayList<>();
-        for (Map.Entry<String, Subscription> e : _subMap.entrySet()) {
-            if (subs.contains(e.getValue())) {
-                res.add(e.getKey());
+        if (subIds != null) {
+            // NB the SDK may have deactivated some of the Subscriptions (e.g. after an error), so the set is filtered against its list
+            Set<Subscription> active = new HashSet<>(client.getSubscriptions());
+            for (String subId : subIds) {
+                MySubscription mySub = _subMap.get(subId);
+                if (mySub != null && active.contains(mySub._sub)) {
+                    res.add(subId);
+                }
             }
         }
         result.success(res);
@@ -563,11 +787,43 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
         int delayTimeout = _delayTimeout == null ? -1 : _delayTimeout;
         Boolean _enqueueWhileDisconnected = call.argument("enqueueWhileDisconnected");
         boolean enqueueWhileDisconnected = _enqueueWhileDisconnected == null ? false : _enqueueWhileDisconnected;
+        String journalScope = call.argument("journal");
         ClientMessageListener listener = null;
         if (msgId != null) {
             listener = new MyClientMessageListener(msgId, this);
         }
-        client.sendMessage(message, sequence, delayTimeout, listener, enqueueWhileDisconnected);
+        if (journalScope != null && sequence != null && enqueueWhileDisconnected) {
+            messageJournal().send(client, journalScope, message, sequence, delayTimeout, listener);
+        } else {
+            client.sendMessage(message, sequence, delayTimeout, listener, enqueueWhileDisconnected);
+        }
+        result.success(null);
+    }
+
+    /**
+     * Sends the messages in the list `messages` with the same sequence and delay timeout.
+     * If `batchId` is not null, the outcomes are reported through `MessageBatchListener.onOutcomes` events (see {@link MessageBatch}).
+     */
+    void Client_sendMessages(MethodCall call, MethodChannel.Result result) {
+        LightstreamerClient client = getClient(call);
+        String batchId = call.argument("batchId");
+        List<String> messages = call.argument("messages");
+        String sequence = call.argument("sequence");
+        Integer _delayTimeout = call.argument("delayTimeout");
+        int delayTimeout = _delayTimeout == null ? -1 : _delayTimeout;
+        Boolean _enqueueWhileDisconnected = call.argument("enqueueWhileDisconnected");
+        boolean enqueueWhileDisconnected = _enqueueWhileDisconnected == null ? false : _enqueueWhileDisconnected;
+        String journalScope = call.argument("journal");
+        MessageBatch batch = batchId == null ? null : new MessageBatch(batchId, messages.size(), this);
+        boolean journaled = journalScope != null && sequence != null && enqueueWhileDisconnected;
+        for (int i = 0; i < messages.size(); i++) {
+            ClientMessageListener listener = batch == null ? null : batch.listener(i);
+            if (journaled) {
+                messageJournal().send(client, journalScope, messages.get(i), sequence, delayTimeout, listener);
+            } else {
+                client.sendMessage(messages.get(i), sequence, delayTimeout, listener, enqueueWhileDisconnected);
+            }
+        }
         result.success(null);
     }
 
@@ -598,8 +854,10 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
                 if (channelLogger.isDebugEnabled()) {
                     channelLogger.debug("MPN Device Token obtained", null);
                 }
-                // TODO synchronize access to `_mpnDeviceMap`?
-                if (_mpnDeviceMap.containsKey(mpnDevId)) {
+                String token = task.getResult();
+                MpnDevice device = new MpnDevice(_appContext, token);
+                // NB the check and the insertion must be atomic, since the registry is shared with the method calls
+                if (_mpnDeviceMap.putIfAbsent(mpnDevId, device) != null) {
                     String errMsg = "MpnDevice " + mpnDevId + " already exists";
                     if (channelLogger.isErrorEnabled()) {
                         channelLogger.error(errMsg, null);
@@ -607,10 +865,7 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
                     result.error("Lightstreamer Internal Error", errMsg, null);
                     return;
                 }
-                String token = task.getResult();
-                MpnDevice device = new MpnDevice(_appContext, token);
                 device.addListener(new MyMpnDeviceListener(mpnDevId, device, LightstreamerFlutterPlugin.this));
-                _mpnDeviceMap.put(mpnDevId, device);
                 client.registerForMpn(device);
 
                 result.success(null);
@@ -633,13 +888,12 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
         String trigger = (String) options.get("trigger");
         String format = (String) options.get("notificationFormat");
         boolean coalescing = (boolean) call.argument("coalescing");
-        MyMpnSubscription mySub = _mpnSubMap.get(mpnSubId);
-        if (mySub == null) {
-            MpnSubscription sub = new MpnSubscription(mode);
-            sub.addListener(new MyMpnSubscriptionListener(mpnSubId, sub, this));
-            mySub = new MyMpnSubscription(client, mpnSubId, sub);
-            _mpnSubMap.put(mpnSubId, mySub);
-        } else if (client != mySub._client) {
+        MyMpnSubscription mySub = _mpnSubMap.getOrCreate(mpnSubId, id -> {
+            MpnSubscription newSub = new MpnSubscription(mode);
+            newSub.addListener(new MyMpnSubscriptionListener(id, newSub, this));
+            return new MyMpnSubscription(client, id, newSub);
+        });
+        if (client != mySub._client) {
             // NB since a MyMpnSubscription keeps a reference to the client that subscribes to
             // the underlying MpnSubscription, the reference must be updated when the same MpnSubscription
             // is subscribed to by another client
@@ -677,6 +931,7 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
         if (format != null) {
             sub.setNotificationFormat(format);
         }
+        _mpnSubIndex.addPending(mySub);
         client.subscribe(sub, coalescing);
         result.success(null);
     }
@@ -716,14 +971,7 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
             String subscriptionId = sub.getSubscriptionId(); // can be null
             // 1. search a subscription known to the Flutter component (i.e. in `_mpnSubMap`) and owned by `client` having the same subscriptionId
             if (subscriptionId != null) { // defensive check, even if `subscriptionId` should not be null
-                String mpnSubId = null;
-                for (Map.Entry<String, MyMpnSubscription> e : _mpnSubMap.entrySet()) {
-                    MyMpnSubscription mySub = e.getValue();
-                    if (mySub._client == client && subscriptionId.equals(mySub._sub.getSubscriptionId())) {
-                        mpnSubId = e.getKey();
-                        break;
-                    }
-                }
+                String mpnSubId = _mpnSubIndex.find(client, subscriptionId);
                 if (mpnSubId != null) {
                     // 2.A. there is such a subscription: it means that `sub` is known to the Flutter component
                     knownSubs.add(mpnSubId);
@@ -735,6 +983,7 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
                     sub.addListener(new MyMpnSubscriptionListener(mpnSubId, sub, this));
                     MyMpnSubscription mySub = new MyMpnSubscription(client, mpnSubId, sub);
                     _mpnSubMap.put(mpnSubId, mySub);
+                    _mpnSubIndex.add(mySub);
                     // serialize `sub` in order to send it to the Flutter component
                     Map<String, Object> dto = mySub.toMap();
                     unknownSubs.add(dto);
@@ -759,14 +1008,7 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
         Map<String, Object> res = new HashMap<>();
         if (sub != null) {
             // 1. search a subscription known to the Flutter component (i.e. in `_mpnSubMap`) and owned by `client` having the same subscriptionId
-            String mpnSubId = null;
-            for (Map.Entry<String, MyMpnSubscription> e : _mpnSubMap.entrySet()) {
-                MyMpnSubscription mySub = e.getValue();
-                if (mySub._client == client && subscriptionId.equals(mySub._sub.getSubscriptionId())) {
-                    mpnSubId = e.getKey();
-                    break;
-                }
-            }
+            String mpnSubId = _mpnSubIndex.find(client, subscriptionId);
             if (mpnSubId != null) {
                 // 2.A. there is such a subscription: it means that `sub` is known to the Flutter component
                 res.put("result", mpnSubId);
@@ -778,6 +1020,7 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
                 sub.addListener(new MyMpnSubscriptionListener(mpnSubId, sub, this));
                 MyMpnSubscription mySub = new MyMpnSubscription(client, mpnSubId, sub);
                 _mpnSubMap.put(mpnSubId, mySub);
+                _mpnSubIndex.add(mySub);
                 // serialize `sub` in order to send it to the Flutter component
                 Map<String, Object> dto = mySub.toMap();
                 res.put("extra", dto);
@@ -852,15 +1095,7 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
     }
 
     Subscription getSubscription(String subId) {
-        Subscription sub = _subMap.get(subId);
-        if (sub == null) {
-            String errMsg = "Subscription " + subId + " doesn't exist";
-            if (channelLogger.isErrorEnabled()) {
-                channelLogger.error(errMsg, null);
-            }
-            throw new IllegalStateException(errMsg);
-        }
-        return sub;
+        return _subMap.require(subId)._sub;
     }
 
     void Subscription_getCommandPosition(MethodCall call, MethodChannel.Result result) {
@@ -975,57 +1210,203 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
         result.success(res);
     }
 
+    void Subscription_getValues(MethodCall call, MethodChannel.Result result) {
+        String subId = call.argument("subId");
+        MySubscription mySub = _subMap.require(subId);
+        Integer fromItem = call.argument("fromItem");
+        Integer toItem = call.argument("toItem");
+        Integer fromField = call.argument("fromField");
+        Integer toField = call.argument("toField");
+        Map<String, Object> res = mySub._listener._valueTable.getValues(fromItem, toItem, fromField, toField);
+        result.success(res);
+    }
+
+    void Subscription_getCommandRows(MethodCall call, MethodChannel.Result result) {
+        String subId = call.argument("subId");
+        MySubscriptionListener listener = _subMap.require(subId)._listener;
+        if (listener._rowTable == null || listener._payloadProfile != MySubscriptionListener.PayloadProfile.COMMAND_ROW_DIFFS) {
+            throw new IllegalStateException("Subscription " + subId + " doesn't use the COMMAND_ROW_DIFFS payload profile");
+        }
+        int itemPos = call.argument("itemPos");
+        Map<String, Object> res = listener._rowTable.getRows(itemPos, listener._valueTable._fieldCount);
+        result.success(res);
+    }
+
+    void Subscription_getUpdateLatencies(MethodCall call, MethodChannel.Result result) {
+        String subId = call.argument("subId");
+        UpdateLatencies latencies = _subMap.require(subId)._listener._latencies;
+        if (latencies == null) {
+            throw new IllegalStateException("Subscription " + subId + " doesn't track the latencies of its updates");
+        }
+        boolean reset = call.argument("reset");
+        result.success(latencies.toMap(reset));
+    }
+
     MpnSubscription getMpnSubscription(String mpnSubId) {
-        MyMpnSubscription mySub = _mpnSubMap.get(mpnSubId);
-        if (mySub == null) {
-            String errMsg = "MpnSubscription " + mpnSubId + " doesn't exist";
+        return _mpnSubMap.require(mpnSubId)._sub;
+    }
+
+    void MpnSubscription_setTriggerExpression(MethodCall call, MethodChannel.Result result) {
+        String mpnSubId = call.argument("mpnSubId");
+        MpnSubscription sub = getMpnSubscription(mpnSubId);
+        sub.setTriggerExpression(call.argument("trigger"));
+        result.success(null);
+    }
+
+    void MpnSubscription_setNotificationFormat(MethodCall call, MethodChannel.Result result) {
+        String mpnSubId = call.argument("mpnSubId");
+        MpnSubscription sub = getMpnSubscription(mpnSubId);
+        sub.setNotificationFormat(call.argument("notificationFormat"));
+        result.success(null);
+    }
+
+    LightstreamerClient getClient(MethodCall call) {
+        String id = call.argument("id");
+        return _clientMap.getOrCreate(id, this::newClient);
+    }
+
+    /**
+     * Creates a client, along with its listener, for the clientId. NB the client is not added to `_clientMap`.
+     */
+    LightstreamerClient newClient(String clientId) {
+        LightstreamerClient ls = new LightstreamerClient(null, null);
+        ls.addListener(new MyClientListener(clientId, ls, this, getClientMetrics(clientId)._counters));
+        return ls;
+    }
+
+    void invokeMethod(String method, Map<String, Object> arguments) {
+        _eventCounters._eventsPosted.increment();
+        invokeUncountedMethod(method, arguments);
+    }
+
+    /**
+     * Like {@link #invokeMethod(String, Map)}, but the event is left out of the event counters,
+     * as the `onMetrics` events are, so that the metrics don't count themselves (see {@link #isCounted(Object)}).
+     */
+    void invokeUncountedMethod(String method, Map<String, Object> arguments) {
+        if (channelLogger.isDebugEnabled()) {
+            channelLogger.debug("Invoking " + method + " " + arguments, null);
+        }
+        arguments.put("targetMethod", method);
+        EventBatcher batcher = _eventBatcher;
+        if (batcher != null) {
+            batcher.add(arguments);
+        } else {
+            _loop.post(() -> deliverEvent(arguments));
+        }
+    }
+
+    /**
+     * Like {@link #invokeMethod(String, Map)}, but for an event that is written directly by the codec.
+     * NB the event is posted as it is, so that no closure is allocated.
+     */
+    void invokeEvent(ItemUpdateEvent event) {
+        if (channelLogger.isDebugEnabled()) {
+            channelLogger.debug("Invoking SubscriptionListener.onItemUpdate " + event, null);
+        }
+        _eventCounters._eventsPosted.increment();
+        EventBatcher batcher = _eventBatcher;
+        if (batcher != null) {
+            batcher.add(event);
+        } else {
+            _loop.post(event);
+        }
+    }
+
+    /**
+     * Sends an event (or a List of events) to the Flutter component. It must be called by the main thread.
+     */
+    void deliverEvent(Object event) {
+        EventChannel.EventSink sink = _listenerChannelSink;
+        boolean timed = _latencyTracking;
+        long dispatchedNanos = timed ? System.nanoTime() : 0;
+        List<?> batch = event instanceof List ? (List<?>) event : null;
+        // NB the reception times are taken before the delivery, because the codec recycles the ItemUpdateEvent objects
+        // and the timestamps must not be written
+        long receivedNanos = UpdateLatencies.NOT_TIMED;
+        long[] batchReceivedNanos = null;
+        if (timed) {
+            if (batch != null) {
+                batchReceivedNanos = new long[batch.size()];
+                for (int i = 0; i < batch.size(); i++) {
+                    batchReceivedNanos[i] = takeReceivedNanos(batch.get(i));
+                }
+            } else {
+                receivedNanos = takeReceivedNanos(event);
+            }
+        }
+        if (sink != null) {
+            sink.success(event);
+        } else {
             if (channelLogger.isErrorEnabled()) {
-                channelLogger.error(errMsg, null);
+                channelLogger.error("Channel com.lightstreamer.flutter/listeners is not ready, cannot deliver event " + event, null);
             }
-            throw new IllegalStateException(errMsg);
         }
-        return mySub._sub;
-    }
-
-    void MpnSubscription_setTriggerExpression(MethodCall call, MethodChannel.Result result) {
-        String mpnSubId = call.argument("mpnSubId");
-        MpnSubscription sub = getMpnSubscription(mpnSubId);
-        sub.setTriggerExpression(call.argument("trigger"));
-        result.success(null);
-    }
-
-    void MpnSubscription_setNotificationFormat(MethodCall call, MethodChannel.Result result) {
-        String mpnSubId = call.argument("mpnSubId");
-        MpnSubscription sub = getMpnSubscription(mpnSubId);
-        sub.setNotificationFormat(call.argument("notificationFormat"));
-        result.success(null);
+        long deliveredNanos = timed ? System.nanoTime() : 0;
+        if (batch != null) {
+            for (int i = 0; i < batch.size(); i++) {
+                long eventReceivedNanos = batchReceivedNanos == null ? UpdateLatencies.NOT_TIMED : batchReceivedNanos[i];
+                onDelivery(batch.get(i), sink != null, eventReceivedNanos, dispatchedNanos, deliveredNanos);
+            }
+        } else {
+            onDelivery(event, sink != null, receivedNanos, dispatchedNanos, deliveredNanos);
+        }
     }
 
-    LightstreamerClient getClient(MethodCall call) {
-        String id = call.argument("id");
-        LightstreamerClient ls = _clientMap.get(id);
-        if (ls == null) {
-            ls = new LightstreamerClient(null, null);
-            _clientMap.put(id, ls);
-            ls.addListener(new MyClientListener(id, ls, this));
+    /**
+     * Returns the reception time of a timed update (removing it from the event map) or NOT_TIMED.
+     */
+    static long takeReceivedNanos(Object event) {
+        if (event instanceof ItemUpdateEvent) {
+            return ((ItemUpdateEvent) event)._receivedNanos;
         }
-        return ls;
+        Object receivedNanos = ((Map<?, ?>) event).remove(UpdateLatencies.RECEIVED_NANOS);
+        return receivedNanos == null ? UpdateLatencies.NOT_TIMED : (Long) receivedNanos;
     }
 
-    void invokeMethod(String method, Map<String, Object> arguments) {
-        if (channelLogger.isDebugEnabled()) {
-            channelLogger.debug("Invoking " + method + " " + arguments, null);
+    /**
+     * Updates the counters of the delivered (or dropped) event and of its source and, if the event is a timed update
+     * that has been delivered, records its latencies.
+     * NB an {@link ItemUpdateEvent} may have been recycled by the codec, but its listener doesn't change.
+     */
+    void onDelivery(Object event, boolean delivered, long receivedNanos, long dispatchedNanos, long deliveredNanos) {
+        if (!isCounted(event)) {
+            return;
         }
-        arguments.put("targetMethod", method);
-        _loop.post(() -> {
-            if (_listenerChannelSink != null) {
-                _listenerChannelSink.success(arguments);
+        _eventCounters.onDelivery(delivered);
+        MySubscriptionListener listener = null;
+        EventCounters counters = null;
+        if (event instanceof ItemUpdateEvent) {
+            listener = ((ItemUpdateEvent) event)._listener;
+        } else {
+            Map<?, ?> arguments = (Map<?, ?>) event;
+            Object subId = arguments.get("subId");
+            if (subId != null) {
+                MySubscription mySub = _subMap.get((String) subId);
+                listener = mySub == null ? null : mySub._listener;
             } else {
-                if (channelLogger.isErrorEnabled()) {
-                    channelLogger.error("Channel com.lightstreamer.flutter/listeners is not ready, cannot deliver event " + method + " " + arguments, null);
-                }
+                Object clientId = arguments.get("id");
+                ClientMetrics metrics = clientId == null ? null : _clientMetrics.get(clientId);
+                counters = metrics == null ? null : metrics._counters;
             }
-        });
+        }
+        if (listener != null) {
+            counters = listener._counters;
+            UpdateLatencies latencies = listener._latencies;
+            if (delivered && latencies != null && receivedNanos != UpdateLatencies.NOT_TIMED) {
+                latencies.record(receivedNanos, dispatchedNanos, deliveredNanos);
+            }
+        }
+        if (counters != null) {
+            counters.onDelivery(delivered);
+        }
+    }
+
+    /**
+     * Tells whether the event is tracked by the event counters, i.e. it is not an `onMetrics` event.
+     */
+    static boolean isCounted(Object event) {
+        return event instanceof ItemUpdateEvent || !ClientMetrics.METHOD.equals(((Map<?, ?>) event).get("targetMethod"));
     }
 
     static String cookieToString(HttpCookie c) {
@@ -1055,14 +1436,21 @@ public class LightstreamerFlutterPlugin implements FlutterPlugin, MethodChannel.
 }
 
 class MyClientListener implements ClientListener {
+    /**
+     * The properties that differ from session to session (see {@link #onPropertyChange(String)}).
+     */
+    static final String[] SESSION_PROPERTIES = { "serverInstanceAddress", "serverSocketName", "clientIp", "sessionId", "realMaxBandwidth" };
+
     final String clientId;
     final LightstreamerClient client;
     final LightstreamerFlutterPlugin plugin;
+    final EventCounters counters;
 
-    MyClientListener(String clientId, LightstreamerClient client, LightstreamerFlutterPlugin plugin) {
+    MyClientListener(String clientId, LightstreamerClient client, LightstreamerFlutterPlugin plugin, EventCounters counters) {
         this.clientId = clientId;
         this.client = client;
         this.plugin = plugin;
+        this.counters = counters;
     }
 
     @Override
@@ -1081,6 +1469,15 @@ class MyClientListener implements ClientListener {
 
     @Override
     public void onStatusChange(@NonNull String status) {
+        WarmStart warmStart = plugin._warmStart;
+        if (warmStart != null && status.startsWith("CONNECTED:")) {
+            warmStart.onConnected(clientId);
+        }
+        String journalScope = plugin._journalScopes.get(clientId);
+        if (journalScope != null && status.startsWith("CONNECTED:")) {
+            // the messages aborted by the previous disconnection are sent again
+            plugin.messageJournal().resend(client, journalScope);
+        }
         Map<String, Object> arguments = new HashMap<>();
         arguments.put("status", status);
         invoke("onStatusChange", arguments);
@@ -1119,21 +1516,387 @@ class MyClientListener implements ClientListener {
         invoke("onPropertyChange", arguments);
     }
 
+    /**
+     * Notifies the current status and session properties of the client, for the benefit of a Flutter client
+     * that takes over a client whose previous events it didn't receive (see {@link SessionPool} and {@link WarmStart}).
+     */
+    void notifyState() {
+        onStatusChange(client.getStatus());
+        for (String property : SESSION_PROPERTIES) {
+            onPropertyChange(property);
+        }
+    }
+
     void invoke(String method, Map<String, Object> arguments) {
         arguments.put("id", clientId);
+        counters._eventsPosted.increment();
         plugin.invokeMethod("ClientListener." + method, arguments);
     }
 }
 
+class MySubscription {
+    final String _subId;
+    final Subscription _sub;
+    final MySubscriptionListener _listener;
+    /**
+     * The clientId of the client that last subscribed to the Subscription.
+     */
+    volatile String _clientId;
+    /**
+     * The options of the last subscription (see `LightstreamerClient.subscribe`), which {@link WarmStart} persists.
+     */
+    volatile Map<String, Object> _options;
+
+    MySubscription(String subId, Subscription sub, MySubscriptionListener listener) {
+        _subId = subId;
+        _sub = sub;
+        _listener = listener;
+    }
+}
+
 class MySubscriptionListener implements SubscriptionListener {
+    /**
+     * Determines which field maps are sent with an `onItemUpdate` event.
+     */
+    enum PayloadProfile {
+        /**
+         * The changed fields, all the fields and the JSON Patches, both by name and by position.
+         */
+        FULL,
+        /**
+         * Only the changed fields and their JSON Patches, both by name and by position.
+         * The Flutter component reconstructs the other values from the previous updates.
+         */
+        CHANGED_ONLY,
+        /**
+         * Only the changed fields and their JSON Patches by position.
+         * The Flutter component reconstructs the other values from the previous updates
+         * and the field names from the field lists of the subscription.
+         */
+        POSITIONAL_CHANGED_ONLY,
+        /**
+         * Only for COMMAND subscriptions: the updates are sent as `onCommandRowDiff` events, which carry the kind of change
+         * (ADD, UPDATE or DELETE), the row of the key in the {@link CommandRowTable} and the changed fields (and their JSON Patches) by position.
+         * The Flutter component keeps a copy of the rows and reconstructs the `onItemUpdate` events from it.
+         */
+        COMMAND_ROW_DIFFS
+    }
+
+    /**
+     * Determines how the values of the fields carrying JSON documents are sent.
+     * NB the documents are always materialized by the SDK, which applies the JSON Patches received from the Server.
+     */
+    enum JsonPatchDelivery {
+        /**
+         * Both the documents and the JSON Patches.
+         */
+        DOCUMENTS_AND_PATCHES,
+        /**
+         * Only the documents: the JSON Patches are not even looked up.
+         */
+        DOCUMENTS,
+        /**
+         * Only the JSON Patches, for the changed fields that have one, and the documents otherwise.
+         * The Flutter component applies the patches to the documents reconstructed from the previous updates,
+         * hence this is only possible with the payload profiles that only carry the changed fields,
+         * and only if the updates are not merged before crossing the channel (i.e. without conflation and event queue).
+         * Moreover, a document is still sent when the Flutter component doesn't hold its previous value (see {@link JsonDocumentTracker}).
+         * In COMMAND mode the previous values are kept by row, hence the COMMAND_ROW_DIFFS payload profile is needed.
+         */
+        PATCHES
+    }
+
     final String _subId;
     final Subscription _sub;
     final LightstreamerFlutterPlugin _plugin;
+    volatile PayloadProfile _payloadProfile = PayloadProfile.FULL;
+    volatile JsonPatchDelivery _jsonPatchDelivery = JsonPatchDelivery.DOCUMENTS_AND_PATCHES;
+    /**
+     * The fields to which the Flutter component can apply a JSON Patch (only used with the PATCHES JSON Patch delivery).
+     */
+    final JsonDocumentTracker _jsonDocuments = new JsonDocumentTracker();
+    /**
+     * When not null, the real-time updates are merged by item and delivered to the Flutter component
+     * at most at the rate configured through `Subscription.setConflationMaxFrequency`.
+     */
+    volatile ItemUpdateConflator _conflator;
+    /**
+     * When not null, the events are delivered to the Flutter component through a bounded queue
+     * configured through `Subscription.setEventQueueMaxSize`.
+     */
+    volatile SubscriptionEventQueue _eventQueue;
+    /**
+     * The reusable `onItemUpdate` events (see {@link ItemUpdateEvent}).
+     */
+    final ItemUpdateEvent.Pool _eventPool = new ItemUpdateEvent.Pool(this);
+    /**
+     * The counters reported by `LightstreamerClient.getMetrics`.
+     */
+    final EventCounters _counters = new EventCounters();
+    /**
+     * When not null, the latencies of the updates are recorded (see `Subscription.setLatencyTracking`).
+     */
+    volatile UpdateLatencies _latencies;
+    /**
+     * The sorted positions of the fields requested through `Subscription.setListenerFieldProjection`, or null if all the fields are needed.
+     */
+    @Nullable
+    int[] _requestedProjection;
+    /**
+     * The sorted positions of the fields sent with the `onItemUpdate` and `onCommandRowDiff` events, or null if all the fields are sent.
+     * It extends {@link #_requestedProjection} with the key and command fields of a COMMAND subscription when the subscription becomes active.
+     * NB the SDK subscription keeps receiving all the fields, so {@link #_valueTable} is not affected.
+     */
+    @Nullable
+    volatile int[] _projection;
+    /**
+     * When not null, the events are held instead of being sent, since the Flutter component doesn't know the subscription yet
+     * (see {@link WarmStart}). An entry is the name of a method followed by its arguments.
+     */
+    @Nullable
+    volatile List<Object[]> _heldEvents;
+    /**
+     * The prefix of the keys of the items in the {@link LastValueCache} (i.e. the scope of the cache followed by the Data Adapter),
+     * or null if the last values are not cached (see `Subscription.setLastValueCaching`).
+     */
+    @Nullable
+    volatile String _lastValueKeyPrefix;
+    /**
+     * The field names indexed by position (see {@link #buildFieldNames(Subscription)}).
+     * It is computed when the subscription becomes active, so that the maps keyed by field name
+     * can be derived from the positional ones without querying the field names at each update.
+     */
+    volatile String[] _fieldNames;
+    /**
+     * Supports the bulk retrieval of the current values (see `Subscription.getValues`).
+     */
+    final SubscriptionValueTable _valueTable;
+    /**
+     * The rows of the items of a COMMAND subscription, maintained with the COMMAND_ROW_DIFFS profile (null for the other modes).
+     */
+    @Nullable
+    final CommandRowTable _rowTable;
 
     MySubscriptionListener(String subId, Subscription sub, LightstreamerFlutterPlugin plugin) {
         this._subId = subId;
         this._sub = sub;
         this._plugin = plugin;
+        this._valueTable = new SubscriptionValueTable(sub);
+        this._rowTable = "COMMAND".equals(sub.getMode()) ? new CommandRowTable(sub) : null;
+    }
+
+    /**
+     * Enables the conflation of the updates when `maxFrequency` is a positive number (expressed in updates per second for each item)
+     * and disables it otherwise.
+     * Only MERGE subscriptions can be conflated.
+     */
+    void setConflationMaxFrequency(double maxFrequency) {
+        ItemUpdateConflator oldConflator = _conflator;
+        if (oldConflator != null) {
+            oldConflator.flush();
+        }
+        if (maxFrequency <= 0) {
+            _conflator = null;
+        } else if (!"MERGE".equals(_sub.getMode())) {
+            if (LightstreamerFlutterPlugin.channelLogger.isWarnEnabled()) {
+                LightstreamerFlutterPlugin.channelLogger.warn("Conflation is only supported by MERGE subscriptions: ignoring it for Subscription " + _subId, null);
+            }
+            _conflator = null;
+        } else {
+            _conflator = new ItemUpdateConflator(this, (long) Math.ceil(1000 / maxFrequency));
+        }
+    }
+
+    /**
+     * Makes the events pass through a {@link SubscriptionEventQueue} holding at most `maxSize` events when `maxSize` is a positive number,
+     * or lets them be posted to the main thread without limits otherwise.
+     * A null policy means DROP_OLDEST.
+     */
+    void setEventQueue(int maxSize, @Nullable String policy) {
+        if (maxSize <= 0) {
+            _eventQueue = null;
+        } else {
+            SubscriptionEventQueue.OverflowPolicy overflowPolicy = policy == null
+                    ? SubscriptionEventQueue.OverflowPolicy.DROP_OLDEST
+                    : SubscriptionEventQueue.OverflowPolicy.valueOf(policy);
+            _eventQueue = new SubscriptionEventQueue(this, maxSize, overflowPolicy, "MERGE".equals(_sub.getMode()));
+        }
+    }
+
+    /**
+     * Sets the payload profile of the `onItemUpdate` events.
+     * A null value means FULL. COMMAND subscriptions only support the FULL and COMMAND_ROW_DIFFS profiles,
+     * while COMMAND_ROW_DIFFS is only supported by COMMAND subscriptions.
+     */
+    void setPayloadProfile(@Nullable String profile) {
+        PayloadProfile newProfile = profile == null ? PayloadProfile.FULL : PayloadProfile.valueOf(profile);
+        boolean isCommand = "COMMAND".equals(_sub.getMode());
+        if (isCommand && newProfile != PayloadProfile.FULL && newProfile != PayloadProfile.COMMAND_ROW_DIFFS) {
+            if (LightstreamerFlutterPlugin.channelLogger.isWarnEnabled()) {
+                LightstreamerFlutterPlugin.channelLogger.warn("COMMAND subscriptions don't support the " + profile + " payload profile: ignoring it for Subscription " + _subId, null);
+            }
+            newProfile = PayloadProfile.FULL;
+        } else if (!isCommand && newProfile == PayloadProfile.COMMAND_ROW_DIFFS) {
+            if (LightstreamerFlutterPlugin.channelLogger.isWarnEnabled()) {
+                LightstreamerFlutterPlugin.channelLogger.warn("The COMMAND_ROW_DIFFS payload profile is only supported by COMMAND subscriptions: ignoring it for Subscription " + _subId, null);
+            }
+            newProfile = PayloadProfile.FULL;
+        }
+        _payloadProfile = newProfile;
+    }
+
+    /**
+     * Starts (or stops) recording the latencies of the updates in a new {@link UpdateLatencies}.
+     */
+    void setLatencyTracking(boolean enabled) {
+        if (enabled) {
+            _plugin._latencyTracking = true;
+            _latencies = new UpdateLatencies();
+        } else {
+            _latencies = null;
+        }
+    }
+
+    /**
+     * Restricts the fields sent with the updates to the given positions (null means all the fields).
+     */
+    void setFieldProjection(@Nullable List<Integer> positions) {
+        _requestedProjection = positions == null ? null : positions.stream().mapToInt(Integer::intValue).filter(pos -> pos > 0).sorted().distinct().toArray();
+        _projection = _requestedProjection;
+    }
+
+    /**
+     * Keeps only the fields included in the projection (if any).
+     */
+    Map<Integer, String> project(Map<Integer, String> fieldsByPosition) {
+        int[] projection = _projection;
+        if (projection == null) {
+            return fieldsByPosition;
+        }
+        Map<Integer, String> projected = new HashMap<>();
+        for (int pos : projection) {
+            if (fieldsByPosition.containsKey(pos)) {
+                projected.put(pos, fieldsByPosition.get(pos));
+            }
+        }
+        return projected;
+    }
+
+    /**
+     * Caches the last values of the items within the given scope (null means no caching).
+     * Only MERGE subscriptions with an item list and a field list are supported, since the values are cached by item and field name.
+     */
+    void setLastValueCaching(@Nullable String scope) {
+        if (scope == null) {
+            _lastValueKeyPrefix = null;
+        } else if (!"MERGE".equals(_sub.getMode()) || _sub.getItems() == null || _sub.getFields() == null) {
+            if (LightstreamerFlutterPlugin.channelLogger.isWarnEnabled()) {
+                LightstreamerFlutterPlugin.channelLogger.warn("Last value caching is only supported by MERGE subscriptions with an item list and a field list: ignoring it for Subscription " + _subId, null);
+            }
+            _lastValueKeyPrefix = null;
+        } else {
+            _lastValueKeyPrefix = scope + "|" + _sub.getDataAdapter() + "|";
+        }
+    }
+
+    /**
+     * Sends a stale `onItemUpdate` event carrying the cached values of each cached item (see `ItemUpdate.isStale`).
+     * The events have the FULL layout whatever the payload profile, so that the Flutter component doesn't take them
+     * as the base of the following updates.
+     * <p>
+     * The events are built on the thread of the cache once the cache has been loaded, so that the caller doesn't wait for the file.
+     * Meanwhile the events of the subscription are held, so that the real snapshot cannot overtake the cached values.
+     * If the events are already held (see {@link WarmStart}), the cached values are sent when they are released.
+     */
+    void replayLastValues() {
+        String prefix = _lastValueKeyPrefix;
+        if (prefix == null) {
+            return;
+        }
+        LastValueCache cache = _plugin.lastValueCache();
+        boolean ownHold;
+        synchronized (this) {
+            ownHold = _heldEvents == null;
+            if (ownHold) {
+                holdEvents();
+            }
+        }
+        cache.whenLoaded(() -> {
+            synchronized (this) {
+                List<Object[]> held = _heldEvents;
+                if (held == null) {
+                    // the held events have already been released, hence the cached values would overtake newer ones
+                    return;
+                }
+                held.addAll(0, buildLastValueEvents(cache, prefix, held));
+                if (ownHold) {
+                    releaseEvents(true);
+                }
+            }
+        });
+    }
+
+    /**
+     * Builds the events carrying the cached values, skipping the items that have already received an update
+     * (which the held events carry and the cache already stores).
+     */
+    List<Object[]> buildLastValueEvents(LastValueCache cache, String prefix, List<Object[]> held) {
+        Set<Object> updated = new HashSet<>();
+        for (Object[] event : held) {
+            if ("onItemUpdate".equals(event[0])) {
+                updated.add(((Map<String, Object>) event[1]).get("itemPos"));
+            }
+        }
+        List<Object[]> events = new ArrayList<>();
+        String[] items = _sub.getItems();
+        String[] fieldNames = buildFieldNames(_sub);
+        for (int i = 0; i < items.length; i++) {
+            Map<String, String> values = updated.contains(i + 1) ? null : cache.get(prefix + items[i]);
+            if (values == null) {
+                continue;
+            }
+            Map<Integer, String> fieldsByPosition = new HashMap<>();
+            for (int pos = 1; pos <= fieldNames.length; pos++) {
+                String name = fieldNames[pos - 1];
+                if (name != null && values.containsKey(name)) {
+                    fieldsByPosition.put(pos, values.get(name));
+                }
+            }
+            fieldsByPosition = project(fieldsByPosition);
+            Map<String, String> fields = toFieldNameMap(fieldsByPosition, fieldNames);
+            Map<String, Object> arguments = new HashMap<>();
+            arguments.put("subId", _subId);
+            arguments.put("itemName", items[i]);
+            arguments.put("itemPos", i + 1);
+            arguments.put("isSnapshot", true);
+            arguments.put("isStale", true);
+            arguments.put("changedFields", fields);
+            arguments.put("fields", fields);
+            arguments.put("jsonFields", new HashMap<>());
+            arguments.put("changedFieldsByPosition", fieldsByPosition);
+            arguments.put("fieldsByPosition", fieldsByPosition);
+            arguments.put("jsonFieldsByPosition", new HashMap<>());
+            events.add(new Object[] { "onItemUpdate", arguments });
+        }
+        return events;
+    }
+
+    /**
+     * Sets how the JSON fields are sent (see {@link JsonPatchDelivery}). A null value means DOCUMENTS_AND_PATCHES.
+     * It must be called after the payload profile, the conflation and the event queue have been configured,
+     * since PATCHES falls back to DOCUMENTS_AND_PATCHES when they don't support it.
+     */
+    void setJsonPatchDelivery(@Nullable String delivery) {
+        JsonPatchDelivery newDelivery = delivery == null ? JsonPatchDelivery.DOCUMENTS_AND_PATCHES : JsonPatchDelivery.valueOf(delivery);
+        if (newDelivery == JsonPatchDelivery.PATCHES
+                && (_payloadProfile == PayloadProfile.FULL || _conflator != null || _eventQueue != null
+                    || ("COMMAND".equals(_sub.getMode()) && _payloadProfile != PayloadProfile.COMMAND_ROW_DIFFS))) {
+            if (LightstreamerFlutterPlugin.channelLogger.isWarnEnabled()) {
+                LightstreamerFlutterPlugin.channelLogger.warn("The PATCHES JSON Patch delivery requires a payload profile carrying only the changed fields (the COMMAND_ROW_DIFFS one in COMMAND mode) and no conflation or event queue: ignoring it for Subscription " + _subId, null);
+            }
+            newDelivery = JsonPatchDelivery.DOCUMENTS_AND_PATCHES;
+        }
+        _jsonPatchDelivery = newDelivery;
     }
 
     @Override
@@ -1144,6 +1907,11 @@ class MySubscriptionListener implements SubscriptionListener {
 
     @Override
     public void onClearSnapshot(@Nullable String itemName, int itemPos) {
+        _valueTable.onClearSnapshot(itemPos);
+        _jsonDocuments.clear(itemPos);
+        if (_rowTable != null) {
+            _rowTable.clear(itemPos);
+        }
         Map<String, Object> arguments = new HashMap<>();
         arguments.put("itemName", itemName);
         arguments.put("itemPos", itemPos);
@@ -1186,50 +1954,210 @@ class MySubscriptionListener implements SubscriptionListener {
 
     @Override
     public void onItemUpdate(@NonNull ItemUpdate update) {
+        long receivedNanos = _latencies != null ? System.nanoTime() : UpdateLatencies.NOT_TIMED;
+        _counters._updatesReceived.increment();
+        _valueTable.onItemUpdate(update);
+        String[] fieldNames = _fieldNames;
+        String lastValueKeyPrefix = _lastValueKeyPrefix;
+        if (lastValueKeyPrefix != null && fieldNames != null) {
+            _plugin.lastValueCache().update(lastValueKeyPrefix + update.getItemName(), update, fieldNames);
+        }
+        PayloadProfile profile = _payloadProfile;
+        if (profile == PayloadProfile.COMMAND_ROW_DIFFS && onCommandRowUpdate(update, receivedNanos)) {
+            return;
+        }
+        ItemUpdateConflator conflator = _conflator;
+        if (conflator == null && _eventQueue == null && profile != PayloadProfile.COMMAND_ROW_DIFFS && fieldNames != null && _heldEvents == null) {
+            // fast path: the event is written by the codec straight from the update
+            // (NB with a field schema the number of fields may not be known, so the event maps are needed)
+            ItemUpdateEvent event = _eventPool.acquire(update, profile, _jsonPatchDelivery, fieldNames, fieldNames.length, _projection);
+            event._receivedNanos = receivedNanos;
+            _counters._eventsPosted.increment();
+            _plugin.invokeEvent(event);
+            return;
+        }
         Map<String, Object> arguments = new HashMap<>();
         arguments.put("itemName", update.getItemName());
         arguments.put("itemPos", update.getItemPos());
         arguments.put("isSnapshot", update.isSnapshot());
-        if (_sub.getFields() != null || _sub.getCommandSecondLevelFields() != null) {
-            try {
-                Map<String, String> changedFields = update.getChangedFields();
-                Map<String, String> fields = update.getFields();
-                Map<String, String> jsonFields = new HashMap<>();
-                for (String fld : fields.keySet()) {
-                    String json = update.getValueAsJSONPatchIfAvailable(fld);
-                    if (json != null) {
-                        jsonFields.put(fld, json);
-                    }
+        switch (_payloadProfile) {
+            case CHANGED_ONLY:
+                putChangedFields(update, arguments, true);
+                break;
+            case POSITIONAL_CHANGED_ONLY:
+                putChangedFields(update, arguments, false);
+                break;
+            default:
+                putAllFields(update, arguments);
+        }
+        if (receivedNanos != UpdateLatencies.NOT_TIMED) {
+            arguments.put(UpdateLatencies.RECEIVED_NANOS, receivedNanos);
+        }
+        if (conflator != null) {
+            conflator.offer(update.getItemPos(), update.isSnapshot(), arguments);
+        } else {
+            invoke("onItemUpdate", arguments);
+        }
+    }
+
+    /**
+     * Applies the update to the {@link CommandRowTable} and sends the resulting row diff.
+     * Returns false if the update doesn't carry a key, and so it must be sent as an ordinary update.
+     */
+    boolean onCommandRowUpdate(ItemUpdate update, long receivedNanos) {
+        String key = update.getValue(_valueTable._keyPosition);
+        if (key == null) {
+            return false;
+        }
+        boolean isDelete = "DELETE".equals(update.getValue(_valueTable._commandPosition));
+        int[] row = new int[1];
+        String op = _rowTable.apply(update.getItemPos(), key, isDelete, row);
+        if (!"UPDATE".equals(op)) {
+            // the Flutter component starts the row from scratch on ADD and discards it on DELETE
+            _jsonDocuments.removeRow(update.getItemPos(), key);
+        }
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("itemName", update.getItemName());
+        arguments.put("itemPos", update.getItemPos());
+        arguments.put("isSnapshot", update.isSnapshot());
+        arguments.put("op", op);
+        arguments.put("row", row[0]);
+        arguments.put("key", key);
+        putChangedFields(update, arguments, false, key);
+        if (receivedNanos != UpdateLatencies.NOT_TIMED) {
+            arguments.put(UpdateLatencies.RECEIVED_NANOS, receivedNanos);
+        }
+        invoke("onCommandRowDiff", arguments);
+        return true;
+    }
+
+    void putAllFields(ItemUpdate update, Map<String, Object> arguments) {
+        Map<Integer, String> changedFieldsByPosition = project(update.getChangedFieldsByPosition());
+        Map<Integer, String> fieldsByPosition = project(update.getFieldsByPosition());
+        Map<Integer, String> jsonFieldsByPosition = new HashMap<>();
+        if (_jsonPatchDelivery != JsonPatchDelivery.DOCUMENTS) {
+            for (Integer pos : fieldsByPosition.keySet()) {
+                String json = update.getValueAsJSONPatchIfAvailable(pos);
+                if (json != null) {
+                    jsonFieldsByPosition.put(pos, json);
                 }
-                arguments.put("changedFields", changedFields);
-                arguments.put("fields", fields);
-                arguments.put("jsonFields", jsonFields);
-            } catch (Exception e) {
-                // if the subscription doesn't have field names, the methods getChangedFields and
-                // getFields may throw exceptions
             }
         }
-        Map<Integer, String> changedFieldsByPosition = update.getChangedFieldsByPosition();
-        Map<Integer, String> fieldsByPosition = update.getFieldsByPosition();
+        String[] fieldNames = _fieldNames;
+        if (fieldNames != null) {
+            arguments.put("changedFields", toFieldNameMap(changedFieldsByPosition, fieldNames));
+            arguments.put("fields", toFieldNameMap(fieldsByPosition, fieldNames));
+            arguments.put("jsonFields", toFieldNameMap(jsonFieldsByPosition, fieldNames));
+        }
+        arguments.put("changedFieldsByPosition", changedFieldsByPosition);
+        arguments.put("fieldsByPosition", fieldsByPosition);
+        arguments.put("jsonFieldsByPosition", jsonFieldsByPosition);
+    }
+
+    void putChangedFields(ItemUpdate update, Map<String, Object> arguments, boolean byName) {
+        putChangedFields(update, arguments, byName, null);
+    }
+
+    /**
+     * Puts only the changed fields (and their JSON Patches) in the arguments of the event.
+     * NB the Flutter component recognizes this kind of payload by the absence of the `fieldsByPosition` argument.
+     * With the PATCHES JSON Patch delivery, a changed field having a JSON Patch is only present in the map of the patches
+     * and the Flutter component applies the patch to the previous value of the field, provided that it holds one
+     * (the key identifies the row with the COMMAND_ROW_DIFFS payload profile).
+     */
+    void putChangedFields(ItemUpdate update, Map<String, Object> arguments, boolean byName, @Nullable String key) {
+        Map<Integer, String> changedFieldsByPosition = project(update.getChangedFieldsByPosition());
         Map<Integer, String> jsonFieldsByPosition = new HashMap<>();
-        for (Integer pos : fieldsByPosition.keySet()) {
-            String json = update.getValueAsJSONPatchIfAvailable(pos);
-            if (json != null) {
-                jsonFieldsByPosition.put(pos, json);
+        JsonPatchDelivery jsonPatchDelivery = _jsonPatchDelivery;
+        if (jsonPatchDelivery != JsonPatchDelivery.DOCUMENTS) {
+            for (Integer pos : changedFieldsByPosition.keySet()) {
+                String json = update.getValueAsJSONPatchIfAvailable(pos);
+                if (json != null) {
+                    jsonFieldsByPosition.put(pos, json);
+                }
+            }
+            if (jsonPatchDelivery == JsonPatchDelivery.PATCHES) {
+                Map<Integer, String> documents = new HashMap<>();
+                for (Map.Entry<Integer, String> e : changedFieldsByPosition.entrySet()) {
+                    int pos = e.getKey();
+                    if (!_jsonDocuments.patchOnly(update.getItemPos(), key, pos, jsonFieldsByPosition.containsKey(pos))) {
+                        documents.put(pos, e.getValue());
+                    }
+                }
+                changedFieldsByPosition = documents;
             }
         }
+        String[] fieldNames = _fieldNames;
+        if (byName && fieldNames != null) {
+            arguments.put("changedFields", toFieldNameMap(changedFieldsByPosition, fieldNames));
+            arguments.put("jsonFields", toFieldNameMap(jsonFieldsByPosition, fieldNames));
+        }
         arguments.put("changedFieldsByPosition", changedFieldsByPosition);
-        arguments.put("fieldsByPosition", fieldsByPosition);
         arguments.put("jsonFieldsByPosition", jsonFieldsByPosition);
-        invoke("onItemUpdate", arguments);
+    }
+
+    /**
+     * Builds the table of the field names indexed by position (the name of the field at position `i` is stored at index `i - 1`).
+     * When a name occurs more than once (e.g. both among the first-level and the second-level fields of a COMMAND subscription),
+     * only the occurrence with the lowest position is kept and the others are set to null.
+     * Returns null when the subscription (or its second-level part) is described by a field schema,
+     * since in that case the field names are not known to the client.
+     */
+    @Nullable
+    static String[] buildFieldNames(Subscription sub) {
+        String[] fields = sub.getFields();
+        if (fields == null) {
+            return null;
+        }
+        String[] secondLevelFields = null;
+        if ("COMMAND".equals(sub.getMode())) {
+            if (sub.getCommandSecondLevelFieldSchema() != null) {
+                return null;
+            }
+            secondLevelFields = sub.getCommandSecondLevelFields();
+        }
+        int len = fields.length + (secondLevelFields == null ? 0 : secondLevelFields.length);
+        String[] names = new String[len];
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < len; i++) {
+            // the second-level fields follow the first-level ones
+            String name = i < fields.length ? fields[i] : secondLevelFields[i - fields.length];
+            names[i] = seen.add(name) ? name : null;
+        }
+        return names;
+    }
+
+    /**
+     * Converts a map keyed by field position into a map keyed by field name.
+     */
+    static Map<String, String> toFieldNameMap(Map<Integer, String> byPosition, String[] fieldNames) {
+        Map<String, String> byName = new HashMap<>();
+        for (Map.Entry<Integer, String> e : byPosition.entrySet()) {
+            int idx = e.getKey() - 1;
+            if (idx >= 0 && idx < fieldNames.length && fieldNames[idx] != null) {
+                byName.put(fieldNames[idx], e.getValue());
+            }
+        }
+        return byName;
     }
 
     @Override
     public void onSubscription() {
+        // the field lists cannot change while the subscription is active
+        _fieldNames = buildFieldNames(_sub);
+        _valueTable.onSubscription(_fieldNames);
         Map<String, Object> arguments = new HashMap<>();
         if ("COMMAND".equals(_sub.getMode())) {
             arguments.put("commandPosition", _sub.getCommandPosition());
             arguments.put("keyPosition", _sub.getKeyPosition());
+            int[] requested = _requestedProjection;
+            if (requested != null) {
+                // the Flutter component needs the key and the command of each update to maintain the rows
+                int[] projection = Arrays.copyOf(requested, requested.length + 2);
+                projection[requested.length] = _sub.getKeyPosition();
+                projection[requested.length + 1] = _sub.getCommandPosition();
+                _projection = Arrays.stream(projection).sorted().distinct().toArray();
+            }
         }
         invoke("onSubscription", arguments);
     }
@@ -1244,6 +2172,11 @@ class MySubscriptionListener implements SubscriptionListener {
 
     @Override
     public void onUnsubscription() {
+        _valueTable.onUnsubscription();
+        _jsonDocuments.clear();
+        if (_rowTable != null) {
+            _rowTable.clear();
+        }
         invoke("onUnsubscription", new HashMap<>());
     }
 
@@ -1255,8 +2188,68 @@ class MySubscriptionListener implements SubscriptionListener {
     }
 
     void invoke(String method, Map<String, Object> arguments) {
+        ItemUpdateConflator conflator = _conflator;
+        if (conflator != null && !"onItemUpdate".equals(method)) {
+            // deliver the pending updates first, so that they are not overtaken by the other events
+            conflator.flush();
+        }
         arguments.put("subId", _subId);
-        _plugin.invokeMethod("SubscriptionListener." + method, arguments);
+        if (_heldEvents != null) {
+            synchronized (this) {
+                List<Object[]> held = _heldEvents;
+                if (held != null) {
+                    if (held.size() < WarmStart.MAX_HELD_EVENTS) {
+                        held.add(new Object[] { method, arguments });
+                    } else if (LightstreamerFlutterPlugin.channelLogger.isWarnEnabled()) {
+                        LightstreamerFlutterPlugin.channelLogger.warn("Too many events held for Subscription " + _subId + ": discarding " + method, null);
+                    }
+                    return;
+                }
+            }
+        }
+        post(method, arguments);
+    }
+
+    /**
+     * Starts holding the events (see {@link #_heldEvents}).
+     */
+    synchronized void holdEvents() {
+        _heldEvents = new ArrayList<>();
+    }
+
+    /**
+     * Stops holding the events, and sends the ones held so far if `send` is true or discards them otherwise.
+     * NB the events are sent while holding the lock, so that they are not overtaken by the events fired in the meantime;
+     * hence they never wait for room in the event queue (see {@link SubscriptionEventQueue.OverflowPolicy#BLOCK}),
+     * since the main thread may need the lock (or a lock held by the caller, such as the one of {@link WarmStart}).
+     */
+    synchronized void releaseEvents(boolean send) {
+        List<Object[]> held = _heldEvents;
+        _heldEvents = null;
+        if (held != null && send) {
+            for (Object[] event : held) {
+                post((String) event[0], (Map<String, Object>) event[1], false);
+            }
+        }
+    }
+
+    void post(String method, Map<String, Object> arguments) {
+        // NB a conflated update is forwarded while holding the lock of the conflator, which the main thread may need
+        post(method, arguments, _conflator == null);
+    }
+
+    /**
+     * Sends the event, through the event queue if any.
+     * When `mayBlock` is false, the event doesn't wait for room in the queue (see {@link SubscriptionEventQueue#offer}).
+     */
+    void post(String method, Map<String, Object> arguments, boolean mayBlock) {
+        SubscriptionEventQueue queue = _eventQueue;
+        if (queue != null) {
+            queue.offer("SubscriptionListener." + method, arguments, mayBlock);
+        } else {
+            _counters._eventsPosted.increment();
+            _plugin.invokeMethod("SubscriptionListener." + method, arguments);
+        }
     }
 }
 
@@ -1436,6 +2429,11 @@ class MyMpnSubscriptionListener implements MpnSubscriptionListener {
 
     @Override
     public void onSubscription() {
+        // now the subscriptionId is known
+        MyMpnSubscription mySub = _plugin._mpnSubMap.get(_mpnSubId);
+        if (mySub != null && mySub._sub == _sub) {
+            _plugin._mpnSubIndex.add(mySub);
+        }
         Map<String, Object> arguments = new HashMap<>();
         invoke("onSubscription", arguments);
     }
@@ -1448,6 +2446,10 @@ class MyMpnSubscriptionListener implements MpnSubscriptionListener {
 
     @Override
     public void onSubscriptionError(int code, @Nullable String message) {
+        MyMpnSubscription mySub = _plugin._mpnSubMap.get(_mpnSubId);
+        if (mySub != null) {
+            _plugin._mpnSubIndex.removePending(mySub);
+        }
         Map<String, Object> arguments = new HashMap<>();
         arguments.put("errorCode", code);
         arguments.put("errorMessage", message);
@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodCodec;
+import io.flutter.plugin.common.StandardMethodCodec;
+
+/**
+ * The codec of the channel com.lightstreamer.flutter/listeners.
+ * <p>
+ * The listener events (i.e. the maps built by the listeners and passed to `LightstreamerFlutterPlugin.invokeMethod`)
+ * are encoded in a compact binary layout, where the method names and the argument names are replaced by numeric tags.
+ * Everything else (method calls, error envelopes) is handled by the {@link StandardMethodCodec}.
+ * <p>
+ * The encoded events are embedded in the format of the standard codec as custom values, so the Flutter component
+ * decodes them by means of an extension of its StandardMessageCodec (see `_ListenerEventMessageCodec` in `listener_event_codec.dart`):
+ * <pre>
+ * envelope := 0x00 (success) value
+ * value    := EVENT int32(length) event | BATCH int32(count) { int32(length) event }
+ * event    := uint8(method tag) [ string(method name) if the tag is UNKNOWN ]
+ *             uint8(argument count) { uint8(argument tag) [ string(argument name) if the tag is UNKNOWN ] data }
+ * data     := NULL | TRUE | FALSE | INT int32 | LONG int64 | DOUBLE float64 | STRING string
+ *             | STRING_MAP int32(size) { string data } | INT_MAP int32(size) { int32 data } | LIST int32(size) { data }
+ * string   := int32(length in bytes) UTF-8 bytes
+ * </pre>
+ * All the numbers are little-endian.
+ * <p>
+ * WARNING the tag tables must be kept aligned with the ones in `listener_event_codec.dart`; new entries must be appended.
+ * <p>
+ * Besides the event maps, the codec writes the {@link ItemUpdateEvent} objects, which produce the same layout without building the maps.
+ * <p>
+ * The events are written into a reusable direct buffer: this is safe because the channel encodes an event on the main thread
+ * and hands the buffer to the engine, which copies it, before encoding the next one.
+ */
+class ListenerEventCodec implements MethodCodec {
+    // custom value types of the standard codec (see StandardMessageCodec)
+    static final byte EVENT = (byte) 128;
+    static final byte BATCH = (byte) 129;
+    // data types
+    static final byte NULL = 0;
+    static final byte TRUE = 1;
+    static final byte FALSE = 2;
+    static final byte INT = 3;
+    static final byte LONG = 4;
+    static final byte DOUBLE = 5;
+    static final byte STRING = 6;
+    static final byte STRING_MAP = 7;
+    static final byte INT_MAP = 8;
+    static final byte LIST = 9;
+    // tag of the method names and argument names that are not in the tables
+    static final int UNKNOWN = 255;
+
+    static final String[] METHODS = {
+            "ClientListener.onServerError",
+            "ClientListener.onStatusChange",
+            "ClientListener.onPropertyChange",
+            "SubscriptionListener.onClearSnapshot",
+            "SubscriptionListener.onCommandSecondLevelItemLostUpdates",
+            "SubscriptionListener.onCommandSecondLevelSubscriptionError",
+            "SubscriptionListener.onEndOfSnapshot",
+            "SubscriptionListener.onItemLostUpdates",
+            "SubscriptionListener.onItemUpdate",
+            "SubscriptionListener.onSubscription",
+            "SubscriptionListener.onSubscriptionError",
+            "SubscriptionListener.onUnsubscription",
+            "SubscriptionListener.onRealMaxFrequency",
+            "ClientMessageListener.onAbort",
+            "ClientMessageListener.onDeny",
+            "ClientMessageListener.onDiscarded",
+            "ClientMessageListener.onError",
+            "ClientMessageListener.onProcessed",
+            "MpnDeviceListener.onRegistered",
+            "MpnDeviceListener.onSuspended",
+            "MpnDeviceListener.onResumed",
+            "MpnDeviceListener.onStatusChanged",
+            "MpnDeviceListener.onRegistrationFailed",
+            "MpnDeviceListener.onSubscriptionsUpdated",
+            "MpnSubscriptionListener.onSubscription",
+            "MpnSubscriptionListener.onUnsubscription",
+            "MpnSubscriptionListener.onSubscriptionError",
+            "MpnSubscriptionListener.onUnsubscriptionError",
+            "MpnSubscriptionListener.onTriggered",
+            "MpnSubscriptionListener.onStatusChanged",
+            "MpnSubscriptionListener.onPropertyChanged",
+            "MpnSubscriptionListener.onModificationError",
+            "SubscriptionListener.onCommandRowDiff",
+            "SubscriptionListener.onItemDroppedUpdates",
+            "ClientListener.onMetrics",
+            "MessageBatchListener.onOutcomes",
+    };
+
+    static final String[] ARGUMENTS = {
+            "id",
+            "subId",
+            "msgId",
+            "mpnDevId",
+            "mpnSubId",
+            "itemName",
+            "itemPos",
+            "isSnapshot",
+            "changedFields",
+            "fields",
+            "jsonFields",
+            "changedFieldsByPosition",
+            "fieldsByPosition",
+            "jsonFieldsByPosition",
+            "errorCode",
+            "errorMessage",
+            "status",
+            "property",
+            "value",
+            "lostUpdates",
+            "key",
+            "code",
+            "message",
+            "commandPosition",
+            "keyPosition",
+            "frequency",
+            "originalMessage",
+            "sentOnNetwork",
+            "response",
+            "applicationId",
+            "deviceId",
+            "deviceToken",
+            "platform",
+            "previousDeviceToken",
+            "timestamp",
+            "subscriptionId",
+            "propertyName",
+            "op",
+            "row",
+            "droppedUpdates",
+            "metrics",
+            "isStale",
+            "batchId",
+            "processed",
+            "responses",
+            "failures",
+            "pending",
+    };
+
+    static final Map<String, Integer> METHOD_TAGS = toTagMap(METHODS);
+    static final Map<String, Integer> ARGUMENT_TAGS = toTagMap(ARGUMENTS);
+
+    static Map<String, Integer> toTagMap(String[] names) {
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            map.put(names[i], i);
+        }
+        return map;
+    }
+
+    ByteBuffer _buffer = ByteBuffer.allocateDirect(4096).order(ByteOrder.LITTLE_ENDIAN);
+
+    @Override
+    public ByteBuffer encodeSuccessEnvelope(@Nullable Object result) {
+        if (!isEvent(result) && !isBatch(result)) {
+            return StandardMethodCodec.INSTANCE.encodeSuccessEnvelope(result);
+        }
+        _buffer.clear();
+        ensureCapacity(1);
+        _buffer.put((byte) 0);
+        if (isBatch(result)) {
+            List<?> batch = (List<?>) result;
+            ensureCapacity(5);
+            _buffer.put(BATCH);
+            _buffer.putInt(batch.size());
+            for (Object event : batch) {
+                writeEvent(event);
+            }
+        } else {
+            ensureCapacity(1);
+            _buffer.put(EVENT);
+            writeEvent(result);
+        }
+        // NB the position (rather than the limit) marks the end of the message (see StandardMethodCodec)
+        return _buffer;
+    }
+
+    static boolean isEvent(Object value) {
+        return value instanceof ItemUpdateEvent
+                || value instanceof Map && ((Map<?, ?>) value).get("targetMethod") instanceof String;
+    }
+
+    static boolean isBatch(Object value) {
+        if (value instanceof List) {
+            for (Object event : (List<?>) value) {
+                if (!isEvent(event)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    void writeEvent(Object value) {
+        if (value instanceof ItemUpdateEvent) {
+            ((ItemUpdateEvent) value).writeTo(this);
+            return;
+        }
+        Map<?, ?> event = (Map<?, ?>) value;
+        ensureCapacity(4);
+        int lengthPos = _buffer.position();
+        _buffer.putInt(0); // placeholder for the length
+        String method = (String) event.get("targetMethod");
+        writeTag(METHOD_TAGS.get(method), method);
+        ensureCapacity(1);
+        _buffer.put((byte) (event.size() - 1));
+        for (Map.Entry<?, ?> e : event.entrySet()) {
+            String name = (String) e.getKey();
+            if (!"targetMethod".equals(name)) {
+                writeTag(ARGUMENT_TAGS.get(name), name);
+                writeData(e.getValue());
+            }
+        }
+        _buffer.putInt(lengthPos, _buffer.position() - lengthPos - 4);
+    }
+
+    void writeTag(@Nullable Integer tag, String name) {
+        ensureCapacity(1);
+        if (tag != null) {
+            _buffer.put((byte) (int) tag);
+        } else {
+            _buffer.put((byte) UNKNOWN);
+            writeString(name);
+        }
+    }
+
+    void writeData(@Nullable Object value) {
+        ensureCapacity(9);
+        if (value == null) {
+            _buffer.put(NULL);
+        } else if (value instanceof Boolean) {
+            _buffer.put((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer) {
+            _buffer.put(INT);
+            _buffer.putInt((Integer) value);
+        } else if (value instanceof Long) {
+            _buffer.put(LONG);
+            _buffer.putLong((Long) value);
+        } else if (value instanceof Double) {
+            _buffer.put(DOUBLE);
+            _buffer.putDouble((Double) value);
+        } else if (value instanceof String) {
+            _buffer.put(STRING);
+            writeString((String) value);
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            boolean intKeys = !map.isEmpty() && map.keySet().iterator().next() instanceof Integer;
+            _buffer.put(intKeys ? INT_MAP : STRING_MAP);
+            _buffer.putInt(map.size());
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                if (intKeys) {
+                    ensureCapacity(4);
+                    _buffer.putInt((Integer) e.getKey());
+                } else {
+                    writeString((String) e.getKey());
+                }
+                writeData(e.getValue());
+            }
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            _buffer.put(LIST);
+            _buffer.putInt(list.size());
+            for (Object item : list) {
+                writeData(item);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported value " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Writes the length of the UTF-8 representation of the string followed by the UTF-8 bytes,
+     * without allocating intermediate arrays.
+     */
+    void writeString(String s) {
+        int n = s.length();
+        ensureCapacity(4 + 3 * n); // NB 3 bytes per UTF-16 unit is enough for any character
+        int lengthPos = _buffer.position();
+        _buffer.putInt(0); // placeholder for the length
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                _buffer.put((byte) c);
+            } else if (c < 0x800) {
+                _buffer.put((byte) (0xC0 | (c >> 6)));
+                _buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                _buffer.put((byte) (0xF0 | (cp >> 18)));
+                _buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                _buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                _buffer.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate: replace it as String.getBytes does
+                _buffer.put((byte) '?');
+            } else {
+                _buffer.put((byte) (0xE0 | (c >> 12)));
+                _buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                _buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        _buffer.putInt(lengthPos, _buffer.position() - lengthPos - 4);
+    }
+
+    void ensureCapacity(int n) {
+        if (_buffer.remaining() < n) {
+            int newCapacity = Math.max(_buffer.capacity() * 2, _buffer.position() + n);
+            ByteBuffer newBuffer = ByteBuffer.allocateDirect(newCapacity).order(ByteOrder.LITTLE_ENDIAN);
+            _buffer.flip();
+            newBuffer.put(_buffer);
+            _buffer = newBuffer;
+        }
+    }
+
+    @Override
+    public ByteBuffer encodeMethodCall(@NonNull MethodCall methodCall) {
+        return StandardMethodCodec.INSTANCE.encodeMethodCall(methodCall);
+    }
+
+    @Override
+    public MethodCall decodeMethodCall(@NonNull ByteBuffer methodCall) {
+        return StandardMethodCodec.INSTANCE.decodeMethodCall(methodCall);
+    }
+
+    @Override
+    public ByteBuffer encodeErrorEnvelope(@NonNull String errorCode, @Nullable String errorMessage, @Nullable Object errorDetails) {
+        return StandardMethodCodec.INSTANCE.encodeErrorEnvelope(errorCode, errorMessage, errorDetails);
+    }
+
+    @Override
+    public ByteBuffer encodeErrorEnvelopeWithStacktrace(@NonNull String errorCode, @Nullable String errorMessage, @Nullable Object errorDetails, @Nullable String errorStacktrace) {
+        return StandardMethodCodec.INSTANCE.encodeErrorEnvelopeWithStacktrace(errorCode, errorMessage, errorDetails, errorStacktrace);
+    }
+
+    @Override
+    public Object decodeEnvelope(@NonNull ByteBuffer envelope) {
+        return StandardMethodCodec.INSTANCE.decodeEnvelope(envelope);
+    }
+}
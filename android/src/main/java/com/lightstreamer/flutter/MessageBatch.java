@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import androidx.annotation.NonNull;
+
+import com.lightstreamer.client.ClientMessageListener;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the outcomes of the messages sent through `LightstreamerClient.sendMessages` and reports them to the Flutter component
+ * with a single `MessageBatchListener.onOutcomes` event for all the outcomes received before the main thread gets to send them.
+ * <p>
+ * A message is identified by its index in the batch. The processed messages, which are usually the bulk of the outcomes,
+ * are reported as a bitmap (i.e. a list of 64-bit words where the bit `i % 64` of the word `i / 64` stands for the message `i`),
+ * along with the responses that are not empty, while each other outcome is reported as a map (see {@link #failure}).
+ */
+class MessageBatch {
+    final String _batchId;
+    final LightstreamerFlutterPlugin _plugin;
+    /**
+     * The number of messages still waiting for an outcome.
+     */
+    int _pending;
+    BitSet _processed = new BitSet();
+    Map<Integer, String> _responses = new HashMap<>();
+    List<Map<String, Object>> _failures = new ArrayList<>();
+    /**
+     * True when the outcomes collected so far are about to be sent.
+     */
+    boolean _flushScheduled;
+
+    MessageBatch(String batchId, int size, LightstreamerFlutterPlugin plugin) {
+        _batchId = batchId;
+        _pending = size;
+        _plugin = plugin;
+    }
+
+    /**
+     * Returns the listener of the message with the given index.
+     */
+    ClientMessageListener listener(int index) {
+        return new ClientMessageListener() {
+            @Override
+            public void onAbort(@NonNull String originalMessage, boolean sentOnNetwork) {
+                Map<String, Object> failure = failure(index, "onAbort");
+                failure.put("sentOnNetwork", sentOnNetwork);
+                addFailure(failure);
+            }
+
+            @Override
+            public void onDeny(@NonNull String originalMessage, int errorCode, @NonNull String errorMessage) {
+                Map<String, Object> failure = failure(index, "onDeny");
+                failure.put("errorCode", errorCode);
+                failure.put("errorMessage", errorMessage);
+                addFailure(failure);
+            }
+
+            @Override
+            public void onDiscarded(@NonNull String originalMessage) {
+                addFailure(failure(index, "onDiscarded"));
+            }
+
+            @Override
+            public void onError(@NonNull String originalMessage) {
+                addFailure(failure(index, "onError"));
+            }
+
+            @Override
+            public void onProcessed(@NonNull String originalMessage, @NonNull String response) {
+                addProcessed(index, response);
+            }
+        };
+    }
+
+    static Map<String, Object> failure(int index, String outcome) {
+        Map<String, Object> failure = new HashMap<>();
+        failure.put("index", index);
+        failure.put("outcome", outcome);
+        return failure;
+    }
+
+    synchronized void addProcessed(int index, String response) {
+        _processed.set(index);
+        if (!response.isEmpty()) {
+            _responses.put(index, response);
+        }
+        onOutcome();
+    }
+
+    synchronized void addFailure(Map<String, Object> failure) {
+        _failures.add(failure);
+        onOutcome();
+    }
+
+    void onOutcome() {
+        _pending--;
+        if (!_flushScheduled) {
+            _flushScheduled = true;
+            _plugin._loop.post(this::flush);
+        }
+    }
+
+    /**
+     * Sends the outcomes collected since the previous event.
+     */
+    void flush() {
+        Map<String, Object> arguments = new HashMap<>();
+        synchronized (this) {
+            _flushScheduled = false;
+            List<Long> processed = new ArrayList<>();
+            for (long word : _processed.toLongArray()) {
+                processed.add(word);
+            }
+            arguments.put("processed", processed);
+            arguments.put("responses", _responses);
+            arguments.put("failures", _failures);
+            arguments.put("pending", _pending);
+            _processed = new BitSet();
+            _responses = new HashMap<>();
+            _failures = new ArrayList<>();
+        }
+        arguments.put("batchId", _batchId);
+        _plugin.invokeMethod("MessageBatchListener.onOutcomes", arguments);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import io.flutter.plugin.common.StandardMessageCodec;
+
+/**
+ * Reads and writes the files where the plugin persists its state across the restarts of the app (see {@link WarmStart} and {@link LastValueCache}).
+ * The content is encoded with {@link StandardMessageCodec}, so it can contain the same values as the method calls.
+ * NB the methods do blocking I/O, so they must not be called on the main thread.
+ */
+class MessageFiles {
+
+    static void write(File file, Object message) {
+        try {
+            ByteBuffer buffer = StandardMessageCodec.INSTANCE.encodeMessage(message);
+            byte[] bytes = new byte[buffer.position()];
+            buffer.flip();
+            buffer.get(bytes);
+            // the file is replaced atomically, so that a crash doesn't leave it truncated
+            File tmp = new File(file.getPath() + ".tmp");
+            Files.write(tmp.toPath(), bytes);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (LightstreamerFlutterPlugin.channelLogger.isWarnEnabled()) {
+                LightstreamerFlutterPlugin.channelLogger.warn("Cannot write " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the content of the file, or null if the file doesn't exist or can't be read.
+     */
+    @Nullable
+    static Object read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return StandardMessageCodec.INSTANCE.decodeMessage(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+        } catch (Exception e) {
+            if (LightstreamerFlutterPlugin.channelLogger.isWarnEnabled()) {
+                LightstreamerFlutterPlugin.channelLogger.warn("Cannot read " + file, e);
+            }
+            return null;
+        }
+    }
+}
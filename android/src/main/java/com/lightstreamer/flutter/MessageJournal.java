@@ -0,0 +1,472 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.lightstreamer.client.ClientMessageListener;
+import com.lightstreamer.client.LightstreamerClient;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A write-ahead journal of the messages sent in a sequence with the enqueueWhileDisconnected flag by the clients that enable it
+ * (see `LightstreamerClient.setMessageJournaling`), so that the messages survive the termination of the app.
+ * <p>
+ * A message is appended to the file and handed to the client only when the file has been synced, but the records written
+ * in the meantime are synced together, so that a burst of messages pays for a single sync. The I/O is performed by a background
+ * thread, so the method calls never wait for the disk. When a message gets an outcome a record marking it as completed is appended,
+ * except when a message not sent on the network is aborted by a disconnection not requested by the app (or it was left by a previous
+ * run of the app, whose listener is gone): such a message is sent again on the next connection. The messages left without
+ * an outcome by a previous run of the app are replayed, in the order
+ * they were sent, by the first client that enables the journal with the same scope (i.e. Server address, Adapter Set and user,
+ * so that the messages of a user are never sent in the session of another one),
+ * as soon as it connects or sends a journaled message; the replayed messages are handed to the client all together, without
+ * waiting for the outcome of the previous ones, since the client preserves the order of a sequence anyway.
+ * <p>
+ * The delivery is at-least-once: a message processed by the Server just before the termination of the app is sent again.
+ * The file is compacted, by rewriting only the messages without an outcome, when the journal is loaded and whenever
+ * {@link #COMPACTION_THRESHOLD} outcomes have been appended.
+ */
+class MessageJournal {
+    static final String FILE_NAME = "com.lightstreamer.flutter.message_journal";
+    static final byte MESSAGE_RECORD = 1;
+    static final byte OUTCOME_RECORD = 2;
+    static final int COMPACTION_THRESHOLD = 1000;
+
+    /**
+     * A journaled message.
+     */
+    static class Entry {
+        /**
+         * The position of the message in the journal, which the writer assigns to a new message once the file has been loaded.
+         */
+        long _id;
+        final String _scope;
+        final String _message;
+        final String _sequence;
+        final int _delayTimeout;
+        /**
+         * The listener of the Flutter component, which is null when the message has been replayed from the file.
+         */
+        @Nullable
+        final ClientMessageListener _listener;
+        /**
+         * The client the message is (or will be) handed to.
+         */
+        LightstreamerClient _client;
+        /**
+         * Whether the app has disconnected the client while the message was waiting for an outcome (see {@link #onDisconnect}).
+         */
+        volatile boolean _disconnected;
+
+        Entry(long id, String scope, String message, String sequence, int delayTimeout, @Nullable ClientMessageListener listener) {
+            _id = id;
+            _scope = scope;
+            _message = message;
+            _sequence = sequence;
+            _delayTimeout = delayTimeout;
+            _listener = listener;
+        }
+    }
+
+    /**
+     * A pending operation of the writer, which, in this order:
+     * - hands the messages of `_resendScope` waiting to be sent again (if any) to `_client`;
+     * - appends the new message `_entry` (if any) to the file, and then hands it to its client;
+     * - appends `_record` (if any) to the file.
+     */
+    static class Operation {
+        @Nullable
+        final String _resendScope;
+        @Nullable
+        final LightstreamerClient _client;
+        @Nullable
+        final Entry _entry;
+        @Nullable
+        final byte[] _record;
+
+        Operation(@Nullable String resendScope, @Nullable LightstreamerClient client, @Nullable Entry entry, @Nullable byte[] record) {
+            _resendScope = resendScope;
+            _client = client;
+            _entry = entry;
+            _record = record;
+        }
+    }
+
+    final File _file;
+    /**
+     * Writes the file and hands the messages to the clients, so that the method calls don't wait for the I/O.
+     */
+    final ExecutorService _executor = Executors.newSingleThreadExecutor();
+    final Queue<Operation> _operations = new ConcurrentLinkedQueue<>();
+    final AtomicBoolean _writeScheduled = new AtomicBoolean();
+    /**
+     * Maps a scope to the messages waiting to be sent again (either left by a previous run or aborted), in the order they were sent.
+     */
+    final Map<String, List<Entry>> _unsent = new HashMap<>();
+    /**
+     * The messages handed to the clients and still waiting for an outcome.
+     */
+    final Set<Entry> _inFlight = new HashSet<>();
+    /**
+     * The fields below are only accessed by the writer.
+     */
+    long _nextId;
+    @Nullable
+    FileOutputStream _out;
+    /**
+     * The number of outcomes appended since the last compaction.
+     */
+    int _outcomes;
+
+    MessageJournal(File file) {
+        _file = file;
+        // NB the executor is single-threaded, so the writer only runs after the load
+        _executor.execute(this::load);
+    }
+
+    /**
+     * Returns the scope of the messages of a client with the given connection details (see `LightstreamerClient.setMessageJournaling`).
+     * NB the Flutter component computes the same scope for the journaled messages.
+     */
+    static String scopeOf(Map<String, Object> details) {
+        Object user = details.get("user");
+        return details.get("serverAddress") + "|" + details.get("adapterSet") + "|" + (user == null ? "" : user);
+    }
+
+    /**
+     * Journals the message and then hands it to the client, after the messages of the same scope waiting to be sent again.
+     */
+    void send(LightstreamerClient client, String scope, String message, String sequence, int delayTimeout, @Nullable ClientMessageListener listener) {
+        Entry entry = new Entry(-1, scope, message, sequence, delayTimeout, listener);
+        entry._client = client;
+        enqueue(new Operation(scope, client, entry, null));
+    }
+
+    /**
+     * Hands the messages of the scope waiting to be sent again to the client.
+     */
+    void resend(LightstreamerClient client, String scope) {
+        enqueue(new Operation(scope, client, null, null));
+    }
+
+    /**
+     * Records that the message has got an outcome, so that it is not sent again.
+     */
+    void complete(Entry entry) {
+        synchronized (this) {
+            _inFlight.remove(entry);
+        }
+        enqueue(new Operation(null, null, null, encodeOutcome(entry._id)));
+    }
+
+    /**
+     * Notes that the app is disconnecting the client, so that the messages it aborts are reported rather than sent again.
+     * NB it must be called before the client is disconnected.
+     */
+    synchronized void onDisconnect(LightstreamerClient client) {
+        for (Entry entry : _inFlight) {
+            if (entry._client == client) {
+                entry._disconnected = true;
+            }
+        }
+    }
+
+    /**
+     * Keeps the message for the next connection of its scope.
+     */
+    synchronized void retry(Entry entry) {
+        _inFlight.remove(entry);
+        List<Entry> unsent = _unsent.computeIfAbsent(entry._scope, scope -> new ArrayList<>());
+        // NB the list is kept in the order the messages were sent
+        int i = unsent.size();
+        while (i > 0 && unsent.get(i - 1)._id > entry._id) {
+            i--;
+        }
+        unsent.add(i, entry);
+    }
+
+    void enqueue(Operation operation) {
+        _operations.add(operation);
+        if (!_writeScheduled.getAndSet(true)) {
+            _executor.execute(this::write);
+        }
+    }
+
+    /**
+     * Appends the pending records to the file, syncs it once and then hands the pending messages to their clients.
+     */
+    void write() {
+        _writeScheduled.set(false);
+        List<byte[]> records = new ArrayList<>();
+        List<Entry> entries = new ArrayList<>();
+        Operation op;
+        while ((op = _operations.poll()) != null) {
+            if (op._resendScope != null) {
+                List<Entry> unsent;
+                synchronized (this) {
+                    unsent = _unsent.remove(op._resendScope);
+                }
+                if (unsent != null) {
+                    if (LightstreamerFlutterPlugin.channelLogger.isInfoEnabled()) {
+                        LightstreamerFlutterPlugin.channelLogger.info("Sending again " + unsent.size() + " journaled messages", null);
+                    }
+                    for (Entry entry : unsent) {
+                        entry._client = op._client;
+                        entry._disconnected = false;
+                        entries.add(entry);
+                    }
+                }
+            }
+            if (op._entry != null) {
+                op._entry._id = _nextId++;
+                records.add(encodeMessage(op._entry));
+                entries.add(op._entry);
+            }
+            if (op._record != null) {
+                records.add(op._record);
+                _outcomes++;
+            }
+        }
+        synchronized (this) {
+            _inFlight.addAll(entries);
+        }
+        try {
+            for (byte[] record : records) {
+                _out.write(record);
+            }
+            if (!records.isEmpty()) {
+                _out.getFD().sync();
+            }
+        } catch (IOException | RuntimeException e) {
+            // the messages are sent anyway: they are only less durable
+            if (LightstreamerFlutterPlugin.channelLogger.isWarnEnabled()) {
+                LightstreamerFlutterPlugin.channelLogger.warn("Cannot write " + _file, e);
+            }
+        }
+        if (_outcomes >= COMPACTION_THRESHOLD) {
+            List<Entry> pending = new ArrayList<>();
+            synchronized (this) {
+                pending.addAll(_inFlight);
+                for (List<Entry> unsent : _unsent.values()) {
+                    pending.addAll(unsent);
+                }
+            }
+            pending.sort((a, b) -> Long.compare(a._id, b._id));
+            rewrite(pending);
+        }
+        for (Entry entry : entries) {
+            entry._client.sendMessage(entry._message, entry._sequence, entry._delayTimeout, new JournaledMessageListener(this, entry), true);
+        }
+    }
+
+    /**
+     * Replaces the file with one containing only the given messages, and reopens it for appending.
+     */
+    void rewrite(Collection<Entry> pending) {
+        try {
+            if (_out != null) {
+                _out.close();
+                _out = null;
+            }
+            File tmp = new File(_file.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                for (Entry entry : pending) {
+                    out.write(encodeMessage(entry));
+                }
+                out.getFD().sync();
+            }
+            Files.move(tmp.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            _outcomes = 0;
+        } catch (IOException e) {
+            if (LightstreamerFlutterPlugin.channelLogger.isWarnEnabled()) {
+                LightstreamerFlutterPlugin.channelLogger.warn("Cannot write " + _file, e);
+            }
+        }
+        try {
+            _out = new FileOutputStream(_file, true);
+        } catch (IOException e) {
+            if (LightstreamerFlutterPlugin.channelLogger.isWarnEnabled()) {
+                LightstreamerFlutterPlugin.channelLogger.warn("Cannot write " + _file, e);
+            }
+        }
+    }
+
+    /**
+     * Reads the messages without an outcome and rewrites the file with only them.
+     */
+    void load() {
+        Map<Long, Entry> pending = new LinkedHashMap<>();
+        long nextId = 0;
+        if (_file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(_file)))) {
+                while (true) {
+                    byte type = in.readByte();
+                    long id = in.readLong();
+                    nextId = Math.max(nextId, id + 1);
+                    if (type == MESSAGE_RECORD) {
+                        String scope = readString(in);
+                        String sequence = readString(in);
+                        int delayTimeout = in.readInt();
+                        String message = readString(in);
+                        pending.put(id, new Entry(id, scope, message, sequence, delayTimeout, null));
+                    } else {
+                        pending.remove(id);
+                    }
+                }
+            } catch (EOFException e) {
+                // NB the last record may have been truncated by the termination of the app
+            } catch (IOException | RuntimeException e) {
+                if (LightstreamerFlutterPlugin.channelLogger.isWarnEnabled()) {
+                    LightstreamerFlutterPlugin.channelLogger.warn("Cannot read " + _file, e);
+                }
+            }
+        }
+        _nextId = nextId;
+        synchronized (this) {
+            for (Entry entry : pending.values()) {
+                _unsent.computeIfAbsent(entry._scope, scope -> new ArrayList<>()).add(entry);
+            }
+        }
+        rewrite(pending.values());
+    }
+
+    static byte[] encodeMessage(Entry entry) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(MESSAGE_RECORD);
+            out.writeLong(entry._id);
+            writeString(out, entry._scope);
+            writeString(out, entry._sequence);
+            out.writeInt(entry._delayTimeout);
+            writeString(out, entry._message);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static byte[] encodeOutcome(long id) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(OUTCOME_RECORD);
+            out.writeLong(id);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a string of any length (unlike {@link DataOutputStream#writeUTF}).
+     */
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Records the outcome of a journaled message before notifying the listener of the Flutter component (if any).
+     */
+    static class JournaledMessageListener implements ClientMessageListener {
+        final MessageJournal _journal;
+        final Entry _entry;
+
+        JournaledMessageListener(MessageJournal journal, Entry entry) {
+            _journal = journal;
+            _entry = entry;
+        }
+
+        @Override
+        public void onAbort(@NonNull String originalMessage, boolean sentOnNetwork) {
+            if (!sentOnNetwork && (_entry._listener == null || !_entry._disconnected)) {
+                // the message is not lost yet: the listener will be notified of the outcome of the next attempt
+                _journal.retry(_entry);
+                return;
+            }
+            // NB the message may have been processed, or the app has given up on it, so it is not sent again
+            _journal.complete(_entry);
+            if (_entry._listener != null) {
+                _entry._listener.onAbort(originalMessage, sentOnNetwork);
+            }
+        }
+
+        @Override
+        public void onDeny(@NonNull String originalMessage, int errorCode, @NonNull String errorMessage) {
+            _journal.complete(_entry);
+            if (_entry._listener != null) {
+                _entry._listener.onDeny(originalMessage, errorCode, errorMessage);
+            }
+        }
+
+        @Override
+        public void onDiscarded(@NonNull String originalMessage) {
+            _journal.complete(_entry);
+            if (_entry._listener != null) {
+                _entry._listener.onDiscarded(originalMessage);
+            }
+        }
+
+        @Override
+        public void onError(@NonNull String originalMessage) {
+            _journal.complete(_entry);
+            if (_entry._listener != null) {
+                _entry._listener.onError(originalMessage);
+            }
+        }
+
+        @Override
+        public void onProcessed(@NonNull String originalMessage, @NonNull String response) {
+            _journal.complete(_entry);
+            if (_entry._listener != null) {
+                _entry._listener.onProcessed(originalMessage, response);
+            }
+        }
+    }
+}
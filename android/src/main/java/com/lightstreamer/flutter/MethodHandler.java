@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import androidx.annotation.NonNull;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Performs a method called by the Flutter component through the channel com.lightstreamer.flutter/methods.
+ * The handlers are registered by name in {@link LightstreamerFlutterPlugin#registerMethodHandler(String, MethodHandler)}.
+ */
+interface MethodHandler {
+    /**
+     * Performs the call and reports its outcome through `result`.
+     * The exceptions thrown by the handler are reported to the Flutter component as internal errors.
+     */
+    void handle(@NonNull MethodCall call, @NonNull MethodChannel.Result result) throws Exception;
+}
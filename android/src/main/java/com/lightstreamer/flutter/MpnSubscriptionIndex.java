@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import androidx.annotation.Nullable;
+
+import com.lightstreamer.client.LightstreamerClient;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indexes the MpnSubscriptions known to the Flutter component by client and by server subscriptionId
+ * (see `MpnSubscription.getSubscriptionId`), so that the MpnSubscriptions returned by the SDK can be matched
+ * with their mpnSubIds without scanning the whole `_mpnSubMap`.
+ * <p>
+ * An entry is added when the subscriptionId of an MpnSubscription becomes known, i.e. when the MpnSubscription
+ * is activated (see {@link MyMpnSubscriptionListener#onSubscription()}) or when a Server MpnSubscription is first
+ * returned by the SDK. Since an MpnSubscription can later be subscribed to by another client or get another subscriptionId,
+ * the entries may become stale: {@link #find(LightstreamerClient, String)} checks them against `_mpnSubMap` and drops
+ * the stale ones.
+ * <p>
+ * Since the SDK can return an MpnSubscription just activated before its `onSubscription` event is notified,
+ * the MpnSubscriptions subscribed to by the Flutter component are also kept in a (normally tiny) set of pending
+ * MpnSubscriptions until they are indexed, and the set is searched when the index has no match.
+ */
+class MpnSubscriptionIndex {
+    final LightstreamerFlutterPlugin _plugin;
+    /**
+     * Maps a client to a map from subscriptionIds to mpnSubIds.
+     */
+    final Map<LightstreamerClient, Map<String, String>> _index = new ConcurrentHashMap<>();
+    /**
+     * The MpnSubscriptions subscribed to by the Flutter component and not indexed yet.
+     */
+    final Set<MyMpnSubscription> _pending = ConcurrentHashMap.newKeySet();
+
+    MpnSubscriptionIndex(LightstreamerFlutterPlugin plugin) {
+        _plugin = plugin;
+    }
+
+    void add(MyMpnSubscription mySub) {
+        String subscriptionId = mySub._sub.getSubscriptionId();
+        if (subscriptionId != null) {
+            _index.computeIfAbsent(mySub._client, c -> new ConcurrentHashMap<>()).put(subscriptionId, mySub._mpnSubId);
+            _pending.remove(mySub);
+        }
+    }
+
+    /**
+     * Notifies that the MpnSubscription is being subscribed to, so its subscriptionId will be known soon.
+     */
+    void addPending(MyMpnSubscription mySub) {
+        _pending.add(mySub);
+    }
+
+    /**
+     * Notifies that the subscription attempt failed.
+     */
+    void removePending(MyMpnSubscription mySub) {
+        _pending.remove(mySub);
+    }
+
+    void remove(MyMpnSubscription mySub) {
+        _pending.remove(mySub);
+        String subscriptionId = mySub._sub.getSubscriptionId();
+        Map<String, String> bySubscriptionId = _index.get(mySub._client);
+        if (subscriptionId != null && bySubscriptionId != null) {
+            bySubscriptionId.remove(subscriptionId, mySub._mpnSubId);
+        }
+    }
+
+    /**
+     * Returns the mpnSubId of the MpnSubscription owned by `client` having the given subscriptionId,
+     * or null if there is no such MpnSubscription.
+     */
+    @Nullable
+    String find(LightstreamerClient client, String subscriptionId) {
+        Map<String, String> bySubscriptionId = _index.get(client);
+        String mpnSubId = bySubscriptionId == null ? null : bySubscriptionId.get(subscriptionId);
+        if (mpnSubId != null) {
+            MyMpnSubscription mySub = _plugin._mpnSubMap.get(mpnSubId);
+            if (mySub != null && mySub._client == client && subscriptionId.equals(mySub._sub.getSubscriptionId())) {
+                return mpnSubId;
+            }
+            // stale entry
+            bySubscriptionId.remove(subscriptionId, mpnSubId);
+        }
+        for (MyMpnSubscription mySub : _pending) {
+            if (mySub._client == client && subscriptionId.equals(mySub._sub.getSubscriptionId())
+                    && _plugin._mpnSubMap.get(mySub._mpnSubId) == mySub) {
+                add(mySub);
+                return mySub._mpnSubId;
+            }
+        }
+        return null;
+    }
+
+    void clear() {
+        _index.clear();
+        _pending.clear();
+    }
+}
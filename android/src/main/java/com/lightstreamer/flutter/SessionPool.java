@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import com.lightstreamer.client.ClientListener;
+import com.lightstreamer.client.LightstreamerClient;
+import com.lightstreamer.client.Subscription;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lets the clientIds that opt in to session sharing (see `LightstreamerClient.setSessionSharing`) and connect with the same
+ * connection details and options use a single LightstreamerClient, hence a single Server session.
+ * <p>
+ * The first clientId connecting with a given configuration lends its own client to the session; the clientIds joining later
+ * are remapped to that client in `_clientMap`, along with their active Subscriptions and their {@link MyClientListener},
+ * so the SDK fans the client events out to all of them. The session is reference-counted by its clientIds: when a clientId
+ * disconnects while others still use the session, it is moved to a new private (disconnected) client,
+ * and only the disconnection of the last clientId closes the session.
+ * <p>
+ * NB the MPN devices and subscriptions of a shared session are shared as well.
+ */
+class SessionPool {
+    static class Session {
+        /**
+         * The connection details and options of the session.
+         */
+        final List<Map<String, Object>> _key;
+        final LightstreamerClient _client;
+        final Set<String> _clientIds = new HashSet<>();
+
+        Session(List<Map<String, Object>> key, LightstreamerClient client) {
+            _key = key;
+            _client = client;
+        }
+    }
+
+    final LightstreamerFlutterPlugin _plugin;
+    /**
+     * Maps the connection details and options of a session to the session.
+     */
+    final Map<List<Map<String, Object>>, Session> _sessions = new HashMap<>();
+    /**
+     * Maps a clientId to the session it takes part in.
+     */
+    final Map<String, Session> _clientSessions = new HashMap<>();
+
+    SessionPool(LightstreamerFlutterPlugin plugin) {
+        _plugin = plugin;
+    }
+
+    static List<Map<String, Object>> keyOf(Map<String, Object> connectionDetails, Map<String, Object> connectionOptions) {
+        return Arrays.asList(connectionDetails, connectionOptions);
+    }
+
+    /**
+     * Makes the clientId take part in the session with the given connection details and options, leaving the session
+     * it currently takes part in (if different). Returns the client the clientId must connect with.
+     */
+    synchronized LightstreamerClient join(String clientId, LightstreamerClient client, Map<String, Object> connectionDetails, Map<String, Object> connectionOptions) {
+        List<Map<String, Object>> key = keyOf(connectionDetails, connectionOptions);
+        Session current = _clientSessions.get(clientId);
+        if (current != null) {
+            if (current._key.equals(key)) {
+                return current._client;
+            }
+            leave(clientId);
+            client = _plugin._clientMap.require(clientId);
+        }
+        Session session = _sessions.get(key);
+        if (session == null) {
+            session = new Session(key, client);
+            _sessions.put(key, session);
+        } else {
+            move(clientId, client, session._client);
+            if (client != session._client) {
+                // the client the clientId used so far (e.g. a private one, connected before sharing was enabled) would be left orphaned
+                client.disconnect();
+            }
+            if (LightstreamerFlutterPlugin.channelLogger.isDebugEnabled()) {
+                LightstreamerFlutterPlugin.channelLogger.debug("LightstreamerClient " + clientId + " joined a session shared with " + session._clientIds, null);
+            }
+        }
+        session._clientIds.add(clientId);
+        _clientSessions.put(clientId, session);
+        return session._client;
+    }
+
+    /**
+     * Makes the clientId leave its session (if any).
+     * Returns true if the session is still used by other clientIds, in which case the clientId has been moved to a new private client;
+     * returns false if the clientId doesn't take part in a session or was the last one, in which case it keeps the client of the session,
+     * and the caller is responsible for disconnecting it.
+     */
+    synchronized boolean leave(String clientId) {
+        Session session = _clientSessions.remove(clientId);
+        if (session == null) {
+            return false;
+        }
+        session._clientIds.remove(clientId);
+        if (session._clientIds.isEmpty()) {
+            _sessions.remove(session._key);
+            return false;
+        }
+        move(clientId, session._client, _plugin.newClient(clientId));
+        if (LightstreamerFlutterPlugin.channelLogger.isDebugEnabled()) {
+            LightstreamerFlutterPlugin.channelLogger.debug("LightstreamerClient " + clientId + " left the session shared with " + session._clientIds, null);
+        }
+        return true;
+    }
+
+    synchronized void clear() {
+        _sessions.clear();
+        _clientSessions.clear();
+    }
+
+    /**
+     * Transfers the active Subscriptions and the listener of the clientId from a client to another and remaps the clientId to the latter.
+     * If the status of the clients differs, the listener is notified of the new status and of the properties of the new session.
+     */
+    void move(String clientId, LightstreamerClient from, LightstreamerClient to) {
+        Set<String> subIds = _plugin._clientSubIds.get(clientId);
+        if (subIds != null) {
+            List<Subscription> active = from.getSubscriptions();
+            for (String subId : subIds) {
+                MySubscription mySub = _plugin._subMap.get(subId);
+                if (mySub != null && active.contains(mySub._sub)) {
+                    from.unsubscribe(mySub._sub);
+                    to.subscribe(mySub._sub);
+                }
+            }
+        }
+        MyClientListener oldListener = null;
+        for (ClientListener listener : from.getListeners()) {
+            if (listener instanceof MyClientListener && ((MyClientListener) listener).clientId.equals(clientId)) {
+                oldListener = (MyClientListener) listener;
+                from.removeListener(listener);
+            }
+        }
+        // a new private client already has a listener of the clientId, which is replaced as well
+        for (ClientListener listener : to.getListeners()) {
+            if (listener instanceof MyClientListener && ((MyClientListener) listener).clientId.equals(clientId)) {
+                to.removeListener(listener);
+            }
+        }
+        MyClientListener newListener = new MyClientListener(clientId, to, _plugin,
+                oldListener != null ? oldListener.counters : _plugin.getClientMetrics(clientId)._counters);
+        to.addListener(newListener);
+        _plugin._clientMap.put(clientId, to);
+        String status = to.getStatus();
+        if (!status.equals(from.getStatus())) {
+            newListener.notifyState();
+        }
+    }
+}
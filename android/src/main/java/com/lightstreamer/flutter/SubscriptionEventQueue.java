@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import android.os.Looper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounds the number of events of a subscription that are waiting to be delivered to the Flutter component
+ * (see `Subscription.setEventQueueMaxSize`).
+ * <p>
+ * The events are queued by the threads of the SDK and the whole queue is delivered as a List by a single task
+ * posted to the main Looper, so at most one message per subscription waits in the Looper queue, however slow the main thread is.
+ * When batching is enabled (see {@link EventBatcher}), the drained events are added to the current batch instead.
+ * When the queue is full, the {@link OverflowPolicy} determines how room is made for a new event.
+ * Only the real-time `onItemUpdate` events can be dropped or merged: snapshot updates, row diffs and the other events are always queued,
+ * hence the queue can exceed its maximum size when it doesn't contain updates that can be dropped.
+ * <p>
+ * The number of updates dropped for an item is notified through an `onItemDroppedUpdates` event,
+ * delivered before the next update of the item.
+ */
+class SubscriptionEventQueue {
+    enum OverflowPolicy {
+        /**
+         * The new update is merged with the last queued update of the same item, as done by {@link ItemUpdateConflator};
+         * if there is no such update, or the subscription mode is not MERGE, the oldest update is dropped as with DROP_OLDEST.
+         */
+        CONFLATE,
+        /**
+         * The oldest queued update is dropped. With the payload profiles that only carry the changed fields,
+         * only an update followed by a queued update of the same item can be dropped and its changed fields are carried over to the latter,
+         * so that the values reconstructed by the Flutter component stay correct.
+         */
+        DROP_OLDEST,
+        /**
+         * The thread of the SDK delivering the event waits until the main thread makes room in the queue.
+         * The main thread itself never waits, nor does a thread that could hold a lock needed by the main thread.
+         * <p>
+         * NB the SDK delivers the events of all the clients through a single thread, so this applies back-pressure to the whole SDK:
+         * while the queue is full, no event of any other subscription or client is delivered either.
+         */
+        BLOCK
+    }
+
+    final MySubscriptionListener _listener;
+    final int _maxSize;
+    final OverflowPolicy _policy;
+    final boolean _canConflate;
+    final Runnable _drainTask = this::drain;
+    ArrayDeque<Map<String, Object>> _queue = new ArrayDeque<>();
+    /**
+     * Maps an itemPos to the number of the updates of the item dropped since the last notification.
+     */
+    final Map<Integer, Integer> _dropped = new LinkedHashMap<>();
+    final Map<Integer, Object> _droppedItemNames = new LinkedHashMap<>();
+    boolean _drainScheduled;
+
+    SubscriptionEventQueue(MySubscriptionListener listener, int maxSize, OverflowPolicy policy, boolean canConflate) {
+        _listener = listener;
+        _maxSize = maxSize;
+        _policy = policy;
+        _canConflate = canConflate;
+    }
+
+    /**
+     * Queues an event. It can be called by any thread.
+     * When `mayBlock` is false, the BLOCK policy doesn't wait and lets the queue exceed its maximum size.
+     */
+    void offer(String method, Map<String, Object> arguments, boolean mayBlock) {
+        if (LightstreamerFlutterPlugin.channelLogger.isDebugEnabled()) {
+            LightstreamerFlutterPlugin.channelLogger.debug("Queueing " + method + " " + arguments, null);
+        }
+        arguments.put("targetMethod", method);
+        boolean isUpdate = isDroppableUpdate(arguments);
+        synchronized (this) {
+            if (_queue.size() >= _maxSize) {
+                switch (_policy) {
+                    case CONFLATE:
+                        if (isUpdate && _canConflate && conflate(arguments)) {
+                            return;
+                        }
+                        dropOldest();
+                        break;
+                    case DROP_OLDEST:
+                        dropOldest();
+                        break;
+                    case BLOCK:
+                        if (mayBlock && Looper.myLooper() != _listener._plugin._loop.getLooper()) {
+                            awaitRoom();
+                        }
+                        break;
+                }
+            }
+            _queue.add(arguments);
+            if (!_drainScheduled) {
+                _drainScheduled = true;
+                _listener._plugin._loop.post(_drainTask);
+            }
+        }
+    }
+
+    /**
+     * The number of the events waiting in the queue.
+     */
+    synchronized int size() {
+        return _queue.size();
+    }
+
+    void awaitRoom() {
+        boolean interrupted = false;
+        while (_queue.size() >= _maxSize) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Merges the update with the last queued update of the same item, provided that no other event of the subscription
+     * was queued after it. Returns false if there is no such update.
+     */
+    boolean conflate(Map<String, Object> arguments) {
+        Object itemPos = arguments.get("itemPos");
+        Iterator<Map<String, Object>> it = _queue.descendingIterator();
+        while (it.hasNext()) {
+            Map<String, Object> queued = it.next();
+            if (!isDroppableUpdate(queued)) {
+                return false;
+            }
+            if (itemPos.equals(queued.get("itemPos"))) {
+                Map<String, Object> merged = ItemUpdateConflator.merge(queued, arguments);
+                queued.clear();
+                queued.putAll(merged);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops the oldest update that can be dropped, if any.
+     */
+    void dropOldest() {
+        Iterator<Map<String, Object>> it = _queue.iterator();
+        while (it.hasNext()) {
+            Map<String, Object> queued = it.next();
+            if (!isDroppableUpdate(queued)) {
+                continue;
+            }
+            if (!queued.containsKey("fieldsByPosition")) {
+                // only the changed fields are carried: the changes must be passed on to the next update of the item
+                Map<String, Object> next = findNextUpdate(queued);
+                if (next == null) {
+                    continue;
+                }
+                ItemUpdateConflator.merge(queued, next);
+            }
+            it.remove();
+            Integer itemPos = (Integer) queued.get("itemPos");
+            Integer count = _dropped.get(itemPos);
+            _dropped.put(itemPos, count == null ? 1 : count + 1);
+            _droppedItemNames.put(itemPos, queued.get("itemName"));
+            return;
+        }
+    }
+
+    Map<String, Object> findNextUpdate(Map<String, Object> update) {
+        Object itemPos = update.get("itemPos");
+        boolean found = false;
+        for (Map<String, Object> queued : _queue) {
+            if (found) {
+                if ("SubscriptionListener.onItemUpdate".equals(queued.get("targetMethod")) && itemPos.equals(queued.get("itemPos"))) {
+                    return queued;
+                }
+            } else if (queued == update) {
+                found = true;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Delivers the queued events. It is executed by the main thread.
+     */
+    void drain() {
+        List<Object> events;
+        synchronized (this) {
+            _drainScheduled = false;
+            ArrayDeque<Map<String, Object>> queue = _queue;
+            _queue = new ArrayDeque<>();
+            notifyAll();
+            events = new ArrayList<>(queue.size() + _dropped.size());
+            for (Map<String, Object> event : queue) {
+                if (!_dropped.isEmpty() && isDroppableUpdate(event)) {
+                    addDroppedEvent(events, (Integer) event.get("itemPos"));
+                }
+                events.add(event);
+            }
+            for (Integer itemPos : new ArrayList<>(_dropped.keySet())) {
+                addDroppedEvent(events, itemPos);
+            }
+        }
+        if (!events.isEmpty()) {
+            _listener._counters._eventsPosted.add(events.size());
+            _listener._plugin._eventCounters._eventsPosted.add(events.size());
+            // NB when batching is enabled, the events join the batch, so that they are delivered in order with the others
+            EventBatcher batcher = _listener._plugin._eventBatcher;
+            if (batcher != null) {
+                batcher.addAll(events);
+            } else {
+                _listener._plugin.deliverEvent(events);
+            }
+        }
+    }
+
+    void addDroppedEvent(List<Object> events, Integer itemPos) {
+        Integer count = _dropped.remove(itemPos);
+        if (count == null) {
+            return;
+        }
+        Map<String, Object> arguments = new LinkedHashMap<>();
+        arguments.put("itemName", _droppedItemNames.remove(itemPos));
+        arguments.put("itemPos", itemPos);
+        arguments.put("droppedUpdates", count);
+        arguments.put("subId", _listener._subId);
+        arguments.put("targetMethod", "SubscriptionListener.onItemDroppedUpdates");
+        events.add(arguments);
+    }
+
+    static boolean isDroppableUpdate(Map<String, Object> arguments) {
+        return "SubscriptionListener.onItemUpdate".equals(arguments.get("targetMethod"))
+                && Boolean.FALSE.equals(arguments.get("isSnapshot"));
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import androidx.annotation.Nullable;
+
+import com.lightstreamer.client.ItemUpdate;
+import com.lightstreamer.client.Subscription;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of what is needed to return the current values of a Subscription in bulk
+ * (see `Subscription.getValues` in the Flutter component), i.e.
+ * 1. the number of items and fields, which are not known to the client when the Subscription is described by an item group or a field schema, and
+ * 2. the keys of the items of a COMMAND Subscription, which the SDK doesn't expose.
+ * <p>
+ * The values themselves are read from the Subscription.
+ * The methods `on*` are called by the SubscriptionListener, while {@link #getValues(Integer, Integer, Integer, Integer)}
+ * can be called by any thread.
+ */
+class SubscriptionValueTable {
+    final Subscription _sub;
+    final boolean _isCommand;
+    /**
+     * The highest item position known so far.
+     */
+    volatile int _itemCount;
+    /**
+     * The number of fields (including the second-level ones) or 0 if it is not known yet.
+     */
+    volatile int _fieldCount;
+    volatile int _keyPosition;
+    volatile int _commandPosition;
+    /**
+     * Maps an item position to the keys of the item, in order of arrival (only for COMMAND Subscriptions).
+     * The sets are synchronized, since they are read by the method calls while being updated by the SDK.
+     */
+    final Map<Integer, Set<String>> _keys = new ConcurrentHashMap<>();
+
+    SubscriptionValueTable(Subscription sub) {
+        _sub = sub;
+        _isCommand = "COMMAND".equals(sub.getMode());
+    }
+
+    void onSubscription(@Nullable String[] fieldNames) {
+        String[] items = _sub.getItems();
+        _itemCount = items == null ? 0 : items.length;
+        _fieldCount = fieldNames == null ? 0 : fieldNames.length;
+        if (_isCommand) {
+            _keyPosition = _sub.getKeyPosition();
+            _commandPosition = _sub.getCommandPosition();
+        }
+    }
+
+    void onItemUpdate(ItemUpdate update) {
+        int itemPos = update.getItemPos();
+        if (itemPos > _itemCount) {
+            _itemCount = itemPos;
+        }
+        if (_fieldCount == 0) {
+            _fieldCount = update.getFieldsByPosition().size();
+        }
+        if (_isCommand) {
+            String key = update.getValue(_keyPosition);
+            if (key == null) {
+                return;
+            }
+            if ("DELETE".equals(update.getValue(_commandPosition))) {
+                Set<String> keys = _keys.get(itemPos);
+                if (keys != null) {
+                    keys.remove(key);
+                }
+            } else {
+                _keys.computeIfAbsent(itemPos, pos -> Collections.synchronizedSet(new LinkedHashSet<>())).add(key);
+            }
+        }
+    }
+
+    void onClearSnapshot(int itemPos) {
+        _keys.remove(itemPos);
+    }
+
+    void onUnsubscription() {
+        _keys.clear();
+    }
+
+    /**
+     * Returns the current values of the items in the range [fromItem, toItem] and of the fields in the range [fromField, toField].
+     * A null bound means the first (or the last) item (or field).
+     * The values that have not been received yet are null.
+     * <p>
+     * The values are returned in the flat list `values`, row by row. A row is an item or, in COMMAND mode, a key of an item:
+     * in the latter case, the lists `items` and `keys` report the item position and the key of each row.
+     * The map also reports the resolved bounds of the ranges.
+     *
+     * @throws IllegalArgumentException if a position is out of range
+     */
+    Map<String, Object> getValues(@Nullable Integer fromItem, @Nullable Integer toItem, @Nullable Integer fromField, @Nullable Integer toField) {
+        // the counts are exact when the Subscription has an item list (a field list), otherwise they are what has been received so far
+        String[] items = _sub.getItems();
+        String[] fieldNames = MySubscriptionListener.buildFieldNames(_sub);
+        int itemCount = _itemCount;
+        int fieldCount = _fieldCount;
+        int firstItem = fromItem == null ? 1 : fromItem;
+        int lastItem = toItem == null ? (items == null ? itemCount : items.length) : toItem;
+        int firstField = fromField == null ? 1 : fromField;
+        int lastField = toField == null ? (fieldNames == null ? fieldCount : fieldNames.length) : toField;
+        checkRange("item", firstItem, lastItem, items == null ? -1 : items.length);
+        checkRange("field", firstField, lastField, fieldNames == null ? -1 : fieldNames.length);
+        List<String> values = new ArrayList<>();
+        Map<String, Object> res = new HashMap<>();
+        if (_isCommand) {
+            List<Integer> rowItems = new ArrayList<>();
+            List<String> rowKeys = new ArrayList<>();
+            for (int item = firstItem; item <= lastItem; item++) {
+                Set<String> keys = _keys.get(item);
+                if (keys == null) {
+                    // no key has been received yet, so the item has no rows
+                    continue;
+                }
+                List<String> keysCopy;
+                synchronized (keys) {
+                    keysCopy = new ArrayList<>(keys);
+                }
+                for (String key : keysCopy) {
+                    rowItems.add(item);
+                    rowKeys.add(key);
+                    for (int field = firstField; field <= lastField; field++) {
+                        values.add(field <= fieldCount ? _sub.getCommandValue(item, key, field) : null);
+                    }
+                }
+            }
+            res.put("items", rowItems);
+            res.put("keys", rowKeys);
+        } else {
+            for (int item = firstItem; item <= lastItem; item++) {
+                for (int field = firstField; field <= lastField; field++) {
+                    // NB the SDK rejects the positions beyond the ones it knows of
+                    values.add(item <= itemCount && field <= fieldCount ? _sub.getValue(item, field) : null);
+                }
+            }
+        }
+        res.put("fromItem", firstItem);
+        res.put("toItem", lastItem);
+        res.put("fromField", firstField);
+        res.put("toField", lastField);
+        res.put("values", values);
+        return res;
+    }
+
+    /**
+     * Checks the range [first, last] of item (or field) positions against the number of items (or fields),
+     * where a negative count means that the number is not known and only the lower bound can be checked.
+     * An empty range (i.e. last = first - 1) is allowed.
+     */
+    static void checkRange(String what, int first, int last, int count) {
+        if (first < 1) {
+            throw new IllegalArgumentException("The " + what + " position " + first + " is out of range");
+        }
+        if (last < first - 1) {
+            throw new IllegalArgumentException("The " + what + " range [" + first + ", " + last + "] is not valid");
+        }
+        if (count >= 0 && last > count) {
+            throw new IllegalArgumentException("The " + what + " position " + last + " is out of range (1-" + count + ")");
+        }
+    }
+}
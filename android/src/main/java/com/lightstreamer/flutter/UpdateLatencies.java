@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The latencies of the real-time updates of a subscription on their way to the Flutter component (see `Subscription.getUpdateLatencies`).
+ * <p>
+ * An update is timestamped when the SDK calls `onItemUpdate`, when the main thread starts delivering it
+ * and when `EventSink.success` returns, and the intervals are recorded in three histograms:
+ * - dispatch: from the SDK to the main thread, i.e. the time spent in the queue of the main Looper (and in the batches or event queues);
+ * - delivery: the serialization of the event (or of its batch) and its hand-off to the platform channel;
+ * - total: the sum of the two.
+ * <p>
+ * A conflated update is timed from the reception of its latest update.
+ */
+class UpdateLatencies {
+    /**
+     * The key of the reception time of the update (in nanoseconds) in an event map.
+     * It is removed by {@link LightstreamerFlutterPlugin#deliverEvent(Object)} before the event is written.
+     */
+    static final String RECEIVED_NANOS = "receivedNanos";
+    /**
+     * Marks an event that is not timed.
+     */
+    static final long NOT_TIMED = Long.MIN_VALUE;
+
+    final LatencyHistogram _dispatch = new LatencyHistogram();
+    final LatencyHistogram _delivery = new LatencyHistogram();
+    final LatencyHistogram _total = new LatencyHistogram();
+
+    void record(long receivedNanos, long dispatchedNanos, long deliveredNanos) {
+        _dispatch.record(dispatchedNanos - receivedNanos);
+        _delivery.record(deliveredNanos - dispatchedNanos);
+        _total.record(deliveredNanos - receivedNanos);
+    }
+
+    Map<String, Object> toMap(boolean reset) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("dispatch", _dispatch.toMap(reset));
+        map.put("delivery", _delivery.toMap(reset));
+        map.put("total", _total.toMap(reset));
+        return map;
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lightstreamer.flutter;
+
+import androidx.annotation.Nullable;
+
+import com.lightstreamer.client.ClientListener;
+import com.lightstreamer.client.LightstreamerClient;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shortens the time to the first update at cold start by opening the session while the Flutter engine is booting.
+ * <p>
+ * When the client identified by a clientId gets connected, its connection details and options, along with the options
+ * of its Subscriptions, are persisted in a file (and the file is kept up to date as the client subscribes and unsubscribes).
+ * When the plugin is attached to the engine, the persisted client and Subscriptions are recreated with their former ids,
+ * then the client is connected.
+ * <p>
+ * The Flutter component, which is unaware of this, takes them over with its ordinary calls: a `LightstreamerClient.connect`
+ * with the same clientId and configuration adopts the running client (and its listener is notified of the current state),
+ * while a `LightstreamerClient.subscribe` with the same subId and options adopts the running Subscription, whose events
+ * are held until then (see {@link MySubscriptionListener#holdEvents()}). Since the Flutter component assigns the ids
+ * in order of creation, this happens when the app creates its clients and Subscriptions in the same order as the last time.
+ * A different configuration replaces the recreated one, and whatever is not adopted within {@link #ADOPTION_TIMEOUT_MILLIS}
+ * is unsubscribed from and disconnected.
+ * <p>
+ * The password is never persisted: when the client used one, the recreated client waits for the Flutter component to supply it
+ * with the `LightstreamerClient.connect` call that adopts the client, and is only connected then.
+ * The file is deleted when the persisted client is explicitly disconnected and when the clients are reset.
+ */
+class WarmStart {
+    static final String FILE_NAME = "com.lightstreamer.flutter.warm_start";
+    static final long ADOPTION_TIMEOUT_MILLIS = 30_000;
+    /**
+     * The maximum number of events held for a Subscription waiting to be adopted: the following ones are discarded.
+     */
+    static final int MAX_HELD_EVENTS = 1000;
+
+    final LightstreamerFlutterPlugin _plugin;
+    final File _file;
+    /**
+     * Reads and writes the file, so that the I/O doesn't delay the method calls.
+     */
+    final ExecutorService _executor = Executors.newSingleThreadExecutor();
+    /**
+     * Maps a clientId to the connection details and options of its last `LightstreamerClient.connect` call.
+     */
+    final Map<String, List<Map<String, Object>>> _connectConfigs = new HashMap<>();
+    /**
+     * The clientId whose configuration is persisted.
+     */
+    @Nullable
+    String _persistedClientId;
+    /**
+     * The clientId of the client recreated from the file until the Flutter component adopts it (null otherwise).
+     */
+    @Nullable
+    String _startedClientId;
+    /**
+     * The connection details and options of the client recreated from the file.
+     */
+    @Nullable
+    List<Map<String, Object>> _startedConfig;
+    /**
+     * Whether the client recreated from the file used a password, in which case it is not connected until it is adopted.
+     */
+    boolean _startedWithPassword;
+    /**
+     * Maps the subIds of the Subscriptions recreated from the file, and not adopted yet, to their options.
+     */
+    final Map<String, Map<String, Object>> _startedSubscriptions = new HashMap<>();
+
+    WarmStart(LightstreamerFlutterPlugin plugin, File file) {
+        _plugin = plugin;
+        _file = file;
+    }
+
+    /**
+     * Recreates and connects the persisted client and Subscriptions (if any).
+     */
+    void start() {
+        _executor.execute(this::startFromFile);
+        _plugin._loop.postDelayed(this::expire, ADOPTION_TIMEOUT_MILLIS);
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized void startFromFile() {
+        Map<String, Object> config = read();
+        if (config == null) {
+            return;
+        }
+        String clientId = (String) config.get("clientId");
+        Map<String, Object> details = (Map<String, Object>) config.get("connectionDetails");
+        Map<String, Object> options = (Map<String, Object>) config.get("connectionOptions");
+        List<Map<String, Object>> subscriptions = (List<Map<String, Object>>) config.get("subscriptions");
+        boolean withPassword = Boolean.TRUE.equals(config.get("passwordRequired"));
+        if (_plugin._clientMap.get(clientId) != null) {
+            // the Flutter component has been faster
+            return;
+        }
+        try {
+            LightstreamerClient client = _plugin._clientMap.getOrCreate(clientId, _plugin::newClient);
+            _plugin.configure(client, details, options);
+            _startedConfig = SessionPool.keyOf(details, options);
+            _startedWithPassword = withPassword;
+            // NB a client waiting for its password can't get connected, hence persisted, before the Flutter component supplies its configuration
+            _connectConfigs.put(clientId, _startedConfig);
+            _startedClientId = clientId;
+            for (Map<String, Object> subOptions : subscriptions) {
+                String subId = (String) subOptions.get("id");
+                if (_plugin._subMap.get(subId) != null) {
+                    continue;
+                }
+                MySubscription mySub = _plugin._subMap.getOrCreate(subId, id -> _plugin.newSubscription(id, (String) subOptions.get("mode")));
+                mySub._listener.holdEvents();
+                _plugin.subscribe(client, clientId, subOptions);
+                _startedSubscriptions.put(subId, subOptions);
+            }
+            if (!withPassword) {
+                client.connect();
+            }
+            if (LightstreamerFlutterPlugin.channelLogger.isDebugEnabled()) {
+                LightstreamerFlutterPlugin.channelLogger.debug("Warm start of LightstreamerClient " + clientId + " with Subscriptions " + _startedSubscriptions.keySet()
+                        + (withPassword ? " (waiting for the password)" : ""), null);
+            }
+        } catch (Exception e) {
+            if (LightstreamerFlutterPlugin.channelLogger.isWarnEnabled()) {
+                LightstreamerFlutterPlugin.channelLogger.warn("Cannot warm-start LightstreamerClient " + clientId, e);
+            }
+        }
+    }
+
+    /**
+     * Notifies that the Flutter component calls `LightstreamerClient.connect`.
+     */
+    synchronized void onConnect(String clientId, Map<String, Object> connectionDetails, Map<String, Object> connectionOptions) {
+        _connectConfigs.put(clientId, SessionPool.keyOf(connectionDetails, connectionOptions));
+    }
+
+    /**
+     * Lets the Flutter component take over the client recreated from the file, provided that it is connected with the same configuration
+     * (but the password, which is not persisted and is supplied here). Returns true if the client has been adopted;
+     * otherwise, if the client was recreated from the file, it is disconnected, so that it can be configured anew.
+     */
+    synchronized boolean adoptClient(String clientId, LightstreamerClient client, Map<String, Object> connectionDetails, Map<String, Object> connectionOptions) {
+        if (!clientId.equals(_startedClientId)) {
+            return false;
+        }
+        _startedClientId = null;
+        String password = (String) connectionDetails.get("password");
+        if (!SessionPool.keyOf(withoutPassword(connectionDetails), connectionOptions).equals(_startedConfig) || (password != null) != _startedWithPassword) {
+            client.disconnect();
+            return false;
+        }
+        client.connectionDetails.setPassword(password);
+        // the Flutter client has missed the previous events
+        for (ClientListener listener : client.getListeners()) {
+            if (listener instanceof MyClientListener && ((MyClientListener) listener).clientId.equals(clientId)) {
+                ((MyClientListener) listener).notifyState();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lets the Flutter component take over the Subscription recreated from the file, provided that it is subscribed to
+     * by the same client with the same options, in which case the events held so far are sent and true is returned.
+     * Otherwise, if the Subscription was recreated from the file, it is unsubscribed from and forgotten, so that it can be created anew.
+     */
+    synchronized boolean adoptSubscription(String subId, LightstreamerClient client, String clientId, Map<String, Object> options) {
+        Map<String, Object> startedOptions = _startedSubscriptions.remove(subId);
+        if (startedOptions == null) {
+            return false;
+        }
+        MySubscription mySub = _plugin._subMap.require(subId);
+        if (options.equals(startedOptions) && clientId.equals(mySub._clientId) && client.getSubscriptions().contains(mySub._sub)) {
+            mySub._listener.releaseEvents(true);
+            return true;
+        }
+        discard(mySub);
+        return false;
+    }
+
+    /**
+     * Unsubscribes from and disconnects what has not been adopted by the Flutter component.
+     */
+    synchronized void expire() {
+        for (String subId : _startedSubscriptions.keySet()) {
+            MySubscription mySub = _plugin._subMap.get(subId);
+            if (mySub != null) {
+                discard(mySub);
+            }
+        }
+        _startedSubscriptions.clear();
+        if (_startedClientId != null) {
+            LightstreamerClient client = _plugin._clientMap.get(_startedClientId);
+            if (client != null) {
+                client.disconnect();
+            }
+            _startedClientId = null;
+        }
+    }
+
+    void discard(MySubscription mySub) {
+        mySub._listener.releaseEvents(false);
+        String clientId = mySub._clientId;
+        LightstreamerClient client = clientId == null ? null : _plugin._clientMap.get(clientId);
+        if (client != null) {
+            client.unsubscribe(mySub._sub);
+        }
+        _plugin._subMap.remove(mySub._subId);
+        _plugin.removeClientSubId(clientId, mySub._subId);
+    }
+
+    /**
+     * Notifies that the client has got connected, so its configuration is worth persisting.
+     */
+    synchronized void onConnected(String clientId) {
+        _persistedClientId = clientId;
+        persist(clientId);
+    }
+
+    /**
+     * Notifies that the client has subscribed to or unsubscribed from a Subscription.
+     */
+    synchronized void onSubscriptionsChanged(String clientId) {
+        if (clientId.equals(_persistedClientId)) {
+            persist(clientId);
+        }
+    }
+
+    /**
+     * Notifies that the Flutter component calls `LightstreamerClient.disconnect`: an explicit disconnection (e.g. on logout)
+     * must not be undone by the next warm start, so the persisted configuration of the client is deleted.
+     */
+    synchronized void onDisconnect(String clientId) {
+        if (clientId.equals(_persistedClientId)) {
+            _persistedClientId = null;
+            delete();
+        }
+    }
+
+    synchronized void reset() {
+        _startedSubscriptions.clear();
+        _startedClientId = null;
+        _startedConfig = null;
+        _connectConfigs.clear();
+        _persistedClientId = null;
+        delete();
+    }
+
+    void delete() {
+        // NB the executor also orders the deletion after the pending writes
+        _executor.execute(_file::delete);
+    }
+
+    /**
+     * Returns a copy of the connection details without the password, which is not persisted.
+     */
+    static Map<String, Object> withoutPassword(Map<String, Object> connectionDetails) {
+        Map<String, Object> details = new HashMap<>(connectionDetails);
+        details.remove("password");
+        return details;
+    }
+
+    void persist(String clientId) {
+        List<Map<String, Object>> connectConfig = _connectConfigs.get(clientId);
+        if (connectConfig == null) {
+            return;
+        }
+        List<Map<String, Object>> subscriptions = new ArrayList<>();
+        Set<String> subIds = _plugin._clientSubIds.get(clientId);
+        if (subIds != null) {
+            for (String subId : subIds) {
+                MySubscription mySub = _plugin._subMap.get(subId);
+                if (mySub != null && mySub._options != null) {
+                    subscriptions.add(mySub._options);
+                }
+            }
+        }
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("clientId", clientId);
+        config.put("connectionDetails", withoutPassword(connectConfig.get(0)));
+        config.put("passwordRequired", connectConfig.get(0).get("password") != null);
+        config.put("connectionOptions", connectConfig.get(1));
+        config.put("subscriptions", subscriptions);
+        _executor.execute(() -> MessageFiles.write(_file, config));
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    Map<String, Object> read() {
+        return (Map<String, Object>) MessageFiles.read(_file);
+    }
+}
@@ -67,6 +67,30 @@ void main() {
     await client.subscribe(sub);
   });
 
+  test('event batching', () async {
+    var exps = new Expectations();
+    await LightstreamerClient.setEventBatching(50, 100);
+    try {
+      client = LightstreamerClient(host, "TEST");
+      subListener = new BaseSubscriptionListener();
+      var sub = new Subscription("MERGE", ["count"], ["count"]);
+      sub.setDataAdapter("COUNT");
+      sub.addListener(subListener);
+      var n = 0;
+      subListener.fItemUpdate = (update) {
+        if (++n == 3) {
+          exps.signal();
+        }
+      };
+      client.subscribe(sub);
+      client.connect();
+      await exps.value();
+      client.disconnect();
+    } finally {
+      await LightstreamerClient.setEventBatching(0, 0);
+    }
+  }, skip: !Platform.isAndroid ? "Event batching is only supported on Android" : false);
+
   for (var transport in ["WS-STREAMING", "HTTP-STREAMING", "HTTP-POLLING", "WS-POLLING"]) { 
     group(transport, () {
 
@@ -226,6 +250,243 @@ void main() {
         await sub.getCommandValue('1', 'row', '2');
       });
 
+      test('get values', () async {
+        var exps = new Expectations();
+        var sub = new Subscription("MERGE", ["count"], ["count"]);
+        sub.setDataAdapter("COUNT");
+        sub.addListener(subListener);
+        subListener.fItemUpdate = (_) => exps.signal("onItemUpdate");
+        client.subscribe(sub);
+        client.connect();
+        await exps.value("onItemUpdate");
+        var table = await sub.getValues();
+        assertEqual(1, table.rowCount);
+        assertEqual(1, table.fieldCount);
+        assertEqual(1, table.getItemPos(0));
+        assertEqual(true, table.getValue(0, 1) != null);
+      }, skip: !Platform.isAndroid ? "Subscription.getValues is only supported natively on Android" : false);
+
+      test('get values command', () async {
+        var exps = new Expectations();
+        var sub = new Subscription(
+            "COMMAND", ["mult_table"], ["key", "value1", "value2", "command"]);
+        sub.setDataAdapter("MULT_TABLE");
+        sub.addListener(subListener);
+        subListener.fEndOfSnapshot = (name, pos) {
+          exps.signal();
+        };
+        client.subscribe(sub);
+        client.connect();
+        await exps.value();
+        var table = await sub.getValues(1, 1, 1, 4);
+        assertEqual(4, table.fieldCount);
+        assertEqual(true, table.rowCount > 0);
+        for (var row = 0; row < table.rowCount; row++) {
+          assertEqual(1, table.getItemPos(row));
+          assertEqual(table.getKey(row), table.getValue(row, 1));
+          assertEqual(table.getKey(row), await sub.getCommandValue('1', table.getKey(row)!, '1'));
+        }
+      }, skip: !Platform.isAndroid ? "Subscription.getValues is only supported on Android for COMMAND Subscriptions" : false);
+
+      test('command row diffs', () async {
+        var exps = new Expectations();
+        var sub = new Subscription(
+            "COMMAND", ["mult_table"], ["key", "value1", "value2", "command"]);
+        sub.setDataAdapter("MULT_TABLE");
+        sub.setUpdatePayloadProfile("COMMAND_ROW_DIFFS");
+        sub.addListener(subListener);
+        var rows = <int, String>{};
+        var updates = 0;
+        subListener.fCommandRowDiff = (diff) {
+          assertEqual(1, diff.getItemPos());
+          if (diff.getOperation() == "ADD") {
+            assertEqual(false, rows.containsKey(diff.getRow()));
+            rows[diff.getRow()] = diff.getKey();
+          } else if (diff.getOperation() == "DELETE") {
+            assertEqual(diff.getKey(), rows.remove(diff.getRow()));
+          } else {
+            assertEqual(diff.getKey(), rows[diff.getRow()]);
+          }
+        };
+        subListener.fItemUpdate = (update) {
+          updates++;
+          assertEqual(update.getValue("key"), update.getValue(1));
+        };
+        subListener.fEndOfSnapshot = (name, pos) {
+          exps.signal();
+        };
+        client.subscribe(sub);
+        client.connect();
+        await exps.value();
+        assertEqual("COMMAND_ROW_DIFFS", sub.getUpdatePayloadProfile());
+        assertEqual(true, updates > 0);
+        var table = await sub.getCommandRows(1);
+        assertEqual(4, table.fieldCount);
+        assertEqual(rows.length, table.rows.length);
+        for (var row in table.rows) {
+          assertEqual(rows[row], table.getKey(row));
+          assertEqual(table.getKey(row), table.getValue(row, 1));
+        }
+      }, skip: !Platform.isAndroid ? "Subscription.getCommandRows is only supported on Android" : false);
+
+      test('event queue', () async {
+        var exps = new Expectations();
+        var sub = new Subscription("MERGE", ["count"], ["count"]);
+        sub.setDataAdapter("COUNT");
+        sub.setEventQueueMaxSize(1);
+        sub.setEventQueueOverflowPolicy("CONFLATE");
+        sub.addListener(subListener);
+        subListener.fItemDroppedUpdates = (name, pos, count) {
+          assertEqual(1, pos);
+          assertEqual(true, count > 0);
+        };
+        var regex = new RegExp('\\d+');
+        var updates = 0;
+        subListener.fItemUpdate = (update) {
+          if (!update.isSnapshot() && regex.hasMatch(update.getValue("count") ?? "") && ++updates == 3) {
+            exps.signal("onItemUpdate");
+          }
+        };
+        client.subscribe(sub);
+        client.connect();
+        await exps.value("onItemUpdate");
+        assertEqual(1, sub.getEventQueueMaxSize());
+        assertEqual("CONFLATE", sub.getEventQueueOverflowPolicy());
+      });
+
+      test('metrics', () async {
+        var exps = new Expectations();
+        var sub = new Subscription("MERGE", ["count"], ["count"]);
+        sub.setDataAdapter("COUNT");
+        sub.addListener(subListener);
+        var updates = 0;
+        subListener.fItemUpdate = (update) {
+          if (++updates == 3) {
+            exps.signal("onItemUpdate");
+          }
+        };
+        listener.fMetrics = (metrics) {
+          exps.signal("onMetrics");
+        };
+        client.subscribe(sub);
+        client.connect();
+        await exps.value("onItemUpdate");
+        var metrics = await client.getMetrics();
+        var subMetrics = metrics.getSubscriptions()[sub]!;
+        assertEqual(true, subMetrics.getUpdatesReceived() >= 3);
+        assertEqual(true, subMetrics.getEventsDelivered() >= 3);
+        assertEqual(0, subMetrics.getEventsDropped());
+        assertEqual(true, metrics.getClient().getUpdatesReceived() >= subMetrics.getUpdatesReceived());
+        assertEqual(true, metrics.getClient().getEventsDelivered() > subMetrics.getEventsDelivered());
+        assertEqual(true, metrics.getMethodCalls()["LightstreamerClient.subscribe"]! >= 1);
+        await client.setMetricsPushInterval(100);
+        await exps.value("onMetrics");
+        await client.setMetricsPushInterval(0);
+      }, skip: !Platform.isAndroid ? "LightstreamerClient.getMetrics is only supported on Android" : false);
+
+      test('update latencies', () async {
+        var exps = new Expectations();
+        var sub = new Subscription("MERGE", ["count"], ["count"]);
+        sub.setDataAdapter("COUNT");
+        sub.setLatencyTracking(true);
+        sub.addListener(subListener);
+        var updates = 0;
+        subListener.fItemUpdate = (update) {
+          if (++updates == 3) {
+            exps.signal("onItemUpdate");
+          }
+        };
+        client.subscribe(sub);
+        client.connect();
+        await exps.value("onItemUpdate");
+        assertEqual(true, sub.isLatencyTracking());
+        var latencies = await sub.getUpdateLatencies(reset: true);
+        assertEqual(true, latencies.getTotal().getCount() >= 3);
+        assertEqual(true, latencies.getTotal().getP50() <= latencies.getTotal().getP99());
+        assertEqual(true, latencies.getTotal().getP99() <= latencies.getTotal().getMax());
+        assertEqual(true, latencies.getDispatch().getP50() <= latencies.getTotal().getMax());
+        latencies = await sub.getUpdateLatencies();
+        assertEqual(true, latencies.getTotal().getCount() < updates);
+      }, skip: !Platform.isAndroid ? "Subscription.getUpdateLatencies is only supported on Android" : false);
+
+      test('listener field projection', () async {
+        var exps = new Expectations();
+        var sub = new Subscription("MERGE", ["count"], ["count"]);
+        sub.setDataAdapter("COUNT");
+        sub.addListener(subListener);
+        // the listener doesn't need any field
+        sub.setListenerFieldProjection(subListener, fieldPositions: []);
+        subListener.fItemUpdate = (update) {
+          assertEqual(null, update.getValue("count"));
+          assertEqual(false, update.isValueChanged("count"));
+          exps.signal("onItemUpdate");
+        };
+        client.subscribe(sub);
+        client.connect();
+        await exps.value("onItemUpdate");
+        // the Subscription still receives all the fields
+        assertNotNull(await sub.getValue("count", "count"));
+      }, skip: !Platform.isAndroid ? "Subscription.setListenerFieldProjection is only supported on Android" : false);
+
+      test('last value caching', () async {
+        var exps = new Expectations();
+        var sub = new Subscription("MERGE", ["count"], ["count"]);
+        sub.setDataAdapter("COUNT");
+        sub.setLastValueCaching(true);
+        sub.addListener(subListener);
+        subListener.fItemUpdate = (update) {
+          if (!update.isStale()) exps.signal("onItemUpdate");
+        };
+        client.subscribe(sub);
+        client.connect();
+        await exps.value("onItemUpdate");
+        client.unsubscribe(sub);
+        // the cached value is delivered before the real snapshot
+        var sub2 = new Subscription("MERGE", ["count"], ["count"]);
+        sub2.setDataAdapter("COUNT");
+        sub2.setLastValueCaching(true);
+        var subListener2 = new BaseSubscriptionListener();
+        sub2.addListener(subListener2);
+        subListener2.fItemUpdate = (update) {
+          exps.signal("onItemUpdate stale=${update.isStale()} snapshot=${update.isSnapshot()}");
+        };
+        client.subscribe(sub2);
+        await exps.until("onItemUpdate stale=true snapshot=true");
+        await exps.until("onItemUpdate stale=false snapshot=true");
+      }, skip: !Platform.isAndroid ? "Subscription.setLastValueCaching is only supported on Android" : false);
+
+      test('session sharing', () async {
+        var exps = new Expectations();
+        var client2 = LightstreamerClient(host, "TEST");
+        var listener2 = new BaseClientListener();
+        client2.addListener(listener2);
+        client2.connectionOptions.setForcedTransport(transport);
+        if (transport.endsWith("POLLING")) {
+          client2.connectionOptions.setIdleTimeout(0);
+          client2.connectionOptions.setPollingInterval(100);
+        }
+        client.setSessionSharing(true);
+        client2.setSessionSharing(true);
+        var expected = "CONNECTED:" + transport;
+        listener.fStatusChange = (status) {
+          if (status == expected) exps.signal("client1 " + status);
+        };
+        listener2.fStatusChange = (status) {
+          exps.signal("client2 " + status);
+        };
+        client.connect();
+        await exps.value("client1 " + expected);
+        client2.connect();
+        await exps.until("client2 " + expected);
+        assertEqual(true, client.isSessionSharing());
+        assertNotNull(client.connectionDetails.getSessionId());
+        assertEqual(client.connectionDetails.getSessionId(), client2.connectionDetails.getSessionId());
+        // the session stays open until both the clients disconnect
+        client2.disconnect();
+        await exps.until("client2 DISCONNECTED");
+        assertEqual(expected, await client.getStatus());
+      }, skip: !Platform.isAndroid ? "LightstreamerClient.setSessionSharing is only supported on Android" : false);
+
       test('subscribe command 2 levels', () async {
         var exps = new Expectations();
         var sub = new Subscription("COMMAND",
@@ -272,6 +533,46 @@ void main() {
         assertEqual(false, sub.isActive());
       });
 
+      test('subscribe batch', () async {
+        var exps = new Expectations();
+        var sub1 = new Subscription("MERGE", ["count"], ["count"]);
+        sub1.setDataAdapter("COUNT");
+        var sub2 = new Subscription("MERGE", ["count"], ["count"]);
+        sub2.setDataAdapter("COUNT");
+        var subListener2 = new BaseSubscriptionListener();
+        sub1.addListener(subListener);
+        sub2.addListener(subListener2);
+        subListener.fSubscription = () => exps.signal('onSubscription 1');
+        subListener2.fSubscription = () => exps.signal('onSubscription 2');
+        subListener.fUnsubscription = () => exps.signal('onUnsubscription 1');
+        subListener2.fUnsubscription = () => exps.signal('onUnsubscription 2');
+        var res = await client.subscribeBatch([sub1, sub2]);
+        assertEqual(2, res.length);
+        assertEqual(true, res[0] == null && res[1] == null);
+        var subs = await client.getSubscriptions();
+        assertEqual(2, subs.length);
+        // an active Subscription cannot be subscribed to again, but the error doesn't affect the other entries
+        var sub3 = new Subscription("MERGE", ["count"], ["count"]);
+        sub3.setDataAdapter("COUNT");
+        res = await client.subscribeBatch([sub1, sub3]);
+        assertEqual(true, res[0] != null);
+        assertEqual(true, res[1] == null);
+        assertEqual(true, sub1.isActive());
+        assertEqual(true, sub3.isActive());
+        await client.unsubscribe(sub3);
+        client.connect();
+        await exps.value('onSubscription 1');
+        await exps.value('onSubscription 2');
+        res = await client.unsubscribeBatch([sub1, sub2]);
+        assertEqual(true, res[0] == null && res[1] == null);
+        await exps.value('onUnsubscription 1');
+        await exps.value('onUnsubscription 2');
+        assertEqual(false, sub1.isActive());
+        assertEqual(false, sub2.isActive());
+        subs = await client.getSubscriptions();
+        assertEqual(0, subs.length);
+      });
+
       test('subscribe non-ascii', () async {
         var exps = new Expectations();
         var sub = new Subscription(
@@ -456,6 +757,43 @@ void main() {
         await exps.value("onProcessed `give me a result` `result:ok`");
       });
 
+      test('journaled messages', () async {
+        var exps = new Expectations();
+        client.setMessageJournaling(true);
+        msgListener = new BaseMessageListener();
+        msgListener.fProcessed = (msg, _) => exps.signal("onProcessed " + msg);
+        // the messages are journaled before being sent, and the outcomes still arrive in order
+        for (var i = 0; i < 3; i++) {
+          client.sendMessage("journaled message $i", "test_seq", -1, msgListener, true);
+        }
+        client.connect();
+        await exps.value("onProcessed journaled message 0");
+        await exps.value("onProcessed journaled message 1");
+        await exps.value("onProcessed journaled message 2");
+        assertEqual(true, client.isMessageJournaling());
+      }, skip: !Platform.isAndroid ? "LightstreamerClient.setMessageJournaling is only supported on Android" : false);
+
+      test('message batch', () async {
+        var exps = new Expectations();
+        var processed = <int>[];
+        var responses = <int, String>{};
+        var failures = <String>[];
+        var batchListener = new BaseMessageBatchListener();
+        batchListener.fOutcomes = (outcomes) {
+          processed.addAll(outcomes.getProcessed());
+          responses.addAll(outcomes.getResponses());
+          failures.addAll(outcomes.getFailures().map((f) => '${f.getIndex()} ${f.getOutcome()} ${f.getErrorCode()}'));
+          if (outcomes.isComplete()) exps.signal("complete");
+        };
+        client.connect();
+        client.sendMessages(["test message 0", "give me a result", "throw me an error", "test message 3"], "test_seq", -1, batchListener, true);
+        await exps.value("complete");
+        processed.sort();
+        assertEqual("[0, 1, 3]", processed.toString());
+        assertEqual("{1: result:ok}", responses.toString());
+        assertEqual("[2 onDeny -123]", failures.toString());
+      });
+
       test('message with special chars', () async {
         var exps = new Expectations();
         msgListener.fProcessed = (msg, _) {
@@ -555,6 +893,46 @@ void main() {
         await exps.value("unlimited");
       });
 
+      test('conflation', () async {
+        var exps = new Expectations();
+        var sub = new Subscription("MERGE", ["count"], ["count"]);
+        sub.setDataAdapter("COUNT");
+        sub.setConflationMaxFrequency(2);
+        sub.addListener(subListener);
+        var n = 0;
+        subListener.fItemUpdate = (update) {
+          assertTrue(update.isValueChanged("count"));
+          assertNotNull(update.getValue("count"));
+          if (++n == 3) {
+            exps.signal();
+          }
+        };
+        client.subscribe(sub);
+        client.connect();
+        await exps.value();
+        assertEqual(2.0, sub.getConflationMaxFrequency());
+      }, skip: !Platform.isAndroid ? "Conflation is only supported on Android" : false);
+
+      test('payload profile', () async {
+        var exps = new Expectations();
+        var sub = new Subscription("MERGE", ["count"], ["count"]);
+        sub.setDataAdapter("COUNT");
+        sub.setUpdatePayloadProfile("POSITIONAL_CHANGED_ONLY");
+        sub.addListener(subListener);
+        subListener.fItemUpdate = (update) {
+          var val = update.getValue("count");
+          assertNotNull(val);
+          assertEqual(val, update.getValueByPosition(1));
+          assertEqual(val, update.getFields()["count"]);
+          assertEqual(val, update.getChangedFields()["count"]);
+          exps.signal();
+        };
+        client.subscribe(sub);
+        client.connect();
+        await exps.value();
+        assertEqual("POSITIONAL_CHANGED_ONLY", sub.getUpdatePayloadProfile());
+      });
+
       test('change frequency', () async {
         var exps = new Expectations();
         var sub = new Subscription("MERGE", ["count"], ["count"]);
@@ -615,6 +993,52 @@ void main() {
         expect(u.getValueByPosition(1), isNotNull);
       }, skip: Platform.isWindows);
 
+      test('json patch documents', () async {
+        var exps = new Expectations();
+        var updates = <ItemUpdate>[];
+        var sub = new Subscription("MERGE", ["count"], ["count"]);
+        sub.setRequestedSnapshot("no");
+        sub.setDataAdapter("JSON_COUNT");
+        sub.setJsonPatchDelivery("DOCUMENTS");
+        sub.addListener(subListener);
+        subListener.fItemUpdate = (update) {
+          updates.add(update);
+          exps.signal("onItemUpdate");
+        };
+        client.subscribe(sub);
+        client.connect();
+        await exps.value("onItemUpdate");
+        await exps.value("onItemUpdate");
+        var u = updates[1];
+        assertEqual(null, u.getValueAsJSONPatchIfAvailableByPosition(1));
+        expect(u.getValueByPosition(1), matches(RegExp('"value":\\d+')));
+      }, skip: !Platform.isAndroid ? "Subscription.setJsonPatchDelivery is only supported on Android" : false);
+
+      test('json patch materialized', () async {
+        var exps = new Expectations();
+        var updates = <ItemUpdate>[];
+        var sub = new Subscription("MERGE", ["count"], ["count"]);
+        sub.setRequestedSnapshot("no");
+        sub.setDataAdapter("JSON_COUNT");
+        sub.setUpdatePayloadProfile("POSITIONAL_CHANGED_ONLY");
+        sub.setJsonPatchDelivery("PATCHES");
+        sub.addListener(subListener);
+        subListener.fItemUpdate = (update) {
+          updates.add(update);
+          exps.signal("onItemUpdate");
+        };
+        client.subscribe(sub);
+        client.connect();
+        await exps.value("onItemUpdate");
+        await exps.value("onItemUpdate");
+        var u = updates[1];
+        var patch = u.getValueAsJSONPatchIfAvailableByPosition(1)!;
+        expect(patch, contains('"op":"replace"'));
+        var value = RegExp('"value":(\\d+)').firstMatch(patch)!.group(1);
+        expect(u.getValueByPosition(1), contains('"value":$value'));
+        assertEqual(true, u.isValueChangedByPosition(1));
+      }, skip: !Platform.isAndroid ? "Subscription.setJsonPatchDelivery is only supported on Android" : false);
+
       test('diff patch', () async {
         var exps = new Expectations();
         var updates = <ItemUpdate>[];
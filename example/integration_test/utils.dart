@@ -189,6 +189,9 @@ class BaseClientListener extends ClientListener {
   void Function(String)? fPropertyChange;
   @override
   void onPropertyChange(String property) => fPropertyChange?.call(property);
+  void Function(ClientMetrics)? fMetrics;
+  @override
+  void onMetrics(ClientMetrics metrics) => fMetrics?.call(metrics);
   void Function()? fListenStart;
   @override
   void onListenStart() => fListenStart?.call();
@@ -207,6 +210,9 @@ class BaseSubscriptionListener extends SubscriptionListener {
   void Function(ItemUpdate)? fItemUpdate;
   @override
   void onItemUpdate(ItemUpdate update) => fItemUpdate?.call(update);
+  void Function(CommandRowDiff)? fCommandRowDiff;
+  @override
+  void onCommandRowDiff(CommandRowDiff diff) => fCommandRowDiff?.call(diff);
   void Function()? fUnsubscription;
   @override
   void onUnsubscription() => fUnsubscription?.call();
@@ -219,6 +225,9 @@ class BaseSubscriptionListener extends SubscriptionListener {
   void Function(String, int)? fEndOfSnapshot;
   @override
   void onEndOfSnapshot(String name, int pos) => fEndOfSnapshot?.call(name, pos);
+  void Function(String, int, int)? fItemDroppedUpdates;
+  @override
+  void onItemDroppedUpdates(String name, int pos, int dropped) => fItemDroppedUpdates?.call(name, pos, dropped);
   void Function(String, int, int)? fItemLostUpdates;
   @override
   void onItemLostUpdates(String name, int pos, int lost) => fItemLostUpdates?.call(name, pos, lost);
@@ -239,6 +248,12 @@ class BaseMessageListener extends ClientMessageListener {
   void onDeny(String msg, int errorCode, String errorMessage) => fDeny?.call(msg, errorCode, errorMessage);
 }
 
+class BaseMessageBatchListener extends MessageBatchListener {
+  void Function(MessageBatchOutcomes)? fOutcomes;
+  @override
+  void onOutcomes(MessageBatchOutcomes outcomes) => fOutcomes?.call(outcomes);
+}
+
 class BaseDeviceListener extends MpnDeviceListener {
   void Function()? fSubscriptionsUpdated;
   @override
@@ -15,8 +15,10 @@
  */
 import 'dart:io';
 import 'dart:async';
+import 'dart:convert' show utf8, jsonDecode, jsonEncode;
+import 'dart:typed_data';
 import 'package:flutter/services.dart';
-import 'package:flutter/foundation.dart' show visibleForTesting;
+import 'package:flutter/foundation.dart' show visibleForTesting, ReadBuffer;
 import 'package:lightstreamer_flutter_client/src/client_listeners.dart';
 import 'package:lightstreamer_flutter_client/src/log_manager.dart';
 import 'package:lightstreamer_flutter_client/src/logger.dart';
@@ -24,6 +26,12 @@ import 'package:lightstreamer_flutter_client/src/utils.dart';
 
 part 'native_bridge.dart';
 part 'item_update.dart';
+part 'listener_event_codec.dart';
+part 'value_table.dart';
+part 'command_rows.dart';
+part 'json_patch.dart';
+part 'metrics.dart';
+part 'message_batch.dart';
 
 /**
  * Facade class for the management of the communication to
@@ -76,6 +84,8 @@ class LightstreamerClient {
    */
   late final ConnectionOptions connectionOptions;
   final List<ClientListener> _listeners = [];
+  bool _sessionSharing = false;
+  bool _messageJournaling = false;
 
   /**
    * Creates an object to be configured to connect to a Lightstreamer server
@@ -128,6 +138,8 @@ class LightstreamerClient {
   /// By invoking `reset()` at app startup, before creating any instances of `LightstreamerClient`, you ensure that 
   /// the native Lightstreamer Client library is refreshed as if a full app restart occurred, 
   /// preserving predictable behavior and preventing inconsistent states across development cycles.
+  /// 
+  /// On Android, the last values cached on the device are discarded too (see [Subscription.setLastValueCaching]).
   static Future<void> reset() {
     return NativeBridge.instance.reset();
   }
@@ -184,6 +196,34 @@ class LightstreamerClient {
     return await NativeBridge.instance.invokeMethod('LightstreamerClient.setLoggerProvider', arguments);
   }
 
+  /**
+   * Static method that configures how the native component delivers the listener events to the Flutter component.
+   * 
+   * By default each event crosses the platform channel as soon as it is fired. When batching is enabled, the events
+   * are collected and delivered in batches, which reduces the overhead of the platform channel when the update rate is high.
+   * A batch is delivered as soon as it contains [maxSize] events or [maxDelay] milliseconds after its first event
+   * was collected, whichever comes first. The order of the events is always preserved.
+   * 
+   * **Platform** Batching is supported only on Android; on the other platforms the method has no effect.
+   * 
+   * **Default** Batching is disabled.
+   * 
+   * **Lifecycle** This method can be called at any time, but it is advisable to call it before creating any LightstreamerClient.
+   * 
+   * - [maxSize] the maximum number of events in a batch; a value less than 2 disables batching.
+   * - [maxDelay] the maximum time (expressed in milliseconds) an event can wait for its batch to be delivered.
+   */
+  static Future<void> setEventBatching(int maxSize, int maxDelay) async {
+    if (!Platform.isAndroid) {
+      return;
+    }
+    var arguments = <String, dynamic>{
+      'maxSize': maxSize,
+      'maxDelay': maxDelay
+    };
+    return await NativeBridge.instance.invokeMethod('LightstreamerClient.setEventBatching', arguments);
+  }
+
   /**
    * Static method that can be used to share cookies between connections to the Server
    * (performed by this library) and connections to other sites that are performed
@@ -267,6 +307,8 @@ class LightstreamerClient {
     var arguments = <String, dynamic>{
       "connectionDetails": connectionDetails._toMap(),
       "connectionOptions": connectionOptions._toMap(),
+      "sessionSharing": _sessionSharing,
+      "messageJournaling": _messageJournaling,
     };
     return await _invokeMethod('connect', arguments);
   }
@@ -345,8 +387,13 @@ class LightstreamerClient {
    */
   Future<void> subscribe(Subscription sub) async {
     var arguments = <String, dynamic>{
-      'subscription': sub._toMap()
+      'subscription': _subscriptionMap(sub)
     };
+    if (!sub._active) {
+      // NB the values of an active Subscription are still the base of the updates it receives, even if the call fails
+      sub._itemValues.clear();
+      sub._commandRows.clear();
+    }
     sub._active = true;
     await NativeBridge.instance.client_subscribe(_id, sub._id, sub, arguments);
     // NB _remoteActive is set after the remote call to ensure that, when the call returns,
@@ -356,6 +403,17 @@ class LightstreamerClient {
     cleanResources(); // no need to await here
   }
 
+  /// Returns the options of [sub] sent by [subscribe] and [subscribeBatch].
+  /// When the last values of the items are cached (see [Subscription.setLastValueCaching]), the options include the scope
+  /// of the cache, so that the items of different Servers, Adapter Sets and users are kept apart.
+  Map<String, dynamic> _subscriptionMap(Subscription sub) {
+    var map = sub._toMap();
+    if (sub._lastValueCaching) {
+      map['lastValueCache'] = '${connectionDetails._serverAddress}|${connectionDetails._adapterSet}|${connectionDetails._user ?? ''}';
+    }
+    return map;
+  }
+
   /**
    * Operation method that removes a Subscription that is currently in the "active" state.
    *  
@@ -385,6 +443,119 @@ class LightstreamerClient {
     return await NativeBridge.instance.client_unsubscribe(_id, sub._id, arguments);
   }
 
+  /**
+   * Operation method that adds a list of Subscriptions to the list of "active" Subscriptions in a single operation.
+   * 
+   * The effect is the same as calling [subscribe] for each Subscription of the list, but the whole list crosses the
+   * platform channel at once, which considerably reduces the cost of opening many Subscriptions together.
+   * A Subscription that cannot be subscribed to (e.g. because it is already "active") doesn't prevent the others from being subscribed to.
+   * 
+   * **Platform** The batch is handled natively only on Android; on the other platforms the Subscriptions are subscribed to one at a time.
+   * 
+   * - [subs] A list of Subscription objects.
+   * 
+   * **Returns** A list having an entry for each Subscription of [subs], in the same order: the entry is null if the Subscription
+   * has entered the "active" state, or the reason of the failure otherwise.
+   * 
+   * - See [subscribe]
+   * - See [unsubscribeBatch]
+   */
+  Future<List<Exception?>> subscribeBatch(List<Subscription> subs) async {
+    if (!Platform.isAndroid) {
+      var res = <Exception?>[];
+      for (var sub in subs) {
+        try {
+          await subscribe(sub);
+          res.add(null);
+        } on Exception catch (e) {
+          res.add(e);
+        }
+      }
+      return res;
+    }
+    // NB an active Subscription is reported as failed without being touched,
+    // since its values are still the base of the updates it receives
+    var res = List<Exception?>.filled(subs.length, null);
+    var pending = <int>[];
+    for (var i = 0; i < subs.length; i++) {
+      var sub = subs[i];
+      if (sub._active) {
+        res[i] = PlatformException(code: 'Lightstreamer Internal Error', message: 'Cannot subscribe to an active Subscription');
+      } else {
+        sub._active = true;
+        sub._itemValues.clear();
+        sub._commandRows.clear();
+        pending.add(i);
+      }
+    }
+    if (pending.isEmpty) {
+      return res;
+    }
+    var pendingSubs = [ for (var i in pending) subs[i] ];
+    var arguments = <String, dynamic>{
+      'subscriptions': [ for (var sub in pendingSubs) _subscriptionMap(sub) ]
+    };
+    var errors = await NativeBridge.instance.client_subscribeBatch(_id, pendingSubs, arguments);
+    for (var j = 0; j < pending.length; j++) {
+      var sub = pendingSubs[j];
+      var error = errors[j];
+      if (error == null) {
+        sub._remoteActive = true;
+      } else {
+        sub._active = false;
+        res[pending[j]] = PlatformException(code: 'Lightstreamer Internal Error', message: error);
+      }
+    }
+    //
+    cleanResources(); // no need to await here
+    return res;
+  }
+
+  /**
+   * Operation method that removes a list of Subscriptions that are currently in the "active" state in a single operation.
+   * 
+   * The effect is the same as calling [unsubscribe] for each Subscription of the list, but the whole list crosses the
+   * platform channel at once.
+   * 
+   * **Platform** The batch is handled natively only on Android; on the other platforms the Subscriptions are unsubscribed from one at a time.
+   * 
+   * - [subs] A list of "active" Subscription objects that were activated by this LightstreamerClient instance.
+   * 
+   * **Returns** A list having an entry for each Subscription of [subs], in the same order: the entry is null if the Subscription
+   * has exited the "active" state, or the reason of the failure otherwise.
+   * 
+   * - See [unsubscribe]
+   * - See [subscribeBatch]
+   */
+  Future<List<Exception?>> unsubscribeBatch(List<Subscription> subs) async {
+    if (!Platform.isAndroid) {
+      var res = <Exception?>[];
+      for (var sub in subs) {
+        try {
+          await unsubscribe(sub);
+          res.add(null);
+        } on Exception catch (e) {
+          res.add(e);
+        }
+      }
+      return res;
+    }
+    var arguments = <String, dynamic>{
+      'subIds': [ for (var sub in subs) sub._id ]
+    };
+    for (var sub in subs) {
+      sub._active = false;
+      sub._subscribed = false;
+      sub._commandPosition = null;
+      sub._keyPosition = null;
+    }
+    var errors = await NativeBridge.instance.client_unsubscribeBatch(_id, arguments);
+    return [
+      for (var error in errors)
+        error == null ? null : PlatformException(code: 'Lightstreamer Internal Error', message: error)
+    ];
+  }
+
   /**
    * Inquiry method that returns a list containing all the Subscription instances that are 
    * currently "active" on this LightstreamerClient.
@@ -480,9 +651,60 @@ class LightstreamerClient {
       'delayTimeout': delayTimeout,
       'enqueueWhileDisconnected': enqueueWhileDisconnected
     };
+    _putJournalScope(arguments, sequence, enqueueWhileDisconnected);
     return await NativeBridge.instance.client_sendMessage(_id, listener, arguments);
   }
 
+  /**
+   * Operation method that sends a list of messages to the Server in a single operation, with the same sequence and delay timeout.
+   * 
+   * The effect is the same as calling [sendMessage] for each message of the list, in order, but the whole list crosses the
+   * platform channel at once and the outcomes are reported in aggregated [MessageBatchListener.onOutcomes] events instead of one event 
+   * per message, which considerably reduces the cost of high-frequency message flows.
+   * 
+   * **Platform** The batch is handled natively only on Android; on the other platforms the messages are sent one at a time
+   * and each outcome is reported in its own event.
+   * 
+   * **Lifecycle** See [sendMessage].
+   * 
+   * - [messages] the text messages, in the order they are to be sent.
+   * - [sequence] the sequence of all the messages (see [sendMessage]).
+   * - [delayTimeout] the timeout of all the messages (see [sendMessage]).
+   * - [listener] an object suitable for receiving notifications about the processing outcomes. The parameter is 
+   * optional; if not supplied, no notification will be available.
+   * - [enqueueWhileDisconnected] the flag of all the messages (see [sendMessage]).
+   * 
+   * **⚠ WARNING ⚠**
+   * The completion of the returned Future indicates that the operation has been accepted and is in progress, but not necessarily completed.
+   * To receive notifications about events generated by the operation, it is necessary to register a [MessageBatchListener].
+   */
+  Future<void> sendMessages(List<String> messages, [String? sequence, int? delayTimeout, MessageBatchListener? listener, bool? enqueueWhileDisconnected]) async {
+    if (!Platform.isAndroid) {
+      var outcomes = listener == null ? null : _MessageBatchCollector(messages, listener);
+      for (var i = 0; i < messages.length; i++) {
+        await sendMessage(messages[i], sequence, delayTimeout, outcomes?.listener(i), enqueueWhileDisconnected);
+      }
+      return;
+    }
+    var arguments = <String, dynamic>{
+      'messages': messages,
+      'sequence': sequence,
+      'delayTimeout': delayTimeout,
+      'enqueueWhileDisconnected': enqueueWhileDisconnected
+    };
+    _putJournalScope(arguments, sequence, enqueueWhileDisconnected);
+    return await NativeBridge.instance.client_sendMessages(_id, messages, listener, arguments);
+  }
+
+  /// Adds to the [arguments] of [sendMessage] and [sendMessages] the scope of the journal when the messages are journaled
+  /// (see [setMessageJournaling]).
+  void _putJournalScope(Map<String, dynamic> arguments, String? sequence, bool? enqueueWhileDisconnected) {
+    if (_messageJournaling && sequence != null && sequence != 'UNORDERED_MESSAGES' && enqueueWhileDisconnected == true) {
+      // NB the scope must match the one computed by the native component on connect (see MessageJournal.scopeOf)
+      arguments['journal'] = '${connectionDetails._serverAddress}|${connectionDetails._adapterSet}|${connectionDetails._user ?? ''}';
+    }
+  }
+
   /**
    * Adds a listener that will receive events from the LightstreamerClient instance.
    *  
@@ -758,6 +980,120 @@ class LightstreamerClient {
     return await NativeBridge.instance.client_findMpnSubscription(_id, arguments);
   }
 
+  /**
+   * Inquiry method that returns the counters of the events that the native component has sent to the Flutter component
+   * on behalf of this LightstreamerClient and of its Subscriptions, along with the number of the method calls it has received.
+   * 
+   * The counters are always collected and cost little to maintain, so they can be sampled periodically
+   * and shipped to a telemetry service. See [setMetricsPushInterval] to receive them through [ClientListener.onMetrics] instead.
+   * 
+   * **Platform** This method is only supported on Android.
+   * 
+   * **Returns** the current metrics.
+   */
+  Future<ClientMetrics> getMetrics() async {
+    if (!Platform.isAndroid) {
+      throw UnsupportedError('LightstreamerClient.getMetrics is only supported on Android');
+    }
+    return await NativeBridge.instance.client_getMetrics(_id);
+  }
+
+  /**
+   * Setter method that makes the native component send the metrics of this LightstreamerClient (see [getMetrics])
+   * to the [ClientListener.onMetrics] event handlers periodically.
+   * 
+   * **Platform** The metrics are only sent on Android; on the other platforms the method has no effect.
+   * 
+   * **Default** 0 (the metrics are not sent).
+   * 
+   * **Lifecycle** This method can be called at any time.
+   * 
+   * - [interval] the period (expressed in milliseconds) of the notifications; 0 stops them.
+   */
+  Future<void> setMetricsPushInterval(int interval) async {
+    if (!Platform.isAndroid) {
+      return;
+    }
+    var arguments = <String, dynamic>{
+      'interval': interval
+    };
+    return await _invokeMethod('setMetricsPushInterval', arguments);
+  }
+
+  /**
+   * Inquiry method that can be used to read whether this LightstreamerClient can share its session (see [setSessionSharing]).
+   * 
+   * **Lifecycle** This method can be called at any time.
+   * 
+   * **Returns** true if the session can be shared.
+   */
+  bool isSessionSharing() {
+    return _sessionSharing;
+  }
+
+  /**
+   * Setter method that lets this LightstreamerClient share a single Server session with the other LightstreamerClients 
+   * that enable the sharing and connect with the same [ConnectionDetails] and [ConnectionOptions], so that the modules of an application 
+   * which create their own LightstreamerClients don't multiply the sockets, the heartbeats and the battery use.
+   * 
+   * The session is opened by the first of these clients calling [connect] and is closed when the last one calls [disconnect]; 
+   * a client disconnecting earlier is detached from the session and gets a private, disconnected one. Each client keeps receiving 
+   * the events of its own [ClientListener]s and [Subscription]s, while the Subscriptions of a client joining or leaving the session 
+   * are moved to the new session (hence they are unsubscribed and subscribed again). 
+   * Note that the MPN devices and subscriptions, as well as the messages, belong to the shared session.
+   * 
+   * **Platform** The setting is honored only on Android; on the other platforms each LightstreamerClient has its own session.
+   *
+   * **Default** false.
+   * 
+   * **Lifecycle** This method can be called at any time, but it is applied on the next call to [connect].
+   * A client that is connected to a shared session and calls [connect] with a different configuration (or with the sharing disabled) 
+   * leaves the session.
+   * 
+   * - [enabled] true to allow the sharing of the session.
+   */
+  void setSessionSharing(bool enabled) {
+    _sessionSharing = enabled;
+  }
+
+  /**
+   * Inquiry method that can be used to read whether the messages of this LightstreamerClient are journaled (see [setMessageJournaling]).
+   * 
+   * **Lifecycle** This method can be called at any time.
+   * 
+   * **Returns** true if the messages are journaled.
+   */
+  bool isMessageJournaling() {
+    return _messageJournaling;
+  }
+
+  /**
+   * Setter method that makes the native component keep a journal on the device of the messages sent through [sendMessage] in a sequence 
+   * (other than "UNORDERED_MESSAGES") with the enqueueWhileDisconnected flag, so that the messages are not lost when the app is terminated 
+   * before they get an outcome.
+   * 
+   * A message is handed to the client only after it has been written to the journal; the messages sent in a burst are written together,
+   * so the journal costs little even at a high rate. The messages left without an outcome by a previous run of the app are sent again,
+   * in the order they were sent, by the first LightstreamerClient enabling the journal with the same Server address, Adapter Set and user, 
+   * as soon as it connects or sends a journaled message. Their outcomes are not notified, since their listeners belong to the previous run.
+   * Moreover, a journaled message aborted before being sent on the network because of a connection loss is sent again 
+   * at the next connection, and its listener is only notified of the outcome of the new attempt; instead, when the message is aborted
+   * because of a call to [disconnect], its listener is notified through [ClientMessageListener.onAbort]. 
+   * Note that a message processed by the Server just before the termination of the app is sent again, 
+   * hence the Metadata Adapter should recognize the duplicates when they are harmful.
+   * 
+   * **Platform** The setting is honored only on Android; on the other platforms the messages are not journaled.
+   *
+   * **Default** false.
+   * 
+   * **Lifecycle** This method can be called at any time; it affects the messages sent afterwards and the next call to [connect].
+   * 
+   * - [enabled] true to journal the messages.
+   */
+  void setMessageJournaling(bool enabled) {
+    _messageJournaling = enabled;
+  }
+
   Future<T> _invokeMethod<T>(String method, [ Map<String, dynamic>? arguments ]) async {
     arguments = arguments ?? {};
     arguments["id"] = _id;
@@ -1934,6 +2270,21 @@ class Subscription {
   String? _dataAdapter2;
   List<String>? _fields2;
   String? _schema2;
+  double? _conflationMaxFrequency;
+  String? _payloadProfile;
+  int? _eventQueueMaxSize;
+  String? _eventQueueOverflowPolicy;
+  String? _jsonPatchDelivery;
+  bool _latencyTracking = false;
+  bool _lastValueCaching = false;
+  // the fields needed by each listener (see setListenerFieldProjection); a listener without an entry needs all the fields
+  final Map<SubscriptionListener, ({List<String> names, List<int> positions})> _fieldProjections = {};
+  // when the payload profile is not FULL, the native component only sends the changed values:
+  // _itemValues maps an itemPos to the current values of the item (keyed by field position)
+  final Map<int, Map<int, String?>> _itemValues = {};
+  // with the COMMAND_ROW_DIFFS payload profile, _commandRows maps an itemPos to the rows of the item,
+  // i.e. a map from a row index to the current values of the row (keyed by field position)
+  final Map<int, Map<int, Map<int, String?>>> _commandRows = {};
 
   // _active is true when the subscribe method has been called and the unsubscribe method has not been called in the meantime;
   // _active is false when the unsubscribe method has been called and the subscribe method has not been called in the meantime
@@ -1961,9 +2312,57 @@ class Subscription {
       'dataAdapter2': _dataAdapter2,
       'fields2': _fields2,
       'schema2': _schema2,
+      'conflationMaxFrequency': _conflationMaxFrequency,
+      'payloadProfile': _payloadProfile,
+      'eventQueueMaxSize': _eventQueueMaxSize,
+      'eventQueueOverflowPolicy': _eventQueueOverflowPolicy,
+      'jsonPatchDelivery': _jsonPatchDelivery,
+      'latencyTracking': _latencyTracking,
+      'fieldProjection': _fieldProjection(),
     };
   }
 
+  /// Returns the sorted positions of the fields needed by the listeners (see [setListenerFieldProjection]),
+  /// or null if some listener needs all the fields.
+  List<int>? _fieldProjection() {
+    if (_listeners.isEmpty) {
+      return null;
+    }
+    var positions = <int>{};
+    for (var listener in _listeners) {
+      var projection = _fieldProjections[listener];
+      if (projection == null) {
+        return null;
+      }
+      positions.addAll(projection.positions);
+      if (projection.names.isNotEmpty) {
+        var fieldNames = _fieldNames();
+        if (fieldNames == null) {
+          throw ArgumentError('A field projection by name requires a field list');
+        }
+        for (var name in projection.names) {
+          var idx = fieldNames.indexOf(name);
+          if (idx < 0) {
+            throw ArgumentError('Unknown field in the field projection: $name');
+          }
+          positions.add(idx + 1);
+        }
+      }
+    }
+    return positions.toList()..sort();
+  }
+
+  /// Returns the names of the first-level and second-level fields ordered by position, 
+  /// or null if the names are unknown (i.e. a field schema is used).
+  List<String>? _fieldNames() {
+    var fields = _fields;
+    if (fields == null) {
+      return null;
+    }
+    var fields2 = _fields2;
+    return fields2 == null ? fields : [...fields, ...fields2];
+  }
+
   /**
    * Creates an object to be used to describe a Subscription that is going to be subscribed to 
    * through Lightstreamer Server. 
@@ -2039,6 +2438,7 @@ class Subscription {
   void removeListener(SubscriptionListener listener) {
     var found = _listeners.remove(listener);
     if (found) {
+      _fieldProjections.remove(listener);
       scheduleMicrotask(() {
         listener.onListenEnd();
       });
@@ -2562,6 +2962,307 @@ class Subscription {
       return await _invokeMethod('setRequestedMaxFrequency', arguments);
     }
   }
+  /**
+   * Inquiry method that can be used to read the conflation frequency, configured through 
+   * [setConflationMaxFrequency], applied by the native component to this Subscription.
+   * 
+   * **Lifecycle** This method can be called at any time.
+   * 
+   * **Returns** A decimal number, representing the maximum frequency (expressed in updates per second)
+   * of the [SubscriptionListener.onItemUpdate] events delivered for each item, or null if conflation is disabled.
+   */
+  double? getConflationMaxFrequency() {
+    return _conflationMaxFrequency;
+  }
+  /**
+   * Setter method that enables the conflation of the real-time updates in the native component
+   * and sets the maximum frequency at which the merged updates are delivered to the listeners.
+   * 
+   * When conflation is enabled, the updates of an item that arrive faster than the configured frequency 
+   * are merged into a single update carrying the newest values of the fields; the changed fields of the 
+   * merged update are the union of the changed fields of the original updates. 
+   * Snapshot updates are never merged. <BR>
+   * Unlike [setRequestedMaxFrequency], the filtering is not performed by the Server but by the native component, 
+   * before the updates cross the platform channel, so it saves the processing of the updates that the application 
+   * would discard anyway (for example because it only renders the latest value).
+   * 
+   * The setting can be used only if the Subscription mode is MERGE; it is ignored otherwise.
+   * 
+   * **Platform** The setting is honored only on Android; on the other platforms it is ignored.
+   *
+   * **Default** null (conflation disabled).
+   * 
+   * **Lifecycle** This method can only be called while the Subscription
+   * instance is in its "inactive" state.
+   *
+   * - [freq] A positive decimal number, representing the maximum frequency (expressed in updates per second) 
+   * of the update events delivered for each item, or null to disable conflation.
+   */
+  void setConflationMaxFrequency(double? freq) {
+    _conflationMaxFrequency = freq;
+  }
+  /**
+   * Inquiry method that can be used to read the payload profile configured through [setUpdatePayloadProfile].
+   * 
+   * **Lifecycle** This method can be called at any time.
+   * 
+   * **Returns** "FULL", "CHANGED_ONLY", "POSITIONAL_CHANGED_ONLY", "COMMAND_ROW_DIFFS" or null.
+   */
+  String? getUpdatePayloadProfile() {
+    return _payloadProfile;
+  }
+  /**
+   * Setter method that determines which values the native component sends to the Flutter component for each 
+   * [SubscriptionListener.onItemUpdate] event.
+   * 
+   * The permitted profiles are:
+   * <ul>
+   *  <li>"FULL": the values of all the fields are sent, both by name and by position;</li>
+   *  <li>"CHANGED_ONLY": only the values of the changed fields are sent, both by name and by position;</li>
+   *  <li>"POSITIONAL_CHANGED_ONLY": only the values of the changed fields are sent, by position;</li>
+   *  <li>"COMMAND_ROW_DIFFS" (only for COMMAND Subscriptions): each update is sent as a change (ADD, UPDATE or DELETE) 
+   *  of a row of a table of keys maintained by the native component, carrying only the values of the changed fields by position.
+   *  Besides [SubscriptionListener.onItemUpdate], the listeners receive the change itself through 
+   *  [SubscriptionListener.onCommandRowDiff] and the table can be read with [getCommandRows].</li>
+   * </ul>
+   * With the lighter profiles, the [ItemUpdate] objects are the same as with the "FULL" profile, because the values
+   * of the unchanged fields are reconstructed from the previous updates of the same item and the field names are
+   * obtained from the "Field List" (see [setFields] and [setCommandSecondLevelFields]). 
+   * This saves the serialization of the unchanged values, which can be significant when only a few fields of a wide 
+   * subscription change at each update.
+   * 
+   * "CHANGED_ONLY" and "POSITIONAL_CHANGED_ONLY" cannot be used if the Subscription mode is COMMAND, while "COMMAND_ROW_DIFFS"
+   * can only be used if the Subscription mode is COMMAND; otherwise the "FULL" profile is used.
+   * 
+   * **Platform** The setting is honored only on Android; on the other platforms the "FULL" profile is always used.
+   *
+   * **Default** null (i.e. "FULL").
+   * 
+   * **Lifecycle** This method can only be called while the Subscription
+   * instance is in its "inactive" state.
+   *
+   * - [profile] "FULL", "CHANGED_ONLY", "POSITIONAL_CHANGED_ONLY", "COMMAND_ROW_DIFFS" or null.
+   */
+  void setUpdatePayloadProfile(String? profile) {
+    _payloadProfile = profile;
+  }
+  /**
+   * Inquiry method that can be used to read the maximum size of the event queue configured through [setEventQueueMaxSize].
+   * 
+   * **Lifecycle** This method can be called at any time.
+   * 
+   * **Returns** The maximum number of queued events, or null if the event queue is disabled.
+   */
+  int? getEventQueueMaxSize() {
+    return _eventQueueMaxSize;
+  }
+  /**
+   * Setter method that makes the native component deliver the events of this Subscription through a bounded queue
+   * and sets the maximum number of events that can wait in the queue.
+   * 
+   * Without a queue, each event is posted to the main thread of the native component as soon as it is received, 
+   * so, if the main thread stalls (for example during a heavy route transition), the pending events pile up without limits,
+   * wasting memory and delaying the delivery of the newest values. 
+   * With a queue, at most one message per Subscription waits for the main thread, carrying all the queued events, 
+   * and when the queue is full room is made for a new event as determined by [setEventQueueOverflowPolicy]. <BR>
+   * Only the real-time updates can be dropped or merged: snapshot updates and the other events are always queued.
+   * The updates dropped for an item are notified through [SubscriptionListener.onItemDroppedUpdates].
+   * 
+   * **Platform** The setting is honored only on Android; on the other platforms it is ignored.
+   *
+   * **Default** null (no queue).
+   * 
+   * **Lifecycle** This method can only be called while the Subscription
+   * instance is in its "inactive" state.
+   *
+   * - [size] A positive number, representing the maximum number of queued events, or null to disable the queue.
+   */
+  void setEventQueueMaxSize(int? size) {
+    _eventQueueMaxSize = size;
+  }
+  /**
+   * Inquiry method that can be used to read the overflow policy of the event queue configured through [setEventQueueOverflowPolicy].
+   * 
+   * **Lifecycle** This method can be called at any time.
+   * 
+   * **Returns** "CONFLATE", "DROP_OLDEST", "BLOCK" or null.
+   */
+  String? getEventQueueOverflowPolicy() {
+    return _eventQueueOverflowPolicy;
+  }
+  /**
+   * Setter method that determines what happens when an event is received and the event queue 
+   * (see [setEventQueueMaxSize]) is full.
+   * 
+   * The permitted policies are:
+   * <ul>
+   *  <li>"CONFLATE": a new update is merged with the last queued update of the same item, as done by 
+   *  [setConflationMaxFrequency]; when there is no such update, or the Subscription mode is not MERGE, 
+   *  the oldest update is dropped as with "DROP_OLDEST";</li>
+   *  <li>"DROP_OLDEST": the oldest queued update is dropped;</li>
+   *  <li>"BLOCK": the delivery of the events of the native client library waits until the main thread makes room in the queue,
+   *  so that no update is dropped. Note that the native client library delivers all of its events through a single thread,
+   *  hence this applies back-pressure to the whole library: while the queue is full, the events of all the other Subscriptions
+   *  and of all the clients (including the status changes and the message outcomes) are held back as well. 
+   *  If conflation is enabled (see [setConflationMaxFrequency]), the queue can exceed its maximum size instead.</li>
+   * </ul>
+   * With the payload profiles that only carry the changed fields (see [setUpdatePayloadProfile]), an update is dropped
+   * only if a later update of the same item is queued, and its changed fields are carried over to the latter,
+   * so that the values of the [ItemUpdate] objects remain correct.
+   * 
+   * **Platform** The setting is honored only on Android; on the other platforms it is ignored.
+   *
+   * **Default** null (i.e. "DROP_OLDEST").
+   * 
+   * **Lifecycle** This method can only be called while the Subscription
+   * instance is in its "inactive" state.
+   *
+   * - [policy] "CONFLATE", "DROP_OLDEST", "BLOCK" or null.
+   */
+  void setEventQueueOverflowPolicy(String? policy) {
+    _eventQueueOverflowPolicy = policy;
+  }
+  /**
+   * Inquiry method that can be used to read the delivery of the JSON fields configured through [setJsonPatchDelivery].
+   * 
+   * **Lifecycle** This method can be called at any time.
+   * 
+   * **Returns** "DOCUMENTS_AND_PATCHES", "DOCUMENTS", "PATCHES" or null.
+   */
+  String? getJsonPatchDelivery() {
+    return _jsonPatchDelivery;
+  }
+  /**
+   * Setter method that determines how the native component sends the values of the fields carrying JSON documents,
+   * which the Server may deliver as JSON Patches (see [ItemUpdate.getValueAsJSONPatchIfAvailable]).
+   * 
+   * The documents are always materialized by the native client library. The permitted settings are:
+   * <ul>
+   *  <li>"DOCUMENTS_AND_PATCHES": both the documents and the JSON Patches are sent;</li>
+   *  <li>"DOCUMENTS": only the documents are sent, and the native component doesn't even look up the JSON Patches.
+   *  This is the cheapest setting for the Subscriptions that don't carry JSON data or don't need the patches; 
+   *  [ItemUpdate.getValueAsJSONPatchIfAvailable] always returns null;</li>
+   *  <li>"PATCHES": for the changed fields having a JSON Patch only the patch is sent, and the Flutter component applies it 
+   *  to the previous document of the field, which saves the serialization of large documents changing a little at a time. 
+   *  It requires the "CHANGED_ONLY", "POSITIONAL_CHANGED_ONLY" or "COMMAND_ROW_DIFFS" payload profile (see [setUpdatePayloadProfile]) and can't 
+   *  be used together with [setConflationMaxFrequency] or [setEventQueueMaxSize]; otherwise "DOCUMENTS_AND_PATCHES" is used
+   *  (in COMMAND mode, only the "COMMAND_ROW_DIFFS" profile is suitable, since the previous documents are kept by row).
+   *  The document is still sent when the previous one is not available to the Flutter component, e.g. on the first update of an item
+   *  when no snapshot is requested.
+   *  Note that a document obtained by applying a patch is equivalent to, but not necessarily formatted as, the one 
+   *  the native library would have sent.</li>
+   * </ul>
+   * 
+   * **Platform** The setting is honored only on Android; on the other platforms it is ignored.
+   *
+   * **Default** null (i.e. "DOCUMENTS_AND_PATCHES").
+   * 
+   * **Lifecycle** This method can only be called while the Subscription
+   * instance is in its "inactive" state.
+   *
+   * - [delivery] "DOCUMENTS_AND_PATCHES", "DOCUMENTS", "PATCHES" or null.
+   */
+  void setJsonPatchDelivery(String? delivery) {
+    _jsonPatchDelivery = delivery;
+  }
+  /**
+   * Inquiry method that can be used to read whether the latencies of the updates are tracked (see [setLatencyTracking]).
+   * 
+   * **Lifecycle** This method can be called at any time.
+   * 
+   * **Returns** true if the latencies are tracked.
+   */
+  bool isLatencyTracking() {
+    return _latencyTracking;
+  }
+  /**
+   * Setter method that makes the native component measure how long the real-time updates of this Subscription take to
+   * reach the Flutter component, so that a congestion of the main thread can be noticed before the updates visibly lag.
+   * 
+   * Each update is timestamped when the native client library delivers it, when the main thread of the native component
+   * starts sending it and when it has been handed over to the platform channel; the intervals are recorded in histograms,
+   * whose percentiles are returned by [getUpdateLatencies]. Timestamping costs little, but it is not free, hence it is disabled by default.
+   * 
+   * **Platform** The setting is honored only on Android; on the other platforms it is ignored.
+   *
+   * **Default** false.
+   * 
+   * **Lifecycle** This method can only be called while the Subscription
+   * instance is in its "inactive" state.
+   *
+   * - [enabled] true to track the latencies.
+   */
+  void setLatencyTracking(bool enabled) {
+    _latencyTracking = enabled;
+  }
+  /**
+   * Inquiry method that can be used to read whether the last values of the items are cached on the device (see [setLastValueCaching]).
+   * 
+   * **Lifecycle** This method can be called at any time.
+   * 
+   * **Returns** true if the last values are cached.
+   */
+  bool isLastValueCaching() {
+    return _lastValueCaching;
+  }
+  /**
+   * Setter method that makes the native component keep the last values of the items of this Subscription on the device,
+   * so that a screen can be rendered as soon as the app starts, without waiting for the session to be opened and for the snapshot to arrive.
+   * 
+   * The values received are stored in memory and written to a file at most once a second, while the least recently updated items
+   * are evicted beyond a fixed number of items. When the Subscription is subscribed to, an [ItemUpdate] carrying the cached values
+   * is delivered for each cached item as soon as the file has been loaded, ahead of any update received from the Server:
+   * the update is flagged as a snapshot and as stale (see [ItemUpdate.isStale]), and it is superseded by the real snapshot of the item.
+   * The items are identified by the Server address, the Adapter Set, the user, the Data Adapter and the item name,
+   * hence Subscriptions sharing an item also share its cached values. [LightstreamerClient.reset] discards all the cached values.
+   * 
+   * Only MERGE Subscriptions based on an "Item List" and a "Field List" support the cache.
+   * 
+   * **Platform** The setting is honored only on Android; on the other platforms it is ignored.
+   *
+   * **Default** false.
+   * 
+   * **Lifecycle** This method can only be called while the Subscription
+   * instance is in its "inactive" state.
+   *
+   * - [enabled] true to cache the last values.
+   */
+  void setLastValueCaching(bool enabled) {
+    _lastValueCaching = enabled;
+  }
+  /**
+   * Setter method that declares which fields a listener actually reads, so that the native component only sends those fields
+   * when all the listeners have declared a projection. This saves most of the cost of the updates of wide Subscriptions
+   * whose listeners only show a few columns.
+   * 
+   * The fields sent are the union of the projections of the listeners (plus the "key" and "command" fields of a COMMAND Subscription).
+   * The other fields read as null and unchanged in the [ItemUpdate] objects delivered to the listeners, while [getValue] and [getValues]
+   * keep returning the values of all the fields, since the Subscription still receives them from the Server.
+   * 
+   * **Platform** The setting is honored only on Android; on the other platforms all the fields are sent.
+   *
+   * **Default** no projection (i.e. all the fields).
+   * 
+   * **Lifecycle** This method can only be called while the Subscription
+   * instance is in its "inactive" state. The projections are applied when the Subscription is subscribed, 
+   * hence a listener added while the Subscription is active receives the fields of the other listeners.
+   * A projection is discarded when its listener is removed.
+   * 
+   * **Throws** ArgumentError (when the Subscription is subscribed) if a field name is not in the "Field List" 
+   * (or in the second-level "Field List" of a COMMAND Subscription), or if the fields are identified by name but a "Field Schema" is used.
+   *
+   * - [listener] a listener added through [addListener].
+   * - [fieldNames] the names of the fields needed by the listener.
+   * - [fieldPositions] the 1-based positions of the fields needed by the listener. If both [fieldNames] and [fieldPositions] are null,
+   * the projection of the listener is removed and the listener receives all the fields.
+   */
+  void setListenerFieldProjection(SubscriptionListener listener, {List<String>? fieldNames, List<int>? fieldPositions}) {
+    if (fieldNames == null && fieldPositions == null) {
+      _fieldProjections.remove(listener);
+    } else {
+      _fieldProjections[listener] = (names: fieldNames?.toList() ?? [], positions: fieldPositions?.toList() ?? []);
+    }
+  }
   /**
    * Inquiry method that can be used to read the snapshot preferences, 
    * configured through [setRequestedSnapshot], to be requested 
@@ -2812,6 +3513,139 @@ class Subscription {
     }
   }
 
+  /**
+   * Returns the latest values received for a rectangular region of the item×field table in a single operation.
+   * 
+   * It is the bulk counterpart of [getValue] and [getCommandValue]: a table with many cells can be read at once
+   * instead of with a call per cell. In case of COMMAND Subscriptions, the table has a row for each key of each
+   * item of the region (see [ValueTable.getKey]). <BR>
+   * Note that internal data is cleared when the Subscription is unsubscribed from.
+   * 
+   * **Platform** On the platforms other than Android, the values are read one at a time and COMMAND Subscriptions are not supported.
+   * 
+   * **Lifecycle** This method can be called at any time; the values that have not been received yet are null.
+   * 
+   * **Throws** ArgumentError if a position is out of range (a PlatformException wrapping an IllegalArgumentException 
+   * when the check is made by the native component, i.e. on Android once the Subscription has been subscribed to).
+   * 
+   * - [fromItem] the 1-based position of the first item of the region; if null, it is the first item.
+   * - [toItem] the 1-based position of the last item of the region; if null, it is the last item 
+   * (when an "Item Group" is configured, the last item of which a value has been received).
+   * - [fromField] the 1-based position of the first field of the region; if null, it is the first field.
+   * - [toField] the 1-based position of the last field of the region; if null, it is the last field
+   * (including the second-level fields of a COMMAND Subscription).
+   * 
+   * **Returns** the values of the region.
+   */
+  Future<ValueTable> getValues([int? fromItem, int? toItem, int? fromField, int? toField]) async {
+    if (Platform.isAndroid && _remoteActive) {
+      // the native component checks the ranges against what it has received
+      var arguments = <String, dynamic> {
+        'fromItem': fromItem,
+        'toItem': toItem,
+        'fromField': fromField,
+        'toField': toField,
+      };
+      Map map = await _invokeMethod('getValues', arguments);
+      return ValueTable._fromMap(map);
+    }
+    if (!Platform.isAndroid && _mode == 'COMMAND') {
+      throw UnsupportedError('Subscription.getValues is only supported on Android for COMMAND Subscriptions');
+    }
+    var itemCount = _items?.length;
+    var fieldCount = _schema2 == null ? _fieldNames()?.length : null;
+    var firstItem = fromItem ?? 1;
+    var lastItem = toItem ?? itemCount ?? 0;
+    var firstField = fromField ?? 1;
+    var lastField = toField ?? fieldCount ?? 0;
+    _checkRange('item', firstItem, lastItem, itemCount);
+    _checkRange('field', firstField, lastField, fieldCount);
+    if (!Platform.isAndroid) {
+      var values = <String?>[];
+      for (var item = firstItem; item <= lastItem; item++) {
+        for (var field = firstField; field <= lastField; field++) {
+          values.add(await getValue('$item', '$field'));
+        }
+      }
+      return ValueTable._(firstItem, lastItem, firstField, lastField, values, null, null);
+    }
+    // no value has been received yet
+    if (_mode == 'COMMAND') {
+      return ValueTable._(firstItem, lastItem, firstField, lastField, [], [], []);
+    }
+    var rows = lastItem - firstItem + 1;
+    var fields = lastField - firstField + 1;
+    return ValueTable._(firstItem, lastItem, firstField, lastField, List.filled(rows * fields, null), null, null);
+  }
+
+  /// Checks the range [first, last] of item (or field) positions against the number of items (or fields),
+  /// which is null when it is not known (i.e. an item group or a field schema is used).
+  /// An empty range (i.e. last = first - 1) is allowed.
+  static void _checkRange(String what, int first, int last, int? count) {
+    if (first < 1) {
+      throw ArgumentError('The $what position $first is out of range');
+    }
+    if (last < first - 1) {
+      throw ArgumentError('The $what range [$first, $last] is not valid');
+    }
+    if (count != null && last > count) {
+      throw ArgumentError('The $what position $last is out of range (1-$count)');
+    }
+  }
+
+  /**
+   * Returns the current rows of an item of a COMMAND Subscription using the "COMMAND_ROW_DIFFS" payload profile
+   * in a single operation.
+   * 
+   * The row indices are the same reported by [SubscriptionListener.onCommandRowDiff].
+   * 
+   * **Platform** This method is only supported on Android.
+   * 
+   * **Throws** IllegalStateException if the Subscription doesn't use the "COMMAND_ROW_DIFFS" payload profile.
+   * 
+   * - [itemPos] the 1-based position of the item within the "Item List" or "Item Group".
+   * 
+   * **Returns** the rows of the item.
+   * 
+   * - See [setUpdatePayloadProfile]
+   */
+  Future<CommandRowTable> getCommandRows(int itemPos) async {
+    if (!Platform.isAndroid) {
+      throw UnsupportedError('Subscription.getCommandRows is only supported on Android');
+    }
+    if (!_remoteActive) {
+      return CommandRowTable._(itemPos, 0, [], [], []);
+    }
+    var arguments = <String, dynamic> {
+      'itemPos': itemPos,
+    };
+    Map map = await _invokeMethod('getCommandRows', arguments);
+    return CommandRowTable._fromMap(map);
+  }
+
+  /**
+   * Returns the latencies of the real-time updates of this Subscription recorded since the subscription
+   * (or since the last call with [reset] set to true).
+   * 
+   * **Platform** This method is only supported on Android.
+   * 
+   * **Throws** IllegalStateException if the latencies are not tracked (see [setLatencyTracking]).
+   * 
+   * - [reset] if true, the recorded latencies are discarded, so that the next call only reports the later updates.
+   * 
+   * **Returns** the percentiles of the latencies.
+   */
+  Future<UpdateLatencies> getUpdateLatencies({ bool reset = false }) async {
+    if (!Platform.isAndroid) {
+      throw UnsupportedError('Subscription.getUpdateLatencies is only supported on Android');
+    }
+    var arguments = <String, dynamic> {
+      'reset': reset,
+    };
+    Map map = await _invokeMethod('getUpdateLatencies', arguments);
+    return UpdateLatencies._fromMap(map);
+  }
+
   Future<T> _invokeMethod<T>(String method, [ Map<String, dynamic>? arguments ]) async {
     arguments = arguments ?? {};
     arguments["subId"] = _id;
@@ -193,6 +193,17 @@ class ClientListener {
    * - See [ConnectionDetails.setAdapterSet]
    */
   void onServerError(int errorCode, String errorMessage) {}
+  /**
+   * Event handler that receives the metrics of the LightstreamerClient periodically, once they have been requested
+   * through [LightstreamerClient.setMetricsPushInterval].
+   * 
+   * **Platform** This notification is only sent on Android.
+   * 
+   * - [metrics] The current metrics of the client.
+   * 
+   * - See [LightstreamerClient.getMetrics]
+   */
+  void onMetrics(ClientMetrics metrics) {}
   /**
    * Event handler that receives a notification when the ClientListener instance is removed from a LightstreamerClient 
    * through [LightstreamerClient.removeListener]. 
@@ -337,6 +348,23 @@ class SubscriptionListener {
    * - See [Subscription.setRequestedMaxFrequency]
    */
   void onItemLostUpdates(String itemName, int itemPos, int lostUpdates) {}
+  /**
+   * Event handler that is called to notify that the native component dropped one or more updates for an item 
+   * in the Subscription because its event queue was full, i.e. the application didn't keep up with the updates.
+   * 
+   * Such notifications are only sent if the Subscription has an event queue with the "DROP_OLDEST" or "CONFLATE" 
+   * overflow policy (see [Subscription.setEventQueueMaxSize]). The notification is delivered before the next update of the item.
+   * 
+   * **Platform** This notification is only sent on Android.
+   * 
+   * - [itemName] name of the involved item. If the Subscription was initialized using an "Item Group" then a 
+   *        null value is supplied.
+   * - [itemPos] 1-based position of the item within the "Item List" or "Item Group".
+   * - [droppedUpdates] The number of updates dropped for the item since the previous notification.
+   * 
+   * - See [Subscription.setEventQueueOverflowPolicy]
+   */
+  void onItemDroppedUpdates(String itemName, int itemPos, int droppedUpdates) {}
   /**
    * Event handler that is called by Lightstreamer each time an update pertaining to an item in the Subscription
    * has been received from the Server.
@@ -345,6 +373,21 @@ class SubscriptionListener {
    * about the update itself and some helper methods that can be used to iterate through all or new values.
    */
   void onItemUpdate(ItemUpdate update) {}
+  /**
+   * Event handler that is called for each change of a row of a COMMAND Subscription using the "COMMAND_ROW_DIFFS" 
+   * payload profile, just before the corresponding [onItemUpdate] event.
+   * 
+   * It allows to keep a row-based view (e.g. an order book) in sync without looking up the keys: the rows of an item 
+   * have stable indices, which are assigned when the keys are added and released when they are deleted.
+   * 
+   * **Platform** The event is only fired on Android.
+   * 
+   * - [diff] the change of the row.
+   * 
+   * - See [Subscription.setUpdatePayloadProfile]
+   * - See [Subscription.getCommandRows]
+   */
+  void onCommandRowDiff(CommandRowDiff diff) {}
   /**
    * Event handler that receives a notification when the SubscriptionListener instance is removed from a Subscription 
    * through [Subscription.removeListener]. 
@@ -514,6 +557,22 @@ class ClientMessageListener {
   void onProcessed(String originalMessage, String response) {}
 }
 
+/**
+ * Interface to be implemented to listen to [LightstreamerClient.sendMessages] events reporting the processing outcomes 
+ * of a batch of messages.
+ * 
+ * The outcomes are aggregated: an event carries all the outcomes received by the native component since the previous event,
+ * and the last event of a batch is the one reporting that no outcome is pending (see [MessageBatchOutcomes.isComplete]).
+ */
+class MessageBatchListener {
+  /**
+   * Event handler that is called by Lightstreamer when some messages of the batch have got an outcome.
+   * 
+   * - [outcomes] the outcomes received since the previous notification.
+   */
+  void onOutcomes(MessageBatchOutcomes outcomes) {}
+}
+
 /**
  * Interface to be implemented to receive MPN device events including registration, suspension/resume and status change.
  * 
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+part of 'client.dart';
+
+/**
+ * A change of a row of an item of a COMMAND Subscription using the "COMMAND_ROW_DIFFS" payload profile
+ * (see [Subscription.setUpdatePayloadProfile] and [SubscriptionListener.onCommandRowDiff]).
+ * 
+ * Each key of an item is assigned a row index when it is added and keeps it until it is deleted;
+ * the indices of the deleted keys are reused, so the indices of an item stay below the peak number of keys the item has had
+ * at the same time. Note that the rows are not compacted: after some deletions, an index may exceed the current number of keys.
+ */
+class CommandRowDiff {
+  final String? _itemName;
+  final int _itemPos;
+  final bool _isSnapshot;
+  final String _op;
+  final int _row;
+  final String _key;
+  final Map<int, String?> _changedFieldsByPosition;
+
+  CommandRowDiff._(this._itemName, this._itemPos, this._isSnapshot, this._op, this._row, this._key, this._changedFieldsByPosition);
+
+  /**
+   * The name of the item, or null if the Subscription was initialized using an "Item Group".
+   */
+  String? getItemName() => _itemName;
+  /**
+   * The 1-based position of the item within the "Item List" or "Item Group".
+   */
+  int getItemPos() => _itemPos;
+  /**
+   * Whether the change belongs to the item snapshot.
+   */
+  bool isSnapshot() => _isSnapshot;
+  /**
+   * The kind of change: "ADD", "UPDATE" or "DELETE".
+   */
+  String getOperation() => _op;
+  /**
+   * The index of the row of the key, or -1 in the unusual case of a DELETE of a key that is not in the table.
+   */
+  int getRow() => _row;
+  /**
+   * The key of the row.
+   */
+  String getKey() => _key;
+  /**
+   * The new values of the changed fields, keyed by 1-based field position.
+   */
+  Map<int, String?> getChangedFieldsByPosition() => _changedFieldsByPosition;
+}
+
+/**
+ * The rows of an item of a COMMAND Subscription, as returned by [Subscription.getCommandRows].
+ */
+class CommandRowTable {
+  /**
+   * The 1-based position of the item.
+   */
+  final int itemPos;
+  /**
+   * The number of fields of each row (including the second-level fields).
+   */
+  final int fieldCount;
+  /**
+   * The indices of the rows of the item, in increasing order.
+   */
+  final List<int> rows;
+  final List<String> _keys;
+  final List<String?> _values;
+  final Map<int, int> _indexOfRow;
+
+  CommandRowTable._(this.itemPos, this.fieldCount, this.rows, this._keys, this._values)
+    : _indexOfRow = { for (var i = 0; i < rows.length; i++) rows[i]: i };
+
+  static CommandRowTable _fromMap(Map map) {
+    return CommandRowTable._(
+      map['itemPos'], 
+      map['fieldCount'], 
+      (map['rows'] as List).cast<int>(), 
+      (map['keys'] as List).cast<String>(), 
+      (map['values'] as List).cast<String?>());
+  }
+
+  /**
+   * Returns the key of the specified row, or null if there is no such row.
+   */
+  String? getKey(int row) {
+    var i = _indexOfRow[row];
+    return i == null ? null : _keys[i];
+  }
+
+  /**
+   * Returns the value of the field having the specified 1-based position in the specified row, or null if there is no such row.
+   */
+  String? getValue(int row, int fieldPos) {
+    var i = _indexOfRow[row];
+    return i == null ? null : _values[i * fieldCount + fieldPos - 1];
+  }
+}
@@ -44,6 +44,7 @@ interface class ItemUpdate {
   final String? _itemName;
   final int _itemPos;
   final bool _isSnapshot;
+  final bool _isStale;
   final Map<String, String?> _changedFields;
   final Map<String, String?> _fields;
   final Map<String, String?> _jsonFields;
@@ -55,6 +56,7 @@ interface class ItemUpdate {
     _itemName = call.arguments['itemName'],
     _itemPos = call.arguments['itemPos'],
     _isSnapshot = call.arguments['isSnapshot'],
+    _isStale = call.arguments['isStale'] == true,
     _changedFields = (call.arguments['changedFields'] as Map<Object?, Object?>).cast(),
     _fields = (call.arguments['fields'].cast() as Map<Object?, Object?>).cast(),
     _jsonFields = (call.arguments['jsonFields'] as Map<Object?, Object?>).cast(),
@@ -62,6 +64,99 @@ interface class ItemUpdate {
     _fieldsByPosition = (call.arguments['fieldsByPosition'] as Map<Object?, Object?>).cast(),
     _jsonFieldsByPosition = (call.arguments['jsonFieldsByPosition'] as Map<Object?, Object?>).cast();
 
+  ItemUpdate._raw(this._itemName, this._itemPos, this._isSnapshot, 
+    this._changedFields, this._fields, this._jsonFields, 
+    this._changedFieldsByPosition, this._fieldsByPosition, this._jsonFieldsByPosition) : _isStale = false;
+
+  /// Builds an update from an event carrying only the changed values (see [Subscription.setUpdatePayloadProfile]).
+  /// The values of the other fields are taken from the previous updates of the same item, which are kept by [sub].
+  static ItemUpdate _fromChanges(MethodCall call, Subscription sub) {
+    var arguments = call.arguments;
+    int itemPos = arguments['itemPos'];
+    Map<int, String?> changedFieldsByPosition = (arguments['changedFieldsByPosition'] as Map<Object?, Object?>).cast();
+    var values = sub._itemValues.putIfAbsent(itemPos, () => {});
+    _materializeJsonPatches(call, values);
+    values.addAll(changedFieldsByPosition);
+    return _fromValues(call, sub, values);
+  }
+
+  /// Builds an update from a [CommandRowDiff] event (see the "COMMAND_ROW_DIFFS" profile of [Subscription.setUpdatePayloadProfile]).
+  /// The values of the other fields are taken from the copy of the row kept by [sub].
+  static ItemUpdate _fromRowDiff(MethodCall call, Subscription sub, CommandRowDiff diff) {
+    var rows = sub._commandRows.putIfAbsent(diff._itemPos, () => {});
+    Map<int, String?> values;
+    switch (diff._op) {
+      case 'ADD':
+        values = rows[diff._row] = {};
+      case 'DELETE':
+        values = rows.remove(diff._row) ?? {};
+      default:
+        values = rows.putIfAbsent(diff._row, () => {});
+    }
+    _materializeJsonPatches(call, values);
+    values.addAll(diff._changedFieldsByPosition);
+    return _fromValues(call, sub, values);
+  }
+
+  /// Adds to the changed fields of the event the fields only carried as JSON Patches 
+  /// (see the "PATCHES" setting of [Subscription.setJsonPatchDelivery]), by applying the patches to the previous [values].
+  /// 
+  /// NB the native component sends the document in place of the patch when the previous value is not held here,
+  /// so a missing value is unexpected; in that case the field is left unchanged rather than losing the whole update.
+  static void _materializeJsonPatches(MethodCall call, Map<int, String?> values) {
+    Map<Object?, Object?> changedFieldsByPosition = call.arguments['changedFieldsByPosition'];
+    Map<Object?, Object?> jsonFieldsByPosition = call.arguments['jsonFieldsByPosition'];
+    for (var MapEntry(key: pos, value: patch) in jsonFieldsByPosition.entries) {
+      if (!changedFieldsByPosition.containsKey(pos)) {
+        var document = values[pos];
+        if (document == null) {
+          if (channelLogger.isErrorEnabled()) {
+            channelLogger.error('Cannot apply a JSON Patch to field $pos of item ${call.arguments['itemPos']} because its previous value is unknown');
+          }
+          continue;
+        }
+        changedFieldsByPosition[pos] = _applyJsonPatch(document, patch as String);
+      }
+    }
+  }
+
+  static ItemUpdate _fromValues(MethodCall call, Subscription sub, Map<int, String?> values) {
+    var arguments = call.arguments;
+    int itemPos = arguments['itemPos'];
+    Map<int, String?> changedFieldsByPosition = (arguments['changedFieldsByPosition'] as Map<Object?, Object?>).cast();
+    Map<int, String?> jsonFieldsByPosition = (arguments['jsonFieldsByPosition'] as Map<Object?, Object?>).cast();
+    var names = sub._fieldNames();
+    Map<int, String?> fieldsByPosition;
+    Map<String, String?> changedFields;
+    Map<String, String?> fields;
+    Map<String, String?> jsonFields;
+    if (names == null) {
+      fieldsByPosition = {...values};
+      changedFields = {};
+      fields = {};
+      jsonFields = {};
+    } else {
+      fieldsByPosition = { for (var pos = 1; pos <= names.length; pos++) pos: values[pos] };
+      // NB in case of name conflicts, the first-level field is meant: so the positions are visited backwards
+      changedFields = {};
+      fields = {};
+      jsonFields = {};
+      for (var pos = names.length; pos >= 1; pos--) {
+        var name = names[pos - 1];
+        fields[name] = values[pos];
+        if (changedFieldsByPosition.containsKey(pos)) {
+          changedFields[name] = changedFieldsByPosition[pos];
+        }
+        if (jsonFieldsByPosition.containsKey(pos)) {
+          jsonFields[name] = jsonFieldsByPosition[pos];
+        }
+      }
+    }
+    return ItemUpdate._raw(arguments['itemName'], itemPos, arguments['isSnapshot'],
+      changedFields, fields, jsonFields,
+      changedFieldsByPosition, fieldsByPosition, jsonFieldsByPosition);
+  }
+
   /**
    * Inquiry method that retrieves the name of the item to which this update pertains.
    *  
@@ -114,6 +209,21 @@ interface class ItemUpdate {
     return _isSnapshot;
   }
 
+  /**
+   * Inquiry method that asks whether the current update carries the values cached on the device by a previous run of the app
+   * rather than values received from the Server (see [Subscription.setLastValueCaching]).
+   * 
+   * A stale update is delivered for each cached item as soon as the Subscription is subscribed to, so that the values can be shown
+   * while the session is being opened. It is flagged as a snapshot and it is superseded by the real snapshot of the item.
+   * 
+   * **Platform** Only Android. On the other platforms it always returns false.
+   * 
+   * **Returns** true if the current update carries cached values; false otherwise.
+   */
+  bool isStale() {
+    return _isStale;
+  }
+
   /**
    * Returns the current value for the specified field.
    * 
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+part of 'client.dart';
+
+/// Applies a JSON Patch (RFC 6902) to a JSON document and returns the resulting document.
+/// It is used to materialize the values of the JSON fields when the native component only sends their patches
+/// (see [Subscription.setJsonPatchDelivery]).
+String _applyJsonPatch(String document, String patch) {
+  Object? root = jsonDecode(document);
+  for (var op in jsonDecode(patch) as List) {
+    var path = _JsonPointer.parse(op['path']);
+    switch (op['op']) {
+      case 'add':
+        root = path.add(root, op['value']);
+      case 'remove':
+        root = path.remove(root).$1;
+      case 'replace':
+        root = path.add(path.remove(root).$1, op['value']);
+      case 'move':
+        var from = _JsonPointer.parse(op['from']);
+        var (newRoot, value) = from.remove(root);
+        root = path.add(newRoot, value);
+      case 'copy':
+        root = path.add(root, _deepCopy(_JsonPointer.parse(op['from']).get(root)));
+      case 'test':
+        if (jsonEncode(path.get(root)) != jsonEncode(op['value'])) {
+          throw FormatException('JSON Patch test failed at ${op['path']}');
+        }
+      default:
+        throw FormatException('Unknown JSON Patch operation ${op['op']}');
+    }
+  }
+  return jsonEncode(root);
+}
+
+Object? _deepCopy(Object? value) => jsonDecode(jsonEncode(value));
+
+class _JsonPointer {
+  final List<String> _tokens;
+
+  _JsonPointer(this._tokens);
+
+  static _JsonPointer parse(String pointer) {
+    if (pointer.isEmpty) {
+      return _JsonPointer([]);
+    }
+    if (!pointer.startsWith('/')) {
+      throw FormatException('Invalid JSON Pointer $pointer');
+    }
+    return _JsonPointer(pointer.substring(1).split('/').map((t) => t.replaceAll('~1', '/').replaceAll('~0', '~')).toList());
+  }
+
+  Object? get(Object? root) {
+    var node = root;
+    for (var token in _tokens) {
+      node = _child(node, token);
+    }
+    return node;
+  }
+
+  /// Adds (or replaces, for an object member) the value at this location and returns the new root.
+  Object? add(Object? root, Object? value) {
+    if (_tokens.isEmpty) {
+      return value;
+    }
+    var parent = _parent(root);
+    var last = _tokens.last;
+    if (parent is Map) {
+      parent[last] = value;
+    } else if (parent is List) {
+      if (last == '-') {
+        parent.add(value);
+      } else {
+        parent.insert(_index(parent, last, parent.length), value);
+      }
+    } else {
+      throw FormatException('Invalid JSON Patch target ${_tokens.join('/')}');
+    }
+    return root;
+  }
+
+  /// Removes the value at this location and returns the new root and the removed value.
+  (Object?, Object?) remove(Object? root) {
+    if (_tokens.isEmpty) {
+      return (null, root);
+    }
+    var parent = _parent(root);
+    var last = _tokens.last;
+    if (parent is Map && parent.containsKey(last)) {
+      return (root, parent.remove(last));
+    } else if (parent is List) {
+      return (root, parent.removeAt(_index(parent, last, parent.length - 1)));
+    }
+    throw FormatException('Invalid JSON Patch target ${_tokens.join('/')}');
+  }
+
+  Object? _parent(Object? root) {
+    var node = root;
+    for (var i = 0; i < _tokens.length - 1; i++) {
+      node = _child(node, _tokens[i]);
+    }
+    return node;
+  }
+
+  static Object? _child(Object? node, String token) {
+    if (node is Map && node.containsKey(token)) {
+      return node[token];
+    } else if (node is List) {
+      return node[_index(node, token, node.length - 1)];
+    }
+    throw FormatException('Invalid JSON Pointer token $token');
+  }
+
+  static int _index(List list, String token, int max) {
+    var index = int.tryParse(token);
+    if (index == null || index < 0 || index > max || (token.length > 1 && token.startsWith('0'))) {
+      throw FormatException('Invalid JSON Pointer index $token');
+    }
+    return index;
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+// ignore_for_file: constant_identifier_names
+
+part of 'client.dart';
+
+/// The message codec of the channel com.lightstreamer.flutter/listeners.
+/// 
+/// Besides the standard values, it decodes the listener events that the Android component encodes in a compact 
+/// binary layout (see `ListenerEventCodec.java` for the description of the layout).
+/// The events are decoded into the same maps that the standard codec would produce, so the consumers of the channel
+/// don't depend on the codec.
+/// 
+/// WARNING the tag tables must be kept aligned with the ones in `ListenerEventCodec.java`; new entries must be appended.
+class _ListenerEventMessageCodec extends StandardMessageCodec {
+  // custom value types
+  static const int _EVENT = 128;
+  static const int _BATCH = 129;
+  // data types
+  static const int _NULL = 0;
+  static const int _TRUE = 1;
+  static const int _FALSE = 2;
+  static const int _INT = 3;
+  static const int _LONG = 4;
+  static const int _DOUBLE = 5;
+  static const int _STRING = 6;
+  static const int _STRING_MAP = 7;
+  static const int _INT_MAP = 8;
+  static const int _LIST = 9;
+  // tag of the method names and argument names that are not in the tables
+  static const int _UNKNOWN = 255;
+
+  static const List<String> _methods = [
+    "ClientListener.onServerError",
+    "ClientListener.onStatusChange",
+    "ClientListener.onPropertyChange",
+    "SubscriptionListener.onClearSnapshot",
+    "SubscriptionListener.onCommandSecondLevelItemLostUpdates",
+    "SubscriptionListener.onCommandSecondLevelSubscriptionError",
+    "SubscriptionListener.onEndOfSnapshot",
+    "SubscriptionListener.onItemLostUpdates",
+    "SubscriptionListener.onItemUpdate",
+    "SubscriptionListener.onSubscription",
+    "SubscriptionListener.onSubscriptionError",
+    "SubscriptionListener.onUnsubscription",
+    "SubscriptionListener.onRealMaxFrequency",
+    "ClientMessageListener.onAbort",
+    "ClientMessageListener.onDeny",
+    "ClientMessageListener.onDiscarded",
+    "ClientMessageListener.onError",
+    "ClientMessageListener.onProcessed",
+    "MpnDeviceListener.onRegistered",
+    "MpnDeviceListener.onSuspended",
+    "MpnDeviceListener.onResumed",
+    "MpnDeviceListener.onStatusChanged",
+    "MpnDeviceListener.onRegistrationFailed",
+    "MpnDeviceListener.onSubscriptionsUpdated",
+    "MpnSubscriptionListener.onSubscription",
+    "MpnSubscriptionListener.onUnsubscription",
+    "MpnSubscriptionListener.onSubscriptionError",
+    "MpnSubscriptionListener.onUnsubscriptionError",
+    "MpnSubscriptionListener.onTriggered",
+    "MpnSubscriptionListener.onStatusChanged",
+    "MpnSubscriptionListener.onPropertyChanged",
+    "MpnSubscriptionListener.onModificationError",
+    "SubscriptionListener.onCommandRowDiff",
+    "SubscriptionListener.onItemDroppedUpdates",
+    "ClientListener.onMetrics",
+    "MessageBatchListener.onOutcomes",
+  ];
+
+  static const List<String> _arguments = [
+    "id",
+    "subId",
+    "msgId",
+    "mpnDevId",
+    "mpnSubId",
+    "itemName",
+    "itemPos",
+    "isSnapshot",
+    "changedFields",
+    "fields",
+    "jsonFields",
+    "changedFieldsByPosition",
+    "fieldsByPosition",
+    "jsonFieldsByPosition",
+    "errorCode",
+    "errorMessage",
+    "status",
+    "property",
+    "value",
+    "lostUpdates",
+    "key",
+    "code",
+    "message",
+    "commandPosition",
+    "keyPosition",
+    "frequency",
+    "originalMessage",
+    "sentOnNetwork",
+    "response",
+    "applicationId",
+    "deviceId",
+    "deviceToken",
+    "platform",
+    "previousDeviceToken",
+    "timestamp",
+    "subscriptionId",
+    "propertyName",
+    "op",
+    "row",
+    "droppedUpdates",
+    "metrics",
+    "isStale",
+    "batchId",
+    "processed",
+    "responses",
+    "failures",
+    "pending",
+  ];
+
+  const _ListenerEventMessageCodec();
+
+  @override
+  dynamic readValueOfType(int type, ReadBuffer buffer) {
+    switch (type) {
+      case _EVENT:
+        return _readEvent(buffer);
+      case _BATCH:
+        var count = _readInt32(buffer);
+        return [ for (var i = 0; i < count; i++) _readEvent(buffer) ];
+      default:
+        return super.readValueOfType(type, buffer);
+    }
+  }
+
+  static int _readInt32(ReadBuffer buffer) {
+    return ByteData.sublistView(buffer.getUint8List(4)).getInt32(0, Endian.little);
+  }
+
+  Map<Object?, Object?> _readEvent(ReadBuffer buffer) {
+    var length = _readInt32(buffer);
+    var reader = _EventReader(buffer.getUint8List(length));
+    var event = <Object?, Object?>{};
+    event['targetMethod'] = reader.readTag(_methods);
+    var argCount = reader.readUint8();
+    for (var i = 0; i < argCount; i++) {
+      var name = reader.readTag(_arguments);
+      event[name] = reader.readData();
+    }
+    return event;
+  }
+}
+
+class _EventReader {
+  final ByteData _data;
+  int _pos = 0;
+
+  _EventReader(Uint8List bytes) : _data = ByteData.sublistView(bytes);
+
+  int readUint8() {
+    return _data.getUint8(_pos++);
+  }
+
+  int readInt32() {
+    var value = _data.getInt32(_pos, Endian.little);
+    _pos += 4;
+    return value;
+  }
+
+  String readString() {
+    var length = readInt32();
+    var value = utf8.decode(Uint8List.sublistView(_data, _pos, _pos + length));
+    _pos += length;
+    return value;
+  }
+
+  String readTag(List<String> table) {
+    var tag = readUint8();
+    return tag == _ListenerEventMessageCodec._UNKNOWN ? readString() : table[tag];
+  }
+
+  Map<Object?, Object?> readStringMap() {
+    var size = readInt32();
+    var map = <Object?, Object?>{};
+    for (var i = 0; i < size; i++) {
+      var key = readString();
+      map[key] = readData();
+    }
+    return map;
+  }
+
+  Map<Object?, Object?> readIntMap() {
+    var size = readInt32();
+    var map = <Object?, Object?>{};
+    for (var i = 0; i < size; i++) {
+      var key = readInt32();
+      map[key] = readData();
+    }
+    return map;
+  }
+
+  Object? readData() {
+    var type = readUint8();
+    switch (type) {
+      case _ListenerEventMessageCodec._NULL:
+        return null;
+      case _ListenerEventMessageCodec._TRUE:
+        return true;
+      case _ListenerEventMessageCodec._FALSE:
+        return false;
+      case _ListenerEventMessageCodec._INT:
+        return readInt32();
+      case _ListenerEventMessageCodec._LONG:
+        var longValue = _data.getInt64(_pos, Endian.little);
+        _pos += 8;
+        return longValue;
+      case _ListenerEventMessageCodec._DOUBLE:
+        var doubleValue = _data.getFloat64(_pos, Endian.little);
+        _pos += 8;
+        return doubleValue;
+      case _ListenerEventMessageCodec._STRING:
+        return readString();
+      case _ListenerEventMessageCodec._STRING_MAP:
+        return readStringMap();
+      case _ListenerEventMessageCodec._INT_MAP:
+        return readIntMap();
+      case _ListenerEventMessageCodec._LIST:
+        var listSize = readInt32();
+        return [ for (var i = 0; i < listSize; i++) readData() ];
+      default:
+        throw FormatException('Unexpected data type $type');
+    }
+  }
+}
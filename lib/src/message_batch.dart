@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+part of 'client.dart';
+
+/**
+ * The outcomes of some of the messages sent through [LightstreamerClient.sendMessages] (see [MessageBatchListener.onOutcomes]).
+ * 
+ * A message is identified by its index in the list passed to [LightstreamerClient.sendMessages].
+ * Each object only carries the outcomes received since the previous notification.
+ */
+class MessageBatchOutcomes {
+  final List<String> _messages;
+  final List<int> _processed;
+  final Map<int, String> _responses;
+  final List<MessageFailure> _failures;
+  final int _pending;
+
+  MessageBatchOutcomes._(this._messages, this._processed, this._responses, this._failures, this._pending);
+
+  static MessageBatchOutcomes _fromMap(List<String> messages, Map arguments) {
+    // the processed messages are sent as a bitmap: the bit `i % 64` of the word `i / 64` stands for the message `i`
+    var processed = <int>[];
+    var words = (arguments['processed'] as List).cast<int>();
+    for (var w = 0; w < words.length; w++) {
+      for (var b = 0; b < 64; b++) {
+        if (words[w] & (1 << b) != 0) {
+          processed.add(w * 64 + b);
+        }
+      }
+    }
+    var failures = [
+      for (Map failure in arguments['failures'])
+        MessageFailure._(failure['index'], messages[failure['index']], failure['outcome'], 
+          failure['sentOnNetwork'] ?? false, failure['errorCode'], failure['errorMessage'])
+    ];
+    return MessageBatchOutcomes._(messages, processed, (arguments['responses'] as Map).cast<int, String>(), failures, arguments['pending']);
+  }
+
+  /**
+   * The messages of the batch.
+   */
+  List<String> getMessages() => _messages;
+  /**
+   * The indexes of the messages processed with success (see [ClientMessageListener.onProcessed]), in ascending order.
+   */
+  List<int> getProcessed() => _processed;
+  /**
+   * The responses of the Metadata Adapter to the processed messages, keyed by index. The empty responses are omitted.
+   */
+  Map<int, String> getResponses() => _responses;
+  /**
+   * The messages that have not been processed with success.
+   */
+  List<MessageFailure> getFailures() => _failures;
+  /**
+   * The number of messages of the batch still waiting for an outcome.
+   */
+  int getPendingCount() => _pending;
+  /**
+   * Whether all the messages of the batch have got an outcome, in which case this is the last notification of the batch.
+   */
+  bool isComplete() => _pending == 0;
+
+  @override
+  String toString() => 'MessageBatchOutcomes{processed: $_processed, responses: $_responses, failures: $_failures, pending: $_pending}';
+}
+
+/**
+ * The outcome of a message of a batch that has not been processed with success (see [MessageBatchOutcomes.getFailures]).
+ */
+class MessageFailure {
+  final int _index;
+  final String _message;
+  final String _outcome;
+  final bool _sentOnNetwork;
+  final int? _errorCode;
+  final String? _errorMessage;
+
+  MessageFailure._(this._index, this._message, this._outcome, this._sentOnNetwork, this._errorCode, this._errorMessage);
+
+  /**
+   * The index of the message in the batch.
+   */
+  int getIndex() => _index;
+  /**
+   * The message.
+   */
+  String getMessage() => _message;
+  /**
+   * The name of the [ClientMessageListener] event that would have reported the outcome: "onAbort", "onDeny", "onDiscarded" or "onError".
+   */
+  String getOutcome() => _outcome;
+  /**
+   * Only for "onAbort": true if the message was sent on the network (see [ClientMessageListener.onAbort]).
+   */
+  bool isSentOnNetwork() => _sentOnNetwork;
+  /**
+   * Only for "onDeny": the error code sent by the Server (see [ClientMessageListener.onDeny]).
+   */
+  int? getErrorCode() => _errorCode;
+  /**
+   * Only for "onDeny": the description of the error sent by the Server (see [ClientMessageListener.onDeny]).
+   */
+  String? getErrorMessage() => _errorMessage;
+
+  @override
+  String toString() => 'MessageFailure{index: $_index, outcome: $_outcome, sentOnNetwork: $_sentOnNetwork, errorCode: $_errorCode, errorMessage: $_errorMessage}';
+}
+
+/// Reports to a [MessageBatchListener] the outcomes of the messages of a batch sent one at a time 
+/// (see [LightstreamerClient.sendMessages] on the platforms other than Android), with an event per outcome.
+class _MessageBatchCollector {
+  final List<String> _messages;
+  final MessageBatchListener _listener;
+  int _pending;
+
+  _MessageBatchCollector(List<String> messages, this._listener) : _messages = messages.toList(), _pending = messages.length;
+
+  ClientMessageListener listener(int index) => _BatchMessageListener(this, index);
+
+  void _notify({List<int> processed = const [], Map<int, String> responses = const {}, List<MessageFailure> failures = const []}) {
+    _pending--;
+    _listener.onOutcomes(MessageBatchOutcomes._(_messages, processed, responses, failures, _pending));
+  }
+}
+
+class _BatchMessageListener extends ClientMessageListener {
+  final _MessageBatchCollector _collector;
+  final int _index;
+
+  _BatchMessageListener(this._collector, this._index);
+
+  @override
+  void onAbort(String originalMessage, bool sentOnNetwork) {
+    _collector._notify(failures: [ MessageFailure._(_index, originalMessage, 'onAbort', sentOnNetwork, null, null) ]);
+  }
+
+  @override
+  void onDeny(String originalMessage, int errorCode, String errorMessage) {
+    _collector._notify(failures: [ MessageFailure._(_index, originalMessage, 'onDeny', false, errorCode, errorMessage) ]);
+  }
+
+  @override
+  void onDiscarded(String originalMessage) {
+    _collector._notify(failures: [ MessageFailure._(_index, originalMessage, 'onDiscarded', false, null, null) ]);
+  }
+
+  @override
+  void onError(String originalMessage) {
+    _collector._notify(failures: [ MessageFailure._(_index, originalMessage, 'onError', false, null, null) ]);
+  }
+
+  @override
+  void onProcessed(String originalMessage, String response) {
+    _collector._notify(processed: [ _index ], responses: response.isEmpty ? const {} : { _index: response });
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+part of 'client.dart';
+
+/**
+ * Counters of the events that the native component sends to the Flutter component on behalf of a [LightstreamerClient]
+ * or of one of its Subscriptions (see [LightstreamerClient.getMetrics]).
+ * 
+ * The counters start when the client (or the Subscription) is created and are never reset.
+ */
+class EventMetrics {
+  final int _updatesReceived;
+  final int _eventsPosted;
+  final int _eventsDelivered;
+  final int _eventsDropped;
+  final int _queueDepth;
+
+  EventMetrics._fromMap(Map map) :
+    _updatesReceived = map['updatesReceived'],
+    _eventsPosted = map['eventsPosted'],
+    _eventsDelivered = map['eventsDelivered'],
+    _eventsDropped = map['eventsDropped'],
+    _queueDepth = map['queueDepth'];
+
+  /**
+   * The real-time updates received from the Server. The counter of a client includes the updates of its Subscriptions.
+   */
+  int getUpdatesReceived() => _updatesReceived;
+  /**
+   * The events handed over to the main thread of the native component to be sent to the Flutter component.
+   */
+  int getEventsPosted() => _eventsPosted;
+  /**
+   * The events sent to the Flutter component.
+   */
+  int getEventsDelivered() => _eventsDelivered;
+  /**
+   * The events discarded because the Flutter component was not listening to the native events (e.g. while the engine was being attached).
+   */
+  int getEventsDropped() => _eventsDropped;
+  /**
+   * The events currently waiting to be sent to the Flutter component, including the ones held by the event queues
+   * (see [Subscription.setEventQueueMaxSize]).
+   */
+  int getQueueDepth() => _queueDepth;
+
+  /**
+   * Returns the counters keyed by name, e.g. to ship them to a telemetry service.
+   */
+  Map<String, int> toMap() => {
+    'updatesReceived': _updatesReceived,
+    'eventsPosted': _eventsPosted,
+    'eventsDelivered': _eventsDelivered,
+    'eventsDropped': _eventsDropped,
+    'queueDepth': _queueDepth,
+  };
+
+  @override
+  String toString() => 'EventMetrics${toMap()}';
+}
+
+/**
+ * The metrics of a [LightstreamerClient] (see [LightstreamerClient.getMetrics] and [ClientListener.onMetrics]).
+ */
+class ClientMetrics {
+  final EventMetrics _client;
+  final Map<Subscription, EventMetrics> _subscriptions;
+  final Map<String, int> _methodCalls;
+
+  ClientMetrics._(this._client, this._subscriptions, this._methodCalls);
+
+  /**
+   * The counters of the client, which include the ones of its Subscriptions.
+   */
+  EventMetrics getClient() => _client;
+  /**
+   * The counters of the Subscriptions the client is currently subscribed to.
+   */
+  Map<Subscription, EventMetrics> getSubscriptions() => _subscriptions;
+  /**
+   * The number of the calls received by the native component, keyed by method name (e.g. "Subscription.getValueByItemPosAndFieldPos").
+   * 
+   * NB the calls are counted for the whole application, not only for this client.
+   */
+  Map<String, int> getMethodCalls() => _methodCalls;
+
+  @override
+  String toString() => 'ClientMetrics{client: $_client, subscriptions: ${_subscriptions.values}, methodCalls: $_methodCalls}';
+}
+
+/**
+ * The distribution of a latency of the real-time updates of a Subscription (see [UpdateLatencies]).
+ * 
+ * The latencies are expressed in microseconds and are approximated by excess within 12.5%.
+ */
+class LatencyStats {
+  final int _count;
+  final int _p50;
+  final int _p99;
+  final int _p999;
+  final int _max;
+
+  LatencyStats._fromMap(Map map) :
+    _count = map['count'],
+    _p50 = map['p50'],
+    _p99 = map['p99'],
+    _p999 = map['p999'],
+    _max = map['max'];
+
+  /**
+   * The number of the recorded updates.
+   */
+  int getCount() => _count;
+  /**
+   * The median latency (0 if no update was recorded).
+   */
+  int getP50() => _p50;
+  /**
+   * The 99th percentile of the latencies (0 if no update was recorded).
+   */
+  int getP99() => _p99;
+  /**
+   * The 99.9th percentile of the latencies (0 if no update was recorded).
+   */
+  int getP999() => _p999;
+  /**
+   * The maximum latency (0 if no update was recorded).
+   */
+  int getMax() => _max;
+
+  @override
+  String toString() => 'LatencyStats{count: $_count, p50: $_p50, p99: $_p99, p999: $_p999, max: $_max}';
+}
+
+/**
+ * The latencies of the real-time updates of a Subscription on their way from the native client library to the Flutter component
+ * (see [Subscription.getUpdateLatencies]).
+ * 
+ * A conflated update (see [Subscription.setConflationMaxFrequency]) is timed from the reception of its latest update.
+ */
+class UpdateLatencies {
+  final LatencyStats _dispatch;
+  final LatencyStats _delivery;
+  final LatencyStats _total;
+
+  UpdateLatencies._fromMap(Map map) :
+    _dispatch = LatencyStats._fromMap(map['dispatch']),
+    _delivery = LatencyStats._fromMap(map['delivery']),
+    _total = LatencyStats._fromMap(map['total']);
+
+  /**
+   * The time from the reception of the updates to the moment the main thread of the native component starts sending them, 
+   * i.e. the time they wait for the main thread (including the time spent in batches and event queues).
+   * A growing value reveals a congestion of the main thread.
+   */
+  LatencyStats getDispatch() => _dispatch;
+  /**
+   * The time taken to serialize the updates (or their batches) and hand them over to the platform channel.
+   */
+  LatencyStats getDelivery() => _delivery;
+  /**
+   * The time from the reception of the updates to their hand-over to the platform channel.
+   */
+  LatencyStats getTotal() => _total;
+
+  @override
+  String toString() => 'UpdateLatencies{dispatch: $_dispatch, delivery: $_delivery, total: $_total}';
+}
@@ -55,10 +55,17 @@ class NativeBridge {
   /// and it is removed when any ClientMessageListener event is notified.
   final Map<String, ClientMessageListener> _msgListenerMap = {};
 
+  int _batchIdGenerator = 0;
+
+  /// Maps a batchId to the messages of a batch and to their MessageBatchListener.
+  /// The mapping is created when `LightstreamerClient.sendMessages` is called (and the `listener` argument is not null)
+  /// and it is removed when the last outcome of the batch is notified.
+  final Map<String, ({List<String> messages, MessageBatchListener listener})> _batchMap = {};
+
   /// The channel through which this Flutter component forwards the procedure calls directed to the native component.
   final MethodChannel _methodChannel = const MethodChannel('com.lightstreamer.flutter/methods');
   /// The channel through which the listener events fired by the native component are communicated to this Flutter component.
-  final EventChannel _listenerChannel = const EventChannel('com.lightstreamer.flutter/listeners');
+  final EventChannel _listenerChannel = const EventChannel('com.lightstreamer.flutter/listeners', StandardMethodCodec(_ListenerEventMessageCodec()));
 
   @visibleForTesting
   int get nClients => _clientMap.length;
@@ -90,15 +97,14 @@ class NativeBridge {
 
   NativeBridge._() {
     _listenerChannel.receiveBroadcastStream().listen(
-      (json) {
-          try {
-            String method = json["targetMethod"] as String;
-            var mc = MethodCall(method, json);
-            _listenerChannelHandler(mc);
-          } catch(ex) {
-            if (channelLogger.isErrorEnabled()) {
-              channelLogger.error('Channel com.lightstreamer.flutter/listeners got unexpected data $json: $ex');
+      (data) {
+          if (data is List) {
+            // a batch of events (see `LightstreamerClient.setEventBatching`)
+            for (var json in data) {
+              _dispatchEvent(json);
             }
+          } else {
+            _dispatchEvent(data);
           }
       },
       onError: (Object error) {
@@ -114,6 +120,18 @@ class NativeBridge {
     );
   }
 
+  void _dispatchEvent(dynamic json) {
+    try {
+      String method = json["targetMethod"] as String;
+      var mc = MethodCall(method, json);
+      _listenerChannelHandler(mc);
+    } catch(ex) {
+      if (channelLogger.isErrorEnabled()) {
+        channelLogger.error('Channel com.lightstreamer.flutter/listeners got unexpected data $json: $ex');
+      }
+    }
+  }
+
   void client_create(String clientId, LightstreamerClient client) {
     _clientMap[clientId] = client;
   }
@@ -127,6 +145,17 @@ class NativeBridge {
     return await _invokeClientMethod(clientId, 'unsubscribe', arguments);
   }
 
+  Future<List<String?>> client_subscribeBatch(String clientId, List<Subscription> subs, Map<String, dynamic> arguments) async {
+    for (var sub in subs) {
+      _subMap[sub._id] = sub;
+    }
+    return (await _invokeClientMethod(clientId, 'subscribeBatch', arguments) as List).cast<String?>();
+  }
+
+  Future<List<String?>> client_unsubscribeBatch(String clientId, Map<String, dynamic> arguments) async {
+    return (await _invokeClientMethod(clientId, 'unsubscribeBatch', arguments) as List).cast<String?>();
+  }
+
   Future<List<Subscription>> client_getSubscriptions(String clientId) async {
     List<String> subIds = (await _invokeClientMethod(clientId, 'getSubscriptions')).cast<String>();
     List<Subscription> res = [];
@@ -143,6 +172,22 @@ class NativeBridge {
     return res;
   }
 
+  Future<ClientMetrics> client_getMetrics(String clientId) async {
+    Map map = await _invokeClientMethod(clientId, 'getMetrics');
+    return _toClientMetrics(map);
+  }
+
+  ClientMetrics _toClientMetrics(Map map) {
+    var subscriptions = <Subscription, EventMetrics>{};
+    (map['subscriptions'] as Map).forEach((subId, metrics) {
+      var sub = _subMap[subId];
+      if (sub != null) {
+        subscriptions[sub] = EventMetrics._fromMap(metrics);
+      }
+    });
+    return ClientMetrics._(EventMetrics._fromMap(map['client']), subscriptions, (map['methodCalls'] as Map).cast<String, int>());
+  }
+
   Future<void> client_sendMessage(String clientId, ClientMessageListener? listener, Map<String, dynamic> arguments) async {
     String? msgId;
     if (listener != null) {
@@ -153,6 +198,16 @@ class NativeBridge {
     return await _invokeClientMethod(clientId, 'sendMessage', arguments);
   }
 
+  Future<void> client_sendMessages(String clientId, List<String> messages, MessageBatchListener? listener, Map<String, dynamic> arguments) async {
+    String? batchId;
+    if (listener != null) {
+      batchId = 'batch${_batchIdGenerator++}';
+      _batchMap[batchId] = (messages: messages.toList(), listener: listener);
+    }
+    arguments['batchId'] = batchId;
+    return await _invokeClientMethod(clientId, 'sendMessages', arguments);
+  }
+
   Future<void> client_registerForMpn(String clientId, String mpnDevId, MpnDevice device, Map<String, dynamic> arguments) async {
     _mpnDeviceMap[mpnDevId] = device; // registering the same object multiple times is permitted
     return await _invokeClientMethod(clientId, 'registerForMpn', arguments);
@@ -249,6 +304,8 @@ class NativeBridge {
         _SubscriptionListener_handle(method, call);
       case 'ClientMessageListener':
         _ClientMessageListener_handle(method, call);
+      case 'MessageBatchListener':
+        _MessageBatchListener_handle(method, call);
       case 'MpnDeviceListener':
         _MpnDeviceListener_handle(method, call);
       case 'MpnSubscriptionListener':
@@ -269,6 +326,8 @@ class NativeBridge {
         _ClientListener_onPropertyChange(call);
       case "onServerError":
         _ClientListener_onServerError(call);
+      case "onMetrics":
+        _ClientListener_onMetrics(call);
       default:
         if (channelLogger.isErrorEnabled()) {
           channelLogger.error("Unknown method ${call.method}", null);
@@ -319,6 +378,13 @@ class NativeBridge {
     runClientListenersAsync(id, (l) => l.onServerError(errorCode, errorMessage), 'onServerError');
   }
 
+  void _ClientListener_onMetrics(MethodCall call) {
+    var arguments = call.arguments;
+    String id = arguments['id'];
+    var metrics = _toClientMetrics(arguments['metrics']);
+    runClientListenersAsync(id, (l) => l.onMetrics(metrics), 'onMetrics');
+  }
+
   void _ClientMessageListener_handle(String method, MethodCall call) {
     switch (method) {
       case "onAbort":
@@ -377,10 +443,38 @@ class NativeBridge {
     runMessageListenersAsync(msgId, (l) => l.onProcessed(originalMessage, response), 'onProcessed');
   }
 
+  void _MessageBatchListener_handle(String method, MethodCall call) {
+    switch (method) {
+      case "onOutcomes":
+        _MessageBatchListener_onOutcomes(call);
+      default:
+        if (channelLogger.isErrorEnabled()) {
+          channelLogger.error("Unknown method ${call.method}", null);
+        }
+    }
+  }
+
+  void _MessageBatchListener_onOutcomes(MethodCall call) {
+    var arguments = call.arguments;
+    String batchId = arguments['batchId'];
+    int pending = arguments['pending'];
+    var batch = pending == 0 ? _batchMap.remove(batchId) : _batchMap[batchId];
+    if (batch == null) {
+      if (channelLogger.isErrorEnabled()) {
+        channelLogger.error("Unknown MessageBatchListener $batchId in MessageBatchListener.onOutcomes", null);
+      }
+      return;
+    }
+    var outcomes = MessageBatchOutcomes._fromMap(batch.messages, arguments);
+    scheduleMicrotask(() => batch.listener.onOutcomes(outcomes));
+  }
+
   void _SubscriptionListener_handle(String method, MethodCall call) {
     switch (method) {
       case "onItemUpdate":
         _SubscriptionListener_onItemUpdate(call);
+      case "onCommandRowDiff":
+        _SubscriptionListener_onCommandRowDiff(call);
       case "onSubscriptionError":
         _SubscriptionListener_onSubscriptionError(call);
       case "onClearSnapshot":
@@ -391,6 +485,8 @@ class NativeBridge {
         _SubscriptionListener_onCommandSecondLevelSubscriptionError(call);
       case "onEndOfSnapshot":
         _SubscriptionListener_onEndOfSnapshot(call);
+      case "onItemDroppedUpdates":
+        _SubscriptionListener_onItemDroppedUpdates(call);
       case "onItemLostUpdates":
         _SubscriptionListener_onItemLostUpdate(call);
       case "onSubscription":
@@ -411,6 +507,8 @@ class NativeBridge {
     String subId = arguments['subId'];
     String itemName = arguments['itemName'];
     int itemPos = arguments['itemPos'];
+    _subMap[subId]?._itemValues.remove(itemPos);
+    _subMap[subId]?._commandRows.remove(itemPos);
     runSubscriptionListenersAsync(subId, (l) => l.onClearSnapshot(itemName, itemPos), 'onClearSnapshot');
   }
 
@@ -439,6 +537,15 @@ class NativeBridge {
     runSubscriptionListenersAsync(subId, (l) => l.onEndOfSnapshot(itemName, itemPos), 'onEndOfSnapshot');
   }
 
+  void _SubscriptionListener_onItemDroppedUpdates(MethodCall call) {
+    var arguments = call.arguments;
+    String subId = arguments['subId'];
+    String itemName = arguments['itemName'];
+    int itemPos = arguments['itemPos'];
+    int droppedUpdates = arguments['droppedUpdates'];
+    runSubscriptionListenersAsync(subId, (l) => l.onItemDroppedUpdates(itemName, itemPos, droppedUpdates), 'onItemDroppedUpdates');
+  }
+
   void _SubscriptionListener_onItemLostUpdate(MethodCall call) {
     var arguments = call.arguments;
     String subId = arguments['subId'];
@@ -451,7 +558,38 @@ class NativeBridge {
   void _SubscriptionListener_onItemUpdate(MethodCall call) {
     var arguments = call.arguments;
     String subId = arguments['subId'];
-    ItemUpdate update = ItemUpdate._(call);
+    ItemUpdate update;
+    if (arguments['fieldsByPosition'] == null) {
+      // the event only carries the changed values (see `Subscription.setUpdatePayloadProfile`)
+      var sub = _subMap[subId];
+      if (sub == null) {
+        if (channelLogger.isErrorEnabled()) {
+          channelLogger.error("Unknown Subscription $subId in SubscriptionListener.onItemUpdate", null);
+        }
+        return;
+      }
+      update = ItemUpdate._fromChanges(call, sub);
+    } else {
+      update = ItemUpdate._(call);
+    }
+    runSubscriptionListenersAsync(subId, (l) => l.onItemUpdate(update), 'onItemUpdate');
+  }
+
+  void _SubscriptionListener_onCommandRowDiff(MethodCall call) {
+    var arguments = call.arguments;
+    String subId = arguments['subId'];
+    var sub = _subMap[subId];
+    if (sub == null) {
+      if (channelLogger.isErrorEnabled()) {
+        channelLogger.error("Unknown Subscription $subId in SubscriptionListener.onCommandRowDiff", null);
+      }
+      return;
+    }
+    var diff = CommandRowDiff._(arguments['itemName'], arguments['itemPos'], arguments['isSnapshot'], 
+      arguments['op'], arguments['row'], arguments['key'], 
+      (arguments['changedFieldsByPosition'] as Map<Object?, Object?>).cast());
+    var update = ItemUpdate._fromRowDiff(call, sub, diff);
+    runSubscriptionListenersAsync(subId, (l) => l.onCommandRowDiff(diff), 'onCommandRowDiff');
     runSubscriptionListenersAsync(subId, (l) => l.onItemUpdate(update), 'onItemUpdate');
   }
 
@@ -478,6 +616,8 @@ class NativeBridge {
   void _SubscriptionListener_onUnsubscription(MethodCall call) {
     var arguments = call.arguments;
     String subId = arguments['subId'];
+    _subMap[subId]?._itemValues.clear();
+    _subMap[subId]?._commandRows.clear();
     runSubscriptionListenersAsync(subId, (l) => l.onUnsubscription(), 'onUnsubscription');
   }
 
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2022 Lightstreamer Srl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+part of 'client.dart';
+
+/**
+ * The current values of a rectangular region of the item×field table of a Subscription,
+ * as returned by [Subscription.getValues].
+ * 
+ * The values are stored in a flat list, row by row. A row is an item of the region or, in case of COMMAND Subscriptions,
+ * a key of an item of the region: the keys of an item are listed in order of arrival.
+ */
+class ValueTable {
+  /**
+   * The 1-based position of the first item of the region.
+   */
+  final int fromItem;
+  /**
+   * The 1-based position of the last item of the region.
+   */
+  final int toItem;
+  /**
+   * The 1-based position of the first field of the region.
+   */
+  final int fromField;
+  /**
+   * The 1-based position of the last field of the region.
+   */
+  final int toField;
+  /**
+   * The values of the region, row by row (the value of the field `f` in the row `r` has index `r * fieldCount + f - fromField`).
+   */
+  final List<String?> values;
+  final List<int>? _rowItems;
+  final List<String>? _rowKeys;
+
+  ValueTable._(this.fromItem, this.toItem, this.fromField, this.toField, this.values, this._rowItems, this._rowKeys);
+
+  static ValueTable _fromMap(Map map) {
+    return ValueTable._(
+      map['fromItem'], 
+      map['toItem'], 
+      map['fromField'], 
+      map['toField'], 
+      (map['values'] as List).cast<String?>(), 
+      (map['items'] as List?)?.cast<int>(), 
+      (map['keys'] as List?)?.cast<String>());
+  }
+
+  /**
+   * The number of fields of each row.
+   */
+  int get fieldCount => toField < fromField ? 0 : toField - fromField + 1;
+
+  /**
+   * The number of rows.
+   */
+  int get rowCount => fieldCount == 0 ? (_rowItems?.length ?? (toItem < fromItem ? 0 : toItem - fromItem + 1)) : values.length ~/ fieldCount;
+
+  /**
+   * Returns the 1-based position of the item of the specified row.
+   */
+  int getItemPos(int row) {
+    return _rowItems?[row] ?? fromItem + row;
+  }
+
+  /**
+   * Returns the key of the specified row, or null if the Subscription is not a COMMAND Subscription.
+   */
+  String? getKey(int row) {
+    return _rowKeys?[row];
+  }
+
+  /**
+   * Returns the value of the field having the specified 1-based position in the specified row.
+   */
+  String? getValue(int row, int fieldPos) {
+    return values[row * fieldCount + fieldPos - fromField];
+  }
+}